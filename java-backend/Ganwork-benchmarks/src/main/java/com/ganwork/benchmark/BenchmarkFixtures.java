@@ -0,0 +1,83 @@
+package com.ganwork.benchmark;
+
+import com.ganwork.config.HttpClientProperties;
+import com.ganwork.config.LoadBalancerProperties;
+import com.ganwork.config.MicroBatchProperties;
+import com.ganwork.config.ModelConfig;
+import com.ganwork.config.ResilienceProperties;
+import com.ganwork.config.RestTemplateConfig;
+import com.ganwork.exception.ModelType;
+import com.ganwork.service.InferenceLoadBalancer;
+import com.ganwork.service.ProcessingMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// 不启动 Spring 容器，按生产配置手工装配被测组件
+public final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    // 所有模型都指向同一个端点
+    public static ModelConfig modelConfig(String endpoint) {
+        Map<ModelType, ModelConfig.ModelProperties> models = new EnumMap<>(ModelType.class);
+        for (ModelType type : ModelType.values()) {
+            ModelConfig.ModelProperties properties = new ModelConfig.ModelProperties();
+            properties.setApiEndpoint(endpoint);
+            models.put(type, properties);
+        }
+        ModelConfig modelConfig = new ModelConfig();
+        modelConfig.setModelMap(models);
+        return modelConfig;
+    }
+
+    // 与 RestTemplateConfig 相同的共享连接池客户端
+    public static CloseableHttpClient httpClient(HttpClientProperties httpProperties, ModelConfig modelConfig) {
+        RestTemplateConfig config = new RestTemplateConfig();
+        PoolingHttpClientConnectionManager manager = config.inferenceConnectionManager(httpProperties, modelConfig);
+        return config.inferenceHttpClient(manager, httpProperties);
+    }
+
+    public static RestTemplate restTemplate(CloseableHttpClient httpClient, HttpClientProperties httpProperties) {
+        return new RestTemplateConfig().restTemplate(httpClient, httpProperties);
+    }
+
+    // 不启动主动健康检查，所有副本视为可用
+    public static InferenceLoadBalancer loadBalancer(ModelConfig modelConfig, ProcessingMetrics metrics) {
+        return new InferenceLoadBalancer(modelConfig, new LoadBalancerProperties(), new ResilienceProperties(),
+                metrics);
+    }
+
+    // 推理服务桩只实现单张处理接口，每次调用单独发出
+    public static MicroBatchProperties batchingDisabled() {
+        MicroBatchProperties properties = new MicroBatchProperties();
+        properties.setEnabled(false);
+        return properties;
+    }
+
+    // 指标写入内存注册表，计入埋点本身的开销
+    public static ProcessingMetrics metrics() {
+        return new ProcessingMetrics(new SimpleMeterRegistry());
+    }
+
+    public static void deleteRecursively(Path root) throws IOException {
+        if (root == null || !Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
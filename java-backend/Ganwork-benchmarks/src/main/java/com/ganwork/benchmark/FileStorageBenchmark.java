@@ -0,0 +1,69 @@
+package com.ganwork.benchmark;
+
+import com.ganwork.config.StorageProperties;
+import com.ganwork.util.FileStorageUtil;
+import com.ganwork.util.LocalStorageBackend;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileStorageBenchmark {
+
+    @Param({"262144", "4194304"})
+    private int sizeBytes;
+
+    private Path uploadDir;
+    private FileStorageUtil fileStorageUtil;
+    private MockMultipartFile upload;
+    private byte[] content;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        uploadDir = Files.createTempDirectory("bench-uploads");
+        fileStorageUtil = new FileStorageUtil(uploadDir.resolve("uploads").toString(),
+                uploadDir.resolve("processed").toString(), new StorageProperties(), new LocalStorageBackend());
+        content = new byte[sizeBytes];
+        new Random(42).nextBytes(content);
+        upload = new MockMultipartFile("file", "bench.png", "image/png", content);
+    }
+
+    // store 与结果写入每次生成新的文件名，每轮迭代后清空目录避免磁盘膨胀
+    @TearDown(Level.Iteration)
+    public void cleanIteration() throws IOException {
+        BenchmarkFixtures.deleteRecursively(uploadDir);
+        Files.createDirectories(uploadDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFixtures.deleteRecursively(uploadDir);
+    }
+
+    @Benchmark
+    public String store() {
+        return fileStorageUtil.store(upload);
+    }
+
+    @Benchmark
+    public String storeProcessedFileBytes() {
+        return fileStorageUtil.storeProcessedFile("bench_processed.png", content);
+    }
+
+    @Benchmark
+    public FileStorageUtil.StoredFile storeProcessedFileStream() {
+        return fileStorageUtil.storeProcessedFile("bench_processed_stream.png",
+                new ByteArrayInputStream(content), content.length, Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,55 @@
+package com.ganwork.benchmark;
+
+import com.ganwork.util.JsonPathExtractor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonPathExtractorBenchmark {
+
+    private Map<String, Object> response;
+    private String responseJson;
+
+    @Setup
+    public void setUp() {
+        // 与 Python /process 的成功/失败响应结构一致
+        Map<String, Object> error = new HashMap<>();
+        error.put("message", "model failed");
+        response = new HashMap<>();
+        response.put("status", "success");
+        response.put("model", "denoise");
+        response.put("processed_path", "download/processed_bench.png");
+        response.put("result_url", "/processed/processed_bench.png");
+        response.put("error", error);
+        responseJson = "{\"status\":\"success\",\"model\":\"denoise\","
+                + "\"result_url\":\"/processed/processed_bench.png\",\"error\":{\"message\":\"model failed\"}}";
+    }
+
+    @Benchmark
+    public Object extractTopLevelFromMap() {
+        return JsonPathExtractor.extract(response, "result_url");
+    }
+
+    @Benchmark
+    public Object extractNestedFromMap() {
+        return JsonPathExtractor.extract(response, "error.message");
+    }
+
+    @Benchmark
+    public Object extractMissingFromMap() {
+        return JsonPathExtractor.extract(response, "missing.field");
+    }
+
+    @Benchmark
+    public Object extractFromJsonString() {
+        return JsonPathExtractor.extract(responseJson, "status");
+    }
+}
@@ -0,0 +1,39 @@
+package com.ganwork.benchmark;
+
+import com.ganwork.config.ModelConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelConfigBenchmark {
+
+    private ModelConfig modelConfig;
+
+    @Setup
+    public void setUp() {
+        modelConfig = BenchmarkFixtures.modelConfig("http://127.0.0.1:8000/process");
+    }
+
+    // 模型ID与枚举名称一致，在第一轮查找中命中
+    @Benchmark
+    public ModelConfig.ModelProperties byEnumName() {
+        return modelConfig.getModelProperties("super_res_manga_4x");
+    }
+
+    // color_enhance 与枚举名 COLOR_ENHANCEMENT 不一致，需要第二轮按请求参数查找
+    @Benchmark
+    public ModelConfig.ModelProperties byRequestParam() {
+        return modelConfig.getModelProperties("color_enhance");
+    }
+
+    @Benchmark
+    public ModelConfig.ModelProperties unknownModel() {
+        return modelConfig.getModelProperties("unknown");
+    }
+}
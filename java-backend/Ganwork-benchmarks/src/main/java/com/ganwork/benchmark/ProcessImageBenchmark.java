@@ -0,0 +1,131 @@
+package com.ganwork.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ganwork.config.HttpClientProperties;
+import com.ganwork.config.JobJournalProperties;
+import com.ganwork.config.ModelConfig;
+import com.ganwork.config.PreflightProperties;
+import com.ganwork.config.PreviewProperties;
+import com.ganwork.config.ResultCacheProperties;
+import com.ganwork.config.SchedulerProperties;
+import com.ganwork.config.StorageProperties;
+import com.ganwork.config.TaskExecutorProperties;
+import com.ganwork.config.TaskRegistryProperties;
+import com.ganwork.config.TilingProperties;
+import com.ganwork.service.ApiProcessingService;
+import com.ganwork.service.ImagePreflight;
+import com.ganwork.service.ImageProcessingServiceImpl;
+import com.ganwork.service.InferenceClientFactory;
+import com.ganwork.service.InferenceScheduler;
+import com.ganwork.service.JobJournal;
+import com.ganwork.service.PreviewGenerator;
+import com.ganwork.service.ProcessingMetrics;
+import com.ganwork.service.ProcessingMonitor;
+import com.ganwork.service.ResultCache;
+import com.ganwork.service.TiledImageProcessor;
+import com.ganwork.util.FileStorageUtil;
+import com.ganwork.util.LocalStorageBackend;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// 同步 processImage 的完整路径：校验、落盘、调用本地推理服务桩、下载结果
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProcessImageBenchmark {
+
+    @Param({"262144", "4194304"})
+    private int sizeBytes;
+
+    private StubInferenceServer server;
+    private CloseableHttpClient httpClient;
+    private Path workDir;
+    private ImageProcessingServiceImpl imageProcessingService;
+    private MockMultipartFile upload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new StubInferenceServer(sizeBytes);
+        workDir = Files.createTempDirectory("bench-process");
+
+        HttpClientProperties httpProperties = new HttpClientProperties();
+        ProcessingMetrics metrics = BenchmarkFixtures.metrics();
+        ModelConfig modelConfig = BenchmarkFixtures.modelConfig(server.processEndpoint());
+        httpClient = BenchmarkFixtures.httpClient(httpProperties, modelConfig);
+        FileStorageUtil fileStorageUtil = new FileStorageUtil(workDir.resolve("uploads").toString(),
+                workDir.resolve("processed").toString(), new StorageProperties(), new LocalStorageBackend());
+        ApiProcessingService apiProcessingService = new ApiProcessingService(
+                BenchmarkFixtures.restTemplate(httpClient, httpProperties),
+                modelConfig,
+                fileStorageUtil,
+                new InferenceClientFactory(httpClient),
+                httpProperties,
+                metrics,
+                BenchmarkFixtures.loadBalancer(modelConfig, metrics),
+                BenchmarkFixtures.batchingDisabled());
+
+        ResultCacheProperties cacheProperties = new ResultCacheProperties();
+        // 关闭结果缓存，每次调用都经过推理服务桩
+        cacheProperties.setEnabled(false);
+        ResultCache resultCache = new ResultCache(cacheProperties, fileStorageUtil);
+
+        ProcessingMonitor processingMonitor = new ProcessingMonitor(new TaskRegistryProperties(), new ObjectMapper());
+        // 测试图片不是大图，关闭分块以免每次调用都读取图像头
+        TilingProperties tilingProperties = new TilingProperties();
+        tilingProperties.setEnabled(false);
+        // 输入是随机字节而非图像，关闭推理前检查
+        PreflightProperties preflightProperties = new PreflightProperties();
+        preflightProperties.setEnabled(false);
+        // 同步请求不写任务日志
+        JobJournalProperties journalProperties = new JobJournalProperties();
+        journalProperties.setEnabled(false);
+        // 结果不是图像，不生成预览
+        PreviewProperties previewProperties = new PreviewProperties();
+        previewProperties.setEnabled(false);
+
+        // 同步路径不会用到线程池，未初始化的实例即可满足构造参数
+        TiledImageProcessor tiledImageProcessor = new TiledImageProcessor(tilingProperties, fileStorageUtil,
+                processingMonitor, new ThreadPoolTaskExecutor());
+        imageProcessingService = new ImageProcessingServiceImpl(
+                fileStorageUtil,
+                apiProcessingService,
+                processingMonitor,
+                new ThreadPoolTaskExecutor(),
+                new ThreadPoolTaskExecutor(),
+                new TaskExecutorProperties(),
+                resultCache,
+                metrics,
+                new InferenceScheduler(modelConfig, new SchedulerProperties(), metrics),
+                tiledImageProcessor,
+                new ImagePreflight(preflightProperties, modelConfig, metrics, tiledImageProcessor, fileStorageUtil),
+                new JobJournal(journalProperties, fileStorageUtil, new ObjectMapper()),
+                new PreviewGenerator(previewProperties, fileStorageUtil, metrics, new ThreadPoolTaskExecutor()));
+
+        byte[] content = new byte[sizeBytes];
+        new Random(42).nextBytes(content);
+        upload = new MockMultipartFile("file", "bench.png", "image/png", content);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        httpClient.close();
+        server.close();
+        BenchmarkFixtures.deleteRecursively(workDir);
+    }
+
+    @Benchmark
+    public String processImage() {
+        return imageProcessingService.processImage(upload, "denoise", "photo", 2, "bench");
+    }
+}
@@ -0,0 +1,70 @@
+package com.ganwork.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.Executors;
+
+// 本地推理服务桩：模拟 Python 端的 /process 与 /processed/{filename}，不做任何推理
+public class StubInferenceServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final byte[] resultImage;
+
+    public StubInferenceServer(int resultSizeBytes) throws IOException {
+        this.resultImage = new byte[resultSizeBytes];
+        new Random(42).nextBytes(resultImage);
+
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/process", this::handleProcess);
+        server.createContext("/processed/", this::handleDownload);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public String processEndpoint() {
+        return baseUrl() + "/process";
+    }
+
+    public String resultUrl() {
+        return baseUrl() + "/processed/bench_result.png";
+    }
+
+    private void handleProcess(HttpExchange exchange) throws IOException {
+        // 读完请求体，模拟真实服务接收上传
+        try (InputStream in = exchange.getRequestBody()) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        byte[] body = ("{\"status\":\"success\",\"model\":\"denoise\",\"result_url\":\"" + resultUrl() + "\"}")
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        send(exchange, body);
+    }
+
+    private void handleDownload(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "image/png");
+        send(exchange, resultImage);
+    }
+
+    private void send(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,92 @@
+package com.ganwork.service;
+
+import com.ganwork.benchmark.BenchmarkFixtures;
+import com.ganwork.benchmark.StubInferenceServer;
+import com.ganwork.config.HttpClientProperties;
+import com.ganwork.config.ModelConfig;
+import com.ganwork.config.StorageProperties;
+import com.ganwork.exception.ModelType;
+import com.ganwork.util.FileStorageUtil;
+import com.ganwork.util.LocalStorageBackend;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// 与 ApiProcessingService 同包，直接测量包内可见的 processApiResponse
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ApiProcessingServiceBenchmark {
+
+    @Param({"262144"})
+    private int resultSizeBytes;
+
+    private StubInferenceServer server;
+    private CloseableHttpClient httpClient;
+    private Path workDir;
+    private Path inputFile;
+    private ApiProcessingService apiProcessingService;
+    private ModelConfig.ModelProperties properties;
+    private Map<String, Object> response;
+    private String origin;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new StubInferenceServer(resultSizeBytes);
+        workDir = Files.createTempDirectory("bench-api");
+        inputFile = workDir.resolve("bench_input.png");
+        byte[] input = new byte[resultSizeBytes];
+        new Random(7).nextBytes(input);
+        Files.write(inputFile, input);
+
+        HttpClientProperties httpProperties = new HttpClientProperties();
+        ProcessingMetrics metrics = BenchmarkFixtures.metrics();
+        ModelConfig modelConfig = BenchmarkFixtures.modelConfig(server.processEndpoint());
+        httpClient = BenchmarkFixtures.httpClient(httpProperties, modelConfig);
+        apiProcessingService = new ApiProcessingService(
+                BenchmarkFixtures.restTemplate(httpClient, httpProperties),
+                modelConfig,
+                new FileStorageUtil(workDir.resolve("uploads").toString(), workDir.resolve("processed").toString(),
+                        new StorageProperties(), new LocalStorageBackend()),
+                new InferenceClientFactory(httpClient),
+                httpProperties,
+                metrics,
+                BenchmarkFixtures.loadBalancer(modelConfig, metrics),
+                BenchmarkFixtures.batchingDisabled());
+
+        properties = modelConfig.getModelProperties("denoise");
+        response = new HashMap<>();
+        response.put("status", "success");
+        response.put("result_url", server.resultUrl());
+        origin = InferenceLoadBalancer.origin(server.processEndpoint());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        httpClient.close();
+        server.close();
+        BenchmarkFixtures.deleteRecursively(workDir);
+    }
+
+    // 响应解析 + 从推理服务下载结果
+    @Benchmark
+    public String processApiResponse() {
+        return apiProcessingService.processApiResponse(response, origin, ModelType.InternalModel.DENOISE, properties, false);
+    }
+
+    // 上传、调用推理服务、解析响应并下载结果的完整单步调用
+    @Benchmark
+    public String process() {
+        return apiProcessingService.process(inputFile.toString(), ModelType.InternalModel.DENOISE, "photo", 2, false);
+    }
+}
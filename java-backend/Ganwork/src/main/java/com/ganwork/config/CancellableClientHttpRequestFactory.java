@@ -0,0 +1,155 @@
+package com.ganwork.config;
+
+import com.ganwork.service.CancellationToken;
+import org.apache.hc.client5.http.classic.HttpClient;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Map;
+
+// 将出站请求登记到当前线程的任务取消标记，取消任务时中止正在进行的 HTTP 交换；
+// 交换结束（响应关闭或执行失败）后取消登记，标记不会持有任务发出过的全部请求
+public class CancellableClientHttpRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+    // createHttpUriRequest 创建的底层请求，交给同一线程上的 createRequest 包装
+    private static final ThreadLocal<Cancellable> CREATED = new ThreadLocal<>();
+
+    public CancellableClientHttpRequestFactory(HttpClient httpClient) {
+        super(httpClient);
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        ClientHttpRequest request;
+        Cancellable created;
+        try {
+            request = super.createRequest(uri, httpMethod);
+        } finally {
+            created = CREATED.get();
+            CREATED.remove();
+        }
+        CancellationToken token = CancellationToken.current();
+        if (token == null || created == null || !(request instanceof StreamingHttpOutputMessage)) {
+            return request;
+        }
+        token.track(created);
+        return new TrackedRequest(request, token, created);
+    }
+
+    @Override
+    protected ClassicHttpRequest createHttpUriRequest(HttpMethod httpMethod, URI uri) {
+        ClassicHttpRequest request = super.createHttpUriRequest(httpMethod, uri);
+        if (CancellationToken.current() != null && request instanceof Cancellable cancellable) {
+            CREATED.set(cancellable);
+        }
+        return request;
+    }
+
+    // 保留流式请求体（上传文件不在内存中缓冲），执行失败时取消登记
+    private static final class TrackedRequest implements ClientHttpRequest, StreamingHttpOutputMessage {
+
+        private final ClientHttpRequest delegate;
+        private final CancellationToken token;
+        private final Cancellable cancellable;
+
+        TrackedRequest(ClientHttpRequest delegate, CancellationToken token, Cancellable cancellable) {
+            this.delegate = delegate;
+            this.token = token;
+            this.cancellable = cancellable;
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            try {
+                return new TrackedResponse(delegate.execute(), token, cancellable);
+            } catch (IOException | RuntimeException e) {
+                token.untrack(cancellable);
+                throw e;
+            }
+        }
+
+        @Override
+        public void setBody(Body body) {
+            ((StreamingHttpOutputMessage) delegate).setBody(body);
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return delegate.getMethod();
+        }
+
+        @Override
+        public URI getURI() {
+            return delegate.getURI();
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return delegate.getAttributes();
+        }
+    }
+
+    // 响应体读取期间仍可中止，关闭响应后取消登记
+    private static final class TrackedResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final CancellationToken token;
+        private final Cancellable cancellable;
+
+        TrackedResponse(ClientHttpResponse delegate, CancellationToken token, Cancellable cancellable) {
+            this.delegate = delegate;
+            this.token = token;
+            this.cancellable = cancellable;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                token.untrack(cancellable);
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.ganwork.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.http")
+public class HttpClientProperties {
+
+    // 连接池总连接数上限
+    private int maxTotal = 200;
+
+    // 未在模型配置中出现的路由的默认连接上限
+    private int defaultMaxPerRoute = 20;
+
+    // 连接复用的保活时间
+    private int keepAliveSeconds = 60;
+
+    // 空闲连接回收时间
+    private int idleEvictSeconds = 30;
+
+    // 默认连接超时与读取超时（用于文件下载等非模型请求）
+    private int connectTimeoutSeconds = 30;
+    private int readTimeoutSeconds = 300;
+
+    // 下载处理结果的大小上限（MB），超过后中止下载
+    private long maxDownloadMb = 512;
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public void setMaxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+
+    public int getDefaultMaxPerRoute() {
+        return defaultMaxPerRoute;
+    }
+
+    public void setDefaultMaxPerRoute(int defaultMaxPerRoute) {
+        this.defaultMaxPerRoute = defaultMaxPerRoute;
+    }
+
+    public int getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    public void setKeepAliveSeconds(int keepAliveSeconds) {
+        this.keepAliveSeconds = keepAliveSeconds;
+    }
+
+    public int getIdleEvictSeconds() {
+        return idleEvictSeconds;
+    }
+
+    public void setIdleEvictSeconds(int idleEvictSeconds) {
+        this.idleEvictSeconds = idleEvictSeconds;
+    }
+
+    public int getConnectTimeoutSeconds() {
+        return connectTimeoutSeconds;
+    }
+
+    public void setConnectTimeoutSeconds(int connectTimeoutSeconds) {
+        this.connectTimeoutSeconds = connectTimeoutSeconds;
+    }
+
+    public int getReadTimeoutSeconds() {
+        return readTimeoutSeconds;
+    }
+
+    public void setReadTimeoutSeconds(int readTimeoutSeconds) {
+        this.readTimeoutSeconds = readTimeoutSeconds;
+    }
+
+    public long getMaxDownloadMb() {
+        return maxDownloadMb;
+    }
+
+    public void setMaxDownloadMb(long maxDownloadMb) {
+        this.maxDownloadMb = maxDownloadMb;
+    }
+
+    public long getMaxDownloadBytes() {
+        return maxDownloadMb * 1024 * 1024;
+    }
+}
@@ -0,0 +1,53 @@
+package com.ganwork.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.task.journal")
+public class JobJournalProperties {
+
+    // 异步任务的持久化日志，重启后恢复未结束的任务
+    private boolean enabled = true;
+
+    // 日志目录，为空时使用上传目录下的 .journal（与恢复所需的上传文件位于同一存储）
+    private String dir = "";
+
+    // 每条记录写入后强制刷盘
+    private boolean fsync = true;
+
+    // 累计写入的已结束记录数达到该值后重写日志，只保留未结束的任务
+    private int compactThreshold = 1000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDir() {
+        return dir;
+    }
+
+    public void setDir(String dir) {
+        this.dir = dir;
+    }
+
+    public boolean isFsync() {
+        return fsync;
+    }
+
+    public void setFsync(boolean fsync) {
+        this.fsync = fsync;
+    }
+
+    public int getCompactThreshold() {
+        return compactThreshold;
+    }
+
+    public void setCompactThreshold(int compactThreshold) {
+        this.compactThreshold = compactThreshold;
+    }
+}
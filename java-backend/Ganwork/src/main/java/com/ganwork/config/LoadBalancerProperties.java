@@ -0,0 +1,115 @@
+package com.ganwork.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.lb")
+public class LoadBalancerProperties {
+
+    public enum Strategy {
+        LEAST_OUTSTANDING,
+        WEIGHTED
+    }
+
+    // 副本选择策略：最少进行中请求（按权重折算）或按权重随机
+    private Strategy strategy = Strategy.LEAST_OUTSTANDING;
+
+    // 模型未配置任何端点时使用的地址
+    private String defaultEndpoint = "http://localhost:8000/process";
+
+    // 主动健康检查：路径、间隔与超时，间隔为 0 时关闭
+    private String healthPath = "/health";
+    private int healthIntervalSeconds = 10;
+    private int healthTimeoutSeconds = 2;
+
+    // 异常剔除：连续失败次数达到阈值后剔除，剔除时长随剔除次数递增，不超过上限
+    private int ejectionConsecutiveFailures = 3;
+    private int ejectionBaseSeconds = 30;
+    private int ejectionMaxSeconds = 300;
+    // 同一模型最多同时剔除的副本比例（百分比）
+    private int maxEjectionPercent = 50;
+
+    // 单次推理调用最多尝试的副本数（含首次）
+    private int maxAttempts = 2;
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    public void setStrategy(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public String getDefaultEndpoint() {
+        return defaultEndpoint;
+    }
+
+    public void setDefaultEndpoint(String defaultEndpoint) {
+        this.defaultEndpoint = defaultEndpoint;
+    }
+
+    public String getHealthPath() {
+        return healthPath;
+    }
+
+    public void setHealthPath(String healthPath) {
+        this.healthPath = healthPath;
+    }
+
+    public int getHealthIntervalSeconds() {
+        return healthIntervalSeconds;
+    }
+
+    public void setHealthIntervalSeconds(int healthIntervalSeconds) {
+        this.healthIntervalSeconds = healthIntervalSeconds;
+    }
+
+    public int getHealthTimeoutSeconds() {
+        return healthTimeoutSeconds;
+    }
+
+    public void setHealthTimeoutSeconds(int healthTimeoutSeconds) {
+        this.healthTimeoutSeconds = healthTimeoutSeconds;
+    }
+
+    public int getEjectionConsecutiveFailures() {
+        return ejectionConsecutiveFailures;
+    }
+
+    public void setEjectionConsecutiveFailures(int ejectionConsecutiveFailures) {
+        this.ejectionConsecutiveFailures = ejectionConsecutiveFailures;
+    }
+
+    public int getEjectionBaseSeconds() {
+        return ejectionBaseSeconds;
+    }
+
+    public void setEjectionBaseSeconds(int ejectionBaseSeconds) {
+        this.ejectionBaseSeconds = ejectionBaseSeconds;
+    }
+
+    public int getEjectionMaxSeconds() {
+        return ejectionMaxSeconds;
+    }
+
+    public void setEjectionMaxSeconds(int ejectionMaxSeconds) {
+        this.ejectionMaxSeconds = ejectionMaxSeconds;
+    }
+
+    public int getMaxEjectionPercent() {
+        return maxEjectionPercent;
+    }
+
+    public void setMaxEjectionPercent(int maxEjectionPercent) {
+        this.maxEjectionPercent = maxEjectionPercent;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+}
@@ -0,0 +1,67 @@
+package com.ganwork.config;
+
+import com.ganwork.exception.ModelType;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.batching")
+public class MicroBatchProperties {
+
+    // 小图请求合并为一次批量推理调用（推理服务的 /process/batch）
+    private boolean enabled = true;
+
+    // 参与合并的内部模型
+    private Set<ModelType.InternalModel> models =
+            EnumSet.of(ModelType.InternalModel.DENOISE, ModelType.InternalModel.COLOR_ENHANCE);
+
+    // 单批最多合并的请求数，以及第一个请求最多等待的毫秒数
+    private int maxBatchSize = 8;
+    private long maxWaitMillis = 20;
+
+    // 超过该大小的输入文件单独调用
+    private long maxFileBytes = 2L * 1024 * 1024;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Set<ModelType.InternalModel> getModels() {
+        return models;
+    }
+
+    public void setModels(Set<ModelType.InternalModel> models) {
+        this.models = models;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public void setMaxWaitMillis(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public long getMaxFileBytes() {
+        return maxFileBytes;
+    }
+
+    public void setMaxFileBytes(long maxFileBytes) {
+        this.maxFileBytes = maxFileBytes;
+    }
+}
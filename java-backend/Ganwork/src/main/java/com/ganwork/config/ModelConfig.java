@@ -7,8 +7,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Configuration
@@ -57,9 +59,15 @@ public class ModelConfig {
     public static class ModelProperties {
         // API端点配置
         private String apiEndpoint;
+        // 多副本端点（配置后取代 apiEndpoint），由 InferenceLoadBalancer 分发
+        private List<Endpoint> endpoints = new ArrayList<>();
         private String apiKey;
         private String authMethod = "API_KEY"; // 认证方式：API_KEY, OAUTH2, JWT
-        private int timeoutSeconds = 300; // API调用超时时间
+        private int timeoutSeconds = 300; // API调用超时时间（读取超时）
+        private int connectTimeoutSeconds = 30; // 建立连接超时时间
+        private int maxConnections = 20; // 该模型可占用的到后端的最大连接数
+        private int maxConcurrency = 0; // 同时执行的推理请求上限，0 表示使用 app.scheduler.default-max-concurrency
+        private long maxInputPixels = 0; // 输入图像的像素上限，0 表示使用 app.preflight.default-max-input-pixels
 
         // 请求参数配置
         private Map<String, String> headers = new HashMap<>(); // 自定义请求头
@@ -78,6 +86,27 @@ public class ModelConfig {
             this.apiEndpoint = apiEndpoint;
         }
 
+        public List<Endpoint> getEndpoints() {
+            return endpoints;
+        }
+
+        public void setEndpoints(List<Endpoint> endpoints) {
+            this.endpoints = endpoints;
+        }
+
+        // 实际生效的端点列表：未配置 endpoints 时退化为单个 apiEndpoint
+        public List<Endpoint> resolveEndpoints() {
+            if (!endpoints.isEmpty()) {
+                return endpoints;
+            }
+            if (apiEndpoint == null || apiEndpoint.isBlank()) {
+                return List.of();
+            }
+            Endpoint single = new Endpoint();
+            single.setUrl(apiEndpoint);
+            return List.of(single);
+        }
+
         public String getApiKey() {
             return apiKey;
         }
@@ -102,6 +131,38 @@ public class ModelConfig {
             this.timeoutSeconds = timeoutSeconds;
         }
 
+        public int getConnectTimeoutSeconds() {
+            return connectTimeoutSeconds;
+        }
+
+        public void setConnectTimeoutSeconds(int connectTimeoutSeconds) {
+            this.connectTimeoutSeconds = connectTimeoutSeconds;
+        }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        public long getMaxInputPixels() {
+            return maxInputPixels;
+        }
+
+        public void setMaxInputPixels(long maxInputPixels) {
+            this.maxInputPixels = maxInputPixels;
+        }
+
         public Map<String, String> getHeaders() {
             return headers;
         }
@@ -134,4 +195,26 @@ public class ModelConfig {
             this.statusPath = statusPath;
         }
     }
-}
\ No newline at end of file
+
+    // 推理服务副本：地址与负载均衡权重
+    public static class Endpoint {
+        private String url;
+        private int weight = 1;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public void setWeight(int weight) {
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.ganwork.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.preflight")
+public class PreflightProperties {
+
+    public enum OversizeAction {
+        REJECT,
+        DOWNSCALE
+    }
+
+    // 推理前读取图像头检查尺寸
+    private boolean enabled = true;
+
+    // 流水线未单独配置 max-input-pixels 的模型使用的像素上限，0 表示不限制
+    private long defaultMaxInputPixels = 36_000_000L;
+
+    // 超过上限时拒绝，或等比缩小到上限以内
+    private OversizeAction oversizeAction = OversizeAction.DOWNSCALE;
+
+    // 非 PNG 输入缩小时解码的像素上限：先隔行隔列解码到该像素数以内，再平滑缩放（PNG 逐行缩小，不受此限）
+    private long maxDecodePixels = 16_000_000L;
+
+    // 灰度、索引色、16 位等非 8 位 RGB 输入统一转换为 RGB PNG 后再上传
+    private boolean normalize = false;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getDefaultMaxInputPixels() {
+        return defaultMaxInputPixels;
+    }
+
+    public void setDefaultMaxInputPixels(long defaultMaxInputPixels) {
+        this.defaultMaxInputPixels = defaultMaxInputPixels;
+    }
+
+    public OversizeAction getOversizeAction() {
+        return oversizeAction;
+    }
+
+    public void setOversizeAction(OversizeAction oversizeAction) {
+        this.oversizeAction = oversizeAction;
+    }
+
+    public long getMaxDecodePixels() {
+        return maxDecodePixels;
+    }
+
+    public void setMaxDecodePixels(long maxDecodePixels) {
+        this.maxDecodePixels = maxDecodePixels;
+    }
+
+    public boolean isNormalize() {
+        return normalize;
+    }
+
+    public void setNormalize(boolean normalize) {
+        this.normalize = normalize;
+    }
+}
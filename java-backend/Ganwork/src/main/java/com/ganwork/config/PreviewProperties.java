@@ -0,0 +1,85 @@
+package com.ganwork.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.preview")
+public class PreviewProperties {
+
+    // 为每个最终结果生成缩略预览图，随处理结果一起返回
+    private boolean enabled = true;
+
+    // 预览图长边像素；结果本身不超过该尺寸时不生成
+    private int previewMaxEdge = 512;
+
+    // 中等尺寸版本的长边像素，用于在页面上查看而不下载原图，0 表示不生成
+    private int mediumMaxEdge = 0;
+
+    // JPEG 压缩质量（0-1）
+    private float jpegQuality = 0.85f;
+
+    // 预览图在结果返回后由独立线程池生成，不占用请求线程；线程数与排队上限，队列满时跳过该结果的预览
+    private int parallelism = 2;
+
+    private int queueCapacity = 100;
+
+    // 同步接口（单张与批量处理）返回前等待预览生成的最长时间（毫秒），超时后只返回已生成的预览
+    private long responseWaitMillis = 2000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getPreviewMaxEdge() {
+        return previewMaxEdge;
+    }
+
+    public void setPreviewMaxEdge(int previewMaxEdge) {
+        this.previewMaxEdge = previewMaxEdge;
+    }
+
+    public int getMediumMaxEdge() {
+        return mediumMaxEdge;
+    }
+
+    public void setMediumMaxEdge(int mediumMaxEdge) {
+        this.mediumMaxEdge = mediumMaxEdge;
+    }
+
+    public float getJpegQuality() {
+        return jpegQuality;
+    }
+
+    public void setJpegQuality(float jpegQuality) {
+        this.jpegQuality = jpegQuality;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public long getResponseWaitMillis() {
+        return responseWaitMillis;
+    }
+
+    public void setResponseWaitMillis(long responseWaitMillis) {
+        this.responseWaitMillis = responseWaitMillis;
+    }
+}
@@ -0,0 +1,126 @@
+package com.ganwork.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.resilience")
+public class ResilienceProperties {
+
+    // 熔断：最近 window-size 次调用中失败（含慢调用）比例达到阈值时断开
+    private int breakerWindowSize = 20;
+    private int breakerMinimumCalls = 10;
+    private int breakerFailureRatePercent = 50;
+    // 超过该耗时的成功调用按失败计入熔断统计
+    private int breakerSlowCallSeconds = 120;
+    // 断开持续时间，之后放行少量探测请求（半开）
+    private int breakerOpenSeconds = 30;
+    private int breakerHalfOpenCalls = 2;
+
+    // 自适应并发上限（AIMD）：初始值与上下界；初始值应不低于调度器对同一后端各模型的并发上限之和
+    private int limitInitial = 40;
+    private int limitMin = 1;
+    private int limitMax = 128;
+    // 失败或延迟超过基线 latency-tolerance 倍时，上限乘以 backoff-ratio
+    private double limitBackoffRatio = 0.7;
+    private double limitLatencyTolerance = 2.0;
+
+    // 全部副本熔断、拒绝请求时返回给客户端的 Retry-After（秒）
+    private int overloadRetryAfterSeconds = 5;
+
+    public int getBreakerWindowSize() {
+        return breakerWindowSize;
+    }
+
+    public void setBreakerWindowSize(int breakerWindowSize) {
+        this.breakerWindowSize = breakerWindowSize;
+    }
+
+    public int getBreakerMinimumCalls() {
+        return breakerMinimumCalls;
+    }
+
+    public void setBreakerMinimumCalls(int breakerMinimumCalls) {
+        this.breakerMinimumCalls = breakerMinimumCalls;
+    }
+
+    public int getBreakerFailureRatePercent() {
+        return breakerFailureRatePercent;
+    }
+
+    public void setBreakerFailureRatePercent(int breakerFailureRatePercent) {
+        this.breakerFailureRatePercent = breakerFailureRatePercent;
+    }
+
+    public int getBreakerSlowCallSeconds() {
+        return breakerSlowCallSeconds;
+    }
+
+    public void setBreakerSlowCallSeconds(int breakerSlowCallSeconds) {
+        this.breakerSlowCallSeconds = breakerSlowCallSeconds;
+    }
+
+    public int getBreakerOpenSeconds() {
+        return breakerOpenSeconds;
+    }
+
+    public void setBreakerOpenSeconds(int breakerOpenSeconds) {
+        this.breakerOpenSeconds = breakerOpenSeconds;
+    }
+
+    public int getBreakerHalfOpenCalls() {
+        return breakerHalfOpenCalls;
+    }
+
+    public void setBreakerHalfOpenCalls(int breakerHalfOpenCalls) {
+        this.breakerHalfOpenCalls = breakerHalfOpenCalls;
+    }
+
+    public int getLimitInitial() {
+        return limitInitial;
+    }
+
+    public void setLimitInitial(int limitInitial) {
+        this.limitInitial = limitInitial;
+    }
+
+    public int getLimitMin() {
+        return limitMin;
+    }
+
+    public void setLimitMin(int limitMin) {
+        this.limitMin = limitMin;
+    }
+
+    public int getLimitMax() {
+        return limitMax;
+    }
+
+    public void setLimitMax(int limitMax) {
+        this.limitMax = limitMax;
+    }
+
+    public double getLimitBackoffRatio() {
+        return limitBackoffRatio;
+    }
+
+    public void setLimitBackoffRatio(double limitBackoffRatio) {
+        this.limitBackoffRatio = limitBackoffRatio;
+    }
+
+    public double getLimitLatencyTolerance() {
+        return limitLatencyTolerance;
+    }
+
+    public void setLimitLatencyTolerance(double limitLatencyTolerance) {
+        this.limitLatencyTolerance = limitLatencyTolerance;
+    }
+
+    public int getOverloadRetryAfterSeconds() {
+        return overloadRetryAfterSeconds;
+    }
+
+    public void setOverloadRetryAfterSeconds(int overloadRetryAfterSeconds) {
+        this.overloadRetryAfterSeconds = overloadRetryAfterSeconds;
+    }
+}
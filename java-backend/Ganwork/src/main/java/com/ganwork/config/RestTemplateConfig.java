@@ -1,19 +1,86 @@
 package com.ganwork.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
 @Configuration
 public class RestTemplateConfig {
 
+    private static final Logger logger = LoggerFactory.getLogger(RestTemplateConfig.class);
+
+    // 共享连接池：按模型配置推导每个后端路由的连接上限与连接超时
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager inferenceConnectionManager(
+            HttpClientProperties httpProperties, ModelConfig modelConfig) {
+        PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager();
+        manager.setMaxTotal(httpProperties.getMaxTotal());
+        manager.setDefaultMaxPerRoute(httpProperties.getDefaultMaxPerRoute());
+
+        ConnectionConfig defaultConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofSeconds(httpProperties.getConnectTimeoutSeconds()))
+                .build();
+
+        // 多个模型共用同一后端时，路由上限为各模型上限之和，连接超时取最小值
+        Map<HttpRoute, Integer> routeLimits = new HashMap<>();
+        Map<HttpRoute, ConnectionConfig> routeConfigs = new HashMap<>();
+        for (ModelConfig.ModelProperties properties : modelConfig.getModelMap().values()) {
+            // 多副本时每个副本各自按模型上限计算
+            for (ModelConfig.Endpoint endpoint : properties.resolveEndpoints()) {
+                HttpRoute route = toRoute(endpoint.getUrl());
+                if (route == null) {
+                    continue;
+                }
+                routeLimits.merge(route, properties.getMaxConnections(), Integer::sum);
+                routeConfigs.merge(route,
+                        ConnectionConfig.custom()
+                                .setConnectTimeout(Timeout.ofSeconds(properties.getConnectTimeoutSeconds()))
+                                .build(),
+                        (a, b) -> a.getConnectTimeout().compareTo(b.getConnectTimeout()) <= 0 ? a : b);
+            }
+        }
+        routeLimits.forEach((route, limit) -> {
+            manager.setMaxPerRoute(route, Math.min(limit, httpProperties.getMaxTotal()));
+            logger.info("后端路由连接上限: {} -> {}", route.getTargetHost(), limit);
+        });
+        manager.setConnectionConfigResolver(route -> routeConfigs.getOrDefault(route, defaultConfig));
+        return manager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient inferenceHttpClient(
+            PoolingHttpClientConnectionManager inferenceConnectionManager,
+            HttpClientProperties httpProperties) {
+        TimeValue defaultKeepAlive = TimeValue.ofSeconds(httpProperties.getKeepAliveSeconds());
+        return HttpClients.custom()
+                .setConnectionManager(inferenceConnectionManager)
+                .setKeepAliveStrategy((response, context) -> defaultKeepAlive)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(httpProperties.getIdleEvictSeconds()))
+                .build();
+    }
+
+    // 默认 RestTemplate（结果下载等），与各模型的 RestTemplate 共用同一连接池
     @Bean
-    public RestTemplate restTemplate() {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(30000); // 5秒连接超时
-        factory.setReadTimeout(300000);    // 30秒读取超时
+    public RestTemplate restTemplate(CloseableHttpClient inferenceHttpClient, HttpClientProperties httpProperties) {
+        CancellableClientHttpRequestFactory factory = new CancellableClientHttpRequestFactory(inferenceHttpClient);
+        factory.setReadTimeout(Duration.ofSeconds(httpProperties.getReadTimeoutSeconds()));
         return new RestTemplate(factory);
     }
 
@@ -23,4 +90,15 @@ public class RestTemplateConfig {
 
         return new ObjectMapper();
     }
-}
\ No newline at end of file
+
+    // 将端点 URL 转换为连接池路由（端口补全为协议默认端口）
+    public static HttpRoute toRoute(String endpoint) {
+        if (endpoint == null || endpoint.isBlank()) {
+            return null;
+        }
+        URI uri = URI.create(endpoint);
+        boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() != -1 ? uri.getPort() : (secure ? 443 : 80);
+        return new HttpRoute(new HttpHost(uri.getScheme(), uri.getHost(), port), null, secure);
+    }
+}
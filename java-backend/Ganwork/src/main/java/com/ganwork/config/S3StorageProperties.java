@@ -0,0 +1,131 @@
+package com.ganwork.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.storage.s3")
+public class S3StorageProperties {
+
+    // S3 兼容服务地址（如 MinIO），不含存储桶
+    private String endpoint = "http://localhost:9000";
+
+    // 签名使用的区域，MinIO 默认 us-east-1
+    private String region = "us-east-1";
+    private String bucket = "ganwork";
+
+    // 访问凭证
+    private String accessKey = "";
+    private String secretKey = "";
+
+    // 对象键前缀，多个环境共用存储桶时区分
+    private String keyPrefix = "";
+
+    // 路径风格访问（endpoint/bucket/key），MinIO 等自建服务通常需要；false 时使用 bucket.endpoint/key
+    private boolean pathStyleAccess = true;
+
+    // 超过该大小的文件分段上传，每段 part-size-mb（S3 要求除最后一段外不小于 5MB）
+    private long multipartThresholdMb = 16;
+    private long partSizeMb = 8;
+
+    // 连接池大小与超时
+    private int maxConnections = 32;
+    private int connectTimeoutSeconds = 5;
+    private int socketTimeoutSeconds = 60;
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public void setRegion(String region) {
+        this.region = region;
+    }
+
+    public String getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(String bucket) {
+        this.bucket = bucket;
+    }
+
+    public String getAccessKey() {
+        return accessKey;
+    }
+
+    public void setAccessKey(String accessKey) {
+        this.accessKey = accessKey;
+    }
+
+    public String getSecretKey() {
+        return secretKey;
+    }
+
+    public void setSecretKey(String secretKey) {
+        this.secretKey = secretKey;
+    }
+
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+
+    public void setKeyPrefix(String keyPrefix) {
+        this.keyPrefix = keyPrefix;
+    }
+
+    public boolean isPathStyleAccess() {
+        return pathStyleAccess;
+    }
+
+    public void setPathStyleAccess(boolean pathStyleAccess) {
+        this.pathStyleAccess = pathStyleAccess;
+    }
+
+    public long getMultipartThresholdMb() {
+        return multipartThresholdMb;
+    }
+
+    public void setMultipartThresholdMb(long multipartThresholdMb) {
+        this.multipartThresholdMb = multipartThresholdMb;
+    }
+
+    public long getPartSizeMb() {
+        return partSizeMb;
+    }
+
+    public void setPartSizeMb(long partSizeMb) {
+        this.partSizeMb = partSizeMb;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getConnectTimeoutSeconds() {
+        return connectTimeoutSeconds;
+    }
+
+    public void setConnectTimeoutSeconds(int connectTimeoutSeconds) {
+        this.connectTimeoutSeconds = connectTimeoutSeconds;
+    }
+
+    public int getSocketTimeoutSeconds() {
+        return socketTimeoutSeconds;
+    }
+
+    public void setSocketTimeoutSeconds(int socketTimeoutSeconds) {
+        this.socketTimeoutSeconds = socketTimeoutSeconds;
+    }
+}
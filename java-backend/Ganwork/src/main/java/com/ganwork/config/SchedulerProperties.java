@@ -0,0 +1,59 @@
+package com.ganwork.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.scheduler")
+public class SchedulerProperties {
+
+    // 模型未配置 max-concurrency 时的并发上限
+    private int defaultMaxConcurrency = 4;
+
+    // 已登记的客户端（按客户端名称）：持有 api-key 的请求按该客户端排队并使用其权重，
+    // 其余请求按客户端地址区分，权重为 1
+    private Map<String, Client> clients = new HashMap<>();
+
+    public static class Client {
+
+        // 客户端在 X-Api-Key 请求头中携带的密钥
+        private String apiKey;
+
+        private int weight = 1;
+
+        public String getApiKey() {
+            return apiKey;
+        }
+
+        public void setApiKey(String apiKey) {
+            this.apiKey = apiKey;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public void setWeight(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    public int getDefaultMaxConcurrency() {
+        return defaultMaxConcurrency;
+    }
+
+    public void setDefaultMaxConcurrency(int defaultMaxConcurrency) {
+        this.defaultMaxConcurrency = defaultMaxConcurrency;
+    }
+
+    public Map<String, Client> getClients() {
+        return clients;
+    }
+
+    public void setClients(Map<String, Client> clients) {
+        this.clients = clients;
+    }
+}
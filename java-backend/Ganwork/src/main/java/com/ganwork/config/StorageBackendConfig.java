@@ -0,0 +1,25 @@
+package com.ganwork.config;
+
+import com.ganwork.util.LocalStorageBackend;
+import com.ganwork.util.S3StorageBackend;
+import com.ganwork.util.StorageBackend;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class StorageBackendConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageBackendConfig.class);
+
+    // 按 app.storage.backend 选择存储后端，关闭时释放对象存储的连接池
+    @Bean(destroyMethod = "close")
+    public StorageBackend storageBackend(StorageProperties storageProperties, S3StorageProperties s3Properties) {
+        if (storageProperties.getBackend() == StorageProperties.Backend.S3) {
+            logger.info("存储后端: S3 {} 存储桶 {}", s3Properties.getEndpoint(), s3Properties.getBucket());
+            return new S3StorageBackend(s3Properties);
+        }
+        return new LocalStorageBackend();
+    }
+}
@@ -0,0 +1,117 @@
+package com.ganwork.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.storage")
+public class StorageProperties {
+
+    public enum Backend {
+        // 只使用本地目录，结果只能由写入它的节点提供
+        LOCAL,
+        // 完成的上传与结果发布到 S3 兼容的对象存储（app.storage.s3.*），任意节点都能读取
+        S3
+    }
+
+    private Backend backend = Backend.LOCAL;
+
+    // 分片目录层数：按文件名 SHA-256 的前几个字节分层，每层 256 个子目录，0 表示不分片
+    private int shardDepth = 2;
+
+    // 文件保留时间（小时），0 表示不按时间清理
+    private long uploadTtlHours = 24;
+    private long processedTtlHours = 168;
+
+    // 目录容量上限（MB），超过后按修改时间从旧到新删除到上限的 eviction-target-percent 以下，0 表示不限制
+    private long uploadQuotaMb = 10240;
+    private long processedQuotaMb = 51200;
+    private int evictionTargetPercent = 90;
+
+    // 清理间隔（秒）与全量扫描校正索引的间隔（分钟），0 表示关闭
+    private long reaperIntervalSeconds = 300;
+    private long rescanIntervalMinutes = 360;
+
+    // 超过该时间的残留临时文件（写入中断）在扫描时删除
+    private long tempFileMaxAgeMinutes = 60;
+
+    public Backend getBackend() {
+        return backend;
+    }
+
+    public void setBackend(Backend backend) {
+        this.backend = backend;
+    }
+
+    public int getShardDepth() {
+        return shardDepth;
+    }
+
+    public void setShardDepth(int shardDepth) {
+        this.shardDepth = shardDepth;
+    }
+
+    public long getUploadTtlHours() {
+        return uploadTtlHours;
+    }
+
+    public void setUploadTtlHours(long uploadTtlHours) {
+        this.uploadTtlHours = uploadTtlHours;
+    }
+
+    public long getProcessedTtlHours() {
+        return processedTtlHours;
+    }
+
+    public void setProcessedTtlHours(long processedTtlHours) {
+        this.processedTtlHours = processedTtlHours;
+    }
+
+    public long getUploadQuotaMb() {
+        return uploadQuotaMb;
+    }
+
+    public void setUploadQuotaMb(long uploadQuotaMb) {
+        this.uploadQuotaMb = uploadQuotaMb;
+    }
+
+    public long getProcessedQuotaMb() {
+        return processedQuotaMb;
+    }
+
+    public void setProcessedQuotaMb(long processedQuotaMb) {
+        this.processedQuotaMb = processedQuotaMb;
+    }
+
+    public int getEvictionTargetPercent() {
+        return evictionTargetPercent;
+    }
+
+    public void setEvictionTargetPercent(int evictionTargetPercent) {
+        this.evictionTargetPercent = evictionTargetPercent;
+    }
+
+    public long getReaperIntervalSeconds() {
+        return reaperIntervalSeconds;
+    }
+
+    public void setReaperIntervalSeconds(long reaperIntervalSeconds) {
+        this.reaperIntervalSeconds = reaperIntervalSeconds;
+    }
+
+    public long getRescanIntervalMinutes() {
+        return rescanIntervalMinutes;
+    }
+
+    public void setRescanIntervalMinutes(long rescanIntervalMinutes) {
+        this.rescanIntervalMinutes = rescanIntervalMinutes;
+    }
+
+    public long getTempFileMaxAgeMinutes() {
+        return tempFileMaxAgeMinutes;
+    }
+
+    public void setTempFileMaxAgeMinutes(long tempFileMaxAgeMinutes) {
+        this.tempFileMaxAgeMinutes = tempFileMaxAgeMinutes;
+    }
+}
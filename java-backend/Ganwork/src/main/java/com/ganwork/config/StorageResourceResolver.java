@@ -0,0 +1,29 @@
+package com.ganwork.config;
+
+import org.springframework.core.io.Resource;
+import org.springframework.web.servlet.resource.PathResourceResolver;
+
+import java.io.IOException;
+import java.util.function.Function;
+
+// 静态资源请求只带文件名时交给 FileStorageUtil 查找：本地分片目录、旧的平铺位置，再到共享存储后端；
+// 都找不到时按配置的资源位置查找
+public class StorageResourceResolver extends PathResourceResolver {
+
+    private final Function<String, Resource> finder;
+
+    public StorageResourceResolver(Function<String, Resource> finder) {
+        this.finder = finder;
+    }
+
+    @Override
+    protected Resource getResource(String resourcePath, Resource location) throws IOException {
+        if (!resourcePath.isEmpty() && resourcePath.indexOf('/') < 0 && resourcePath.indexOf('\\') < 0) {
+            Resource resource = finder.apply(resourcePath);
+            if (resource != null) {
+                return resource;
+            }
+        }
+        return super.getResource(resourcePath, location);
+    }
+}
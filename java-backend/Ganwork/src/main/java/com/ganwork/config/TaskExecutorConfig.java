@@ -0,0 +1,102 @@
+package com.ganwork.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class TaskExecutorConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskExecutorConfig.class);
+
+    private final boolean virtualThreads;
+
+    // spring.threads.virtual.enabled=true 且运行在 Java 21+ 时启用虚拟线程（Tomcat 由 Spring Boot 自动切换），
+    // Java 17 下该开关不生效，继续使用平台线程
+    public TaskExecutorConfig(Environment environment) {
+        this.virtualThreads = Threading.VIRTUAL.isActive(environment);
+        logger.info("任务线程模式: {}", virtualThreads ? "虚拟线程" : "平台线程");
+    }
+
+    // 异步图像处理线程池：队列满时直接拒绝，由调用方转换为 429
+    @Bean
+    public ThreadPoolTaskExecutor imageTaskExecutor(TaskExecutorProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        if (virtualThreads) {
+            // 虚拟线程几乎没有成本，并发上限放宽到 virtualConcurrency，仍保留队列上限与 429
+            executor.setCorePoolSize(properties.getVirtualConcurrency());
+            executor.setMaxPoolSize(properties.getVirtualConcurrency());
+            executor.setAllowCoreThreadTimeOut(true);
+            executor.setThreadFactory(new VirtualThreadTaskExecutor("image-task-").getVirtualThreadFactory());
+        } else {
+            executor.setCorePoolSize(properties.getCorePoolSize());
+            executor.setMaxPoolSize(properties.getMaxPoolSize());
+            executor.setThreadNamePrefix("image-task-");
+        }
+        executor.setQueueCapacity(properties.getQueueCapacity());
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    // 批处理线程池：线程数即全局并发上限，排队不拒绝，单批并发由调用方控制
+    @Bean
+    public ThreadPoolTaskExecutor batchTaskExecutor(TaskExecutorProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getBatchGlobalConcurrency());
+        executor.setMaxPoolSize(properties.getBatchGlobalConcurrency());
+        if (virtualThreads) {
+            executor.setAllowCoreThreadTimeOut(true);
+            executor.setThreadFactory(new VirtualThreadTaskExecutor("batch-task-").getVirtualThreadFactory());
+        } else {
+            executor.setThreadNamePrefix("batch-task-");
+        }
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    // 大图分块线程池：线程数即同时发往推理服务的分块数上限，排队不拒绝
+    @Bean
+    public ThreadPoolTaskExecutor tileTaskExecutor(TilingProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getParallelism());
+        executor.setMaxPoolSize(properties.getParallelism());
+        if (virtualThreads) {
+            executor.setAllowCoreThreadTimeOut(true);
+            executor.setThreadFactory(new VirtualThreadTaskExecutor("tile-task-").getVirtualThreadFactory());
+        } else {
+            executor.setThreadNamePrefix("tile-task-");
+        }
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    // 预览图线程池：结果返回后在后台生成预览，队列满时拒绝，由调用方跳过预览
+    @Bean
+    public ThreadPoolTaskExecutor previewTaskExecutor(PreviewProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getParallelism());
+        executor.setMaxPoolSize(properties.getParallelism());
+        if (virtualThreads) {
+            executor.setAllowCoreThreadTimeOut(true);
+            executor.setThreadFactory(new VirtualThreadTaskExecutor("preview-task-").getVirtualThreadFactory());
+        } else {
+            executor.setThreadNamePrefix("preview-task-");
+        }
+        executor.setQueueCapacity(properties.getQueueCapacity());
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
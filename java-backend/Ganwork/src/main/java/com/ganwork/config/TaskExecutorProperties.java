@@ -0,0 +1,86 @@
+package com.ganwork.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.task")
+public class TaskExecutorProperties {
+
+    // 常驻工作线程数
+    private int corePoolSize = 4;
+
+    // 最大工作线程数
+    private int maxPoolSize = 8;
+
+    // 排队任务上限，超过后返回 429
+    private int queueCapacity = 50;
+
+    // 429 响应中建议客户端重试的秒数
+    private int retryAfterSeconds = 5;
+
+    // 批处理全局并发上限（所有批次共享）
+    private int batchGlobalConcurrency = 8;
+
+    // 单个批次的并发上限
+    private int batchPerBatchConcurrency = 4;
+
+    // 虚拟线程模式下异步任务的并发上限
+    private int virtualConcurrency = 1000;
+
+    public int getCorePoolSize() {
+        return corePoolSize;
+    }
+
+    public void setCorePoolSize(int corePoolSize) {
+        this.corePoolSize = corePoolSize;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getBatchGlobalConcurrency() {
+        return batchGlobalConcurrency;
+    }
+
+    public void setBatchGlobalConcurrency(int batchGlobalConcurrency) {
+        this.batchGlobalConcurrency = batchGlobalConcurrency;
+    }
+
+    public int getBatchPerBatchConcurrency() {
+        return batchPerBatchConcurrency;
+    }
+
+    public void setBatchPerBatchConcurrency(int batchPerBatchConcurrency) {
+        this.batchPerBatchConcurrency = batchPerBatchConcurrency;
+    }
+
+    public int getVirtualConcurrency() {
+        return virtualConcurrency;
+    }
+
+    public void setVirtualConcurrency(int virtualConcurrency) {
+        this.virtualConcurrency = virtualConcurrency;
+    }
+}
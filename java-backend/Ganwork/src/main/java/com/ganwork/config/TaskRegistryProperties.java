@@ -0,0 +1,64 @@
+package com.ganwork.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.task.registry")
+public class TaskRegistryProperties {
+
+    // 任务状态表的条目上限：达到上限时淘汰最早结束的任务，全部是未结束任务时拒绝新任务（429）
+    private int maxEntries = 10000;
+
+    // 已结束（完成/失败）任务的保留时间（分钟）
+    private long ttlMinutes = 60;
+
+    // 两次过期清理之间的最小间隔（秒）
+    private long sweepIntervalSeconds = 60;
+
+    // 已结束任务的追加写入文件，为空时不落盘
+    private String spillFile = "";
+
+    // 进度推送（SSE）连接的超时时间（秒）
+    private long sseTimeoutSeconds = 600;
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public long getTtlMinutes() {
+        return ttlMinutes;
+    }
+
+    public void setTtlMinutes(long ttlMinutes) {
+        this.ttlMinutes = ttlMinutes;
+    }
+
+    public long getSweepIntervalSeconds() {
+        return sweepIntervalSeconds;
+    }
+
+    public void setSweepIntervalSeconds(long sweepIntervalSeconds) {
+        this.sweepIntervalSeconds = sweepIntervalSeconds;
+    }
+
+    public String getSpillFile() {
+        return spillFile;
+    }
+
+    public void setSpillFile(String spillFile) {
+        this.spillFile = spillFile;
+    }
+
+    public long getSseTimeoutSeconds() {
+        return sseTimeoutSeconds;
+    }
+
+    public void setSseTimeoutSeconds(long sseTimeoutSeconds) {
+        this.sseTimeoutSeconds = sseTimeoutSeconds;
+    }
+}
@@ -0,0 +1,72 @@
+package com.ganwork.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.tiling")
+public class TilingProperties {
+
+    // 流水线所有模型都可分块且像素数超过阈值时分块处理
+    private boolean enabled = true;
+    private long thresholdPixels = 16_000_000L;
+
+    // 分块边长与每侧重叠宽度（输入像素），重叠区在拼接时线性过渡；要求 tile-size > 2 * overlap
+    private int tileSize = 256;
+    private int overlap = 16;
+
+    // 同时发往推理服务的分块数（所有任务共享）
+    private int parallelism = 4;
+
+    // 分块处理时的输入像素上限，替代各模型的 max-input-pixels（推理服务只收到分块），0 表示不限制。
+    // PNG 逐行解码；其他格式整幅解码一次，约占 4 字节/像素的堆内存
+    private long maxInputPixels = 36_000_000L;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getThresholdPixels() {
+        return thresholdPixels;
+    }
+
+    public void setThresholdPixels(long thresholdPixels) {
+        this.thresholdPixels = thresholdPixels;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public void setTileSize(int tileSize) {
+        this.tileSize = tileSize;
+    }
+
+    public int getOverlap() {
+        return overlap;
+    }
+
+    public void setOverlap(int overlap) {
+        this.overlap = overlap;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public long getMaxInputPixels() {
+        return maxInputPixels;
+    }
+
+    public void setMaxInputPixels(long maxInputPixels) {
+        this.maxInputPixels = maxInputPixels;
+    }
+}
@@ -1,9 +1,11 @@
 package com.ganwork.config;
 
+import com.ganwork.util.FileStorageUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
+import org.springframework.http.CacheControl;
 import org.springframework.web.multipart.MultipartResolver;
 import org.springframework.web.multipart.support.StandardServletMultipartResolver;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
@@ -14,14 +16,21 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import org.springframework.web.servlet.view.InternalResourceViewResolver;
 
 import java.io.File;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 @EnableWebMvc
 public class WebConfig implements WebMvcConfigurer {
 
+    // 不会被修改的资源：缓存一年，有效期内不再验证
+    public static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+
     @Autowired
     private Environment env;
 
+    @Autowired
+    private FileStorageUtil fileStorageUtil;
+
     @Bean
     public InternalResourceViewResolver defaultViewResolver() {
         InternalResourceViewResolver resolver = new InternalResourceViewResolver();
@@ -51,9 +60,12 @@ public class WebConfig implements WebMvcConfigurer {
 
         // 映射上传目录为静态资源
         String uploadDir = "file:" + env.getProperty("app.upload-dir") + "/";
+        // 文件按名称分片存放（或在共享存储后端中），URL 仍只带文件名；不缓存解析结果，清理删除的文件不会被继续返回
         registry.addResourceHandler("/uploads/**")
                 .addResourceLocations(uploadDir)
-                .setCachePeriod(3600);
+                .setCachePeriod(3600)
+                .resourceChain(false)
+                .addResolver(new StorageResourceResolver(fileStorageUtil::findUpload));
 
         // 添加processed目录映射
         String processedDir = "file:" + env.getProperty("app.python.processed-dir") + "/";
@@ -66,9 +78,14 @@ public class WebConfig implements WebMvcConfigurer {
             System.out.println("Processed目录绝对路径: " + dir.getAbsolutePath());
         }
 
+        // 结果文件名带随机前缀且不会被覆盖，允许客户端长期缓存；ETag 为内容 SHA-256，
+        // 条件请求（If-None-Match / If-Modified-Since）返回 304，Range 请求只返回请求的字节
         registry.addResourceHandler("/processed/**")
                 .addResourceLocations(processedDir)
-                .setCachePeriod(3600);
+                .setCacheControl(IMMUTABLE)
+                .setEtagGenerator(fileStorageUtil::etag)
+                .resourceChain(false)
+                .addResolver(new StorageResourceResolver(fileStorageUtil::findProcessed));
 
         // 修正静态资源映射
         registry.addResourceHandler("/static/**")
@@ -0,0 +1,48 @@
+package com.ganwork.controller;
+
+import com.ganwork.config.SchedulerProperties;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.Principal;
+import java.util.Map;
+
+// 推理调度使用的调用方标识，只取自已认证的来源：容器认证的用户、或与登记密钥匹配的 X-Api-Key；
+// 其余请求按客户端地址区分。客户端名称决定调度权重，不能由请求自行声明
+@Component
+public class ClientIdentityResolver {
+
+    static final String API_KEY_HEADER = "X-Api-Key";
+    static final String ANONYMOUS_PREFIX = "addr:";
+
+    private final SchedulerProperties properties;
+
+    @Autowired
+    public ClientIdentityResolver(SchedulerProperties properties) {
+        this.properties = properties;
+    }
+
+    public String resolve(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        if (principal != null) {
+            return principal.getName();
+        }
+        String apiKey = request.getHeader(API_KEY_HEADER);
+        if (apiKey != null && !apiKey.isBlank()) {
+            byte[] presented = apiKey.getBytes(StandardCharsets.UTF_8);
+            for (Map.Entry<String, SchedulerProperties.Client> entry : properties.getClients().entrySet()) {
+                String expected = entry.getValue().getApiKey();
+                // 定长比较，避免按响应时间猜测密钥
+                if (expected != null && !expected.isEmpty()
+                        && MessageDigest.isEqual(presented, expected.getBytes(StandardCharsets.UTF_8))) {
+                    return entry.getKey();
+                }
+            }
+        }
+        // 地址标识带前缀，不会与登记的客户端名称重合而借用其权重
+        return ANONYMOUS_PREFIX + request.getRemoteAddr();
+    }
+}
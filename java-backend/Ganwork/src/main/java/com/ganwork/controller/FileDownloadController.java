@@ -1,5 +1,6 @@
 package com.ganwork.controller;
 
+import com.ganwork.config.WebConfig;
 import com.ganwork.util.FileStorageUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
@@ -21,14 +22,21 @@ public class FileDownloadController {
         this.fileStorageUtil = fileStorageUtil;
     }
 
+    // 带 ETag 与 Last-Modified：条件请求命中时返回 304；Range 请求由框架按字节区间返回 206，支持断点续传
     @GetMapping("/{filename:.+}")
     public ResponseEntity<Resource> downloadFile(@PathVariable String filename) {
         try {
             Resource resource = fileStorageUtil.loadProcessedFileAsResource(filename);
 
-            return ResponseEntity.ok()
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"")
-                    .body(resource);
+                    .cacheControl(WebConfig.IMMUTABLE)
+                    .lastModified(resource.lastModified());
+            String etag = fileStorageUtil.etag(resource);
+            if (etag != null) {
+                response.eTag(etag);
+            }
+            return response.body(resource);
         } catch (Exception e) {
             return ResponseEntity.notFound().build();
         }
@@ -1,12 +1,17 @@
 package com.ganwork.controller;
 
+import com.ganwork.exception.ImageTooLargeException;
 import com.ganwork.exception.ModelType;
+import com.ganwork.exception.ServiceOverloadedException;
+import com.ganwork.exception.TooManyTasksException;
 import com.ganwork.service.ApiProcessingService;
 import com.ganwork.service.ImageProcessingService;
 import com.ganwork.util.ImageProcessingResponse;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
@@ -22,10 +27,13 @@ public class ImageController {
 
     private static final Logger logger = LoggerFactory.getLogger(ApiProcessingService.class);
     private final ImageProcessingService imageProcessingService;
+    private final ClientIdentityResolver clientIdentityResolver;
 
     @Autowired
-    public ImageController(ImageProcessingService imageProcessingService) {
+    public ImageController(ImageProcessingService imageProcessingService,
+                           ClientIdentityResolver clientIdentityResolver) {
         this.imageProcessingService = imageProcessingService;
+        this.clientIdentityResolver = clientIdentityResolver;
     }
 
     @PostMapping("/process")
@@ -33,7 +41,8 @@ public class ImageController {
      @RequestParam("file") MultipartFile file,
      @RequestParam("mode") String mode,
      @RequestParam(value = "imageType", required = false) String imageType,
-     @RequestParam(value = "scale", defaultValue = "1") int scale) {
+     @RequestParam(value = "scale", defaultValue = "1") int scale,
+     HttpServletRequest request) {
      logger.info("Received process request with parameters:");
      logger.info("Mode: {}, ImageType: {}, Scale: {}", mode, imageType, scale);
      logger.info("File: {} ({} bytes, {})",
@@ -52,7 +61,8 @@ public class ImageController {
             logger.info("Successfully converted mode to: {}", modelType.getDisplayName());
 
             // 处理图片
-            String resultUrl = imageProcessingService.processImage(file, mode, imageType, scale);
+            String resultUrl = imageProcessingService.processImage(file, mode, imageType, scale,
+                    clientIdentityResolver.resolve(request));
 
             // 构建响应
             Map<String, Object> response = new HashMap<>();
@@ -62,12 +72,17 @@ public class ImageController {
             List<Map<String, String>> results = new ArrayList<>();
             Map<String, String> result = new HashMap<>();
             result.put("processedUrl", resultUrl);
+            // 预览图先行展示，原图按需下载
+            result.putAll(imageProcessingService.previewUrls(resultUrl));
             results.add(result);
 
             response.put("results", results);
 
             return ResponseEntity.ok(response);
 
+        } catch (ServiceOverloadedException | ImageTooLargeException | TooManyTasksException e) {
+            // 交给全局异常处理返回 503 / 429 与 Retry-After，或 413
+            throw e;
         } catch (Exception e) {
             logger.error("Processing failed", e);
 
@@ -79,4 +94,56 @@ public class ImageController {
             return ResponseEntity.badRequest().body(errorResponse);
         }
     }
-}
\ No newline at end of file
+
+    // 异步提交：立即返回任务ID，结果通过 /api/process/status/{taskId} 轮询
+    @PostMapping("/process/async")
+    public ResponseEntity<Map<String, Object>> submitImage(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam("mode") String mode,
+            @RequestParam(value = "imageType", required = false) String imageType,
+            @RequestParam(value = "scale", defaultValue = "1") int scale,
+            HttpServletRequest request) {
+        logger.info("Received async process request: mode={}, file={} ({} bytes)",
+                mode, file.getOriginalFilename(), file.getSize());
+        try {
+            String taskId = imageProcessingService.submitImage(file, mode, imageType, scale,
+                    clientIdentityResolver.resolve(request));
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "任务已提交");
+            response.put("taskId", taskId);
+            response.put("statusUrl", "/api/process/status/" + taskId);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+
+        } catch (TooManyTasksException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Submit failed", e);
+
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+    }
+
+    // 批量处理：并发执行，按上传顺序返回每个文件的结果
+    @PostMapping("/process/batch")
+    public ResponseEntity<ImageProcessingResponse> processBatch(
+            @RequestParam("files") MultipartFile[] files,
+            @RequestParam("mode") String mode,
+            @RequestParam(value = "imageType", required = false) String imageType,
+            @RequestParam(value = "scale", defaultValue = "1") int scale,
+            HttpServletRequest request) {
+        logger.info("Received batch process request: mode={}, files={}", mode, files.length);
+
+        List<ImageProcessingResponse.ProcessedImageResult> results =
+                imageProcessingService.processImages(files, mode, imageType, scale,
+                        clientIdentityResolver.resolve(request));
+
+        long succeeded = results.stream().filter(ImageProcessingResponse.ProcessedImageResult::isSuccess).count();
+        String message = "处理完成: " + succeeded + "/" + results.size() + " 成功";
+        return ResponseEntity.ok(new ImageProcessingResponse(succeeded > 0, message, results));
+    }
+}
@@ -1,9 +1,14 @@
 package com.ganwork.controller;
 
+import com.ganwork.service.PreviewGenerator;
 import com.ganwork.service.ProcessingMonitor;
+import com.ganwork.service.ResultCache;
+import com.ganwork.service.TaskProgressBroadcaster;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -13,24 +18,44 @@ import java.util.Map;
 public class ProcessController {
 
     private final ProcessingMonitor processingMonitor;
+    private final ResultCache resultCache;
+    private final TaskProgressBroadcaster taskProgressBroadcaster;
+    private final PreviewGenerator previewGenerator;
 
     @Autowired
-    public ProcessController(ProcessingMonitor processingMonitor) {
+    public ProcessController(ProcessingMonitor processingMonitor, ResultCache resultCache,
+                             TaskProgressBroadcaster taskProgressBroadcaster, PreviewGenerator previewGenerator) {
         this.processingMonitor = processingMonitor;
+        this.resultCache = resultCache;
+        this.taskProgressBroadcaster = taskProgressBroadcaster;
+        this.previewGenerator = previewGenerator;
     }
 
     @GetMapping("/status/{taskId}")
-    public ResponseEntity<Map<String, String>> getProcessStatus(
+    public ResponseEntity<Map<String, Object>> getProcessStatus(
             @PathVariable String taskId) {
 
         String status = processingMonitor.getProcessStatus(taskId);
-        Map<String, String> response = new HashMap<>();
+
+        // 附加步骤进度与结果
+        ProcessingMonitor.ProcessStatus detail = processingMonitor.getProcessStatusObject(taskId);
+        Map<String, Object> response = detail != null ? detail.toResponse() : new HashMap<>();
+        if (detail != null) {
+            // 完成后附带预览图地址（previewUrl、mediumUrl）
+            response.putAll(previewGenerator.renditionUrls(detail.resultUrl()));
+        }
         response.put("taskId", taskId);
         response.put("status", status);
 
         return ResponseEntity.ok(response);
     }
 
+    // 进度推送：每次状态变化发送一个 progress 事件，任务结束后关闭连接
+    @GetMapping(value = "/stream/{taskId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamProcessStatus(@PathVariable String taskId) {
+        return taskProgressBroadcaster.subscribe(taskId);
+    }
+
     @PostMapping("/cancel/{taskId}")
     public ResponseEntity<Void> cancelProcess(
             @PathVariable String taskId) {
@@ -38,4 +63,10 @@ public class ProcessController {
         processingMonitor.stopProcess(taskId);
         return ResponseEntity.noContent().build();
     }
+
+    // 结果缓存命中率与占用情况
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(resultCache.getStats());
+    }
 }
@@ -0,0 +1,15 @@
+package com.ganwork.exception;
+
+public class ImageTooLargeException extends RuntimeException {
+
+    private final long maxPixels;
+
+    public ImageTooLargeException(String message, long maxPixels) {
+        super(message);
+        this.maxPixels = maxPixels;
+    }
+
+    public long getMaxPixels() {
+        return maxPixels;
+    }
+}
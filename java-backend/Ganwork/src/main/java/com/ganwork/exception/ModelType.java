@@ -43,22 +43,34 @@ public enum ModelType {
 
     // 内部模型定义 -
     public enum InternalModel {
-        DENOISE("denoise"),   //降噪
-        COLOR_ENHANCE("color_enhance"),   //色彩增强
-        SUPER_RES_2X("super_res_2x"),   //普通图片2倍率
-        SUPER_RES_4X("super_res_4x"),  //普通图片4倍率
-        SUPER_RES_MANGA_4X("super_res_manga_4x");   //漫画图片4倍率
+        DENOISE("denoise", 1, true),   //降噪
+        COLOR_ENHANCE("color_enhance", 1, false),   //色彩增强（整图缩放到固定尺寸处理，不能分块）
+        SUPER_RES_2X("super_res_2x", 2, true),   //普通图片2倍率
+        SUPER_RES_4X("super_res_4x", 4, true),  //普通图片4倍率
+        SUPER_RES_MANGA_4X("super_res_manga_4x", 4, true);   //漫画图片4倍率
 
         private final String modelId;
+        private final int scaleFactor; // 输出边长相对输入的倍数
+        private final boolean tileable; // 只依赖局部像素，可以拆成重叠分块分别处理
 
-        InternalModel(String modelId) {
+        InternalModel(String modelId, int scaleFactor, boolean tileable) {
             this.modelId = modelId;
+            this.scaleFactor = scaleFactor;
+            this.tileable = tileable;
         }
 
         public String getModelId() {
             return modelId;
         }
 
+        public int getScaleFactor() {
+            return scaleFactor;
+        }
+
+        public boolean isTileable() {
+            return tileable;
+        }
+
         // 修复 fromString 方法
         public static InternalModel fromString(String text) {
             for (InternalModel type : values()) {
@@ -0,0 +1,16 @@
+package com.ganwork.exception;
+
+// 推理服务全部副本熔断时快速失败，对外返回 503（仅达到并发上限的请求等待许可，不会走到这里）
+public class ServiceOverloadedException extends ApiCallException {
+
+    private final int retryAfterSeconds;
+
+    public ServiceOverloadedException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,8 @@
+package com.ganwork.exception;
+
+public class TaskCancelledException extends RuntimeException {
+
+    public TaskCancelledException(String taskId) {
+        super("任务已取消: " + taskId);
+    }
+}
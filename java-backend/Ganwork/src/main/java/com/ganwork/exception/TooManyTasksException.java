@@ -0,0 +1,15 @@
+package com.ganwork.exception;
+
+public class TooManyTasksException extends RuntimeException {
+
+    private final int retryAfterSeconds;
+
+    public TooManyTasksException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
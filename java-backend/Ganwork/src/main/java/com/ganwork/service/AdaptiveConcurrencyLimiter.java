@@ -0,0 +1,68 @@
+package com.ganwork.service;
+
+import com.ganwork.config.ResilienceProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// 单个推理后端的自适应并发上限（AIMD）：延迟正常时每个成功调用加 1/limit，
+// 失败或延迟超过基线（指数平均）的 tolerance 倍时按 backoff-ratio 收缩。
+// 同一后端上的不同模型与接口（单张、批量）耗时差别很大，基线按路由（端点地址）分别计算
+public class AdaptiveConcurrencyLimiter {
+
+    // 延迟基线的平滑系数，取值小使基线在故障期间不会很快被拉高
+    private static final double SMOOTHING = 0.05;
+
+    private final ResilienceProperties properties;
+
+    private double limit;
+    private int inFlight;
+    private final Map<String, Double> baselineNanos = new HashMap<>();
+
+    public AdaptiveConcurrencyLimiter(ResilienceProperties properties) {
+        this.properties = properties;
+        this.limit = properties.getLimitInitial();
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    public synchronized void onSuccess(String route, long latencyNanos) {
+        inFlight--;
+        double baseline = baselineNanos.getOrDefault(route, (double) latencyNanos);
+        if (latencyNanos > baseline * properties.getLimitLatencyTolerance()) {
+            decrease();
+        } else if (inFlight + 1 >= limit / 2) {
+            // 只有实际用到一半以上的上限时才继续放大，空闲时上限不会无限增长
+            limit = Math.min(limit + 1 / limit, properties.getLimitMax());
+        }
+        baselineNanos.put(route, baseline + (latencyNanos - baseline) * SMOOTHING);
+    }
+
+    public synchronized void onFailure() {
+        inFlight--;
+        decrease();
+    }
+
+    public synchronized void onIgnore() {
+        inFlight--;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    // 已达上限，新的调用需要等待进行中的调用结束
+    public synchronized boolean isSaturated() {
+        return inFlight >= (int) limit;
+    }
+
+    private void decrease() {
+        limit = Math.max(limit * properties.getLimitBackoffRatio(), properties.getLimitMin());
+    }
+}
@@ -1,10 +1,14 @@
 package com.ganwork.service;
 
+import com.ganwork.config.HttpClientProperties;
+import com.ganwork.config.MicroBatchProperties;
 import com.ganwork.config.ModelConfig;
 import com.ganwork.exception.ApiCallException;
 import com.ganwork.exception.ModelType;
+import com.ganwork.exception.ServiceOverloadedException;
 import com.ganwork.util.FileStorageUtil;
 import com.ganwork.util.JsonPathExtractor;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,23 +24,49 @@ import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.File;
-import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 public class ApiProcessingService implements ImageProcessingStrategy {
 
     private static final Logger logger = LoggerFactory.getLogger(ApiProcessingService.class);
 
+    // 批量处理接口相对于单张处理端点的路径后缀
+    private static final String BATCH_PATH_SUFFIX = "/batch";
+
+    // 等待后端并发许可时检查取消标记的间隔
+    private static final long CAPACITY_POLL_MILLIS = 200;
+
     private final RestTemplate restTemplate;
     private final ModelConfig modelConfig;
     private final FileStorageUtil fileStorageUtil; // 添加FileStorageUtil依赖
+    private final InferenceClientFactory inferenceClientFactory;
+    private final HttpClientProperties httpProperties;
+    private final ProcessingMetrics processingMetrics;
+    private final InferenceLoadBalancer loadBalancer;
+    private final MicroBatchProperties batchProperties;
+    private final MicroBatcher<ModelType.InternalModel, String, ModelResponse> batcher;
 
     @Autowired
-    public ApiProcessingService(RestTemplate restTemplate, ModelConfig modelConfig, FileStorageUtil fileStorageUtil) {
+    public ApiProcessingService(RestTemplate restTemplate, ModelConfig modelConfig, FileStorageUtil fileStorageUtil,
+                                InferenceClientFactory inferenceClientFactory, HttpClientProperties httpProperties,
+                                ProcessingMetrics processingMetrics, InferenceLoadBalancer loadBalancer,
+                                MicroBatchProperties batchProperties) {
         this.restTemplate = restTemplate;
         this.modelConfig = modelConfig;
         this.fileStorageUtil = fileStorageUtil; // 初始化FileStorageUtil
+        this.inferenceClientFactory = inferenceClientFactory;
+        this.httpProperties = httpProperties;
+        this.processingMetrics = processingMetrics;
+        this.loadBalancer = loadBalancer;
+        this.batchProperties = batchProperties;
+        this.batcher = new MicroBatcher<>(batchProperties.getMaxBatchSize(),
+                Duration.ofMillis(batchProperties.getMaxWaitMillis()), this::callModelBatch);
     }
 
     // 添加重载方法，支持返回本地路径
@@ -47,6 +77,39 @@ public class ApiProcessingService implements ImageProcessingStrategy {
             int scale,
             boolean returnLocalPath // 新增参数，控制返回类型
     ) {
+        return process(inputFilename, false, internalModel, imageType, scale, returnLocalPath);
+    }
+
+    // remoteInput 为 true 时，input 是上一步留在Python服务端的结果引用，不再重新上传文件
+    public String process(
+            String input,
+            boolean remoteInput,
+            ModelType.InternalModel internalModel,
+            String imageType,
+            int scale,
+            boolean returnLocalPath
+    ) {
+        ModelConfig.ModelProperties properties = resolveProperties(internalModel);
+        ModelResponse response = invoke(input, remoteInput, internalModel, properties, imageType, scale);
+
+        // 处理响应，根据参数决定返回类型
+        return processApiResponse(response.body(), response.origin(), internalModel, properties, returnLocalPath);
+    }
+
+    // 流水线中间步骤：结果保留在Python服务端，只返回结果引用（补全为所在副本的绝对地址），不下载到本地
+    public String processRemote(
+            String input,
+            boolean remoteInput,
+            ModelType.InternalModel internalModel,
+            String imageType,
+            int scale
+    ) {
+        ModelConfig.ModelProperties properties = resolveProperties(internalModel);
+        ModelResponse response = invoke(input, remoteInput, internalModel, properties, imageType, scale);
+        return resolveResultUrl(extractResultPath(response.body(), properties), response.origin());
+    }
+
+    private ModelConfig.ModelProperties resolveProperties(ModelType.InternalModel internalModel) {
         String modelId = internalModel.getModelId();
         logger
                 .info("Processing with internal model: {}", modelId);
@@ -57,30 +120,231 @@ public class ApiProcessingService implements ImageProcessingStrategy {
                         .getModelProperties(modelId);
 
         if (properties == null) {
+            // 端点由 InferenceLoadBalancer 按 app.lb.default-endpoint 补全
             logger.warn("Using default config for model: {}", modelId);
             properties= new ModelConfig.ModelProperties();
-            properties.setApiEndpoint("http://localhost:8000/process"); // 默认地址
         }
+        return properties;
+    }
+
+    // 符合条件的小图与同模型的其他请求合并为一次批量调用，其余单独调用
+    private ModelResponse invoke(
+            String input,
+            boolean remoteInput,
+            ModelType.InternalModel internalModel,
+            ModelConfig.ModelProperties properties,
+            String imageType,
+            int scale
+    ) {
+        if (isBatchable(input, remoteInput, internalModel)) {
+            return batcher.submit(internalModel, input);
+        }
+        return callModel(input, remoteInput, internalModel, properties, imageType, scale);
+    }
 
+    // 中间结果只存在于某个副本上，不参与合并
+    private boolean isBatchable(String input, boolean remoteInput, ModelType.InternalModel internalModel) {
+        if (remoteInput || !batchProperties.isEnabled() || !batchProperties.getModels().contains(internalModel)) {
+            return false;
+        }
+        long size = new File(input).length();
+        return size > 0 && size <= batchProperties.getMaxFileBytes();
+    }
+
+    private ModelResponse callModel(
+            String input,
+            boolean remoteInput,
+            ModelType.InternalModel internalModel,
+            ModelConfig.ModelProperties properties,
+            String imageType,
+            int scale
+    ) {
         // 准备API请求
         HttpEntity<MultiValueMap<String, Object>> requestEntity = createRequestEntity(
-                inputFilename,
+                input,
+                remoteInput,
                 internalModel,
                 properties,
                 imageType,
                 scale
         );
 
-        // 发送请求到Python服务
-        ResponseEntity<Map> response = restTemplate.exchange(
-                properties.getApiEndpoint(),
-                HttpMethod.POST,
-                requestEntity,
-                Map.class
-        );
+        // 发送请求到Python服务（按模型超时配置，复用共享连接池）
+        long bytesSent = remoteInput ? 0 : new File(input).length();
+        return exchange(internalModel, properties, requestEntity, bytesSent, remoteInput ? input : null, "");
+    }
 
-        // 处理响应，根据参数决定返回类型
-        return processApiResponse(response.getBody(), properties, returnLocalPath);
+    // 同一模型的多张图片一次上传，推理服务按上传顺序返回每张图片的结果；单张失败只影响该图片
+    @SuppressWarnings("unchecked")
+    private List<ModelResponse> callModelBatch(ModelType.InternalModel internalModel, List<String> inputs) {
+        ModelConfig.ModelProperties properties = resolveProperties(internalModel);
+
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        long bytesSent = 0;
+        for (String input : inputs) {
+            File inputFile = new File(input);
+            if (!inputFile.exists()) {
+                throw new ApiCallException("输入文件不存在: " + input);
+            }
+            body.add("files", new FileSystemResource(inputFile));
+            bytesSent += inputFile.length();
+        }
+        body.add("model_name", internalModel.getModelId());
+        logger.info("Sending batch: model_name={}, size={}", internalModel.getModelId(), inputs.size());
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+
+        ModelResponse response = exchange(internalModel, properties, new HttpEntity<>(body, headers),
+                bytesSent, null, BATCH_PATH_SUFFIX);
+        processingMetrics.recordBatch(internalModel.getModelId(), inputs.size());
+
+        Map<String, Object> responseBody = response.body();
+        if (responseBody == null) {
+            throw new ApiCallException("API返回空响应体");
+        }
+        if (!"success".equalsIgnoreCase(String.valueOf(responseBody.get("status")))) {
+            throw new ApiCallException("批量处理返回失败状态: " + responseBody.get("error"));
+        }
+        if (!(responseBody.get("results") instanceof List<?> results)) {
+            throw new ApiCallException("批量处理响应中缺少 results");
+        }
+        List<ModelResponse> responses = new ArrayList<>(results.size());
+        for (Object result : results) {
+            responses.add(new ModelResponse((Map<String, Object>) result, response.origin()));
+        }
+        return responses;
+    }
+
+    // 由负载均衡选择副本；连接失败或 502/503/504 时换一个副本重试（处理请求无副作用，可安全重发）。
+    // 副本熔断或达到并发上限时换副本；全部副本只是并发已满时，持有调度许可等待后端归还许可，
+    // 同模型的后续请求留在 InferenceScheduler 的队列中按公平顺序等待；全部熔断则以 ServiceOverloadedException 快速失败。
+    // pinnedInput 非空时输入是中间结果，只能发往该结果所在的副本，不重试
+    @SuppressWarnings("unchecked")
+    private ModelResponse exchange(
+            ModelType.InternalModel internalModel,
+            ModelConfig.ModelProperties properties,
+            HttpEntity<MultiValueMap<String, Object>> requestEntity,
+            long bytesSent,
+            String pinnedInput,
+            String pathSuffix
+    ) {
+        boolean remoteInput = pinnedInput != null;
+        int maxAttempts = remoteInput ? 1 : loadBalancer.getMaxAttempts();
+        Set<String> triedOrigins = new HashSet<>();
+        int attempts = 0;
+        boolean overloaded = false;
+        boolean saturated = false;
+        RuntimeException lastFailure = null;
+        String lastEndpoint = null;
+        while (true) {
+            InferenceLoadBalancer.Replica replica = remoteInput
+                    ? (triedOrigins.isEmpty() ? loadBalancer.pinned(internalModel, pinnedInput) : null)
+                    : loadBalancer.choose(internalModel, triedOrigins);
+            if (replica == null) {
+                if (lastFailure != null) {
+                    throw handleApiException(lastFailure, lastEndpoint);
+                }
+                if (saturated) {
+                    awaitCapacity(internalModel);
+                    triedOrigins.clear();
+                    saturated = false;
+                    overloaded = false;
+                    continue;
+                }
+                if (overloaded) {
+                    throw new ServiceOverloadedException("推理服务繁忙，请稍后重试: " + internalModel.getModelId(),
+                            loadBalancer.getRetryAfterSeconds());
+                }
+                throw new ApiCallException("没有可用的推理服务副本: " + internalModel.getModelId());
+            }
+            triedOrigins.add(replica.origin());
+            String endpoint = replica.endpoint() + pathSuffix;
+            InferenceLoadBalancer.Lease lease = loadBalancer.tryAcquire(replica, endpoint);
+            if (lease == null) {
+                if (loadBalancer.isSaturated(replica)) {
+                    logger.debug("推理服务副本已达并发上限: {}", replica.endpoint());
+                    saturated = true;
+                } else {
+                    logger.warn("推理服务副本熔断: {}", replica.endpoint());
+                    overloaded = true;
+                }
+                continue;
+            }
+            attempts++;
+
+            Timer.Sample sample = processingMetrics.startInference(internalModel.getModelId(), bytesSent);
+            long startNanos = System.nanoTime();
+            InferenceLoadBalancer.Outcome outcome = InferenceLoadBalancer.Outcome.IGNORED;
+            try {
+                ResponseEntity<Map> response = inferenceClientFactory.getRestTemplate(internalModel, properties).exchange(
+                        endpoint,
+                        HttpMethod.POST,
+                        requestEntity,
+                        Map.class
+                );
+                outcome = InferenceLoadBalancer.Outcome.SUCCESS;
+                return new ModelResponse(response.getBody(), replica.origin());
+            } catch (ResourceAccessException | HttpServerErrorException e) {
+                // 任务取消导致的中止不计入后端失败
+                if (isCancelled()) {
+                    throw e;
+                }
+                outcome = InferenceLoadBalancer.Outcome.FAILURE;
+                if (attempts >= maxAttempts || !isRetryable(e)) {
+                    throw handleApiException(e, endpoint);
+                }
+                logger.warn("推理服务副本调用失败，换副本重试: {} - {}", endpoint, e.getMessage());
+                lastFailure = e;
+                lastEndpoint = endpoint;
+            } catch (HttpClientErrorException e) {
+                throw handleApiException(e, endpoint);
+            } finally {
+                loadBalancer.release(lease, outcome, System.nanoTime() - startNanos);
+                processingMetrics.stopInference(sample, internalModel.getModelId(),
+                        outcome == InferenceLoadBalancer.Outcome.SUCCESS);
+            }
+        }
+    }
+
+    // 等待任一后端归还并发许可；任务取消时放弃等待
+    private void awaitCapacity(ModelType.InternalModel internalModel) {
+        CancellationToken token = CancellationToken.current();
+        if (token != null) {
+            token.throwIfCancelled();
+        }
+        try {
+            loadBalancer.awaitCapacity(CAPACITY_POLL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待推理服务并发许可时被中断: " + internalModel.getModelId(), e);
+        }
+        if (token != null) {
+            token.throwIfCancelled();
+        }
+    }
+
+    private static boolean isRetryable(RuntimeException e) {
+        if (e instanceof HttpServerErrorException serverError) {
+            int code = serverError.getStatusCode().value();
+            return code == 502 || code == 503 || code == 504;
+        }
+        return true;
+    }
+
+    // 任务已取消时请求是被主动中止的，不再重试
+    private static boolean isCancelled() {
+        CancellationToken token = CancellationToken.current();
+        return token != null && token.isCancelled();
+    }
+
+    // 相对结果地址补全为处理该请求的副本地址，后续下载与引用都回到同一副本
+    private static String resolveResultUrl(String resultPath, String origin) {
+        return resultPath.startsWith("http") ? resultPath : origin + resultPath;
+    }
+
+    // 推理响应及处理该请求的副本地址
+    private record ModelResponse(Map<String, Object> body, String origin) {
     }
 
     // 保持原有方法兼容性
@@ -93,22 +357,28 @@ public class ApiProcessingService implements ImageProcessingStrategy {
         return process(inputFilename, internalModel, imageType, scale, false);
     }
     private HttpEntity<MultiValueMap<String, Object>> createRequestEntity(
-            String inputFilename,
+            String input,
+            boolean remoteInput,
             ModelType.InternalModel internalModel,
             ModelConfig.ModelProperties properties,
             String imageType,
             int scale
     ) {
-        // 1. 准备文件资源
-        File inputFile = new File(inputFilename);
-        if (!inputFile.exists()) {
-            throw new ApiCallException("输入文件不存在: " + inputFilename);
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        if (remoteInput) {
+            // 1. 输入已在Python服务端，只传结果引用
+            body.add("source", input);
+        } else {
+            // 1. 准备文件资源
+            File inputFile = new File(input);
+            if (!inputFile.exists()) {
+                throw new ApiCallException("输入文件不存在: " + input);
+            }
+            // 文件以 FileSystemResource 形式加入，请求发送时由 HttpComponents 从磁盘分块流式写出，不在内存中缓冲
+            body.add("file", new FileSystemResource(inputFile));
         }
-        FileSystemResource fileResource = new FileSystemResource(inputFile);
 
         // 2. 构建请求体 - 只发送Python端需要的参数
-        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-        body.add("file", fileResource);
 
         // 只发送Python端需要的参数
         body.add("model_name", internalModel.getModelId()); // 使用model_name而不是model_type
@@ -125,9 +395,27 @@ public class ApiProcessingService implements ImageProcessingStrategy {
 
     //  processApiResponse 方法，添加 returnLocalPath 参数
 
-    private String processApiResponse(Map<String, Object> responseBody,
-                                      ModelConfig.ModelProperties properties,
-                                      boolean returnLocalPath) {
+    // 包内可见，供 Ganwork-benchmarks 直接测量响应处理开销
+    String processApiResponse(Map<String, Object> responseBody,
+                              String origin,
+                              ModelType.InternalModel internalModel,
+                              ModelConfig.ModelProperties properties,
+                              boolean returnLocalPath) {
+        String resultPath = extractResultPath(responseBody, properties);
+
+        // 从产生结果的副本下载文件到本地
+        String localFilePath = downloadFromPythonService(resolveResultUrl(resultPath, origin), internalModel);
+
+        // 如果指定返回本地路径，直接返回下载后的文件路径（文件名带随机前缀，与推理服务端不同）
+        if (returnLocalPath) {
+            return localFilePath;
+        }
+        // 返回前端可访问的URL，由 /processed/** 按文件名定位分片目录
+        return "/processed/" + new File(localFilePath).getName();
+    }
+
+    // 校验响应状态并提取结果路径
+    private String extractResultPath(Map<String, Object> responseBody, ModelConfig.ModelProperties properties) {
         if (responseBody == null) {
             throw new ApiCallException("API返回空响应体");
         }
@@ -153,22 +441,14 @@ public class ApiProcessingService implements ImageProcessingStrategy {
         if (resultPath == null || resultPath.isBlank()) {
             throw new ApiCallException("API响应中未找到结果路径");
         }
-
-
-
-        // 从Python服务下载文件到本地
-        String localFilePath = downloadFromPythonService(resultPath);
-
-        // 如果指定返回本地路径，直接返回处理后的文件路径
-        if (returnLocalPath) {
-            return resultPath; // 直接返回本地路径
-        }
-        // 返回前端可访问的URL
-        return "/processed/" + new File(localFilePath).getName();
+        return resultPath;
     }
 
-    // 添加从Python服务下载文件的方法
-    private String downloadFromPythonService(String pythonFileUrl) {
+    // 添加从Python服务下载文件的方法（pythonFileUrl 为结果所在副本的绝对地址）
+    private String downloadFromPythonService(String pythonFileUrl, ModelType.InternalModel internalModel) {
+        Timer.Sample sample = processingMetrics.start();
+        long bytesReceived = 0;
+        boolean success = false;
         try {
             // 提取文件名
             String filename = pythonFileUrl.substring(pythonFileUrl.lastIndexOf('/') + 1);
@@ -180,24 +460,24 @@ public class ApiProcessingService implements ImageProcessingStrategy {
                 logger.info("移除时间戳后的文件名: {}", filename);
             }
 
-            // 构建完整的Python服务URL
-            String fullUrl = pythonFileUrl.startsWith("http") ?
-                    pythonFileUrl
-                    : "http://localhost:8000" + pythonFileUrl;
-
-            // 下载文件
-            byte[] fileContent = restTemplate.getForObject(fullUrl, byte[].class);
+            // 下载文件，响应体直接流式写入本地
+            String targetFilename = filename;
+            FileStorageUtil.StoredFile stored = restTemplate.execute(pythonFileUrl, HttpMethod.GET, null,
+                    response -> fileStorageUtil.storeProcessedFile(targetFilename, response.getBody(),
+                            response.getHeaders().getContentLength(), httpProperties.getMaxDownloadBytes()));
 
-            if (fileContent == null || fileContent.length == 0) {
+            if (stored == null || stored.size() == 0) {
                 throw new ApiCallException("从Python服务下载文件失败: 文件内容为空");
             }
+            logger.info("已下载处理结果: {} ({} 字节, sha256={})", stored.path(), stored.size(), stored.sha256());
 
-            // 保存到本地
-            String localPath = fileStorageUtil.storeProcessedFile(filename, fileContent);
-
-            return localPath;
+            bytesReceived = stored.size();
+            success = true;
+            return stored.path();
         } catch (Exception e) {
             throw new ApiCallException("从Python服务下载文件失败: " + e.getMessage(), e);
+        } finally {
+            processingMetrics.recordDownload(sample, internalModel.getModelId(), bytesReceived, success);
         }
     }
 
@@ -210,9 +490,8 @@ public class ApiProcessingService implements ImageProcessingStrategy {
         // 从URL中提取文件名部分
         String filename = url.substring(url.lastIndexOf('/') + 1);
 
-        // 根据您的文件存储结构构建本地路径
-        // 这里假设文件存储在"download/"目录下
-        return "processed/" + filename;
+        // 处理结果按文件名分片存放
+        return fileStorageUtil.resolveProcessed(filename).toString();
     }
 
 
@@ -226,30 +505,31 @@ public class ApiProcessingService implements ImageProcessingStrategy {
         }
     }
 
-    private void handleApiException(Exception ex, String apiUrl) {
+    // 将推理服务调用异常转换为 ApiCallException，由调用方抛出
+    private ApiCallException handleApiException(Exception ex, String apiUrl) {
         if (ex instanceof HttpClientErrorException e) {
             // 4xx 客户端错误
             String responseBody = e.getResponseBodyAsString();
             logger.error("API客户端错误 [{}]: {}", apiUrl, responseBody);
-            throw new ApiCallException("API客户端错误: " + e.getStatusCode() +
-                    ", 响应: " + responseBody);
+            return new ApiCallException("API客户端错误: " + e.getStatusCode() +
+                    ", 响应: " + responseBody, ex);
 
         } else if (ex instanceof HttpServerErrorException e) {
             // 5xx 服务端错误
             String responseBody = e.getResponseBodyAsString();
             logger.error("API服务端错误 [{}]: {}", apiUrl, responseBody);
-            throw new ApiCallException("API服务端错误: " + e.getStatusCode() +
-                    ", 响应: " + responseBody);
+            return new ApiCallException("API服务端错误: " + e.getStatusCode() +
+                    ", 响应: " + responseBody, ex);
 
         } else if (ex instanceof ResourceAccessException) {
             // 连接超时或网络问题
             logger.error("API连接失败: {}", apiUrl, ex);
-            throw new ApiCallException("API服务不可达: " + apiUrl);
+            return new ApiCallException("API服务不可达: " + apiUrl, ex);
 
         } else {
             // 其他异常
             logger.error("API调用未知错误: {}", apiUrl, ex);
-            throw new ApiCallException("API调用失败: " + ex.getMessage());
+            return new ApiCallException("API调用失败: " + ex.getMessage(), ex);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+package com.ganwork.service;
+
+import com.ganwork.exception.TaskCancelledException;
+import org.apache.hc.core5.concurrent.Cancellable;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 单个任务的取消标记：流水线在步骤之间检查，进行中的 HTTP 请求在取消时直接中止
+public class CancellationToken {
+
+    // 当前线程正在执行的任务，供 HTTP 请求工厂登记可中止的请求
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+    private final String taskId;
+    private volatile boolean cancelled;
+    // 分块处理时同一任务会在多个线程上并发发出请求
+    private final Set<Cancellable> inFlight = ConcurrentHashMap.newKeySet();
+
+    public CancellationToken(String taskId) {
+        this.taskId = taskId;
+    }
+
+    public static CancellationToken current() {
+        return CURRENT.get();
+    }
+
+    public void bind() {
+        CURRENT.set(this);
+    }
+
+    public void unbind() {
+        CURRENT.remove();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void throwIfCancelled() {
+        if (cancelled) {
+            throw new TaskCancelledException(taskId);
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+        inFlight.forEach(Cancellable::cancel);
+    }
+
+    // 登记当前的出站请求；已取消时立即中止
+    public void track(Cancellable request) {
+        inFlight.add(request);
+        if (cancelled) {
+            request.cancel();
+        }
+    }
+
+    // 请求交换结束后取消登记，一个任务的标记只持有正在进行的请求
+    public void untrack(Cancellable request) {
+        inFlight.remove(request);
+    }
+
+    // 正在进行的出站请求数
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+}
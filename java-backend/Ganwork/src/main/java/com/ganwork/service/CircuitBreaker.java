@@ -0,0 +1,145 @@
+package com.ganwork.service;
+
+import com.ganwork.config.ResilienceProperties;
+
+// 单个推理后端的熔断器：按最近 N 次调用的失败率断开，断开期满后放行少量探测请求。
+// 每次状态切换递增 epoch，许可记录获取时的 epoch，状态切换前发出的调用结束时不计入新状态
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    // 一次调用的许可：获取时的状态与 epoch
+    public static final class Permit {
+        private final State state;
+        private final long epoch;
+
+        private Permit(State state, long epoch) {
+            this.state = state;
+            this.epoch = epoch;
+        }
+    }
+
+    private final ResilienceProperties properties;
+
+    // 最近调用结果的环形窗口，true 表示失败
+    private final boolean[] window;
+    private int index;
+    private int count;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long epoch;
+    private long openUntil;
+    private int halfOpenInFlight;
+    private int halfOpenSuccesses;
+
+    public CircuitBreaker(ResilienceProperties properties) {
+        this.properties = properties;
+        this.window = new boolean[Math.max(properties.getBreakerWindowSize(), 1)];
+    }
+
+    // 断开期间或半开探测名额已满时返回 null
+    public synchronized Permit tryAcquire(long now) {
+        if (state == State.OPEN) {
+            if (now < openUntil) {
+                return null;
+            }
+            transition(State.HALF_OPEN);
+            halfOpenInFlight = 0;
+            halfOpenSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenInFlight >= properties.getBreakerHalfOpenCalls()) {
+                return null;
+            }
+            halfOpenInFlight++;
+        }
+        return new Permit(state, epoch);
+    }
+
+    public synchronized void onSuccess(Permit permit, long now) {
+        record(permit, false, now);
+    }
+
+    public synchronized void onFailure(Permit permit, long now) {
+        record(permit, true, now);
+    }
+
+    // 不反映后端状态的结束（客户端错误、任务取消），只归还半开探测名额
+    public synchronized void onIgnore(Permit permit) {
+        if (isCurrent(permit) && state == State.HALF_OPEN) {
+            halfOpenInFlight--;
+        }
+    }
+
+    public synchronized boolean isOpen(long now) {
+        return state == State.OPEN && now < openUntil;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    // 许可获取后状态已切换（闭合时发出的请求在断开、半开后才结束等），结果不再计入
+    private boolean isCurrent(Permit permit) {
+        return permit.state == state && permit.epoch == epoch;
+    }
+
+    private void record(Permit permit, boolean failed, long now) {
+        if (!isCurrent(permit)) {
+            return;
+        }
+        switch (state) {
+            case OPEN -> {
+                // 断开期间不发放许可
+            }
+            case HALF_OPEN -> {
+                halfOpenInFlight--;
+                if (failed) {
+                    open(now);
+                } else if (++halfOpenSuccesses >= properties.getBreakerHalfOpenCalls()) {
+                    close();
+                }
+            }
+            case CLOSED -> {
+                if (count == window.length) {
+                    if (window[index]) {
+                        failures--;
+                    }
+                } else {
+                    count++;
+                }
+                window[index] = failed;
+                if (failed) {
+                    failures++;
+                }
+                index = (index + 1) % window.length;
+                if (count >= properties.getBreakerMinimumCalls()
+                        && failures * 100 >= properties.getBreakerFailureRatePercent() * count) {
+                    open(now);
+                }
+            }
+        }
+    }
+
+    private void open(long now) {
+        transition(State.OPEN);
+        openUntil = now + properties.getBreakerOpenSeconds() * 1000L;
+    }
+
+    private void close() {
+        transition(State.CLOSED);
+        index = 0;
+        count = 0;
+        failures = 0;
+    }
+
+    private void transition(State next) {
+        state = next;
+        epoch++;
+    }
+}
@@ -1,13 +1,18 @@
 package com.ganwork.service;
 
+import com.ganwork.exception.ImageTooLargeException;
+import com.ganwork.exception.ServiceOverloadedException;
+import com.ganwork.exception.TooManyTasksException;
 import com.ganwork.util.ApiResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.multipart.MultipartException;
+import org.springframework.web.servlet.resource.NoResourceFoundException;
 
 @RestControllerAdvice
 public class GlobalExceptionHandler {
@@ -28,6 +33,37 @@ public class GlobalExceptionHandler {
                 new ApiResponse<>(false, ex.getMessage(), null));
     }
 
+    @ExceptionHandler(TooManyTasksException.class)
+    public ResponseEntity<ApiResponse<?>> handleTooManyTasks(TooManyTasksException ex) {
+        logger.warn("任务队列已满: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(new ApiResponse<>(false, ex.getMessage(), null));
+    }
+
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<ApiResponse<?>> handleServiceOverloaded(ServiceOverloadedException ex) {
+        logger.warn("推理服务过载: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(new ApiResponse<>(false, ex.getMessage(), null));
+    }
+
+    @ExceptionHandler(ImageTooLargeException.class)
+    public ResponseEntity<ApiResponse<?>> handleImageTooLarge(ImageTooLargeException ex) {
+        logger.warn("输入图像过大: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(
+                new ApiResponse<>(false, ex.getMessage(), null));
+    }
+
+    // 结果文件已被清理或不存在：返回 404，不能落入下面的 500 处理
+    @ExceptionHandler(NoResourceFoundException.class)
+    public ResponseEntity<ApiResponse<?>> handleNoResource(NoResourceFoundException ex) {
+        logger.debug("资源不存在: {}", ex.getResourcePath());
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+                new ApiResponse<>(false, "文件不存在", null));
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ApiResponse<?>> handleGeneralError(Exception ex) {
         logger.error("处理请求时出错", ex);
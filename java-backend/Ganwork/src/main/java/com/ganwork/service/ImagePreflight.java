@@ -0,0 +1,321 @@
+package com.ganwork.service;
+
+import com.ganwork.config.ModelConfig;
+import com.ganwork.config.PreflightProperties;
+import com.ganwork.exception.ImageTooLargeException;
+import com.ganwork.exception.ModelType;
+import com.ganwork.util.FileStorageUtil;
+import com.ganwork.util.StreamingPngReader;
+import com.ganwork.util.StreamingPngWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+// 推理前检查：只读取图像头获得尺寸，超过流水线像素上限的输入按配置拒绝或等比缩小；
+// 会分块处理的输入以分块的像素上限为准（推理服务只收到分块）。
+// 可选地把非 8 位 RGB 的输入统一转换为 RGB PNG。ImageIO 无法识别的格式（如 WebP）原样交给推理服务
+@Service
+public class ImagePreflight {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImagePreflight.class);
+
+    private final PreflightProperties properties;
+    private final ModelConfig modelConfig;
+    private final ProcessingMetrics processingMetrics;
+    private final TiledImageProcessor tiledImageProcessor;
+    private final FileStorageUtil fileStorageUtil;
+
+    @Autowired
+    public ImagePreflight(PreflightProperties properties, ModelConfig modelConfig,
+                          ProcessingMetrics processingMetrics, TiledImageProcessor tiledImageProcessor,
+                          FileStorageUtil fileStorageUtil) {
+        this.properties = properties;
+        this.modelConfig = modelConfig;
+        this.processingMetrics = processingMetrics;
+        this.tiledImageProcessor = tiledImageProcessor;
+        this.fileStorageUtil = fileStorageUtil;
+    }
+
+    // 返回实际送入推理的文件路径：未改动时为原路径，缩小或转换后为新的 PNG 文件（原文件删除）
+    public String prepare(String inputPath, List<ModelType.InternalModel> pipeline) {
+        if (!properties.isEnabled()) {
+            return inputPath;
+        }
+        Path source = Paths.get(inputPath);
+        ImageHeader header = readHeader(source);
+        if (header == null) {
+            return inputPath;
+        }
+
+        long pixels = header.pixels();
+        long budget = tiledImageProcessor.shouldTile(pixels, pipeline)
+                ? tiledImageProcessor.getMaxInputPixels()
+                : pixelBudget(pipeline);
+        boolean oversize = budget > 0 && pixels > budget;
+        if (oversize && properties.getOversizeAction() == PreflightProperties.OversizeAction.REJECT) {
+            processingMetrics.recordPreflight("rejected");
+            throw new ImageTooLargeException(String.format("图像尺寸超过上限: %dx%d（%d 像素，上限 %d）",
+                    header.width(), header.height(), pixels, budget), budget);
+        }
+        boolean normalize = properties.isNormalize() && !header.standardRgb();
+        if (!oversize && !normalize) {
+            return inputPath;
+        }
+
+        int targetWidth = header.width();
+        int targetHeight = header.height();
+        if (oversize) {
+            double ratio = Math.sqrt((double) budget / pixels);
+            targetWidth = Math.max(1, (int) (header.width() * ratio));
+            targetHeight = Math.max(1, (int) (header.height() * ratio));
+        }
+
+        try {
+            Path target = rewrite(source, header, targetWidth, targetHeight);
+            processingMetrics.recordPreflight(oversize ? "downscaled" : "normalized");
+            logger.info("推理前处理输入: {} {}x{} -> {} {}x{}", source.getFileName(), header.width(), header.height(),
+                    target.getFileName(), targetWidth, targetHeight);
+            return target.toString();
+        } catch (IOException | RuntimeException e) {
+            // 解码失败（如 CMYK JPEG）时超限输入无法缩小，只能拒绝；仅需转换时保留原文件
+            if (oversize) {
+                throw new ImageTooLargeException("图像尺寸超过上限且无法缩小: " + e.getMessage(), budget);
+            }
+            logger.warn("输入格式转换失败，使用原文件: {} - {}", source.getFileName(), e.getMessage());
+            return inputPath;
+        }
+    }
+
+    // 流水线中各模型像素上限的最小值，0 表示不限制
+    private long pixelBudget(List<ModelType.InternalModel> pipeline) {
+        long budget = 0;
+        for (ModelType.InternalModel model : pipeline) {
+            ModelConfig.ModelProperties modelProperties = modelConfig.getModelProperties(model.getModelId());
+            long limit = modelProperties != null && modelProperties.getMaxInputPixels() > 0
+                    ? modelProperties.getMaxInputPixels()
+                    : properties.getDefaultMaxInputPixels();
+            if (limit > 0) {
+                budget = budget == 0 ? limit : Math.min(budget, limit);
+            }
+        }
+        return budget;
+    }
+
+    // 只解析图像头，不解码像素数据；无法识别时返回 null
+    private ImageHeader readHeader(Path source) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            ImageReader reader = firstReader(in);
+            if (reader == null) {
+                return null;
+            }
+            try {
+                reader.setInput(in, true, true);
+                return new ImageHeader(reader.getWidth(0), reader.getHeight(0), isStandardRgb(reader),
+                        "png".equalsIgnoreCase(reader.getFormatName()));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("读取图像头失败，跳过推理前检查: {} - {}", source.getFileName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private static ImageReader firstReader(ImageInputStream in) {
+        if (in == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        return readers.hasNext() ? readers.next() : null;
+    }
+
+    // 8 位 RGB（可带透明通道）且不是索引色
+    private static boolean isStandardRgb(ImageReader reader) {
+        try {
+            ImageTypeSpecifier type = reader.getRawImageType(0);
+            if (type == null) {
+                return false;
+            }
+            ColorModel colorModel = type.getColorModel();
+            if (colorModel instanceof IndexColorModel
+                    || colorModel.getColorSpace().getType() != ColorSpace.TYPE_RGB) {
+                return false;
+            }
+            for (int size : colorModel.getComponentSize()) {
+                if (size != 8) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    // 缩放到目标尺寸（不大于原图），写为同名 PNG；新文件与删除的原文件都经 FileStorageUtil 同步存储索引
+    private Path rewrite(Path source, ImageHeader header, int targetWidth, int targetHeight) throws IOException {
+        String filename = source.getFileName().toString();
+        int dot = filename.lastIndexOf('.');
+        Path target = source.resolveSibling((dot > 0 ? filename.substring(0, dot) : filename) + ".png");
+        Path temp = fileStorageUtil.tempPath(target);
+        try {
+            if (!header.png() || !scaleRows(source, temp, targetWidth, targetHeight)) {
+                BufferedImage output = resize(decode(source, header, targetWidth, targetHeight),
+                        targetWidth, targetHeight);
+                if (!ImageIO.write(output, "png", temp.toFile())) {
+                    throw new IOException("没有可用的 PNG 编码器");
+                }
+            }
+            fileStorageUtil.commit(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        if (!target.equals(source)) {
+            fileStorageUtil.delete(source);
+        }
+        return target;
+    }
+
+    // 超大图按整数步长隔行隔列解码，解码像素数不超过 max-decode-pixels（目标尺寸更大时以目标尺寸为准）
+    private BufferedImage decode(Path source, ImageHeader header, int targetWidth, int targetHeight)
+            throws IOException {
+        int subsampling = Math.max(1, Math.min(header.width() / targetWidth, header.height() / targetHeight) / 2);
+        long maxDecodePixels = Math.max(properties.getMaxDecodePixels(), (long) targetWidth * targetHeight);
+        while (ceilDiv(header.width(), subsampling) * ceilDiv(header.height(), subsampling) > maxDecodePixels) {
+            subsampling++;
+        }
+
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            ImageReader reader = firstReader(in);
+            if (reader == null) {
+                throw new IOException("无法识别的图像格式");
+            }
+            try {
+                reader.setInput(in, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // 非隔行 PNG 逐行解码并按面积平均缩小，边读边写，内存只与图像宽度有关；隔行 PNG 返回 false。
+    // 颜色按透明度加权平均，全透明像素的颜色不会混入相邻像素
+    static boolean scaleRows(Path source, Path target, int targetWidth, int targetHeight) throws IOException {
+        try (StreamingPngReader reader = new StreamingPngReader(Files.newInputStream(source))) {
+            if (reader.isInterlaced()) {
+                return false;
+            }
+            int width = reader.getWidth();
+            int height = reader.getHeight();
+            int[] column = new int[width];
+            for (int x = 0; x < width; x++) {
+                column[x] = (int) ((long) x * targetWidth / width);
+            }
+            int[] row = new int[width];
+            int[] scaled = new int[targetWidth];
+            long[] alpha = new long[targetWidth];
+            long[] red = new long[targetWidth];
+            long[] green = new long[targetWidth];
+            long[] blue = new long[targetWidth];
+            int[] count = new int[targetWidth];
+
+            try (OutputStream out = Files.newOutputStream(target);
+                 StreamingPngWriter png = new StreamingPngWriter(out, targetWidth, targetHeight,
+                         reader.hasAlpha())) {
+                for (int y = 0; y < height; y++) {
+                    reader.readRow(row, 0);
+                    for (int x = 0; x < width; x++) {
+                        int pixel = row[x];
+                        int a = pixel >>> 24;
+                        int c = column[x];
+                        alpha[c] += a;
+                        red[c] += (long) ((pixel >> 16) & 0xff) * a;
+                        green[c] += (long) ((pixel >> 8) & 0xff) * a;
+                        blue[c] += (long) (pixel & 0xff) * a;
+                        count[c]++;
+                    }
+                    // 下一行属于新的输出行（或已是最后一行）时写出当前输出行
+                    if (y + 1 == height || (long) (y + 1) * targetHeight / height != (long) y * targetHeight / height) {
+                        for (int c = 0; c < targetWidth; c++) {
+                            scaled[c] = average(alpha[c], red[c], green[c], blue[c], count[c]);
+                        }
+                        png.writeRow(scaled, 0);
+                        Arrays.fill(alpha, 0);
+                        Arrays.fill(red, 0);
+                        Arrays.fill(green, 0);
+                        Arrays.fill(blue, 0);
+                        Arrays.fill(count, 0);
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    private static int average(long alpha, long red, long green, long blue, int count) {
+        if (alpha == 0) {
+            return 0;
+        }
+        int a = (int) ((alpha + count / 2) / count);
+        int r = (int) ((red + alpha / 2) / alpha);
+        int g = (int) ((green + alpha / 2) / alpha);
+        int b = (int) ((blue + alpha / 2) / alpha);
+        return a << 24 | r << 16 | g << 8 | b;
+    }
+
+    // 每次最多缩小一半，逐级双线性插值，避免一次大比例缩放产生锯齿；同时统一为 8 位 RGB(A)。预览图生成共用
+    static BufferedImage resize(BufferedImage source, int width, int height) {
+        int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private static long ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    private record ImageHeader(int width, int height, boolean standardRgb, boolean png) {
+        long pixels() {
+            return (long) width * height;
+        }
+    }
+}
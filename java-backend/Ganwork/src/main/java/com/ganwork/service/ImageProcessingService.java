@@ -2,13 +2,21 @@ package com.ganwork.service;
 
 import com.ganwork.exception.ResourceLoadException;
 import com.ganwork.exception.ResourceNotFoundException;
+import com.ganwork.util.ImageProcessingResponse;
 import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
+import java.util.Map;
 
 public interface ImageProcessingService {
-    String processImage(MultipartFile file, String mode, String imageType, int scale);
-    List<String> processImages(MultipartFile[] files, String mode, String imageType, int scale);
+    // clientKey 标识调用方，用于推理调度的公平排队
+    String processImage(MultipartFile file, String mode, String imageType, int scale, String clientKey);
+    // 异步提交，立即返回任务ID
+    String submitImage(MultipartFile file, String mode, String imageType, int scale, String clientKey);
+    // 并发批处理，结果顺序与输入一致，单个文件失败不影响整批；推理调度中优先级低于单张请求
+    List<ImageProcessingResponse.ProcessedImageResult> processImages(MultipartFile[] files, String mode, String imageType, int scale, String clientKey);
     Resource loadAsResource(String filename);
+    // 结果的预览图地址（previewUrl，可选 mediumUrl），预览正在生成时限时等待，没有时为空
+    Map<String, String> previewUrls(String resultUrl);
 }
\ No newline at end of file
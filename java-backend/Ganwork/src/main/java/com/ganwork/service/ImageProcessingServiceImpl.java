@@ -1,44 +1,97 @@
 package com.ganwork.service;
 
+import com.ganwork.config.TaskExecutorProperties;
 import com.ganwork.exception.ModelType;
 import com.ganwork.exception.ResourceLoadException;
 import com.ganwork.exception.ResourceNotFoundException;
+import com.ganwork.exception.TaskCancelledException;
+import com.ganwork.exception.TooManyTasksException;
 import com.ganwork.util.FileStorageUtil;
+import com.ganwork.util.ImageProcessingResponse;
 import com.ganwork.util.ImageValidator;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.io.Resource;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
-import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class ImageProcessingServiceImpl implements ImageProcessingService {
 
+    private static final Logger logger = LoggerFactory.getLogger(ImageProcessingServiceImpl.class);
+
     private final FileStorageUtil fileStorageUtil;
     private final ApiProcessingService apiProcessingService;
     private final ProcessingMonitor processingMonitor;
+    private final ThreadPoolTaskExecutor imageTaskExecutor;
+    private final ThreadPoolTaskExecutor batchTaskExecutor;
+    private final TaskExecutorProperties taskExecutorProperties;
+    private final ResultCache resultCache;
+    private final ProcessingMetrics processingMetrics;
+    private final InferenceScheduler inferenceScheduler;
+    private final TiledImageProcessor tiledImageProcessor;
+    private final ImagePreflight imagePreflight;
+    private final JobJournal jobJournal;
+    private final PreviewGenerator previewGenerator;
+
+    // 进行中的请求，按 ResultCache 的键合并相同的并发请求
+    private final Map<String, CompletableFuture<String>> inFlightRequests = new ConcurrentHashMap<>();
 
     @Autowired
     public ImageProcessingServiceImpl(
             FileStorageUtil fileStorageUtil,
             ApiProcessingService apiProcessingService,
-            ProcessingMonitor processingMonitor) {
+            ProcessingMonitor processingMonitor,
+            @Qualifier("imageTaskExecutor") ThreadPoolTaskExecutor imageTaskExecutor,
+            @Qualifier("batchTaskExecutor") ThreadPoolTaskExecutor batchTaskExecutor,
+            TaskExecutorProperties taskExecutorProperties,
+            ResultCache resultCache,
+            ProcessingMetrics processingMetrics,
+            InferenceScheduler inferenceScheduler,
+            TiledImageProcessor tiledImageProcessor,
+            ImagePreflight imagePreflight,
+            JobJournal jobJournal,
+            PreviewGenerator previewGenerator) {
         this.fileStorageUtil = fileStorageUtil;
         this.apiProcessingService = apiProcessingService;
         this.processingMonitor = processingMonitor;
+        this.imageTaskExecutor = imageTaskExecutor;
+        this.batchTaskExecutor = batchTaskExecutor;
+        this.taskExecutorProperties = taskExecutorProperties;
+        this.resultCache = resultCache;
+        this.processingMetrics = processingMetrics;
+        this.inferenceScheduler = inferenceScheduler;
+        this.tiledImageProcessor = tiledImageProcessor;
+        this.imagePreflight = imagePreflight;
+        this.jobJournal = jobJournal;
+        this.previewGenerator = previewGenerator;
+        processingMetrics.monitorInFlightRequests(inFlightRequests);
     }
 
 
     @Override
-    public String processImage(MultipartFile file, String mode, String imageType, int scale) {
+    public String processImage(MultipartFile file, String mode, String imageType, int scale, String clientKey) {
         // 验证文件
         ImageValidator.validate(file);
 
@@ -46,38 +99,264 @@ public class ImageProcessingServiceImpl implements ImageProcessingService {
         ModelType modelType = ModelType.fromRequestParam(mode); // 使用 fromRequestParam
 
         // 存储原始文件
-        String originalFilename = fileStorageUtil.store(file);
+        String originalFilename = storeUpload(file);
         Path inputPath = fileStorageUtil.getPath(originalFilename);
 
         // 生成任务ID
-        String taskId = "task_" + System.currentTimeMillis() + "_" + file.getOriginalFilename();
-        processingMonitor.startProcess(taskId, modelType.getDisplayName());
+        String taskId = processingMonitor.newTaskId("task");
+
+        InferenceScheduler.Submitter submitter =
+                new InferenceScheduler.Submitter(clientKey, InferenceScheduler.Priority.INTERACTIVE);
+        return executeTask(inputPath.toString(), modelType, imageType, scale, taskId, submitter);
+    }
+
+    @Override
+    public String submitImage(MultipartFile file, String mode, String imageType, int scale, String clientKey) {
+        ImageValidator.validate(file);
+        ModelType modelType = ModelType.fromRequestParam(mode);
+
+        // 上传文件在请求结束后会被清理，必须在返回前落盘
+        String originalFilename = storeUpload(file);
+        Path inputPath = fileStorageUtil.getPath(originalFilename);
 
+        String taskId = processingMonitor.newTaskId("task");
         try {
+            processingMonitor.queueProcess(taskId, modelType.getDisplayName());
+        } catch (TooManyTasksException e) {
+            deleteQuietly(inputPath.toString());
+            throw e;
+        }
+        // 异步任务写入任务日志，进程重启后恢复
+        jobJournal.submitted(taskId, modelType.name(), imageType, scale, clientKey, inputPath.toString());
+        InferenceScheduler.Submitter submitter =
+                new InferenceScheduler.Submitter(clientKey, InferenceScheduler.Priority.INTERACTIVE);
+
+        try {
+            imageTaskExecutor.execute(() -> runTask(inputPath.toString(), modelType, imageType, scale, taskId,
+                    submitter, null));
+        } catch (TaskRejectedException e) {
+            processingMonitor.failProcess(taskId, "任务队列已满");
+            processingMonitor.releaseTask(taskId);
+            jobJournal.finished(taskId, "FAILED");
+            deleteQuietly(inputPath.toString());
+            throw new TooManyTasksException("任务队列已满，请稍后重试",
+                    taskExecutorProperties.getRetryAfterSeconds());
+        }
+        return taskId;
+    }
+
+    // 重启前未结束的异步任务重新排队，从最后完成的流水线步骤继续；任务队列已满时在后台线程中等待重试
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePendingJobs() {
+        List<Runnable> resumed = new ArrayList<>();
+        for (JobJournal.JobRecord job : jobJournal.recover()) {
+            ModelType modelType;
+            try {
+                modelType = ModelType.valueOf(job.mode());
+            } catch (IllegalArgumentException | NullPointerException e) {
+                logger.warn("任务日志中的处理模式无效，放弃恢复: {} ({})", job.taskId(), job.mode());
+                jobJournal.finished(job.taskId(), "FAILED");
+                continue;
+            }
+            if (job.inputPath() == null || !Files.exists(Paths.get(job.inputPath()))) {
+                logger.warn("任务输入文件已不存在，放弃恢复: {} ({})", job.taskId(), job.inputPath());
+                jobJournal.finished(job.taskId(), "FAILED");
+                continue;
+            }
+            try {
+                processingMonitor.queueProcess(job.taskId(), modelType.getDisplayName());
+            } catch (TooManyTasksException e) {
+                logger.warn("任务状态表已满，放弃恢复: {}", job.taskId());
+                jobJournal.finished(job.taskId(), "FAILED");
+                continue;
+            }
+            InferenceScheduler.Submitter submitter =
+                    new InferenceScheduler.Submitter(job.clientKey(), InferenceScheduler.Priority.INTERACTIVE);
+            resumed.add(() -> runTask(job.inputPath(), modelType, job.imageType(), job.scale(), job.taskId(),
+                    submitter, job));
+        }
+        if (resumed.isEmpty()) {
+            return;
+        }
+        logger.info("恢复重启前未完成的任务: {} 个", resumed.size());
+        Thread resubmitter = new Thread(() -> resubmit(resumed), "job-recovery");
+        resubmitter.setDaemon(true);
+        resubmitter.start();
+    }
+
+    private void resubmit(List<Runnable> tasks) {
+        for (Runnable task : tasks) {
+            while (true) {
+                try {
+                    imageTaskExecutor.execute(task);
+                    break;
+                } catch (TaskRejectedException e) {
+                    try {
+                        Thread.sleep(taskExecutorProperties.getRetryAfterSeconds() * 1000L);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private void runTask(String inputPath, ModelType modelType, String imageType, int scale, String taskId,
+                         InferenceScheduler.Submitter submitter, JobJournal.JobRecord resume) {
+        try {
+            executeTask(inputPath, modelType, imageType, scale, taskId, submitter, resume);
+        } catch (TaskCancelledException e) {
+            logger.info("异步任务已取消: {}", taskId);
+        } catch (Exception e) {
+            logger.error("异步任务处理失败: {}", taskId, e);
+        }
+    }
+
+    private String executeTask(String inputPath, ModelType modelType, String imageType, int scale, String taskId,
+                               InferenceScheduler.Submitter submitter) {
+        return executeTask(inputPath, modelType, imageType, scale, taskId, submitter, null);
+    }
+
+    // 执行已落盘的任务并同步更新监控状态；resume 非空时从任务日志记录的检查点继续
+    private String executeTask(String inputPath, ModelType modelType, String imageType, int scale, String taskId,
+                               InferenceScheduler.Submitter submitter, JobJournal.JobRecord resume) {
+        // 排队期间已被取消的任务不再执行
+        if (processingMonitor.isCancelled(taskId)) {
+            processingMonitor.releaseTask(taskId);
+            jobJournal.finished(taskId, "CANCELLED");
+            deleteQuietly(inputPath);
+            throw new TaskCancelledException(taskId);
+        }
+        try {
+            processingMonitor.startProcess(taskId, modelType.getDisplayName());
+        } catch (TooManyTasksException e) {
+            deleteQuietly(inputPath);
+            throw e;
+        }
+        Timer.Sample sample = processingMetrics.startTask();
+        boolean success = false;
+        String preparedPath = inputPath;
+        try {
+            // 超过像素上限的输入在推理前拒绝或缩小，缓存键与推理都基于实际送出的文件
+            preparedPath = imagePreflight.prepare(inputPath, modelType.getProcessingPipeline());
+            if (!preparedPath.equals(inputPath)) {
+                jobJournal.inputPrepared(taskId, preparedPath);
+            }
+
             // 传递所有参数
-            String resultUrl = processImageInternal(
-                    inputPath.toString(),
-                    modelType,
-                    imageType,
-                    scale,
-                    taskId
-            );
+            String resultUrl = processImageInternal(preparedPath, modelType, imageType, scale, taskId, submitter,
+                    resume);
 
             processingMonitor.completeProcess(taskId, resultUrl);
+            jobJournal.finished(taskId, "COMPLETED");
+            success = true;
             return resultUrl;
+        } catch (TaskCancelledException e) {
+            processingMonitor.cancelProcess(taskId);
+            jobJournal.finished(taskId, "CANCELLED");
+            deleteQuietly(preparedPath);
+            throw e;
         } catch (Exception e) {
             processingMonitor.failProcess(taskId, e.getMessage());
+            jobJournal.finished(taskId, "FAILED");
             throw e;
+        } finally {
+            processingMetrics.stopTask(sample, modelType.getRequestParam(), success);
+            // 执行结束后才释放取消标记，取消请求在任务运行期间总能送达
+            processingMonitor.releaseTask(taskId);
+        }
+    }
+
+    // 清理不再执行的任务的上传文件，同时移出存储索引
+    private void deleteQuietly(String path) {
+        fileStorageUtil.delete(Paths.get(path));
+    }
+
+    // 上传文件落盘并记录耗时与字节数
+    private String storeUpload(MultipartFile file) {
+        Timer.Sample sample = processingMetrics.start();
+        boolean success = false;
+        try {
+            String filename = fileStorageUtil.store(file);
+            success = true;
+            return filename;
+        } finally {
+            processingMetrics.recordStore(sample, file.getSize(), success);
         }
     }
 
     @Override
-    public List<String> processImages(MultipartFile[] files, String mode, String imageType, int scale) {
-        List<String> results = new ArrayList<>();
-        for (MultipartFile file : files) {
-            results.add(processImage(file, mode, imageType, scale));
+    public List<ImageProcessingResponse.ProcessedImageResult> processImages(
+            MultipartFile[] files, String mode, String imageType, int scale, String clientKey) {
+        ModelType modelType = ModelType.fromRequestParam(mode);
+        // 批处理在推理调度中排在交互请求之后
+        InferenceScheduler.Submitter submitter =
+                new InferenceScheduler.Submitter(clientKey, InferenceScheduler.Priority.BATCH);
+
+        // 1. 在请求线程内校验并落盘，单个文件失败不影响其他文件
+        String[] inputPaths = new String[files.length];
+        List<ImageProcessingResponse.ProcessedImageResult> results = new ArrayList<>(files.length);
+        for (int i = 0; i < files.length; i++) {
+            MultipartFile file = files[i];
+            try {
+                ImageValidator.validate(file);
+                inputPaths[i] = fileStorageUtil.getPath(storeUpload(file)).toString();
+                results.add(null);
+            } catch (Exception e) {
+                results.add(ImageProcessingResponse.ProcessedImageResult.failure(
+                        file.getOriginalFilename(), e.getMessage()));
+            }
+        }
+
+        // 2. 并发分发：每个批次最多占用 perBatchConcurrency 个全局线程
+        Semaphore batchPermits = new Semaphore(taskExecutorProperties.getBatchPerBatchConcurrency());
+        List<CompletableFuture<ImageProcessingResponse.ProcessedImageResult>> futures = new ArrayList<>(files.length);
+        for (int i = 0; i < files.length; i++) {
+            if (inputPaths[i] == null) {
+                futures.add(CompletableFuture.completedFuture(results.get(i)));
+                continue;
+            }
+            String filename = files[i].getOriginalFilename();
+            String inputPath = inputPaths[i];
+            String taskId = processingMonitor.newTaskId("batch");
+
+            batchPermits.acquireUninterruptibly();
+            try {
+                futures.add(CompletableFuture
+                        .supplyAsync(() -> processBatchItem(inputPath, modelType, imageType, scale, taskId, filename, submitter),
+                                batchTaskExecutor)
+                        .whenComplete((result, ex) -> batchPermits.release()));
+            } catch (TaskRejectedException e) {
+                batchPermits.release();
+                futures.add(CompletableFuture.completedFuture(
+                        ImageProcessingResponse.ProcessedImageResult.failure(filename, "批处理线程池已关闭")));
+            }
+        }
+
+        // 3. 按提交顺序收集结果
+        List<ImageProcessingResponse.ProcessedImageResult> ordered = new ArrayList<>(files.length);
+        for (CompletableFuture<ImageProcessingResponse.ProcessedImageResult> future : futures) {
+            ordered.add(future.join());
+        }
+        return ordered;
+    }
+
+    private ImageProcessingResponse.ProcessedImageResult processBatchItem(
+            String inputPath, ModelType modelType, String imageType, int scale, String taskId, String filename,
+            InferenceScheduler.Submitter submitter) {
+        try {
+            String resultUrl = executeTask(inputPath, modelType, imageType, scale, taskId, submitter);
+            ImageProcessingResponse.ProcessedImageResult result =
+                    ImageProcessingResponse.ProcessedImageResult.success(filename, resultUrl);
+            Map<String, String> previews = previewGenerator.awaitRenditionUrls(resultUrl);
+            result.setPreviewUrl(previews.get("previewUrl"));
+            result.setMediumUrl(previews.get("mediumUrl"));
+            return result;
+        } catch (Exception e) {
+            logger.warn("批处理文件失败: {} - {}", filename, e.getMessage());
+            return ImageProcessingResponse.ProcessedImageResult.failure(filename, e.getMessage());
         }
-        return results;
     }
 
 
@@ -86,41 +365,121 @@ public class ImageProcessingServiceImpl implements ImageProcessingService {
             ModelType modelType,
             String imageType,
             int scale,
-            String taskId
+            String taskId,
+            InferenceScheduler.Submitter submitter,
+            JobJournal.JobRecord resume
     ) {
         List<ModelType.InternalModel> pipeline = modelType.getProcessingPipeline();
-        String currentInput = inputPath;
-        String result = null;
 
-        int totalSteps = pipeline.size();
-        for (int i = 0; i < totalSteps; i++) {
-            ModelType.InternalModel model = pipeline.get(i);
-            String stepName = ModelType.getInternalModelDisplayName(model);
-            processingMonitor
-                    .updateProcessStatus(taskId, "正在处理: " + stepName);
+        String requestKey = resultCache.key(inputPath, pipeline, imageType, scale);
 
-            // 检查当前输入是否为URL，如果是则下载到本地
-            if (currentInput.startsWith("http") || currentInput.startsWith("/processed/")) {
-                try {
-                    // 下载文件到临时位置
-                    String downloadedPath = downloadFileFromUrl(currentInput);
-                    currentInput= downloadedPath;
-                } catch (Exception e) {
-                    //throw new RuntimeException("下载文件失败: " + currentInput, e);
+        // 相同图片、模型与参数的结果直接复用，不再调用推理服务
+        if (resultCache.isEnabled()) {
+            String cached = resultCache.get(requestKey);
+            if (cached != null) {
+                logger.info("命中结果缓存: {} -> {}", taskId, cached);
+                return cached;
+            }
+        }
+
+        // 相同请求正在处理时等待其结果，只向推理服务发起一次调用
+        CancellationToken cancellation = processingMonitor.cancellationToken(taskId);
+        CompletableFuture<String> flight = new CompletableFuture<>();
+        CompletableFuture<String> existing;
+        while ((existing = inFlightRequests.putIfAbsent(requestKey, flight)) != null) {
+            logger.info("合并进行中的相同请求: {}", taskId);
+            try {
+                return awaitInFlight(existing, cancellation);
+            } catch (TaskCancelledException e) {
+                // 被合并的请求已被其发起方取消，由当前任务重新发起
+                cancellation.throwIfCancelled();
+            }
+        }
+
+        String resultUrl = null;
+        Throwable failure = null;
+        try {
+            resultUrl = tiledImageProcessor.shouldTile(inputPath, pipeline)
+                    ? runTiled(inputPath, pipeline, imageType, scale, taskId, submitter, cancellation)
+                    : runPipeline(inputPath, pipeline, imageType, scale, taskId, submitter, cancellation, resume);
+            // 返回地址前发布到共享存储，任意节点都能提供该结果；预览图在后台生成，不延迟返回
+            if (resultUrl != null) {
+                fileStorageUtil.publishProcessed(resultUrl.substring(resultUrl.lastIndexOf('/') + 1));
+                previewGenerator.generateAsync(resultUrl);
+            }
+            if (resultCache.isEnabled()) {
+                resultCache.put(requestKey, resultUrl);
+            }
+            return resultUrl;
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            // 先移出再完成，等待方重试时不会再取到已结束的请求
+            inFlightRequests.remove(requestKey, flight);
+            if (failure == null) {
+                flight.complete(resultUrl);
+            } else {
+                flight.completeExceptionally(failure);
+            }
+        }
+    }
+
+    // 等待合并请求的结果，失败时向每个等待方抛出同一个原始异常；
+    // 与推理调度的排队相同，定期检查当前任务自己的取消标记，取消后不再等待发起方
+    private String awaitInFlight(CompletableFuture<String> flight, CancellationToken cancellation) {
+        while (true) {
+            try {
+                return flight.get(200, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                cancellation.throwIfCancelled();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
                 }
+                throw new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待合并请求时被中断", e);
             }
+        }
+    }
 
-            // 调用处理方法
-            boolean isLastStep = (i == totalSteps - 1);
-            result= apiProcessingService.process(
-                    currentInput ,
-                    model,
-                    imageType,
-                    scale,
-                    isLastStep
-// 修改这里：最后一步返回本地路径
-            );
-            currentInput= result;
+    // 包内可见：现有模式都是单步流水线，多步串联（中间结果引用）与检查点恢复由测试直接驱动
+    String runPipeline(
+            String inputPath,
+            List<ModelType.InternalModel> pipeline,
+            String imageType,
+            int scale,
+            String taskId,
+            InferenceScheduler.Submitter submitter,
+            CancellationToken cancellation,
+            JobJournal.JobRecord resume
+    ) {
+        String result;
+        // 检查点的中间结果保留在推理服务端，从下一步开始引用该结果
+        boolean resuming = resume != null && resume.stepResult() != null
+                && resume.completedSteps() > 0 && resume.completedSteps() < pipeline.size();
+
+        // 绑定到当前线程，出站请求由 CancellableClientHttpRequestFactory 登记，取消时直接中止
+        cancellation.bind();
+        try {
+            // 最后一步下载最终结果，返回本地路径
+            result = resuming
+                    ? runSteps(resume.stepResult(), true, resume.completedSteps(), pipeline, imageType, scale, taskId,
+                    submitter, cancellation, true)
+                    : runSteps(inputPath, false, 0, pipeline, imageType, scale, taskId, submitter, cancellation, true);
+        } catch (RuntimeException e) {
+            // 请求被中止时底层抛出的是 I/O 异常，统一转换为取消
+            cancellation.throwIfCancelled();
+            if (!resuming) {
+                throw e;
+            }
+            // 中间结果可能已随推理服务重启丢失，从头执行
+            logger.warn("从检查点恢复失败，重新执行全部步骤: {} - {}", taskId, e.getMessage());
+            result = runSteps(inputPath, false, 0, pipeline, imageType, scale, taskId, submitter, cancellation, true);
+        } finally {
+            cancellation.unbind();
         }
 
         // 确保返回的是前端可访问的URL
@@ -135,48 +494,81 @@ public class ImageProcessingServiceImpl implements ImageProcessingService {
         return result;
     }
 
-    // 添加下载文件的方法
-    private String downloadFileFromUrl(String fileUrl) throws IOException {
-
-        // 如果已经是本地路径，直接返回
-        if (!fileUrl.startsWith("http") && !fileUrl.startsWith("/processed/")) {
-            return fileUrl;
+    // 大图拆成重叠分块，每个分块各自执行完整流水线后拼接
+    private String runTiled(
+            String inputPath,
+            List<ModelType.InternalModel> pipeline,
+            String imageType,
+            int scale,
+            String taskId,
+            InferenceScheduler.Submitter submitter,
+            CancellationToken cancellation
+    ) {
+        int outputScale = pipeline.stream().mapToInt(ModelType.InternalModel::getScaleFactor).reduce(1, Math::multiplyExact);
+        try {
+            return tiledImageProcessor.process(inputPath, outputScale, taskId, cancellation, tile -> {
+                String url = runSteps(tile.toString(), false, 0, pipeline, imageType, scale, null, submitter, cancellation,
+                        false);
+                return fileStorageUtil.resolveProcessed(url.substring(url.lastIndexOf('/') + 1));
+            });
+        } catch (RuntimeException e) {
+            cancellation.throwIfCancelled();
+            throw e;
         }
+    }
 
-        // 提取文件名
-        String filename = fileUrl.substring(fileUrl.lastIndexOf('/') + 1);
+    // 从 firstStep 开始依次执行流水线各步骤，调用线程需已绑定取消标记；taskId 为 null 时不汇报步骤进度与检查点
+    private String runSteps(
+            String inputPath,
+            boolean inputRemote,
+            int firstStep,
+            List<ModelType.InternalModel> pipeline,
+            String imageType,
+            int scale,
+            String taskId,
+            InferenceScheduler.Submitter submitter,
+            CancellationToken cancellation,
+            boolean returnLocalPath
+    ) {
+        String currentInput = inputPath;
+        boolean remoteInput = inputRemote;
+        String result = null;
 
+        int totalSteps = pipeline.size();
+        for (int i = firstStep; i < totalSteps; i++) {
+            cancellation.throwIfCancelled();
 
-        if (fileUrl.startsWith("/processed/")) {
-            filename= fileUrl.substring("/processed/".length());
-        } else {
-            filename= fileUrl.substring(fileUrl.lastIndexOf('/') + 1);
-        }
+            ModelType.InternalModel model = pipeline.get(i);
+            if (taskId != null) {
+                String stepName = ModelType.getInternalModelDisplayName(model);
+                processingMonitor
+                        .updateProgress(taskId, i, totalSteps, "正在处理: " + stepName);
+            }
 
-        // 移除可能的时间戳前缀（13位数字后跟下划线）
-        if (filename.matches("^\\d{13}_.*")) {
-            filename= filename.substring(14); // 移除13位数字和1个下划线
-            //logger.info("移除时间戳后的文件名: {}", filename);
+            boolean isLastStep = (i == totalSteps - 1);
+            String stepInput = currentInput;
+            boolean stepRemote = remoteInput;
+            // 每一步按模型单独排队，受该模型的并发上限与公平调度约束
+            if (isLastStep) {
+                result = inferenceScheduler.run(model, submitter, cancellation,
+                        () -> apiProcessingService.process(stepInput, stepRemote, model, imageType, scale, returnLocalPath));
+            } else {
+                // 中间结果保留在Python服务端，下一步直接引用结果，不经过Java端下载再上传
+                currentInput = inferenceScheduler.run(model, submitter, cancellation,
+                        () -> apiProcessingService.processRemote(stepInput, stepRemote, model, imageType, scale));
+                remoteInput = true;
+                if (taskId != null) {
+                    jobJournal.stepCompleted(taskId, i + 1, currentInput);
+                }
+            }
         }
-        // 创建临时文件路径
-        String tempDir = "download/";
-        Files.createDirectories(Paths.get(tempDir));
-        String localPath = tempDir + filename;
-
-        // 构建完整的URL（如果是相对路径）
-        String fullUrl = fileUrl.startsWith("http") ?
-                fileUrl : "http://localhost:8000" + fileUrl;
-
-        // 下载文件
-        RestTemplate restTemplate = new RestTemplate();
-        byte[] fileContent = restTemplate.getForObject(fullUrl, byte[].class);
-
-        // 保存到本地
-        Files.write(Paths.get(localPath), fileContent);
-
-        return localPath;
+        return result;
     }
 
+    @Override
+    public Map<String, String> previewUrls(String resultUrl) {
+        return previewGenerator.awaitRenditionUrls(resultUrl);
+    }
 
     @Override
     public Resource loadAsResource(String filename) {
@@ -0,0 +1,37 @@
+package com.ganwork.service;
+
+import com.ganwork.config.CancellableClientHttpRequestFactory;
+import com.ganwork.config.ModelConfig;
+import com.ganwork.exception.ModelType;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class InferenceClientFactory {
+
+    private final CloseableHttpClient inferenceHttpClient;
+
+    // 每个内部模型一个 RestTemplate，底层共享同一个连接池
+    private final Map<ModelType.InternalModel, RestTemplate> restTemplates = new ConcurrentHashMap<>();
+
+    @Autowired
+    public InferenceClientFactory(CloseableHttpClient inferenceHttpClient) {
+        this.inferenceHttpClient = inferenceHttpClient;
+    }
+
+    // 读取超时取自模型配置的 timeoutSeconds，连接超时由连接池按路由配置
+    public RestTemplate getRestTemplate(ModelType.InternalModel model, ModelConfig.ModelProperties properties) {
+        return restTemplates.computeIfAbsent(model, key -> {
+            CancellableClientHttpRequestFactory factory =
+                    new CancellableClientHttpRequestFactory(inferenceHttpClient);
+            factory.setReadTimeout(Duration.ofSeconds(properties.getTimeoutSeconds()));
+            return new RestTemplate(factory);
+        });
+    }
+}
@@ -0,0 +1,350 @@
+package com.ganwork.service;
+
+import com.ganwork.config.LoadBalancerProperties;
+import com.ganwork.config.ModelConfig;
+import com.ganwork.config.ResilienceProperties;
+import com.ganwork.exception.ModelType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 推理服务多副本负载均衡：按策略选择副本，主动健康检查，连续失败的副本暂时剔除；
+// 每个后端另有熔断器与自适应并发上限，后端过载时直接拒绝而不是继续堆积请求
+@Component
+public class InferenceLoadBalancer {
+
+    // 一次调用的结束方式：IGNORED 表示与后端状态无关（客户端错误、任务取消）
+    public enum Outcome {
+        SUCCESS,
+        FAILURE,
+        IGNORED
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceLoadBalancer.class);
+
+    private final LoadBalancerProperties properties;
+    private final ResilienceProperties resilienceProperties;
+
+    // 按后端地址（scheme://host:port）共享的状态，多个模型部署在同一台机器时共用
+    private final Map<String, Backend> backends = new LinkedHashMap<>();
+    private final Map<ModelType.InternalModel, List<Replica>> replicas = new EnumMap<>(ModelType.InternalModel.class);
+
+    // 调用结束时通知等待并发许可的请求
+    private final Object capacityReleased = new Object();
+
+    private ScheduledExecutorService healthChecker;
+    // 健康检查使用独立的小连接池：推理连接池被慢请求占满时，检查请求不必排队等待连接，
+    // 也不会因等待超时把正常的副本误判为不可用
+    private CloseableHttpClient healthClient;
+
+    @Autowired
+    public InferenceLoadBalancer(ModelConfig modelConfig, LoadBalancerProperties properties,
+                                 ResilienceProperties resilienceProperties, ProcessingMetrics processingMetrics) {
+        this.properties = properties;
+        this.resilienceProperties = resilienceProperties;
+        for (ModelType.InternalModel model : ModelType.InternalModel.values()) {
+            ModelConfig.ModelProperties modelProperties = modelConfig.getModelProperties(model.getModelId());
+            List<ModelConfig.Endpoint> endpoints = modelProperties != null
+                    ? modelProperties.resolveEndpoints() : List.of();
+            List<Replica> members = new ArrayList<>();
+            if (endpoints.isEmpty()) {
+                members.add(replica(properties.getDefaultEndpoint(), 1));
+            }
+            for (ModelConfig.Endpoint endpoint : endpoints) {
+                members.add(replica(endpoint.getUrl(), endpoint.getWeight()));
+            }
+            replicas.put(model, List.copyOf(members));
+        }
+        backends.values().forEach(backend -> processingMetrics.monitorBackend(backend.origin,
+                backend.outstanding::get, () -> backend.isAvailable(System.currentTimeMillis()) ? 1 : 0,
+                backend.limiter::getLimit, () -> backend.breaker.getState().ordinal()));
+    }
+
+    private Replica replica(String endpoint, int weight) {
+        String origin = origin(endpoint);
+        Backend backend = backends.computeIfAbsent(origin, key -> new Backend(key, resilienceProperties));
+        return new Replica(endpoint, Math.max(weight, 1), backend);
+    }
+
+    @PostConstruct
+    public void startHealthChecks() {
+        if (properties.getHealthIntervalSeconds() <= 0) {
+            return;
+        }
+        healthClient = healthClient();
+        healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inference-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, 0,
+                properties.getHealthIntervalSeconds(), TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stopHealthChecks() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+        if (healthClient != null) {
+            healthClient.close(CloseMode.IMMEDIATE);
+        }
+    }
+
+    // 检查在单个线程上逐个进行，每个后端一条连接即可
+    private CloseableHttpClient healthClient() {
+        PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager();
+        manager.setMaxTotal(Math.max(backends.size(), 1));
+        manager.setDefaultMaxPerRoute(1);
+        manager.setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofSeconds(properties.getHealthTimeoutSeconds()))
+                .build());
+        return HttpClients.custom()
+                .setConnectionManager(manager)
+                .evictExpiredConnections()
+                .build();
+    }
+
+    public int getMaxAttempts() {
+        return Math.max(properties.getMaxAttempts(), 1);
+    }
+
+    public int getRetryAfterSeconds() {
+        return resilienceProperties.getOverloadRetryAfterSeconds();
+    }
+
+    // 为模型选择一个副本，跳过本次调用已尝试过的后端；可用副本全部不可用时仍在剩余副本中选择
+    public Replica choose(ModelType.InternalModel model, Set<String> excludedOrigins) {
+        long now = System.currentTimeMillis();
+        List<Replica> candidates = new ArrayList<>();
+        List<Replica> available = new ArrayList<>();
+        for (Replica replica : replicas.get(model)) {
+            if (excludedOrigins.contains(replica.origin())) {
+                continue;
+            }
+            candidates.add(replica);
+            if (replica.backend().isAvailable(now)) {
+                available.add(replica);
+            }
+        }
+        List<Replica> pool = available.isEmpty() ? candidates : available;
+        if (pool.isEmpty()) {
+            return null;
+        }
+        return properties.getStrategy() == LoadBalancerProperties.Strategy.WEIGHTED
+                ? weightedRandom(pool) : leastOutstanding(pool);
+    }
+
+    // 输入是某个副本上的中间结果时，必须回到该副本处理
+    public Replica pinned(ModelType.InternalModel model, String resultUrl) {
+        if (resultUrl.startsWith("http")) {
+            String origin = origin(resultUrl);
+            for (Replica replica : replicas.get(model)) {
+                if (replica.origin().equals(origin)) {
+                    return replica;
+                }
+            }
+            logger.warn("中间结果所在副本未配置给模型 {}: {}", model.getModelId(), origin);
+        }
+        return choose(model, Set.of());
+    }
+
+    // 熔断断开或达到并发上限时返回 null，调用方应换副本、等待或快速失败；
+    // endpoint 为实际请求的地址，延迟基线按它分别计算
+    public Lease tryAcquire(Replica replica, String endpoint) {
+        Backend backend = replica.backend();
+        CircuitBreaker.Permit permit = backend.breaker.tryAcquire(System.currentTimeMillis());
+        if (permit == null) {
+            return null;
+        }
+        if (!backend.limiter.tryAcquire()) {
+            backend.breaker.onIgnore(permit);
+            return null;
+        }
+        backend.outstanding.incrementAndGet();
+        return new Lease(replica, endpoint, permit);
+    }
+
+    // 副本未熔断、只是并发已达上限：等待进行中的调用结束即可，不必拒绝请求
+    public boolean isSaturated(Replica replica) {
+        Backend backend = replica.backend();
+        return !backend.breaker.isOpen(System.currentTimeMillis()) && backend.limiter.isSaturated();
+    }
+
+    // 等待任一后端归还并发许可，最多等待 maxWaitMillis；调用方随后重新选择副本
+    public void awaitCapacity(long maxWaitMillis) throws InterruptedException {
+        synchronized (capacityReleased) {
+            capacityReleased.wait(maxWaitMillis);
+        }
+    }
+
+    // 结束一次 tryAcquire 成功的调用，并按结果更新熔断、并发上限与剔除状态
+    public void release(Lease lease, Outcome outcome, long latencyNanos) {
+        Backend backend = lease.replica().backend();
+        CircuitBreaker.Permit permit = lease.permit();
+        backend.outstanding.decrementAndGet();
+        long now = System.currentTimeMillis();
+        switch (outcome) {
+            case SUCCESS -> {
+                backend.limiter.onSuccess(lease.endpoint(), latencyNanos);
+                if (latencyNanos > resilienceProperties.getBreakerSlowCallSeconds() * 1_000_000_000L) {
+                    backend.breaker.onFailure(permit, now);
+                } else {
+                    backend.breaker.onSuccess(permit, now);
+                }
+                synchronized (backend) {
+                    backend.consecutiveFailures = 0;
+                }
+            }
+            case FAILURE -> {
+                backend.limiter.onFailure();
+                backend.breaker.onFailure(permit, now);
+                recordFailure(backend, now);
+            }
+            case IGNORED -> {
+                backend.limiter.onIgnore();
+                backend.breaker.onIgnore(permit);
+            }
+        }
+        synchronized (capacityReleased) {
+            capacityReleased.notifyAll();
+        }
+    }
+
+    // 连续失败达到阈值时剔除副本，剔除时长按剔除次数翻倍
+    private void recordFailure(Backend backend, long now) {
+        synchronized (backend) {
+            backend.consecutiveFailures++;
+            if (backend.consecutiveFailures < properties.getEjectionConsecutiveFailures()
+                    || backend.ejectedUntil > now || !ejectionAllowed(now)) {
+                return;
+            }
+            long seconds = Math.min((long) properties.getEjectionBaseSeconds() << Math.min(backend.ejections, 16),
+                    properties.getEjectionMaxSeconds());
+            backend.ejectedUntil = now + seconds * 1000;
+            backend.ejections++;
+            backend.consecutiveFailures = 0;
+            logger.warn("推理服务副本连续失败，剔除 {} 秒: {}", seconds, backend.origin);
+        }
+    }
+
+    // 至少允许剔除一个后端，超过比例上限后不再剔除，避免全部副本同时下线
+    private boolean ejectionAllowed(long now) {
+        long ejected = backends.values().stream().filter(b -> b.ejectedUntil > now).count();
+        return ejected == 0 || (ejected + 1) * 100 <= (long) properties.getMaxEjectionPercent() * backends.size();
+    }
+
+    private Replica leastOutstanding(List<Replica> pool) {
+        List<Replica> best = new ArrayList<>();
+        double bestLoad = Double.MAX_VALUE;
+        for (Replica replica : pool) {
+            double load = (replica.backend().outstanding.get() + 1) / (double) replica.weight();
+            if (load < bestLoad) {
+                best.clear();
+                bestLoad = load;
+            }
+            if (load == bestLoad) {
+                best.add(replica);
+            }
+        }
+        return best.get(ThreadLocalRandom.current().nextInt(best.size()));
+    }
+
+    private Replica weightedRandom(List<Replica> pool) {
+        int total = pool.stream().mapToInt(Replica::weight).sum();
+        int point = ThreadLocalRandom.current().nextInt(total);
+        for (Replica replica : pool) {
+            point -= replica.weight();
+            if (point < 0) {
+                return replica;
+            }
+        }
+        return pool.get(pool.size() - 1);
+    }
+
+    private void checkHealth() {
+        RequestConfig config = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofSeconds(properties.getHealthTimeoutSeconds()))
+                .setResponseTimeout(Timeout.ofSeconds(properties.getHealthTimeoutSeconds()))
+                .build();
+        for (Backend backend : backends.values()) {
+            boolean healthy;
+            try {
+                HttpGet request = new HttpGet(backend.origin + properties.getHealthPath());
+                request.setConfig(config);
+                int code = healthClient.execute(request, response -> response.getCode());
+                healthy = code >= 200 && code < 300;
+            } catch (Exception e) {
+                healthy = false;
+            }
+            if (healthy != backend.healthy) {
+                logger.info("推理服务副本健康状态变化: {} -> {}", backend.origin, healthy ? "健康" : "不可用");
+            }
+            backend.healthy = healthy;
+        }
+    }
+
+    // 端点 URL 的 scheme://host:port 部分，端口补全为协议默认端口
+    public static String origin(String url) {
+        URI uri = URI.create(url);
+        boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() != -1 ? uri.getPort() : (secure ? 443 : 80);
+        return uri.getScheme() + "://" + uri.getHost() + ":" + port;
+    }
+
+    // 一个模型在某个后端上的处理端点
+    public record Replica(String endpoint, int weight, Backend backend) {
+        public String origin() {
+            return backend.origin;
+        }
+    }
+
+    // tryAcquire 成功后的调用凭据，release 时按获取时的熔断状态记录结果
+    public record Lease(Replica replica, String endpoint, CircuitBreaker.Permit permit) {
+    }
+
+    public static final class Backend {
+        private final String origin;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final CircuitBreaker breaker;
+        private final AdaptiveConcurrencyLimiter limiter;
+        private volatile boolean healthy = true;
+        private volatile long ejectedUntil;
+        private int consecutiveFailures;
+        private int ejections;
+
+        private Backend(String origin, ResilienceProperties resilienceProperties) {
+            this.origin = origin;
+            this.breaker = new CircuitBreaker(resilienceProperties);
+            this.limiter = new AdaptiveConcurrencyLimiter(resilienceProperties);
+        }
+
+        boolean isAvailable(long now) {
+            return healthy && now >= ejectedUntil && !breaker.isOpen(now);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.ganwork.service;
+
+import com.ganwork.config.ModelConfig;
+import com.ganwork.config.SchedulerProperties;
+import com.ganwork.exception.ModelType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// 推理调用调度：每个内部模型独立的并发上限；排队时交互请求优先于批处理，
+// 同一优先级内按客户端加权公平排队（虚拟完成时间），避免单个客户端或慢模型占满后端
+@Service
+public class InferenceScheduler {
+
+    public enum Priority {
+        INTERACTIVE,
+        BATCH
+    }
+
+    // 调用方标识：客户端与优先级
+    public record Submitter(String clientKey, Priority priority) {
+    }
+
+    private final ModelConfig modelConfig;
+    private final SchedulerProperties properties;
+    private final ProcessingMetrics processingMetrics;
+
+    private final Map<ModelType.InternalModel, ModelQueue> queues = new EnumMap<>(ModelType.InternalModel.class);
+
+    @Autowired
+    public InferenceScheduler(ModelConfig modelConfig, SchedulerProperties properties,
+                              ProcessingMetrics processingMetrics) {
+        this.modelConfig = modelConfig;
+        this.properties = properties;
+        this.processingMetrics = processingMetrics;
+        for (ModelType.InternalModel model : ModelType.InternalModel.values()) {
+            ModelQueue queue = new ModelQueue(maxConcurrency(model));
+            queues.put(model, queue);
+            processingMetrics.monitorSchedulerQueue(model.getModelId(), queue::waitingCount);
+        }
+    }
+
+    // 获取模型的执行许可后调用 call；等待期间任务被取消时放弃排队
+    public <T> T run(ModelType.InternalModel model, Submitter submitter, CancellationToken cancellation,
+                     Supplier<T> call) {
+        ModelQueue queue = queues.get(model);
+        long waitStart = System.nanoTime();
+        queue.acquire(submitter, weight(submitter.clientKey()), cancellation);
+        processingMetrics.recordSchedulerWait(model.getModelId(), submitter.priority().name().toLowerCase(),
+                System.nanoTime() - waitStart);
+        try {
+            return call.get();
+        } finally {
+            queue.release();
+        }
+    }
+
+    private int maxConcurrency(ModelType.InternalModel model) {
+        ModelConfig.ModelProperties modelProperties = modelConfig.getModelProperties(model.getModelId());
+        if (modelProperties != null && modelProperties.getMaxConcurrency() > 0) {
+            return modelProperties.getMaxConcurrency();
+        }
+        return properties.getDefaultMaxConcurrency();
+    }
+
+    // 权重只属于已登记的客户端；clientKey 由 ClientIdentityResolver 从已认证的来源得出
+    private double weight(String clientKey) {
+        SchedulerProperties.Client client = properties.getClients().get(clientKey);
+        return client != null && client.getWeight() > 0 ? client.getWeight() : 1;
+    }
+
+    // 记录了虚拟完成时间的客户端数（各优先级合计）
+    int trackedClients(ModelType.InternalModel model) {
+        return queues.get(model).trackedClients();
+    }
+
+    private static final class Waiter {
+        final Priority priority;
+        final double finishTag;
+        final long sequence;
+        final CompletableFuture<Void> granted = new CompletableFuture<>();
+
+        Waiter(Priority priority, double finishTag, long sequence) {
+            this.priority = priority;
+            this.finishTag = finishTag;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class ModelQueue {
+        private final int limit;
+        private int running;
+        private long sequence;
+
+        // 每个优先级一条队列，按虚拟完成时间排序，相同时按到达顺序
+        private final Map<Priority, PriorityQueue<Waiter>> waiting = new EnumMap<>(Priority.class);
+        // 每个优先级的系统虚拟时间与各客户端最近一次的虚拟完成时间；
+        // 不晚于虚拟时间的完成时间与没有记录等价，随虚拟时间推进清除，表的大小只与排队中的客户端有关
+        private final Map<Priority, Double> virtualTime = new EnumMap<>(Priority.class);
+        private final Map<Priority, Map<String, Double>> lastFinish = new EnumMap<>(Priority.class);
+
+        ModelQueue(int limit) {
+            this.limit = limit;
+            for (Priority priority : Priority.values()) {
+                waiting.put(priority, new PriorityQueue<>((a, b) -> a.finishTag != b.finishTag
+                        ? Double.compare(a.finishTag, b.finishTag) : Long.compare(a.sequence, b.sequence)));
+                virtualTime.put(priority, 0.0);
+                lastFinish.put(priority, new HashMap<>());
+            }
+        }
+
+        void acquire(Submitter submitter, double weight, CancellationToken cancellation) {
+            Waiter waiter;
+            synchronized (this) {
+                if (running < limit && waitingCount() == 0) {
+                    running++;
+                    return;
+                }
+                Priority priority = submitter.priority();
+                Map<String, Double> finishes = lastFinish.get(priority);
+                double start = Math.max(virtualTime.get(priority), finishes.getOrDefault(submitter.clientKey(), 0.0));
+                double finish = start + 1.0 / weight;
+                finishes.put(submitter.clientKey(), finish);
+                waiter = new Waiter(priority, finish, sequence++);
+                waiting.get(priority).add(waiter);
+            }
+            awaitGrant(waiter, cancellation);
+        }
+
+        // 定期检查取消标记；取消时移出队列，若已获得许可则归还
+        private void awaitGrant(Waiter waiter, CancellationToken cancellation) {
+            while (true) {
+                try {
+                    waiter.granted.get(200, TimeUnit.MILLISECONDS);
+                    return;
+                } catch (TimeoutException e) {
+                    if (cancellation.isCancelled()) {
+                        abandon(waiter);
+                        cancellation.throwIfCancelled();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    abandon(waiter);
+                    throw new IllegalStateException("等待推理调度时被中断", e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+
+        private void abandon(Waiter waiter) {
+            boolean wasGranted;
+            synchronized (this) {
+                wasGranted = !waiting.get(waiter.priority).remove(waiter);
+            }
+            if (wasGranted) {
+                release();
+            }
+        }
+
+        void release() {
+            Waiter next;
+            synchronized (this) {
+                next = pollNext();
+                if (next == null) {
+                    running--;
+                    // 队列已空，剩下的只有放弃排队的等待者留下的记录
+                    lastFinish.values().forEach(Map::clear);
+                    return;
+                }
+                // 许可直接转交给下一个等待者，running 不变
+                double now = next.finishTag;
+                virtualTime.put(next.priority, now);
+                lastFinish.get(next.priority).values().removeIf(finish -> finish <= now);
+            }
+            next.granted.complete(null);
+        }
+
+        // 交互请求严格优先于批处理
+        private Waiter pollNext() {
+            for (Priority priority : Priority.values()) {
+                Waiter next = waiting.get(priority).poll();
+                if (next != null) {
+                    return next;
+                }
+            }
+            return null;
+        }
+
+        synchronized int trackedClients() {
+            int count = 0;
+            for (Map<String, Double> finishes : lastFinish.values()) {
+                count += finishes.size();
+            }
+            return count;
+        }
+
+        synchronized int waitingCount() {
+            int count = 0;
+            for (PriorityQueue<Waiter> queue : waiting.values()) {
+                count += queue.size();
+            }
+            return count;
+        }
+    }
+}
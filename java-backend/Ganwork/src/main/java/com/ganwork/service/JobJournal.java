@@ -0,0 +1,223 @@
+package com.ganwork.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ganwork.config.JobJournalProperties;
+import com.ganwork.util.FileStorageUtil;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+// 异步任务日志：每行一条 JSON，记录任务提交、推理前检查替换输入、流水线步骤完成与任务结束。
+// 除结束记录外每行都是任务的完整快照，重放时按任务取最后一行；启动时重放并重写日志，只保留未结束的任务
+@Service
+public class JobJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobJournal.class);
+
+    private static final String FILE_NAME = "jobs.log";
+
+    private static final String SUBMITTED = "SUBMITTED";
+    private static final String CHECKPOINT = "CHECKPOINT";
+    private static final String FINISHED = "FINISHED";
+
+    // 任务快照：completedSteps 为已完成的流水线步骤数，stepResult 为最后完成步骤在推理服务端的结果引用
+    public record JobRecord(
+            String event,
+            String taskId,
+            String mode,
+            String imageType,
+            int scale,
+            String clientKey,
+            String inputPath,
+            int completedSteps,
+            String stepResult,
+            String status,
+            long timestamp
+    ) {
+        private JobRecord checkpoint(String inputPath, int completedSteps, String stepResult) {
+            return new JobRecord(CHECKPOINT, taskId, mode, imageType, scale, clientKey, inputPath,
+                    completedSteps, stepResult, null, System.currentTimeMillis());
+        }
+    }
+
+    private final JobJournalProperties properties;
+    private final ObjectMapper objectMapper;
+    private final Path journalFile;
+
+    // 未结束的任务及其最新快照
+    private final Map<String, JobRecord> pending = new ConcurrentHashMap<>();
+
+    // 以下字段由 this 同步
+    private FileChannel channel;
+    private int finishedSinceCompaction;
+
+    @Autowired
+    public JobJournal(JobJournalProperties properties, FileStorageUtil fileStorageUtil, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        String dir = properties.getDir();
+        Path journalDir = dir == null || dir.isBlank() ? fileStorageUtil.getUploadRoot().resolve(".journal") : Paths.get(dir);
+        this.journalFile = journalDir.resolve(FILE_NAME);
+    }
+
+    // 启动时调用一次：重放日志并重写为只含未结束任务的新日志，按提交顺序返回待恢复的任务
+    public synchronized List<JobRecord> recover() {
+        if (!properties.isEnabled()) {
+            return List.of();
+        }
+        Map<String, JobRecord> replayed = new LinkedHashMap<>();
+        try {
+            Files.createDirectories(journalFile.getParent());
+            if (Files.exists(journalFile)) {
+                try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        replay(line, replayed);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.error("读取任务日志失败: {}", journalFile, e);
+        }
+        pending.putAll(replayed);
+        compact();
+        return new ArrayList<>(replayed.values());
+    }
+
+    private void replay(String line, Map<String, JobRecord> replayed) {
+        if (line.isBlank()) {
+            return;
+        }
+        try {
+            JobRecord record = objectMapper.readValue(line, JobRecord.class);
+            if (FINISHED.equals(record.event())) {
+                replayed.remove(record.taskId());
+            } else {
+                replayed.put(record.taskId(), record);
+            }
+        } catch (IOException e) {
+            // 进程中断时最后一行可能不完整
+            logger.warn("跳过无法解析的任务日志记录: {}", e.getMessage());
+        }
+    }
+
+    public void submitted(String taskId, String mode, String imageType, int scale, String clientKey, String inputPath) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        JobRecord record = new JobRecord(SUBMITTED, taskId, mode, imageType, scale, clientKey, inputPath,
+                0, null, null, System.currentTimeMillis());
+        pending.put(taskId, record);
+        append(record);
+    }
+
+    // 推理前检查替换了输入文件，恢复时从新文件开始
+    public void inputPrepared(String taskId, String inputPath) {
+        update(taskId, record -> record.checkpoint(inputPath, record.completedSteps(), record.stepResult()));
+    }
+
+    public void stepCompleted(String taskId, int completedSteps, String stepResult) {
+        update(taskId, record -> record.checkpoint(record.inputPath(), completedSteps, stepResult));
+    }
+
+    // 任务结束（COMPLETED、FAILED 或 CANCELLED）；未记录的任务（同步请求、批处理）直接忽略
+    public void finished(String taskId, String status) {
+        if (pending.remove(taskId) == null) {
+            return;
+        }
+        append(new JobRecord(FINISHED, taskId, null, null, 0, null, null, 0, null, status,
+                System.currentTimeMillis()));
+        synchronized (this) {
+            if (++finishedSinceCompaction >= properties.getCompactThreshold()) {
+                compact();
+            }
+        }
+    }
+
+    private void update(String taskId, UnaryOperator<JobRecord> change) {
+        JobRecord updated = pending.computeIfPresent(taskId, (id, record) -> change.apply(record));
+        if (updated != null) {
+            append(updated);
+        }
+    }
+
+    private synchronized void append(JobRecord record) {
+        try {
+            FileChannel out = openChannel();
+            writeLine(out, record);
+            if (properties.isFsync()) {
+                out.force(false);
+            }
+        } catch (IOException e) {
+            logger.error("写入任务日志失败: {} {}", record.event(), record.taskId(), e);
+        }
+    }
+
+    // 未结束任务的快照写入临时文件后原子替换日志
+    private synchronized void compact() {
+        Path temp = journalFile.resolveSibling(FILE_NAME + ".tmp");
+        try {
+            closeChannel();
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (JobRecord record : pending.values()) {
+                    writeLine(out, record);
+                }
+                out.force(true);
+            }
+            Files.move(temp, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            finishedSinceCompaction = 0;
+        } catch (IOException e) {
+            logger.error("重写任务日志失败: {}", journalFile, e);
+        }
+    }
+
+    private FileChannel openChannel() throws IOException {
+        if (channel == null) {
+            Files.createDirectories(journalFile.getParent());
+            channel = FileChannel.open(journalFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    private void writeLine(FileChannel out, JobRecord record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((objectMapper.writeValueAsString(record) + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("关闭任务日志失败: {}", e.getMessage());
+        }
+        channel = null;
+    }
+}
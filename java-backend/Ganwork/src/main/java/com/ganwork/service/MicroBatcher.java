@@ -0,0 +1,122 @@
+package com.ganwork.service;
+
+import com.ganwork.exception.ApiCallException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+
+// 微批处理：同一键下的请求凑满 maxBatchSize 或等待 maxWait 后合并为一次调用，结果按提交顺序分发。
+// 批次中第一个请求在自己的线程上等待并发出批量调用，其余请求等待结果，不需要额外的线程
+public class MicroBatcher<K, I, O> {
+
+    // 等待结果时检查取消的间隔
+    private static final long CANCEL_POLL_MILLIS = 200;
+
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final BiFunction<K, List<I>, List<O>> batchCall;
+
+    // 仍在接收请求的批次
+    private final Map<K, Batch<I, O>> open = new HashMap<>();
+
+    public MicroBatcher(int maxBatchSize, Duration maxWait, BiFunction<K, List<I>, List<O>> batchCall) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxWaitNanos = maxWait.toNanos();
+        this.batchCall = batchCall;
+    }
+
+    public O submit(K key, I item) {
+        Batch<I, O> batch;
+        int index;
+        boolean leader;
+        synchronized (open) {
+            batch = open.get(key);
+            leader = batch == null;
+            if (leader) {
+                batch = new Batch<>();
+                open.put(key, batch);
+            }
+            index = batch.items.size();
+            batch.items.add(item);
+            if (batch.items.size() >= maxBatchSize) {
+                open.remove(key);
+                batch.full.countDown();
+            }
+        }
+
+        if (leader) {
+            try {
+                batch.full.await(maxWaitNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                // 其他请求在等待这一批，仍然发出调用
+                Thread.currentThread().interrupt();
+            }
+            List<I> items;
+            synchronized (open) {
+                open.remove(key, batch);
+                items = List.copyOf(batch.items);
+            }
+            flush(key, items, batch.result);
+        }
+        return await(batch.result, index);
+    }
+
+    // 批量调用由多个任务共享，不受发起方任务取消的影响
+    private void flush(K key, List<I> items, CompletableFuture<List<O>> result) {
+        CancellationToken token = CancellationToken.current();
+        if (token != null) {
+            token.unbind();
+        }
+        try {
+            List<O> outputs = batchCall.apply(key, items);
+            if (outputs == null || outputs.size() != items.size()) {
+                throw new ApiCallException("批量调用返回的结果数与请求数不一致: "
+                        + (outputs == null ? 0 : outputs.size()) + " != " + items.size());
+            }
+            result.complete(outputs);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        } finally {
+            if (token != null) {
+                token.bind();
+            }
+        }
+    }
+
+    private static <O> O await(CompletableFuture<List<O>> result, int index) {
+        CancellationToken token = CancellationToken.current();
+        while (true) {
+            if (token != null) {
+                token.throwIfCancelled();
+            }
+            try {
+                return result.get(CANCEL_POLL_MILLIS, TimeUnit.MILLISECONDS).get(index);
+            } catch (TimeoutException e) {
+                // 继续等待
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new ApiCallException("批量调用失败: " + e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ApiCallException("等待批量调用结果时被中断");
+            }
+        }
+    }
+
+    private static final class Batch<I, O> {
+        private final List<I> items = new ArrayList<>();
+        private final CountDownLatch full = new CountDownLatch(1);
+        private final CompletableFuture<List<O>> result = new CompletableFuture<>();
+    }
+}
@@ -0,0 +1,302 @@
+package com.ganwork.service;
+
+import com.ganwork.config.PreviewProperties;
+import com.ganwork.util.FileStorageUtil;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+// 结果预览：为最终结果生成缩略图（及可选的中等尺寸版本），与结果一起返回给前端先行展示，
+// 原图按需下载。文件名由结果文件名推导（<名称>_preview.jpg），存放与发布方式与结果相同。
+// 生成在结果返回后由 previewTaskExecutor 执行，同一结果同时只生成一次
+@Service
+public class PreviewGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(PreviewGenerator.class);
+
+    private static final int MAX_TRACKED_RESULTS = 10_000;
+
+    private final PreviewProperties properties;
+    private final FileStorageUtil fileStorageUtil;
+    private final ProcessingMetrics processingMetrics;
+    private final ThreadPoolTaskExecutor previewTaskExecutor;
+
+    // 正在生成预览的结果文件名
+    private final Map<String, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+
+    // 本节点已生成完预览的结果及其预览地址，/status 轮询与进度推送直接读取，不必每次查询存储后端
+    // （S3 时每个预览一次 HEAD）。按访问顺序淘汰最久未用的条目，未命中时回退到存储查询
+    private final Map<String, Map<String, String>> generated = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Map<String, String>> eldest) {
+                    return size() > MAX_TRACKED_RESULTS;
+                }
+            });
+
+    // 响应字段名、文件名后缀与长边像素
+    private record Rendition(String field, String suffix, int maxEdge) {
+    }
+
+    // 解码后的（可能已隔行隔列缩小的）结果图像与原图长边
+    private record Decoded(BufferedImage image, int longEdge) {
+    }
+
+    @Autowired
+    public PreviewGenerator(PreviewProperties properties, FileStorageUtil fileStorageUtil,
+                            ProcessingMetrics processingMetrics,
+                            @Qualifier("previewTaskExecutor") ThreadPoolTaskExecutor previewTaskExecutor) {
+        this.properties = properties;
+        this.fileStorageUtil = fileStorageUtil;
+        this.processingMetrics = processingMetrics;
+        this.previewTaskExecutor = previewTaskExecutor;
+    }
+
+    // 在后台线程生成预览，返回生成结束（成功或失败）时完成的 future；队列已满时跳过并立即完成
+    public CompletableFuture<Void> generateAsync(String resultUrl) {
+        if (!properties.isEnabled() || resultUrl == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String filename = resultUrl.substring(resultUrl.lastIndexOf('/') + 1);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletableFuture<Void> existing = pending.putIfAbsent(filename, future);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            previewTaskExecutor.execute(() -> {
+                try {
+                    generate(resultUrl);
+                } finally {
+                    finish(filename, future);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("预览图队列已满，跳过: {}", filename);
+            finish(filename, future);
+        }
+        return future;
+    }
+
+    // 结果的预览生成结束时完成；没有正在生成的预览时返回已完成的 future
+    public CompletableFuture<Void> whenReady(String resultUrl) {
+        if (resultUrl == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> future = pending.get(resultUrl.substring(resultUrl.lastIndexOf('/') + 1));
+        return future != null ? future : CompletableFuture.completedFuture(null);
+    }
+
+    // 先移出再完成，等待方收到完成通知时预览文件已经可见
+    private void finish(String filename, CompletableFuture<Void> future) {
+        pending.remove(filename, future);
+        future.complete(null);
+    }
+
+    // 在当前线程生成尚不存在的预览文件；失败只记录日志，不影响结果本身
+    public void generate(String resultUrl) {
+        if (!properties.isEnabled() || resultUrl == null) {
+            return;
+        }
+        String filename = resultUrl.substring(resultUrl.lastIndexOf('/') + 1);
+        Path source = fileStorageUtil.resolveProcessed(filename);
+        if (!Files.exists(source)) {
+            return;
+        }
+        // 命中结果缓存时预览图已随结果生成
+        List<Rendition> pending = renditions().stream()
+                .filter(rendition -> !Files.exists(fileStorageUtil.resolveProcessed(renditionName(filename, rendition))))
+                .toList();
+        if (pending.isEmpty()) {
+            remember(filename);
+            return;
+        }
+
+        Timer.Sample sample = processingMetrics.start();
+        boolean success = false;
+        try {
+            Decoded decoded = decode(source, pending);
+            if (decoded != null) {
+                for (Rendition rendition : pending) {
+                    // 结果本身不超过该尺寸时前端直接使用原图
+                    if (rendition.maxEdge() < decoded.longEdge()) {
+                        write(decoded.image(), filename, rendition);
+                    }
+                }
+            }
+            success = true;
+            remember(filename);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("生成预览图失败: {} - {}", filename, e.getMessage());
+        } finally {
+            processingMetrics.recordPreview(sample, success);
+        }
+    }
+
+    // 记录生成结束后本地已有的预览（结果本身较小时没有预览，记录为空）
+    private void remember(String filename) {
+        Map<String, String> urls = new LinkedHashMap<>();
+        for (Rendition rendition : renditions()) {
+            String name = renditionName(filename, rendition);
+            if (Files.exists(fileStorageUtil.resolveProcessed(name))) {
+                urls.put(rendition.field(), "/processed/" + name);
+            }
+        }
+        generated.put(filename, Collections.unmodifiableMap(urls));
+    }
+
+    // 同步响应使用：等待正在生成的预览，最多 response-wait-millis，超时后只返回已生成的预览地址
+    public Map<String, String> awaitRenditionUrls(String resultUrl) {
+        try {
+            whenReady(resultUrl).get(properties.getResponseWaitMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.debug("等待预览图超时: {}", resultUrl);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // 生成失败只记录在生成线程的日志中，这里按没有预览处理
+        }
+        return renditionUrls(resultUrl);
+    }
+
+    // 结果已有的预览地址，键为响应字段名（previewUrl、mediumUrl）。本节点生成过的结果直接返回记录，
+    // 正在生成时返回空；其余（其他节点的结果、重启前的结果）查询存储，全部预览都找到后记录下来
+    public Map<String, String> renditionUrls(String resultUrl) {
+        Map<String, String> urls = new LinkedHashMap<>();
+        if (!properties.isEnabled() || resultUrl == null) {
+            return urls;
+        }
+        String filename = resultUrl.substring(resultUrl.lastIndexOf('/') + 1);
+        Map<String, String> known = generated.get(filename);
+        if (known != null) {
+            urls.putAll(known);
+            return urls;
+        }
+        if (pending.containsKey(filename)) {
+            return urls;
+        }
+        List<Rendition> renditions = renditions();
+        for (Rendition rendition : renditions) {
+            String name = renditionName(filename, rendition);
+            if (fileStorageUtil.findProcessed(name) != null) {
+                urls.put(rendition.field(), "/processed/" + name);
+            }
+        }
+        if (urls.size() == renditions.size()) {
+            generated.put(filename, Collections.unmodifiableMap(urls));
+        }
+        return urls;
+    }
+
+    private List<Rendition> renditions() {
+        Rendition preview = new Rendition("previewUrl", "_preview.jpg", properties.getPreviewMaxEdge());
+        Rendition medium = new Rendition("mediumUrl", "_medium.jpg", properties.getMediumMaxEdge());
+        return Stream.of(preview, medium).filter(rendition -> rendition.maxEdge() > 0).toList();
+    }
+
+    private static String renditionName(String filename, Rendition rendition) {
+        int dot = filename.lastIndexOf('.');
+        return (dot > 0 ? filename.substring(0, dot) : filename) + rendition.suffix();
+    }
+
+    // 按整数步长隔行隔列解码，解码结果的长边不小于最大目标长边的 2 倍，缩放后仍然清晰；
+    // 结果本身不超过所有目标尺寸时不解码，返回 null
+    private static Decoded decode(Path source, List<Rendition> pending) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("无法识别的图像格式");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int longEdge = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int largest = pending.stream().mapToInt(Rendition::maxEdge).filter(edge -> edge < longEdge)
+                        .max().orElse(0);
+                if (largest == 0) {
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, longEdge / (2 * largest));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return new Decoded(reader.read(0, param), longEdge);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private void write(BufferedImage decoded, String filename, Rendition rendition) throws IOException {
+        double ratio = Math.min(1.0, (double) rendition.maxEdge() / Math.max(decoded.getWidth(), decoded.getHeight()));
+        BufferedImage resized = ImagePreflight.resize(decoded, Math.max(1, (int) (decoded.getWidth() * ratio)),
+                Math.max(1, (int) (decoded.getHeight() * ratio)));
+        BufferedImage rgb = flatten(resized);
+
+        String name = renditionName(filename, rendition);
+        Path target = fileStorageUtil.getProcessedPath(name);
+        Path temp = fileStorageUtil.tempPath(target);
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(temp.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(properties.getJpegQuality());
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(rgb, null, null), param);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        } finally {
+            writer.dispose();
+        }
+        fileStorageUtil.commit(temp, target);
+        fileStorageUtil.publishProcessed(name);
+    }
+
+    // JPEG 不支持透明通道，透明区域按白色背景合成
+    private static BufferedImage flatten(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return image;
+        }
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, image.getWidth(), image.getHeight());
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+}
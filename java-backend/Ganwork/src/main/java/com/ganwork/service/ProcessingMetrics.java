@@ -0,0 +1,185 @@
+package com.ganwork.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// 处理链路的 Micrometer 指标，经 /actuator/prometheus 暴露；线程池排队与活跃数由 Spring Boot 自动绑定（executor.*）
+@Component
+public class ProcessingMetrics {
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final MeterRegistry registry;
+
+    private final AtomicInteger activeTasks = new AtomicInteger();
+    private final AtomicInteger activeInferenceCalls = new AtomicInteger();
+
+    public ProcessingMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("ganwork.task.active", activeTasks, AtomicInteger::get)
+                .description("正在执行的处理任务数")
+                .register(registry);
+        Gauge.builder("ganwork.inference.active", activeInferenceCalls, AtomicInteger::get)
+                .description("正在进行的推理服务调用数")
+                .register(registry);
+    }
+
+    // 合并中的相同请求数
+    public void monitorInFlightRequests(Map<?, ?> inFlightRequests) {
+        registry.gaugeMapSize("ganwork.task.coalescing", Tags.empty(), inFlightRequests);
+    }
+
+    // 推理调度队列中等待的请求数
+    public void monitorSchedulerQueue(String modelId, Supplier<Number> waiting) {
+        Gauge.builder("ganwork.scheduler.waiting", waiting)
+                .description("推理调度队列中等待的请求数")
+                .tag("model", modelId)
+                .register(registry);
+    }
+
+    // 存储目录（uploads、processed）的文件数与总字节数
+    public void monitorStorage(String area, Supplier<Number> files, Supplier<Number> bytes) {
+        Gauge.builder("ganwork.storage.files", files)
+                .description("存储目录中的文件数")
+                .tag("area", area)
+                .register(registry);
+        Gauge.builder("ganwork.storage.bytes", bytes)
+                .description("存储目录中文件的总字节数")
+                .tag("area", area)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    // 推理服务副本的进行中请求数、可用状态（1 可用，0 不健康、已剔除或熔断）、
+    // 自适应并发上限与熔断状态（0 闭合，1 断开，2 半开）
+    public void monitorBackend(String origin, Supplier<Number> outstanding, Supplier<Number> available,
+                               Supplier<Number> concurrencyLimit, Supplier<Number> circuitState) {
+        Gauge.builder("ganwork.inference.backend.outstanding", outstanding)
+                .description("推理服务副本上进行中的请求数")
+                .tag("backend", origin)
+                .register(registry);
+        Gauge.builder("ganwork.inference.backend.available", available)
+                .description("推理服务副本是否可用")
+                .tag("backend", origin)
+                .register(registry);
+        Gauge.builder("ganwork.inference.backend.limit", concurrencyLimit)
+                .description("推理服务副本的自适应并发上限")
+                .tag("backend", origin)
+                .register(registry);
+        Gauge.builder("ganwork.inference.backend.circuit", circuitState)
+                .description("推理服务副本的熔断状态")
+                .tag("backend", origin)
+                .register(registry);
+    }
+
+    // 推理请求在调度队列中的等待时间
+    public void recordSchedulerWait(String modelId, String priority, long nanos) {
+        Timer.builder("ganwork.scheduler.wait")
+                .description("推理请求在调度队列中的等待时间")
+                .tags("model", modelId, "priority", priority)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // 一次批量推理调用合并的请求数
+    public void recordBatch(String modelId, int size) {
+        DistributionSummary.builder("ganwork.inference.batch.size")
+                .description("批量推理调用合并的请求数")
+                .tag("model", modelId)
+                .register(registry)
+                .record(size);
+    }
+
+    // 推理前检查对输入的处理：rejected、downscaled 或 normalized
+    public void recordPreflight(String outcome) {
+        registry.counter("ganwork.preflight", "outcome", outcome).increment();
+    }
+
+    // 存储清理删除的文件：reason 为 ttl 或 quota
+    public void recordStorageEviction(String area, String reason) {
+        registry.counter("ganwork.storage.evictions", "area", area, "reason", reason).increment();
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    public Timer.Sample startTask() {
+        activeTasks.incrementAndGet();
+        return Timer.start(registry);
+    }
+
+    // 任务端到端耗时（含缓存命中与多步流水线），按模式与结果分类
+    public void stopTask(Timer.Sample sample, String mode, boolean success) {
+        activeTasks.decrementAndGet();
+        sample.stop(timer("ganwork.task", "处理任务端到端耗时", success, "mode", mode));
+    }
+
+    public Timer.Sample startInference(String modelId, long bytesSent) {
+        activeInferenceCalls.incrementAndGet();
+        if (bytesSent > 0) {
+            bytes("ganwork.inference.bytes.sent", "上传到推理服务的字节数", modelId).record(bytesSent);
+        }
+        return Timer.start(registry);
+    }
+
+    // 单个推理步骤的调用耗时（请求发送到响应返回）
+    public void stopInference(Timer.Sample sample, String modelId, boolean success) {
+        activeInferenceCalls.decrementAndGet();
+        sample.stop(timer("ganwork.inference", "推理服务调用耗时", success, "model", modelId));
+    }
+
+    // 用户上传落盘
+    public void recordStore(Timer.Sample sample, long bytes, boolean success) {
+        sample.stop(timer("ganwork.upload.store", "上传文件落盘耗时", success));
+        if (success) {
+            DistributionSummary.builder("ganwork.upload.bytes")
+                    .description("用户上传的字节数")
+                    .baseUnit("bytes")
+                    .register(registry)
+                    .record(bytes);
+        }
+    }
+
+    // 为最终结果生成预览图
+    public void recordPreview(Timer.Sample sample, boolean success) {
+        sample.stop(timer("ganwork.preview", "预览图生成耗时", success));
+    }
+
+    // 从推理服务下载最终结果
+    public void recordDownload(Timer.Sample sample, String modelId, long bytes, boolean success) {
+        sample.stop(timer("ganwork.result.download", "结果下载耗时", success, "model", modelId));
+        if (success) {
+            bytes("ganwork.result.bytes", "从推理服务下载的字节数", modelId).record(bytes);
+        }
+    }
+
+    private Timer timer(String name, String description, boolean success, String... tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .tag("outcome", success ? "success" : "error")
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private DistributionSummary bytes(String name, String description, String modelId) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .baseUnit("bytes")
+                .tag("model", modelId)
+                .register(registry);
+    }
+}
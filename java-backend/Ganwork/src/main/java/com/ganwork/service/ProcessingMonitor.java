@@ -1,82 +1,313 @@
 package com.ganwork.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ganwork.config.TaskRegistryProperties;
+import com.ganwork.exception.TooManyTasksException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 @Service
 public class ProcessingMonitor {
 
+    private static final Logger logger = LoggerFactory.getLogger(ProcessingMonitor.class);
+
+    private static final String COMPLETED = "COMPLETED";
+    private static final String FAILED = "FAILED";
+    private static final String CANCELLED = "CANCELLED";
+    private static final String QUEUED = "QUEUED";
+
     private final Map<String, Process> runningProcesses = new ConcurrentHashMap<>();
 
-    // 添加状态跟踪映射
+    // 任务状态表：值为不可变快照，更新时整体替换
     private final Map<String, ProcessStatus> processStatusMap = new ConcurrentHashMap<>();
 
-    public static class ProcessStatus {
-        public String taskId;
-        public String displayName;
-        public String currentStatus;
-        public String resultUrl;
-        public String errorMessage;
+    // 任务的取消标记：登记时创建，保留到执行任务的线程结束（releaseTask），
+    // 排队中被取消的任务在线程开始执行时仍能取到同一个已取消的标记
+    private final Map<String, CancellationToken> cancellationTokens = new ConcurrentHashMap<>();
+
+    // 登记新任务时的容量检查与淘汰
+    private final Object registryLock = new Object();
+
+    private final TaskRegistryProperties properties;
+    private final ObjectMapper objectMapper;
+    private final Path spillFile;
+
+    // 任务ID = 启动时间（36进制）+ 自增序号（36进制），不含文件名
+    private final String idEpoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong idSequence = new AtomicLong();
+    private final AtomicLong lastSweep = new AtomicLong();
+
+    // 状态变化监听器（进度推送等），在更新状态的线程上同步调用
+    private final List<Consumer<ProcessStatus>> listeners = new CopyOnWriteArrayList<>();
+
+    public record ProcessStatus(
+            String taskId,
+            String displayName,
+            String currentStatus,
+            String resultUrl,
+            String errorMessage,
+            // 已完成步骤数 / 总步骤数
+            int completedSteps,
+            int totalSteps,
+            long updatedAt
+    ) {
+        public boolean isTerminal() {
+            return COMPLETED.equals(currentStatus) || FAILED.equals(currentStatus) || CANCELLED.equals(currentStatus);
+        }
+
+        public int progress() {
+            return totalSteps > 0 ? completedSteps * 100 / totalSteps : 0;
+        }
+
+        // 状态查询接口与进度推送共用的响应结构
+        public Map<String, Object> toResponse() {
+            Map<String, Object> response = new HashMap<>();
+            response.put("taskId", taskId);
+            response.put("status", currentStatus);
+            response.put("displayName", displayName);
+            response.put("completedSteps", completedSteps);
+            response.put("totalSteps", totalSteps);
+            response.put("progress", progress());
+            response.put("resultUrl", resultUrl);
+            response.put("errorMessage", errorMessage);
+            return response;
+        }
+
+        private ProcessStatus withStatus(String status) {
+            return new ProcessStatus(taskId, displayName, status, resultUrl, errorMessage,
+                    completedSteps, totalSteps, System.currentTimeMillis());
+        }
+    }
+
+    @Autowired
+    public ProcessingMonitor(TaskRegistryProperties properties, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        String spill = properties.getSpillFile();
+        this.spillFile = spill == null || spill.isBlank() ? null : Paths.get(spill);
+    }
+
+    public void addListener(Consumer<ProcessStatus> listener) {
+        listeners.add(listener);
+    }
+
+    public String newTaskId(String prefix) {
+        return prefix + "_" + idEpoch + "-" + Long.toString(idSequence.incrementAndGet(), 36);
     }
 
     public void trackProcess(String taskId, Process process) {
         runningProcesses.put(taskId, process);
     }
 
+    // 取消任务：终止外部进程，标记取消并中止进行中的推理请求；尚未开始的任务直接标记为已取消
     public void stopProcess(String taskId) {
-        Process process = runningProcesses.get(taskId);
+        Process process = runningProcesses.remove(taskId);
         if (process != null && process.isAlive()) {
             process.destroy();
-            runningProcesses.remove(taskId);
         }
+        CancellationToken token = cancellationTokens.get(taskId);
+        if (token != null) {
+            token.cancel();
+        }
+        // 只有仍在排队的任务直接结束，判断与更新在同一次原子操作中，不会覆盖已开始执行的任务
+        ProcessStatus[] cancelled = new ProcessStatus[1];
+        processStatusMap.computeIfPresent(taskId, (id, status) -> {
+            if (!QUEUED.equals(status.currentStatus())) {
+                return status;
+            }
+            cancelled[0] = status.withStatus(CANCELLED);
+            return cancelled[0];
+        });
+        spill(cancelled[0]);
+        notifyListeners(cancelled[0]);
+    }
+
+    public boolean isCancelled(String taskId) {
+        CancellationToken token = cancellationTokens.get(taskId);
+        ProcessStatus status = processStatusMap.get(taskId);
+        return (token != null && token.isCancelled())
+                || (status != null && CANCELLED.equals(status.currentStatus()));
+    }
+
+    // 任务的取消标记；任务未登记时返回一个不会被取消的标记
+    public CancellationToken cancellationToken(String taskId) {
+        CancellationToken token = cancellationTokens.get(taskId);
+        return token != null ? token : new CancellationToken(taskId);
+    }
+
+    // 执行任务的线程结束时调用，释放取消标记；提交失败、没有线程执行的任务同样需要调用
+    public void releaseTask(String taskId) {
+        cancellationTokens.remove(taskId);
     }
 
     public String getProcessStatus(String taskId) {
         Process process = runningProcesses.get(taskId);
         if (process == null) {
-            return "NOT_FOUND";
+            // API 任务不会注册 Process，回退到状态表
+            ProcessStatus status = processStatusMap.get(taskId);
+            return status != null ? status.currentStatus() : "NOT_FOUND";
         }
         if (process.isAlive()) {
             return "RUNNING";
         }
-        return "COMPLETED";
+        runningProcesses.remove(taskId);
+        return COMPLETED;
+    }
+
+    // 任务已提交到线程池，尚未开始执行；状态表已满时抛出 TooManyTasksException
+    public void queueProcess(String taskId, String displayName) {
+        register(new ProcessStatus(taskId, displayName, QUEUED, null, null, 0, 0, System.currentTimeMillis()));
     }
 
     // 添加缺失的方法
     public void startProcess(String taskId, String displayName) {
-        ProcessStatus status = new ProcessStatus();
-        status.taskId = taskId;
-        status.displayName = displayName;
-        status.currentStatus = "STARTED";
-        processStatusMap.put(taskId, status);
+        if (processStatusMap.containsKey(taskId)) {
+            notifyListeners(updateUnfinished(taskId, status -> status.withStatus("STARTED")));
+        } else {
+            register(new ProcessStatus(taskId, displayName, "STARTED", null, null, 0, 0, System.currentTimeMillis()));
+        }
     }
 
     public void updateProcessStatus(String taskId, String statusMessage) {
-        ProcessStatus status = processStatusMap.get(taskId);
-        if (status != null) {
-            status.currentStatus = statusMessage;
-        }
+        notifyListeners(updateUnfinished(taskId, status -> status.withStatus(statusMessage)));
+    }
+
+    // 更新步骤进度
+    public void updateProgress(String taskId, int completedSteps, int totalSteps, String statusMessage) {
+        notifyListeners(updateUnfinished(taskId, status -> new ProcessStatus(
+                taskId, status.displayName(), statusMessage, status.resultUrl(), status.errorMessage(),
+                completedSteps, totalSteps, System.currentTimeMillis())));
     }
 
     public void completeProcess(String taskId, String resultUrl) {
-        ProcessStatus status = processStatusMap.get(taskId);
-        if (status != null) {
-            status.resultUrl = resultUrl;
-            status.currentStatus = "COMPLETED";
-        }
+        ProcessStatus finished = updateUnfinished(taskId, status -> new ProcessStatus(
+                taskId, status.displayName(), COMPLETED, resultUrl, status.errorMessage(),
+                status.totalSteps(), status.totalSteps(), System.currentTimeMillis()));
+        spill(finished);
+        notifyListeners(finished);
     }
 
     public void failProcess(String taskId, String errorMessage) {
-        ProcessStatus status = processStatusMap.get(taskId);
-        if (status != null) {
-            status.errorMessage = errorMessage;
-            status.currentStatus = "FAILED";
-        }
+        ProcessStatus finished = updateUnfinished(taskId, status -> new ProcessStatus(
+                taskId, status.displayName(), FAILED, status.resultUrl(), errorMessage,
+                status.completedSteps(), status.totalSteps(), System.currentTimeMillis()));
+        spill(finished);
+        notifyListeners(finished);
+    }
+
+    public void cancelProcess(String taskId) {
+        ProcessStatus finished = updateUnfinished(taskId, status -> status.withStatus(CANCELLED));
+        spill(finished);
+        notifyListeners(finished);
     }
 
     public ProcessStatus getProcessStatusObject(String taskId) {
         return processStatusMap.get(taskId);
     }
-}
\ No newline at end of file
+
+    public int size() {
+        return processStatusMap.size();
+    }
+
+    // 已结束的任务状态不再改变（如取消后迟到的进度更新）；返回更新后的状态，未更新时返回 null
+    private ProcessStatus updateUnfinished(String taskId, UnaryOperator<ProcessStatus> update) {
+        ProcessStatus[] updated = new ProcessStatus[1];
+        processStatusMap.computeIfPresent(taskId, (id, status) -> {
+            if (status.isTerminal()) {
+                return status;
+            }
+            updated[0] = update.apply(status);
+            return updated[0];
+        });
+        return updated[0];
+    }
+
+    private void register(ProcessStatus status) {
+        synchronized (registryLock) {
+            sweepIfDue();
+            if (!processStatusMap.containsKey(status.taskId())) {
+                int overflow = processStatusMap.size() + 1 - properties.getMaxEntries();
+                if (overflow > 0 && evictFinished(overflow) < overflow) {
+                    throw new TooManyTasksException("未结束的任务数已达上限，请稍后重试",
+                            (int) properties.getSweepIntervalSeconds());
+                }
+            }
+            processStatusMap.put(status.taskId(), status);
+            cancellationTokens.putIfAbsent(status.taskId(), new CancellationToken(status.taskId()));
+        }
+        notifyListeners(status);
+    }
+
+    private void notifyListeners(ProcessStatus status) {
+        if (status == null) {
+            return;
+        }
+        for (Consumer<ProcessStatus> listener : listeners) {
+            try {
+                listener.accept(status);
+            } catch (RuntimeException e) {
+                logger.warn("任务状态监听器执行失败: {} - {}", status.taskId(), e.getMessage());
+            }
+        }
+    }
+
+    // 定期清理过期的已结束任务
+    private void sweepIfDue() {
+        long now = System.currentTimeMillis();
+        long last = lastSweep.get();
+        if (now - last >= properties.getSweepIntervalSeconds() * 1000 && lastSweep.compareAndSet(last, now)) {
+            long expireBefore = now - properties.getTtlMinutes() * 60_000;
+            processStatusMap.values().removeIf(status -> status.isTerminal() && status.updatedAt() < expireBefore);
+            runningProcesses.values().removeIf(process -> !process.isAlive());
+        }
+    }
+
+    // 按结束时间从早到晚淘汰最多 count 条已结束任务，返回实际淘汰数；未结束的任务始终保留，仍可查询与取消
+    private int evictFinished(int count) {
+        List<String> evicted = processStatusMap.values().stream()
+                .filter(ProcessStatus::isTerminal)
+                .sorted(Comparator.comparingLong(ProcessStatus::updatedAt))
+                .limit(count)
+                .map(ProcessStatus::taskId)
+                .toList();
+        evicted.forEach(processStatusMap::remove);
+        if (!evicted.isEmpty()) {
+            logger.warn("任务状态表达到上限 {}，已淘汰 {} 条已结束任务", properties.getMaxEntries(), evicted.size());
+        }
+        return evicted.size();
+    }
+
+    // 已结束任务追加写入本地文件（每行一条 JSON）
+    private void spill(ProcessStatus status) {
+        if (spillFile == null || status == null) {
+            return;
+        }
+        try {
+            String line = objectMapper.writeValueAsString(status) + System.lineSeparator();
+            synchronized (this) {
+                Files.writeString(spillFile, line, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+        } catch (IOException e) {
+            logger.warn("写入任务记录失败: {} - {}", status.taskId(), e.getMessage());
+        }
+    }
+}
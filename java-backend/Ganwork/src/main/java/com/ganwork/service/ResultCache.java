@@ -0,0 +1,140 @@
+package com.ganwork.service;
+
+import com.ganwork.config.ResultCacheProperties;
+import com.ganwork.exception.ModelType;
+import com.ganwork.util.FileStorageUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+// 处理结果缓存：以输入内容哈希 + 内部模型流水线 + 参数为键，结果文件保存在 processed 目录（由 FileStorageUtil 分片）。
+// 淘汰条目只移除映射，结果文件已返回给客户端并可能被任务状态引用，其生命周期由 StorageReaper 管理
+@Service
+public class ResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResultCache.class);
+
+    private final ResultCacheProperties properties;
+    private final FileStorageUtil fileStorageUtil;
+
+    // 按访问顺序排列，队首为最久未使用的条目
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private record Entry(String resultUrl, Path file, long size, long createdAt) {
+    }
+
+    @Autowired
+    public ResultCache(ResultCacheProperties properties, FileStorageUtil fileStorageUtil) {
+        this.properties = properties;
+        this.fileStorageUtil = fileStorageUtil;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    // 计算缓存键：输入文件 SHA-256 + 内部模型ID序列 + 图像类型 + 倍率
+    public String key(String inputPath, List<ModelType.InternalModel> pipeline, String imageType, int scale) {
+        String models = pipeline.stream()
+                .map(ModelType.InternalModel::getModelId)
+                .collect(Collectors.joining(">"));
+        return fileStorageUtil.sha256(Paths.get(inputPath)) + "|" + models + "|" + imageType + "|" + scale;
+    }
+
+    // 命中时返回前端可访问的 /processed/... 地址，过期或文件已被清理时视为未命中
+    public synchronized String get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && (isExpired(entry) || !Files.exists(entry.file()))) {
+            remove(key, entry);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.resultUrl();
+    }
+
+    public synchronized void put(String key, String resultUrl) {
+        if (resultUrl == null || !resultUrl.startsWith("/processed/")) {
+            return;
+        }
+        Path file = fileStorageUtil.resolveProcessed(resultUrl.substring(resultUrl.lastIndexOf('/') + 1));
+        long size;
+        try {
+            size = Files.size(file);
+        } catch (IOException e) {
+            logger.warn("结果文件不存在，跳过缓存: {}", file);
+            return;
+        }
+
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            totalBytes -= previous.size();
+        }
+        entries.put(key, new Entry(resultUrl, file, size, System.currentTimeMillis()));
+        totalBytes += size;
+        evict();
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long lookups = hitCount + missCount;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", properties.isEnabled());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", lookups > 0 ? (double) hitCount / lookups : 0.0);
+        stats.put("evictions", evictions.get());
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("totalBytes", totalBytes);
+        }
+        return stats;
+    }
+
+    // 先清理过期条目，再按最久未使用顺序淘汰，直到满足条目数与总大小上限；只移除映射，不删除结果文件
+    private void evict() {
+        long maxBytes = properties.getMaxSizeMb() * 1024 * 1024;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> next = iterator.next();
+            boolean overLimit = entries.size() > properties.getMaxEntries() || totalBytes > maxBytes;
+            if (!overLimit && !isExpired(next.getValue())) {
+                continue;
+            }
+            iterator.remove();
+            totalBytes -= next.getValue().size();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        entries.remove(key);
+        totalBytes -= entry.size();
+        evictions.incrementAndGet();
+    }
+
+    private boolean isExpired(Entry entry) {
+        return System.currentTimeMillis() - entry.createdAt() > properties.getTtlMinutes() * 60_000;
+    }
+}
@@ -0,0 +1,118 @@
+package com.ganwork.service;
+
+import com.ganwork.config.StorageProperties;
+import com.ganwork.util.FileStorageUtil;
+import com.ganwork.util.StorageIndex;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// 存储清理：启动时在后台建立上传与结果目录的索引，之后按间隔删除超过保留时间的文件，
+// 目录超过容量上限时按修改时间从旧到新删除；定期全量扫描校正索引
+@Service
+public class StorageReaper {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageReaper.class);
+
+    private final StorageProperties properties;
+    private final FileStorageUtil fileStorageUtil;
+    private final ProcessingMetrics processingMetrics;
+
+    private ScheduledExecutorService reaper;
+
+    @Autowired
+    public StorageReaper(StorageProperties properties, FileStorageUtil fileStorageUtil,
+                         ProcessingMetrics processingMetrics) {
+        this.properties = properties;
+        this.fileStorageUtil = fileStorageUtil;
+        this.processingMetrics = processingMetrics;
+        processingMetrics.monitorStorage("uploads", fileStorageUtil.getUploadIndex()::size,
+                fileStorageUtil.getUploadIndex()::totalBytes);
+        processingMetrics.monitorStorage("processed", fileStorageUtil.getProcessedIndex()::size,
+                fileStorageUtil.getProcessedIndex()::totalBytes);
+    }
+
+    @PostConstruct
+    public void start() {
+        reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "storage-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 单线程执行，清理总是在首次索引完成之后
+        reaper.execute(this::rescan);
+        if (properties.getReaperIntervalSeconds() > 0) {
+            reaper.scheduleWithFixedDelay(this::sweep, properties.getReaperIntervalSeconds(),
+                    properties.getReaperIntervalSeconds(), TimeUnit.SECONDS);
+        }
+        if (properties.getRescanIntervalMinutes() > 0) {
+            reaper.scheduleWithFixedDelay(this::rescan, properties.getRescanIntervalMinutes(),
+                    properties.getRescanIntervalMinutes(), TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
+    }
+
+    private void rescan() {
+        try {
+            fileStorageUtil.rebuildIndexes(TimeUnit.MINUTES.toMillis(properties.getTempFileMaxAgeMinutes()));
+        } catch (RuntimeException e) {
+            logger.warn("存储目录扫描失败: {}", e.getMessage());
+        }
+    }
+
+    // 定时任务抛出异常会停止调度，这里只记录
+    void sweep() {
+        try {
+            sweep("uploads", fileStorageUtil.getUploadIndex(), properties.getUploadTtlHours(),
+                    properties.getUploadQuotaMb());
+            sweep("processed", fileStorageUtil.getProcessedIndex(), properties.getProcessedTtlHours(),
+                    properties.getProcessedQuotaMb());
+        } catch (RuntimeException e) {
+            logger.warn("存储清理失败: {}", e.getMessage());
+        }
+    }
+
+    private void sweep(String area, StorageIndex index, long ttlHours, long quotaMb) {
+        int expired = 0;
+        if (ttlHours > 0) {
+            long expireBefore = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(ttlHours);
+            for (Path file : index.modifiedBefore(expireBefore)) {
+                fileStorageUtil.delete(file);
+                processingMetrics.recordStorageEviction(area, "ttl");
+                expired++;
+            }
+        }
+
+        int evicted = 0;
+        long quotaBytes = quotaMb * 1024 * 1024;
+        if (quotaMb > 0 && index.totalBytes() > quotaBytes) {
+            long targetBytes = quotaBytes * properties.getEvictionTargetPercent() / 100;
+            for (Path file : index.oldestFirst()) {
+                if (index.totalBytes() <= targetBytes) {
+                    break;
+                }
+                fileStorageUtil.delete(file);
+                processingMetrics.recordStorageEviction(area, "quota");
+                evicted++;
+            }
+        }
+        if (expired > 0 || evicted > 0) {
+            logger.info("存储清理 {}: 过期 {} 个, 超出容量 {} 个, 剩余 {} 字节", area, expired, evicted,
+                    index.totalBytes());
+        }
+    }
+}
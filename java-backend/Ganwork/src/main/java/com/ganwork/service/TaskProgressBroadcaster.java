@@ -0,0 +1,126 @@
+package com.ganwork.service;
+
+import com.ganwork.config.TaskRegistryProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// 任务进度推送：订阅方持有 SseEmitter（Servlet 异步请求，不占用线程），状态变化时由更新状态的线程直接推送
+@Service
+public class TaskProgressBroadcaster {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskProgressBroadcaster.class);
+
+    private static final String EVENT_NAME = "progress";
+
+    private final ProcessingMonitor processingMonitor;
+    private final TaskRegistryProperties properties;
+    private final PreviewGenerator previewGenerator;
+
+    private final Map<String, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TaskProgressBroadcaster(ProcessingMonitor processingMonitor, TaskRegistryProperties properties,
+                                   PreviewGenerator previewGenerator) {
+        this.processingMonitor = processingMonitor;
+        this.properties = properties;
+        this.previewGenerator = previewGenerator;
+        processingMonitor.addListener(this::publish);
+    }
+
+    // 订阅后立即推送当前状态；任务已结束或不存在时推送一次后关闭
+    public SseEmitter subscribe(String taskId) {
+        SseEmitter emitter = new SseEmitter(properties.getSseTimeoutSeconds() * 1000);
+        ProcessingMonitor.ProcessStatus current = processingMonitor.getProcessStatusObject(taskId);
+        if (current == null) {
+            send(emitter, Map.of("taskId", taskId, "status", "NOT_FOUND"));
+            emitter.complete();
+            return emitter;
+        }
+
+        List<SseEmitter> emitters = subscribers.computeIfAbsent(taskId, id -> new CopyOnWriteArrayList<>());
+        emitters.add(emitter);
+        Runnable remove = () -> unsubscribe(taskId, emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        // 订阅期间任务可能已结束，重新读取最新状态
+        ProcessingMonitor.ProcessStatus latest = processingMonitor.getProcessStatusObject(taskId);
+        if (latest == null) {
+            latest = current;
+        }
+        if (latest.isTerminal()) {
+            unsubscribe(taskId, emitter);
+            sendFinal(List.of(emitter), latest);
+        } else if (!send(emitter, payload(latest))) {
+            unsubscribe(taskId, emitter);
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    private void publish(ProcessingMonitor.ProcessStatus status) {
+        List<SseEmitter> emitters = subscribers.get(status.taskId());
+        if (emitters == null) {
+            return;
+        }
+        if (status.isTerminal()) {
+            List<SseEmitter> last = List.copyOf(emitters);
+            last.forEach(emitter -> unsubscribe(status.taskId(), emitter));
+            sendFinal(last, status);
+            return;
+        }
+        Map<String, Object> payload = payload(status);
+        for (SseEmitter emitter : emitters) {
+            if (!send(emitter, payload)) {
+                unsubscribe(status.taskId(), emitter);
+                emitter.complete();
+            }
+        }
+    }
+
+    // 结束事件等预览图生成结束后再发送（由生成预览的线程发送，不阻塞任务线程），使其附带预览地址
+    private void sendFinal(List<SseEmitter> emitters, ProcessingMonitor.ProcessStatus status) {
+        previewGenerator.whenReady(status.resultUrl()).whenComplete((ignored, e) -> {
+            Map<String, Object> payload = payload(status);
+            for (SseEmitter emitter : emitters) {
+                send(emitter, payload);
+                emitter.complete();
+            }
+        });
+    }
+
+    // 完成事件附带预览图地址，前端收到后即可先展示预览
+    private Map<String, Object> payload(ProcessingMonitor.ProcessStatus status) {
+        Map<String, Object> payload = status.toResponse();
+        payload.putAll(previewGenerator.renditionUrls(status.resultUrl()));
+        return payload;
+    }
+
+    private boolean send(SseEmitter emitter, Map<String, Object> payload) {
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).data(payload));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // 客户端已断开
+            logger.debug("进度推送失败: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void unsubscribe(String taskId, SseEmitter emitter) {
+        subscribers.computeIfPresent(taskId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
@@ -0,0 +1,451 @@
+package com.ganwork.service;
+
+import com.ganwork.config.TilingProperties;
+import com.ganwork.exception.ModelType;
+import com.ganwork.util.FileStorageUtil;
+import com.ganwork.util.StreamingPngReader;
+import com.ganwork.util.StreamingPngWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+// 大图分块处理：顺序读取输入的行带（只解码一遍，保留与下一行带重叠的行），拆成重叠分块并发送往推理服务，
+// 结果在重叠区线性过渡后逐行写出 PNG（带透明通道的输入输出 RGBA）。
+// 拼接的内存占用取决于输出宽度 × 一个行带的高度，与图像高度无关；PNG 输入的解码同样如此
+
+@Service
+public class TiledImageProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(TiledImageProcessor.class);
+
+    private final TilingProperties properties;
+    private final FileStorageUtil fileStorageUtil;
+    private final ProcessingMonitor processingMonitor;
+    private final ThreadPoolTaskExecutor tileTaskExecutor;
+
+    @Autowired
+    public TiledImageProcessor(TilingProperties properties, FileStorageUtil fileStorageUtil,
+                               ProcessingMonitor processingMonitor,
+                               @Qualifier("tileTaskExecutor") ThreadPoolTaskExecutor tileTaskExecutor) {
+        this.properties = properties;
+        this.fileStorageUtil = fileStorageUtil;
+        this.processingMonitor = processingMonitor;
+        this.tileTaskExecutor = tileTaskExecutor;
+    }
+
+    // 流水线所有模型都可分块，且图像像素数超过阈值
+    public boolean shouldTile(String inputPath, List<ModelType.InternalModel> pipeline) {
+        if (!isTileable(pipeline)) {
+            return false;
+        }
+        Dimension size = readSize(Paths.get(inputPath));
+        return size != null && shouldTile((long) size.width * size.height, pipeline);
+    }
+
+    // 已知像素数时的判断，推理前检查据此决定使用哪个像素上限
+    public boolean shouldTile(long pixels, List<ModelType.InternalModel> pipeline) {
+        return isTileable(pipeline) && pixels > properties.getThresholdPixels();
+    }
+
+    public long getMaxInputPixels() {
+        return properties.getMaxInputPixels();
+    }
+
+    private boolean isTileable(List<ModelType.InternalModel> pipeline) {
+        return properties.isEnabled() && pipeline.stream().allMatch(ModelType.InternalModel::isTileable);
+    }
+
+    // tileRunner 对单个分块文件执行完整流水线，返回本地结果文件；返回拼接后结果的前端访问地址
+    public String process(String inputPath, int scale, String taskId, CancellationToken cancellation,
+                          Function<Path, Path> tileRunner) {
+        int tileSize = properties.getTileSize();
+        int overlap = properties.getOverlap();
+        if (overlap < 0 || 2 * overlap >= tileSize) {
+            throw new IllegalStateException("分块重叠宽度必须小于分块边长的一半: " + overlap + "/" + tileSize);
+        }
+        String outputName = "tiled_" + taskId + ".png";
+        Path output = fileStorageUtil.getProcessedPath(outputName);
+        // 先写临时文件，拼接完成后原子重命名，下载方不会读到写了一半的结果
+        Path partial = fileStorageUtil.tempPath(output);
+        Path workDir = null;
+        try (RowSource source = openRows(Paths.get(inputPath))) {
+            workDir = Files.createTempDirectory("tiles-");
+            TileGrid grid = new TileGrid(source.width(), source.height(), tileSize, overlap, scale);
+            logger.info("分块处理: {} ({}x{} -> {}x{}, {} 个分块)", taskId, grid.width(), grid.height(),
+                    grid.outWidth(), grid.outHeight(), grid.rows() * grid.cols());
+            try (OutputStream out = Files.newOutputStream(partial);
+                 StreamingPngWriter png = new StreamingPngWriter(out, grid.outWidth(), grid.outHeight(),
+                         source.hasAlpha())) {
+                stitch(new BandReader(source, grid), grid, workDir, png, taskId, cancellation, tileRunner);
+            }
+            fileStorageUtil.commit(partial, output);
+        } catch (IOException e) {
+            deleteQuietly(partial);
+            throw new RuntimeException("分块处理失败: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            deleteQuietly(partial);
+            throw e;
+        } finally {
+            deleteRecursively(workDir);
+        }
+        return "/processed/" + outputName;
+    }
+
+    private void stitch(BandReader bands, TileGrid grid, Path workDir, StreamingPngWriter png, String taskId,
+                        CancellationToken cancellation, Function<Path, Path> tileRunner) throws IOException {
+        int total = grid.rows() * grid.cols();
+        int done = 0;
+        int[] carry = new int[0];
+        // 提前分发下一个行带，避免行带之间推理服务空闲
+        List<CompletableFuture<Path>> current = dispatchBand(bands, grid, 0, workDir, cancellation, tileRunner);
+        for (int r = 0; r < grid.rows(); r++) {
+            List<CompletableFuture<Path>> next = null;
+            try {
+                next = r + 1 < grid.rows()
+                        ? dispatchBand(bands, grid, r + 1, workDir, cancellation, tileRunner) : null;
+
+                int bandStart = grid.expandedStart(r, grid.height()) * grid.scale();
+                int bandEnd = grid.expandedEnd(r, grid.height()) * grid.scale();
+                int[] band = new int[grid.outWidth() * (bandEnd - bandStart)];
+                // 上一行带尚未输出的重叠行
+                System.arraycopy(carry, 0, band, 0, carry.length);
+
+                for (int c = 0; c < grid.cols(); c++) {
+                    cancellation.throwIfCancelled();
+                    Path result = join(current.get(c));
+                    try {
+                        blend(band, bandStart, grid, r, c, result);
+                    } finally {
+                        deleteQuietly(result);
+                    }
+                    done++;
+                    processingMonitor.updateProgress(taskId, done, total, "正在处理分块: " + done + "/" + total);
+                }
+
+                // 下一行带开始之前的行不再被覆盖，可以写出
+                int finalEnd = r + 1 < grid.rows() ? grid.expandedStart(r + 1, grid.height()) * grid.scale() : bandEnd;
+                for (int y = bandStart; y < finalEnd; y++) {
+                    png.writeRow(band, (y - bandStart) * grid.outWidth());
+                }
+                carry = Arrays.copyOfRange(band, (finalEnd - bandStart) * grid.outWidth(), band.length);
+                current = next;
+            } catch (RuntimeException | IOException e) {
+                abandon(current);
+                abandon(next);
+                throw e;
+            }
+        }
+    }
+
+    // 取出一个行带（整行宽度，含上下重叠），切出分块写入临时文件并提交处理
+    private List<CompletableFuture<Path>> dispatchBand(BandReader bands, TileGrid grid, int r, Path workDir,
+                                                       CancellationToken cancellation,
+                                                       Function<Path, Path> tileRunner) throws IOException {
+        int y0 = grid.expandedStart(r, grid.height());
+        int y1 = grid.expandedEnd(r, grid.height());
+        int[] strip = bands.read(y0, y1);
+        int imageType = bands.source.hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        List<CompletableFuture<Path>> futures = new ArrayList<>(grid.cols());
+        for (int c = 0; c < grid.cols(); c++) {
+            int x0 = grid.expandedStart(c, grid.width());
+            int x1 = grid.expandedEnd(c, grid.width());
+            BufferedImage tile = new BufferedImage(x1 - x0, y1 - y0, imageType);
+            tile.setRGB(0, 0, x1 - x0, y1 - y0, strip, x0, grid.width());
+            // 文件名在推理服务与本地处理目录中都必须唯一
+            Path tileFile = workDir.resolve("tile_" + UUID.randomUUID() + ".png");
+            ImageIO.write(tile, "png", tileFile.toFile());
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> runTile(tileFile, cancellation, tileRunner), tileTaskExecutor));
+        }
+        return futures;
+    }
+
+    private Path runTile(Path tileFile, CancellationToken cancellation, Function<Path, Path> tileRunner) {
+        cancellation.bind();
+        try {
+            cancellation.throwIfCancelled();
+            return tileRunner.apply(tileFile);
+        } finally {
+            cancellation.unbind();
+            deleteQuietly(tileFile);
+        }
+    }
+
+    // 将分块结果写入行带缓冲；与左侧分块、上一行带的重叠区按位置线性过渡
+    private void blend(int[] band, int bandStart, TileGrid grid, int r, int c, Path result) throws IOException {
+        BufferedImage image = ImageIO.read(result.toFile());
+        int s = grid.scale();
+        int outX0 = grid.expandedStart(c, grid.width()) * s;
+        int outY0 = grid.expandedStart(r, grid.height()) * s;
+        int tileWidth = (grid.expandedEnd(c, grid.width()) - grid.expandedStart(c, grid.width())) * s;
+        int tileHeight = (grid.expandedEnd(r, grid.height()) - grid.expandedStart(r, grid.height())) * s;
+        if (image == null || image.getWidth() != tileWidth || image.getHeight() != tileHeight) {
+            throw new IllegalStateException("分块结果尺寸不符: 期望 " + tileWidth + "x" + tileHeight
+                    + (image != null ? ", 实际 " + image.getWidth() + "x" + image.getHeight() : ", 无法解码"));
+        }
+        // 过渡区：相邻分块的重叠部分，宽 2 * overlap（输出像素）
+        double ramp = 2.0 * grid.overlap() * s;
+        int seamX = (c * grid.tileSize() - grid.overlap()) * s;
+        int seamY = (r * grid.tileSize() - grid.overlap()) * s;
+        int seamXEnd = (c * grid.tileSize() + grid.overlap()) * s;
+        int seamYEnd = (r * grid.tileSize() + grid.overlap()) * s;
+
+        int[] pixels = new int[tileWidth];
+        for (int ty = 0; ty < tileHeight; ty++) {
+            int y = outY0 + ty;
+            double wy = r > 0 && y < seamYEnd ? (y - seamY + 0.5) / ramp : 1;
+            image.getRGB(0, ty, tileWidth, 1, pixels, 0, tileWidth);
+            int rowOffset = (y - bandStart) * grid.outWidth();
+            for (int tx = 0; tx < tileWidth; tx++) {
+                int x = outX0 + tx;
+                double wx = c > 0 && x < seamXEnd ? (x - seamX + 0.5) / ramp : 1;
+                double t = Math.min(wx, wy);
+                int index = rowOffset + x;
+                band[index] = t >= 1 ? pixels[tx] : mix(band[index], pixels[tx], t);
+            }
+        }
+    }
+
+    private static int mix(int previous, int next, double t) {
+        int mixed = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            double channel = ((previous >>> shift) & 0xff) * (1 - t) + ((next >>> shift) & 0xff) * t;
+            mixed |= (int) Math.round(channel) << shift;
+        }
+        return mixed;
+    }
+
+    private static Path join(CompletableFuture<Path> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // 失败时取消尚未开始的分块，已在执行的分块完成后删除其结果
+    private void abandon(List<CompletableFuture<Path>> futures) {
+        if (futures == null) {
+            return;
+        }
+        for (CompletableFuture<Path> future : futures) {
+            future.cancel(false);
+            future.thenAccept(this::deleteQuietly);
+        }
+    }
+
+    private static ImageReader firstReader(ImageInputStream in) {
+        if (in == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        return readers.hasNext() ? readers.next() : null;
+    }
+
+    // 只读取图像头部获取尺寸，不解码像素
+    private static Dimension readSize(Path file) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            ImageReader reader = firstReader(in);
+            if (reader == null) {
+                return null;
+            }
+            try {
+                reader.setInput(in, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            logger.warn("读取图像尺寸失败: {} - {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    // 非隔行 PNG 逐行解码，只保留当前行带；其他格式（JPEG 等 ImageIO 解码器无法从中间行继续解码）整幅解码一次。
+    // 两种方式都只顺序解码一遍，耗时与图像高度成正比
+    private static RowSource openRows(Path file) throws IOException {
+        if (isPng(file)) {
+            StreamingPngReader png = new StreamingPngReader(Files.newInputStream(file));
+            if (!png.isInterlaced()) {
+                return new PngRows(png);
+            }
+            png.close();
+        }
+        BufferedImage image = ImageIO.read(file.toFile());
+        if (image == null) {
+            throw new IllegalArgumentException("无法读取图像格式: " + file);
+        }
+        return new DecodedRows(image);
+    }
+
+    private static boolean isPng(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] head = in.readNBytes(4);
+            return head.length == 4 && (head[0] & 0xff) == 0x89 && head[1] == 'P' && head[2] == 'N' && head[3] == 'G';
+        }
+    }
+
+    // 分块结果写在处理结果目录并已加入索引，删除需经 FileStorageUtil 同步移出索引
+    private void deleteQuietly(Path path) {
+        fileStorageUtil.delete(path);
+    }
+
+    private void deleteRecursively(Path root) {
+        if (root == null || !Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(this::deleteQuietly);
+        } catch (IOException e) {
+            logger.warn("清理分块目录失败: {}", root);
+        }
+    }
+
+    // 按从上到下的顺序提供输入像素（ARGB）
+    private interface RowSource extends Closeable {
+        int width();
+
+        int height();
+
+        boolean hasAlpha();
+
+        // 读取接下来的 count 行，写入 target[offset..]
+        void readRows(int[] target, int offset, int count) throws IOException;
+    }
+
+    private record PngRows(StreamingPngReader png) implements RowSource {
+        public int width() {
+            return png.getWidth();
+        }
+
+        public int height() {
+            return png.getHeight();
+        }
+
+        public boolean hasAlpha() {
+            return png.hasAlpha();
+        }
+
+        public void readRows(int[] target, int offset, int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                png.readRow(target, offset + i * png.getWidth());
+            }
+        }
+
+        public void close() throws IOException {
+            png.close();
+        }
+    }
+
+    private static final class DecodedRows implements RowSource {
+        private final BufferedImage image;
+        private int next;
+
+        DecodedRows(BufferedImage image) {
+            this.image = image;
+        }
+
+        public int width() {
+            return image.getWidth();
+        }
+
+        public int height() {
+            return image.getHeight();
+        }
+
+        public boolean hasAlpha() {
+            return image.getColorModel().hasAlpha();
+        }
+
+        public void readRows(int[] target, int offset, int count) {
+            image.getRGB(0, next, image.getWidth(), count, target, offset, image.getWidth());
+            next += count;
+        }
+
+        public void close() {
+        }
+    }
+
+    // 依次取出各行带：与上一行带重叠的行从上一行带复制，其余行从输入顺序读取
+    private static final class BandReader {
+        private final RowSource source;
+        private final int width;
+        private int[] previous = new int[0];
+        private int previousStart;
+        private int previousEnd;
+
+        BandReader(RowSource source, TileGrid grid) {
+            this.source = source;
+            this.width = grid.width();
+        }
+
+        int[] read(int y0, int y1) throws IOException {
+            int[] strip = new int[width * (y1 - y0)];
+            int kept = Math.max(0, previousEnd - y0);
+            System.arraycopy(previous, (y0 - previousStart) * width, strip, 0, kept * width);
+            source.readRows(strip, kept * width, y1 - y0 - kept);
+            previous = strip;
+            previousStart = y0;
+            previousEnd = y1;
+            return strip;
+        }
+    }
+
+    // 分块网格：核心区域边长 tileSize，每侧向外扩展 overlap（在图像边界处截断）
+    private record TileGrid(int width, int height, int tileSize, int overlap, int scale) {
+
+        int cols() {
+            return (width + tileSize - 1) / tileSize;
+        }
+
+        int rows() {
+            return (height + tileSize - 1) / tileSize;
+        }
+
+        int outWidth() {
+            return width * scale;
+        }
+
+        int outHeight() {
+            return height * scale;
+        }
+
+        int expandedStart(int index, int limit) {
+            return Math.max(0, Math.min(index * tileSize, limit) - overlap);
+        }
+
+        int expandedEnd(int index, int limit) {
+            return Math.min(limit, (index + 1) * tileSize + overlap);
+        }
+    }
+}
@@ -1,106 +1,410 @@
 package com.ganwork.util;
 
+import com.ganwork.config.StorageProperties;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
+// 上传与处理结果的存储：按文件名哈希分片到子目录（如 ab/cd/），先写临时文件再原子重命名；
+// 分片目录中找不到时回退到旧的平铺位置，兼容分片前写入的文件。
+// 共享存储后端下上传与最终结果发布为 uploads/<文件名>、processed/<文件名>，本地没有副本时从后端读取
 @Component
 public class FileStorageUtil {
 
+    // 单次 transferFrom 的最大字节数
+    private static final long TRANSFER_CHUNK_SIZE = 8L * 1024 * 1024;
+
+    // 写入中的临时文件后缀，写完后重命名为目标文件
+    public static final String TEMP_SUFFIX = ".part";
+
+    private static final String UPLOADS = "uploads";
+    private static final String PROCESSED = "processed";
+
     private final Path rootLocation;
+    private final Path processedLocation;
+    private final int shardDepth;
+    private final StorageIndex uploadIndex;
+    private final StorageIndex processedIndex;
+    private final StorageBackend backend;
+
+    // 本地文件的内容摘要，按大小与修改时间判断是否仍然有效
+    private final Map<Path, ContentDigest> digests = new ConcurrentHashMap<>();
+
+    private record ContentDigest(long size, long modifiedAt, String sha256) {
+    }
 
     @Autowired
-    public FileStorageUtil(@Value("${app.upload-dir}") String uploadDir) {
+    public FileStorageUtil(@Value("${app.upload-dir}") String uploadDir,
+                           @Value("${app.python.processed-dir:processed}") String processedDir,
+                           StorageProperties storageProperties,
+                           StorageBackend backend) {
         this.rootLocation = Paths.get(uploadDir);
+        this.processedLocation = Paths.get(processedDir);
+        this.shardDepth = Math.max(0, storageProperties.getShardDepth());
+        this.uploadIndex = new StorageIndex(rootLocation);
+        this.processedIndex = new StorageIndex(processedLocation);
+        this.backend = backend;
         init();
     }
 
     private void init() {
         try {
             Files.createDirectories(rootLocation);
+            Files.createDirectories(processedLocation);
         } catch (IOException e) {
             throw new RuntimeException("无法初始化存储目录", e);
         }
     }
 
     public String store(MultipartFile file) {
-        String filename = UUID.randomUUID() + "_" + file.getOriginalFilename();
+        String filename = UUID.randomUUID() + "_" + baseName(file.getOriginalFilename());
+        Path targetLocation = shardPath(rootLocation, filename).toAbsolutePath();
+        Path temp = tempPath(targetLocation);
         try {
-            Path targetLocation = rootLocation.resolve(filename);
-            Files.copy(file.getInputStream(), targetLocation,
-                    StandardCopyOption.REPLACE_EXISTING);
+            // 上传已由容器写入临时文件，transferTo 直接移动（或流式复制）到目标位置，不经过堆内存
+            Files.createDirectories(targetLocation.getParent());
+            file.transferTo(temp.toFile());
+            commit(temp, targetLocation);
+            publish(UPLOADS, filename, targetLocation);
             return filename;
         } catch (IOException e) {
+            deleteQuietly(temp);
             throw new RuntimeException("存储文件失败: " + filename, e);
         }
     }
 
     public Path getPath(String filename) {
-        return rootLocation.resolve(filename);
+        return locate(rootLocation, filename);
+    }
+
+    // 上传目录本身（任务日志等不参与分片的内容）
+    public Path getUploadRoot() {
+        return rootLocation;
     }
 
     public Resource loadAsResource(String filename) {
-        try {
-            Path filePath = rootLocation.resolve(filename).normalize();
-            Resource resource = new UrlResource(filePath.toUri());
-            if (resource.exists() || resource.isReadable()) {
-                return resource;
-            } else {
-                throw new RuntimeException("无法读取文件: " + filename);
-            }
-        } catch (MalformedURLException e) {
-            throw new RuntimeException("无法读取文件: " + filename, e);
+        Resource resource = findUpload(filename);
+        if (resource == null) {
+            throw new RuntimeException("无法读取文件: " + filename);
         }
+        return resource;
     }
 
+    // 上传文件：本地副本或存储后端中的对象，都不存在时返回 null
+    public Resource findUpload(String filename) {
+        return find(UPLOADS, getPath(filename), filename);
+    }
 
-    // 添加存储处理后的文件的方法
+
+    // 添加存储处理后的文件的方法，文件名加随机前缀，不覆盖同名结果
     public String storeProcessedFile(String filename, byte[] fileContent) {
+        Path filePath = newProcessedPath(filename);
+        Path temp = tempPath(filePath);
         try {
-            // 创建处理后的文件目录
-            Path processedDir = Paths.get("processed");
-            Files.createDirectories(processedDir);
-
-            // 生成唯一的文件名（避免冲突）
-            //String uniqueFilename = System.currentTimeMillis() + "_" + filename;
-            Path filePath = processedDir.resolve(filename);
+            Files.createDirectories(filePath.getParent());
 
             // 保存文件
-            Files.write(filePath, fileContent);
+            Files.write(temp, fileContent);
+            commit(temp, filePath);
 
             return filePath.toString();
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new RuntimeException("保存处理后的文件失败: " + e.getMessage(), e);
+        }
+    }
+
+    // 以流的方式存储处理后的文件，避免整个文件读入内存；文件名加随机前缀，不覆盖同名结果
+    public StoredFile storeProcessedFile(String filename, InputStream content, long contentLength, long maxBytes) {
+        Path filePath = newProcessedPath(filename);
+        try {
+            Files.createDirectories(filePath.getParent());
         } catch (IOException e) {
             throw new RuntimeException("保存处理后的文件失败: " + e.getMessage(), e);
         }
+        return streamToFile(content, contentLength, filePath, maxBytes);
+    }
+
+    // 将输入流分块写入临时文件，同时计算 SHA-256，完成后重命名为 target；超过 maxBytes 时中止并删除已写入的部分
+    public StoredFile streamToFile(InputStream content, long contentLength, Path target, long maxBytes) {
+        if (contentLength > maxBytes) {
+            throw new RuntimeException("文件超过大小上限: " + contentLength + " > " + maxBytes);
+        }
+        MessageDigest digest = newSha256();
+        Path temp = tempPath(target);
+        long position = 0;
+        try (ReadableByteChannel source = Channels.newChannel(new DigestInputStream(content, digest));
+             FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long transferred;
+            // 每次最多多读 1 字节用于判断是否超限，超限时不会继续读取剩余内容
+            while ((transferred = channel.transferFrom(source, position,
+                    Math.min(TRANSFER_CHUNK_SIZE, maxBytes + 1 - position))) > 0) {
+                position += transferred;
+                if (position > maxBytes) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new RuntimeException("写入文件失败: " + target + ", " + e.getMessage(), e);
+        }
+        if (position > maxBytes) {
+            deleteQuietly(temp);
+            throw new RuntimeException("文件超过大小上限: " + maxBytes);
+        }
+        String sha256 = HexFormat.of().formatHex(digest.digest());
+        try {
+            commit(temp, target);
+            // 写入时已算出摘要，之后生成 ETag 或发布时不必再读一遍文件
+            rememberDigest(target, sha256);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new RuntimeException("写入文件失败: " + target + ", " + e.getMessage(), e);
+        }
+        return new StoredFile(target.toString(), position, sha256);
+    }
+
+    // 流式计算文件的 SHA-256，用于内容寻址
+    public String sha256(Path file) {
+        MessageDigest digest = newSha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new RuntimeException("读取文件失败: " + file, e);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // 文件的 SHA-256，计算一次后缓存到文件被修改或删除
+    public String digest(Path file) {
+        Path key = file.toAbsolutePath().normalize();
+        try {
+            long size = Files.size(key);
+            long modifiedAt = Files.getLastModifiedTime(key).toMillis();
+            ContentDigest cached = digests.get(key);
+            if (cached != null && cached.size() == size && cached.modifiedAt() == modifiedAt) {
+                return cached.sha256();
+            }
+            String sha256 = sha256(key);
+            digests.put(key, new ContentDigest(size, modifiedAt, sha256));
+            return sha256;
+        } catch (IOException e) {
+            throw new RuntimeException("读取文件失败: " + file, e);
+        }
+    }
+
+    // 强 ETag：本地文件为内容的 SHA-256，对象存储中的文件为发布时记录的摘要；无法确定时返回 null
+    public String etag(Resource resource) {
+        try {
+            if (resource instanceof TaggedResource tagged) {
+                return tagged.getContentTag();
+            }
+            return resource.isFile() ? digest(resource.getFile().toPath()) : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void rememberDigest(Path file, String sha256) throws IOException {
+        Path key = file.toAbsolutePath().normalize();
+        digests.put(key, new ContentDigest(Files.size(key), Files.getLastModifiedTime(key).toMillis(), sha256));
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // 清理失败不影响原始异常
+        }
+    }
+
+    // 流式写入的结果：本地路径、字节数与 SHA-256 校验和
+    public record StoredFile(String path, long size, String sha256) {
+    }
+
+    // 处理结果目录中写入新文件的路径（分片目录不存在时创建）
+    public Path getProcessedPath(String filename) {
+        Path path = shardPath(processedLocation, filename);
+        try {
+            Files.createDirectories(path.getParent());
+        } catch (IOException e) {
+            throw new RuntimeException("无法创建处理结果目录", e);
+        }
+        return path;
+    }
+
+    // 查找处理结果目录中已有的文件，不创建目录
+    public Path resolveProcessed(String filename) {
+        return locate(processedLocation, filename);
     }
 
     // 添加获取处理后的文件资源的方法
     public Resource loadProcessedFileAsResource(String filename) {
+        Resource resource = findProcessed(filename);
+        if (resource == null) {
+            throw new RuntimeException("无法读取处理后的文件: " + filename);
+        }
+        return resource;
+    }
+
+    // 处理结果：本地副本或存储后端中的对象，都不存在时返回 null
+    public Resource findProcessed(String filename) {
+        return find(PROCESSED, resolveProcessed(filename), filename);
+    }
+
+    // 最终结果发布到存储后端，其他节点可按 /processed/<文件名> 读取；中间结果与分块结果只留在本地
+    public void publishProcessed(String filename) {
+        publish(PROCESSED, filename, resolveProcessed(filename));
+    }
+
+    // 目标文件对应的临时文件，与目标在同一目录，保证重命名是原子的
+    public Path tempPath(Path target) {
+        return target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+    }
+
+    // 写完的临时文件原子重命名为目标文件并加入索引；读取方只会看到完整的文件
+    public void commit(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        StorageIndex index = indexFor(target);
+        if (index != null) {
+            index.add(target);
+        }
+    }
+
+    // 删除文件并移出索引
+    public boolean delete(Path file) {
+        digests.remove(file.toAbsolutePath().normalize());
+        StorageIndex index = indexFor(file);
+        if (index != null) {
+            index.remove(file);
+        }
         try {
-            Path processedDir = Paths.get("processed");
-            Path filePath = processedDir.resolve(filename).normalize();
-            Resource resource = new UrlResource(filePath.toUri());
-
-            if (resource.exists() && resource.isReadable()) {
-                return resource;
-            } else {
-                throw new RuntimeException("无法读取处理后的文件: " + filename);
+            return Files.deleteIfExists(file);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public StorageIndex getUploadIndex() {
+        return uploadIndex;
+    }
+
+    public StorageIndex getProcessedIndex() {
+        return processedIndex;
+    }
+
+    // 全量扫描两个存储目录，重建索引并清理残留的临时文件
+    public void rebuildIndexes(long tempMaxAgeMillis) {
+        uploadIndex.rebuild(TEMP_SUFFIX, tempMaxAgeMillis);
+        processedIndex.rebuild(TEMP_SUFFIX, tempMaxAgeMillis);
+    }
+
+    private Resource find(String area, Path local, String filename) {
+        if (Files.isReadable(local)) {
+            return new FileSystemResource(local);
+        }
+        if (!backend.isShared()) {
+            return null;
+        }
+        try {
+            return backend.open(area + "/" + filename);
+        } catch (IOException e) {
+            throw new RuntimeException("读取存储后端失败: " + filename, e);
+        }
+    }
+
+    private void publish(String area, String filename, Path file) {
+        if (!backend.isShared()) {
+            return;
+        }
+        try {
+            backend.publish(area + "/" + filename, file, digest(file));
+        } catch (IOException e) {
+            throw new RuntimeException("发布文件到存储后端失败: " + filename, e);
+        }
+    }
+
+    private StorageIndex indexFor(Path file) {
+        if (processedIndex.contains(file)) {
+            return processedIndex;
+        }
+        return uploadIndex.contains(file) ? uploadIndex : null;
+    }
+
+    // 新结果文件名加随机前缀，同名结果互不覆盖
+    private Path newProcessedPath(String filename) {
+        String unique = UUID.randomUUID().toString().replace("-", "").substring(0, 12) + "_" + baseName(filename);
+        return shardPath(processedLocation, unique);
+    }
+
+    // 分片位置不存在而旧的平铺位置存在时返回平铺位置
+    private Path locate(Path root, String filename) {
+        Path sharded = shardPath(root, filename);
+        if (shardDepth > 0 && !Files.exists(sharded)) {
+            Path legacy = root.resolve(filename);
+            if (Files.exists(legacy)) {
+                return legacy;
             }
-        } catch (MalformedURLException e) {
-            throw new RuntimeException("无法读取处理后的文件: " + filename, e);
         }
+        return sharded;
     }
 
+    // 文件名 SHA-256 的前 shardDepth 个字节，每个字节一层两位十六进制目录
+    private Path shardPath(Path root, String filename) {
+        if (shardDepth == 0) {
+            return root.resolve(filename);
+        }
+        byte[] hash = newSha256().digest(filename.getBytes(StandardCharsets.UTF_8));
+        Path dir = root;
+        for (int i = 0; i < Math.min(shardDepth, hash.length); i++) {
+            dir = dir.resolve(HexFormat.of().toHexDigits(hash[i]));
+        }
+        return dir.resolve(filename);
+    }
 
-}
\ No newline at end of file
+    // 去掉客户端文件名中的目录部分
+    private static String baseName(String filename) {
+        if (filename == null || filename.isBlank()) {
+            return "file";
+        }
+        String name = filename.substring(Math.max(filename.lastIndexOf('/'), filename.lastIndexOf('\\')) + 1);
+        return name.isBlank() ? "file" : name;
+    }
+}
@@ -41,11 +41,31 @@ public class ImageProcessingResponse {
     // 内部类表示单个处理结果
     public static class ProcessedImageResult {
         private String processedUrl;
+        // 预览图与中等尺寸版本地址，未生成时为 null
+        private String previewUrl;
+        private String mediumUrl;
+        private String originalFilename;
+        private boolean success = true;
+        private String message;
 
         public ProcessedImageResult(String processedUrl) {
             this.processedUrl = processedUrl;
         }
 
+        public static ProcessedImageResult success(String originalFilename, String processedUrl) {
+            ProcessedImageResult result = new ProcessedImageResult(processedUrl);
+            result.originalFilename = originalFilename;
+            return result;
+        }
+
+        public static ProcessedImageResult failure(String originalFilename, String message) {
+            ProcessedImageResult result = new ProcessedImageResult(null);
+            result.originalFilename = originalFilename;
+            result.success = false;
+            result.message = message;
+            return result;
+        }
+
         public String getProcessedUrl() {
             return processedUrl;
         }
@@ -53,5 +73,45 @@ public class ImageProcessingResponse {
         public void setProcessedUrl(String processedUrl) {
             this.processedUrl = processedUrl;
         }
+
+        public String getPreviewUrl() {
+            return previewUrl;
+        }
+
+        public void setPreviewUrl(String previewUrl) {
+            this.previewUrl = previewUrl;
+        }
+
+        public String getMediumUrl() {
+            return mediumUrl;
+        }
+
+        public void setMediumUrl(String mediumUrl) {
+            this.mediumUrl = mediumUrl;
+        }
+
+        public String getOriginalFilename() {
+            return originalFilename;
+        }
+
+        public void setOriginalFilename(String originalFilename) {
+            this.originalFilename = originalFilename;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public void setSuccess(boolean success) {
+            this.success = success;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public void setMessage(String message) {
+            this.message = message;
+        }
     }
 }
\ No newline at end of file
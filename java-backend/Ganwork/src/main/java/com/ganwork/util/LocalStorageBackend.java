@@ -0,0 +1,23 @@
+package com.ganwork.util;
+
+import org.springframework.core.io.Resource;
+
+import java.nio.file.Path;
+
+// 单节点部署：本地上传与结果目录即最终存储，不发布也没有其他副本
+public class LocalStorageBackend implements StorageBackend {
+
+    @Override
+    public boolean isShared() {
+        return false;
+    }
+
+    @Override
+    public void publish(String key, Path file, String sha256) {
+    }
+
+    @Override
+    public Resource open(String key) {
+        return null;
+    }
+}
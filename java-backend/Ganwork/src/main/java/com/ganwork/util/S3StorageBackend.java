@@ -0,0 +1,446 @@
+package com.ganwork.util;
+
+import com.ganwork.config.S3StorageProperties;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.FileEntity;
+import org.apache.hc.core5.http.io.entity.InputStreamEntity;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.io.support.ClassicRequestBuilder;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// S3 协议的存储后端（AWS S3、MinIO 等）：大文件分段流式上传，读取时按需发起 Range 请求，
+// 静态资源的断点续传与分段下载只传输请求的字节
+public class S3StorageBackend implements StorageBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3StorageBackend.class);
+
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
+    // 发布时记录的内容摘要，读取时作为强 ETag
+    private static final String SHA256_METADATA = "x-amz-meta-sha256";
+
+    private final S3StorageProperties properties;
+    private final S3RequestSigner signer;
+    private final CloseableHttpClient httpClient;
+    private final URI endpoint;
+    private final long multipartThreshold;
+    private final long partSize;
+
+    public S3StorageBackend(S3StorageProperties properties) {
+        this.properties = properties;
+        this.signer = new S3RequestSigner(properties.getAccessKey(), properties.getSecretKey(), properties.getRegion());
+        String url = properties.getEndpoint();
+        this.endpoint = URI.create(url.endsWith("/") ? url.substring(0, url.length() - 1) : url);
+        this.partSize = Math.max(MIN_PART_SIZE, properties.getPartSizeMb() * 1024 * 1024);
+        this.multipartThreshold = Math.max(partSize, properties.getMultipartThresholdMb() * 1024 * 1024);
+        // 对象内容按原样读写，关闭透明解压，Range 请求的偏移才与文件一致
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(properties.getMaxConnections())
+                        .setMaxConnPerRoute(properties.getMaxConnections())
+                        .setDefaultConnectionConfig(ConnectionConfig.custom()
+                                .setConnectTimeout(Timeout.ofSeconds(properties.getConnectTimeoutSeconds()))
+                                .setSocketTimeout(Timeout.ofSeconds(properties.getSocketTimeoutSeconds()))
+                                .build())
+                        .build())
+                .disableContentCompression()
+                .build();
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+
+    @Override
+    public void publish(String key, Path file, String sha256) throws IOException {
+        long size = Files.size(file);
+        Map<String, String> metadata = sha256 != null ? Map.of(SHA256_METADATA, sha256) : Map.of();
+        if (size <= multipartThreshold) {
+            URI uri = objectUri(key, null);
+            execute(signed(ClassicRequestBuilder.put(uri), "PUT", uri, S3RequestSigner.UNSIGNED_PAYLOAD, metadata)
+                    .setEntity(new FileEntity(file.toFile(), ContentType.APPLICATION_OCTET_STREAM))
+                    .build(), "上传 " + key);
+        } else {
+            uploadMultipart(key, file, size, metadata);
+        }
+        logger.debug("已发布到对象存储: {} ({} 字节)", key, size);
+    }
+
+    @Override
+    public Resource open(String key) throws IOException {
+        URI uri = objectUri(key, null);
+        ClassicHttpRequest request = signed(ClassicRequestBuilder.head(uri), "HEAD", uri,
+                S3RequestSigner.EMPTY_PAYLOAD).build();
+        return httpClient.execute(request, response -> {
+            if (response.getCode() == 404) {
+                return null;
+            }
+            if (response.getCode() / 100 != 2) {
+                throw new IOException("读取对象信息失败: " + key + " HTTP " + response.getCode());
+            }
+            Header length = response.getFirstHeader("Content-Length");
+            // 早于摘要元数据发布的对象使用存储服务自身的 ETag
+            Header sha256 = response.getFirstHeader(SHA256_METADATA);
+            Header etag = response.getFirstHeader("ETag");
+            String contentTag = sha256 != null ? sha256.getValue()
+                    : etag != null ? etag.getValue().replace("\"", "") : null;
+            return new ObjectResource(key, length != null ? Long.parseLong(length.getValue()) : 0,
+                    lastModified(response.getFirstHeader("Last-Modified")), contentTag);
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    // 按 part-size 切分文件，每段直接从文件对应位置流式读取，不在内存中缓冲；失败时中止上传释放已传分段
+    private void uploadMultipart(String key, Path file, long size, Map<String, String> metadata) throws IOException {
+        URI initiateUri = objectUri(key, "uploads");
+        String uploadId = xmlValue(execute(signed(ClassicRequestBuilder.post(initiateUri), "POST", initiateUri,
+                S3RequestSigner.EMPTY_PAYLOAD, metadata).build(), "初始化分段上传 " + key), "UploadId");
+        if (uploadId == null) {
+            throw new IOException("初始化分段上传失败: 响应中没有 UploadId");
+        }
+        String uploadQuery = "uploadId=" + S3RequestSigner.encode(uploadId, true);
+        try {
+            List<String> etags = new ArrayList<>();
+            for (long offset = 0; offset < size; offset += partSize) {
+                int partNumber = etags.size() + 1;
+                long length = Math.min(partSize, size - offset);
+                URI partUri = objectUri(key, "partNumber=" + partNumber + "&" + uploadQuery);
+                try (InputStream slice = openSlice(file, offset, length)) {
+                    ClassicHttpRequest request = signed(ClassicRequestBuilder.put(partUri), "PUT", partUri,
+                            S3RequestSigner.UNSIGNED_PAYLOAD)
+                            .setEntity(new InputStreamEntity(slice, length, ContentType.APPLICATION_OCTET_STREAM))
+                            .build();
+                    etags.add(httpClient.execute(request, response -> {
+                        checkStatus(response, "上传分段 " + partNumber + " " + key);
+                        Header etag = response.getFirstHeader("ETag");
+                        if (etag == null) {
+                            throw new IOException("上传分段 " + partNumber + " 失败: 响应中没有 ETag");
+                        }
+                        return etag.getValue();
+                    }));
+                }
+            }
+
+            StringBuilder body = new StringBuilder("<CompleteMultipartUpload>");
+            for (int i = 0; i < etags.size(); i++) {
+                body.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                        .append(etags.get(i)).append("</ETag></Part>");
+            }
+            body.append("</CompleteMultipartUpload>");
+            byte[] payload = body.toString().getBytes(StandardCharsets.UTF_8);
+            URI completeUri = objectUri(key, uploadQuery);
+            String result = execute(signed(ClassicRequestBuilder.post(completeUri), "POST", completeUri,
+                    S3RequestSigner.sha256Hex(payload))
+                    .setEntity(new StringEntity(body.toString(), ContentType.APPLICATION_XML))
+                    .build(), "完成分段上传 " + key);
+            // 完成请求可能返回 200 但响应体是错误
+            if (result.contains("<Error>")) {
+                throw new IOException("完成分段上传失败: " + key + " " + xmlValue(result, "Code"));
+            }
+        } catch (IOException | RuntimeException e) {
+            abortMultipart(key, uploadQuery);
+            throw e;
+        }
+    }
+
+    private void abortMultipart(String key, String uploadQuery) {
+        URI uri = objectUri(key, uploadQuery);
+        try {
+            execute(signed(ClassicRequestBuilder.delete(uri), "DELETE", uri, S3RequestSigner.EMPTY_PAYLOAD).build(),
+                    "中止分段上传 " + key);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("中止分段上传失败，残留分段由存储桶生命周期规则清理: {} - {}", key, e.getMessage());
+        }
+    }
+
+    // 从 offset 开始读取 GET 响应体；offset 大于 0 时只请求剩余字节
+    private ClassicHttpResponse get(String key, long offset) throws IOException {
+        URI uri = objectUri(key, null);
+        ClassicRequestBuilder builder = signed(ClassicRequestBuilder.get(uri), "GET", uri,
+                S3RequestSigner.EMPTY_PAYLOAD);
+        if (offset > 0) {
+            builder.addHeader("Range", "bytes=" + offset + "-");
+        }
+        ClassicHttpResponse response = httpClient.executeOpen(null, builder.build(), null);
+        if (response.getCode() != 200 && response.getCode() != 206) {
+            response.close();
+            throw new IOException("读取对象失败: " + key + " HTTP " + response.getCode());
+        }
+        return response;
+    }
+
+    private String execute(ClassicHttpRequest request, String action) throws IOException {
+        return httpClient.execute(request, response -> {
+            checkStatus(response, action);
+            HttpEntity entity = response.getEntity();
+            return entity != null ? new String(EntityUtils.toByteArray(entity), StandardCharsets.UTF_8) : "";
+        });
+    }
+
+    private static void checkStatus(ClassicHttpResponse response, String action) throws IOException {
+        if (response.getCode() / 100 != 2) {
+            HttpEntity entity = response.getEntity();
+            String body = entity != null ? new String(EntityUtils.toByteArray(entity), StandardCharsets.UTF_8) : "";
+            throw new IOException(action + " 失败: HTTP " + response.getCode() + " " + xmlValue(body, "Code"));
+        }
+    }
+
+    private ClassicRequestBuilder signed(ClassicRequestBuilder builder, String method, URI uri, String payloadHash) {
+        return signed(builder, method, uri, payloadHash, Map.of());
+    }
+
+    private ClassicRequestBuilder signed(ClassicRequestBuilder builder, String method, URI uri, String payloadHash,
+                                         Map<String, String> amzHeaders) {
+        signer.sign(method, uri, payloadHash, amzHeaders, Instant.now()).forEach(builder::addHeader);
+        return builder;
+    }
+
+    // 路径风格为 endpoint/bucket/key，否则为 bucket.endpoint/key；query 须已编码
+    private URI objectUri(String key, String query) {
+        String path = "/" + S3RequestSigner.encode(properties.getKeyPrefix() + key, false);
+        String authority = endpoint.getRawAuthority();
+        if (properties.isPathStyleAccess()) {
+            path = "/" + properties.getBucket() + path;
+        } else {
+            authority = properties.getBucket() + "." + authority;
+        }
+        return URI.create(endpoint.getScheme() + "://" + authority + path + (query != null ? "?" + query : ""));
+    }
+
+    private static InputStream openSlice(Path file, long offset, long length) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        channel.position(offset);
+        return new FilterInputStream(Channels.newInputStream(channel)) {
+            private long remaining = length;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int b = super.read();
+                if (b >= 0) {
+                    remaining--;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int off, int len) throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int n = super.read(buffer, off, (int) Math.min(len, remaining));
+                if (n > 0) {
+                    remaining -= n;
+                }
+                return n;
+            }
+        };
+    }
+
+    private static long lastModified(Header header) {
+        if (header == null) {
+            return 0;
+        }
+        try {
+            return ZonedDateTime.parse(header.getValue(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    // 响应体较小且结构固定，按标签截取即可
+    private static String xmlValue(String xml, String tag) {
+        int start = xml.indexOf("<" + tag + ">");
+        int end = xml.indexOf("</" + tag + ">");
+        return start >= 0 && end > start ? xml.substring(start + tag.length() + 2, end) : null;
+    }
+
+    // 对象存储中的文件：长度与修改时间来自 HEAD，内容在首次读取时才发起请求
+    private class ObjectResource extends AbstractResource implements TaggedResource {
+
+        private final String key;
+        private final long length;
+        private final long lastModified;
+        private final String contentTag;
+
+        ObjectResource(String key, long length, long lastModified, String contentTag) {
+            this.key = key;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.contentTag = contentTag;
+        }
+
+        @Override
+        public String getContentTag() {
+            return contentTag;
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public long contentLength() {
+            return length;
+        }
+
+        @Override
+        public long lastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public String getFilename() {
+            return key.substring(key.lastIndexOf('/') + 1);
+        }
+
+        @Override
+        public String getDescription() {
+            return "S3 object [" + properties.getBucket() + "/" + properties.getKeyPrefix() + key + "]";
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ObjectInputStream(key, length);
+        }
+    }
+
+    // 跳过开头的字节不会下载它们：读取前的 skip 只移动偏移，第一次读取时从该偏移发起 Range 请求
+    private class ObjectInputStream extends InputStream {
+
+        private final String key;
+        private final long length;
+        private long position;
+        private ClassicHttpResponse response;
+        private InputStream body;
+
+        ObjectInputStream(String key, long length) {
+            this.key = key;
+            this.length = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureOpen()) {
+                return -1;
+            }
+            int b = body.read();
+            if (b >= 0) {
+                position++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!ensureOpen()) {
+                return -1;
+            }
+            int n = body.read(buffer, off, len);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0) {
+                return 0;
+            }
+            if (body != null) {
+                long skipped = body.skip(n);
+                position += skipped;
+                return skipped;
+            }
+            long skipped = Math.min(n, length - position);
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return body != null ? body.available() : 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (response == null) {
+                return;
+            }
+            try {
+                // 读完时正常释放连接供复用，未读完时直接断开，不下载剩余内容
+                if (position >= length) {
+                    body.close();
+                }
+            } finally {
+                response.close();
+                response = null;
+                body = null;
+            }
+        }
+
+        private boolean ensureOpen() throws IOException {
+            if (body != null) {
+                return true;
+            }
+            if (position >= length) {
+                return false;
+            }
+            response = get(key, position);
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                close();
+                return false;
+            }
+            body = entity.getContent();
+            // 服务端忽略 Range 时返回完整内容，丢弃偏移之前的部分
+            if (position > 0 && response.getCode() == 200) {
+                body.skipNBytes(position);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.ganwork.util;
+
+import org.springframework.core.io.Resource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+// 共享存储后端：上传与处理流程始终读写本地目录，完成的文件按键（如 processed/<文件名>）发布到后端，
+// 本地没有副本时从后端读取，任意节点都能提供其他节点写入的文件
+public interface StorageBackend extends Closeable {
+
+    // 是否为多节点共享的存储；否则文件只存在于写入它的节点，无需发布
+    boolean isShared();
+
+    // 发布本地已写完的文件，同名键覆盖；sha256 随对象保存，读取时作为 ETag
+    void publish(String key, Path file, String sha256) throws IOException;
+
+    // 按键读取，不存在时返回 null；对象存储的实现返回 TaggedResource
+    Resource open(String key) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,125 @@
+package com.ganwork.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 存储目录的文件索引：启动时与定期全量扫描重建，写入与删除时增量更新，清理时不必遍历目录。
+// 扫描期间新写入的文件可能暂时不在索引中，下一次扫描时补齐
+public class StorageIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageIndex.class);
+
+    private final Path root;
+    private volatile Map<Path, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    private record Entry(long size, long modifiedAt) {
+    }
+
+    public StorageIndex(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    public boolean contains(Path file) {
+        return key(file).startsWith(root);
+    }
+
+    public void add(Path file) {
+        Path key = key(file);
+        try {
+            Entry entry = new Entry(Files.size(key), Files.getLastModifiedTime(key).toMillis());
+            Entry previous = entries.put(key, entry);
+            totalBytes.addAndGet(entry.size() - (previous != null ? previous.size() : 0));
+        } catch (IOException e) {
+            logger.warn("索引文件失败: {} - {}", key, e.getMessage());
+        }
+    }
+
+    public void remove(Path file) {
+        Entry previous = entries.remove(key(file));
+        if (previous != null) {
+            totalBytes.addAndGet(-previous.size());
+        }
+    }
+
+    // 全量扫描重建索引：跳过以 . 开头的目录（如任务日志），删除超过 tempMaxAgeMillis 的残留临时文件
+    public void rebuild(String tempSuffix, long tempMaxAgeMillis) {
+        Map<Path, Entry> rebuilt = new ConcurrentHashMap<>();
+        long now = System.currentTimeMillis();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return !dir.equals(root) && dir.getFileName().toString().startsWith(".")
+                            ? FileVisitResult.SKIP_SUBTREE
+                            : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    long modifiedAt = attrs.lastModifiedTime().toMillis();
+                    if (file.getFileName().toString().endsWith(tempSuffix)) {
+                        if (now - modifiedAt > tempMaxAgeMillis) {
+                            Files.deleteIfExists(file);
+                        }
+                    } else if (attrs.isRegularFile()) {
+                        rebuilt.put(file, new Entry(attrs.size(), modifiedAt));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    // 扫描期间被删除的文件
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("扫描存储目录失败: {} - {}", root, e.getMessage());
+            return;
+        }
+        entries = rebuilt;
+        totalBytes.set(rebuilt.values().stream().mapToLong(Entry::size).sum());
+        logger.info("存储目录索引完成: {} ({} 个文件, {} 字节)", root, rebuilt.size(), totalBytes.get());
+    }
+
+    // 修改时间早于 before 的文件
+    public List<Path> modifiedBefore(long before) {
+        return entries.entrySet().stream()
+                .filter(entry -> entry.getValue().modifiedAt() < before)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    // 按修改时间从旧到新排列的全部文件
+    public List<Path> oldestFirst() {
+        return entries.entrySet().stream()
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().modifiedAt()))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long totalBytes() {
+        return totalBytes.get();
+    }
+
+    private static Path key(Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+}
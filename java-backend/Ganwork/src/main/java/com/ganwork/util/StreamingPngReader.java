@@ -0,0 +1,334 @@
+package com.ganwork.util;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.InflaterInputStream;
+
+// 逐行读取 PNG，只保留当前行与上一行（ImageIO 读取行带时每次都从第一行重新解码）。
+// 支持所有颜色类型与位深及 tRNS 透明色，不支持隔行扫描（isInterlaced 为 true 时由调用方改用其他方式读取）
+public class StreamingPngReader implements Closeable {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    private static final int GRAY = 0;
+    private static final int RGB = 2;
+    private static final int PALETTE = 3;
+    private static final int GRAY_ALPHA = 4;
+    private static final int RGBA = 6;
+
+    private final DataInputStream in;
+    private final int width;
+    private final int height;
+    private final int bitDepth;
+    private final int colorType;
+    private final boolean interlaced;
+
+    // 过滤以字节为单位，向左参照的距离至少 1 字节
+    private final int filterStride;
+    private byte[] previous;
+    private byte[] current;
+    private InputStream pixels;
+    private int rowsRead;
+
+    private int[] palette;
+    // tRNS 指定的透明灰度或 RGB 值（原始采样值），-1 表示没有
+    private int transparentGray = -1;
+    private int[] transparentRgb;
+
+    // 当前 IDAT 块剩余的字节数；图像数据之后的块不再读取
+    private int idatRemaining;
+    private boolean imageDataEnded;
+
+    public StreamingPngReader(InputStream source) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(source));
+        byte[] signature = new byte[SIGNATURE.length];
+        in.readFully(signature);
+        if (!Arrays.equals(signature, SIGNATURE)) {
+            throw new IOException("不是 PNG 文件");
+        }
+        int length = in.readInt();
+        if (!"IHDR".equals(readType()) || length != 13) {
+            throw new IOException("PNG 缺少 IHDR");
+        }
+        width = in.readInt();
+        height = in.readInt();
+        bitDepth = in.readUnsignedByte();
+        colorType = in.readUnsignedByte();
+        in.readUnsignedByte(); // 压缩方式
+        in.readUnsignedByte(); // 过滤方式
+        interlaced = in.readUnsignedByte() != 0;
+        in.readInt(); // CRC
+        if (width <= 0 || height <= 0) {
+            throw new IOException("PNG 尺寸无效: " + width + "x" + height);
+        }
+
+        int bitsPerPixel = bitDepth * channels();
+        filterStride = Math.max(1, bitsPerPixel / 8);
+        int rowBytes = (int) (((long) width * bitsPerPixel + 7) / 8);
+        previous = new byte[rowBytes];
+        current = new byte[rowBytes];
+        readUntilImageData();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean isInterlaced() {
+        return interlaced;
+    }
+
+    // 带透明通道或 tRNS 透明色
+    public boolean hasAlpha() {
+        return colorType == GRAY_ALPHA || colorType == RGBA || transparentGray >= 0 || transparentRgb != null
+                || (palette != null && Arrays.stream(palette).anyMatch(argb -> argb >>> 24 != 0xff));
+    }
+
+    // 读取下一行，转换为 8 位 ARGB 写入 argb[offset..offset+width)
+    public void readRow(int[] argb, int offset) throws IOException {
+        if (interlaced) {
+            throw new IOException("不支持隔行扫描的 PNG");
+        }
+        if (rowsRead >= height) {
+            throw new IOException("PNG 行数超过图像高度: " + height);
+        }
+        if (pixels == null) {
+            pixels = new InflaterInputStream(new IdatInputStream());
+        }
+        int filter = pixels.read();
+        if (filter < 0) {
+            throw new EOFException("PNG 图像数据不完整: " + rowsRead + "/" + height);
+        }
+        byte[] swap = previous;
+        previous = current;
+        current = swap;
+        readFully(pixels, current);
+        unfilter(filter);
+        convert(argb, offset);
+        rowsRead++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int channels() {
+        return switch (colorType) {
+            case RGB -> 3;
+            case GRAY_ALPHA -> 2;
+            case RGBA -> 4;
+            default -> 1;
+        };
+    }
+
+    // 读取 IDAT 之前的块：PLTE、tRNS，其余跳过
+    private void readUntilImageData() throws IOException {
+        while (true) {
+            int length = in.readInt();
+            String type = readType();
+            switch (type) {
+                case "IDAT" -> {
+                    idatRemaining = length;
+                    return;
+                }
+                case "PLTE" -> readPalette(length);
+                case "tRNS" -> readTransparency(length);
+                case "IEND" -> throw new IOException("PNG 没有图像数据");
+                default -> skipFully(length);
+            }
+            in.readInt(); // CRC
+        }
+    }
+
+    private void readPalette(int length) throws IOException {
+        palette = new int[length / 3];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = 0xff000000 | in.readUnsignedByte() << 16 | in.readUnsignedByte() << 8 | in.readUnsignedByte();
+        }
+        skipFully(length - palette.length * 3);
+    }
+
+    private void readTransparency(int length) throws IOException {
+        if (colorType == PALETTE && palette != null) {
+            for (int i = 0; i < length; i++) {
+                int alpha = in.readUnsignedByte();
+                if (i < palette.length) {
+                    palette[i] = (palette[i] & 0x00ffffff) | alpha << 24;
+                }
+            }
+        } else if (colorType == GRAY && length == 2) {
+            transparentGray = in.readUnsignedShort();
+        } else if (colorType == RGB && length == 6) {
+            transparentRgb = new int[]{in.readUnsignedShort(), in.readUnsignedShort(), in.readUnsignedShort()};
+        } else {
+            skipFully(length);
+        }
+    }
+
+    private void unfilter(int filter) throws IOException {
+        byte[] row = current;
+        // 第一行的上一行视为全 0（previous 初始即为 0）
+        byte[] up = previous;
+        int stride = filterStride;
+        switch (filter) {
+            case 0 -> {
+            }
+            case 1 -> {
+                for (int i = stride; i < row.length; i++) {
+                    row[i] += row[i - stride];
+                }
+            }
+            case 2 -> {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] += up[i];
+                }
+            }
+            case 3 -> {
+                for (int i = 0; i < row.length; i++) {
+                    int left = i >= stride ? row[i - stride] & 0xff : 0;
+                    row[i] += (byte) ((left + (up[i] & 0xff)) >>> 1);
+                }
+            }
+            case 4 -> {
+                for (int i = 0; i < row.length; i++) {
+                    int a = i >= stride ? row[i - stride] & 0xff : 0;
+                    int b = up[i] & 0xff;
+                    int c = i >= stride ? up[i - stride] & 0xff : 0;
+                    row[i] += (byte) paeth(a, b, c);
+                }
+            }
+            default -> throw new IOException("未知的 PNG 过滤方式: " + filter);
+        }
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    private void convert(int[] argb, int offset) {
+        byte[] row = current;
+        for (int x = 0; x < width; x++) {
+            int pixel;
+            switch (colorType) {
+                case GRAY -> {
+                    int raw = sample(row, x);
+                    int v = to8Bit(raw);
+                    int alpha = raw == transparentGray ? 0 : 0xff;
+                    pixel = alpha << 24 | v << 16 | v << 8 | v;
+                }
+                case PALETTE -> {
+                    int index = sample(row, x);
+                    pixel = palette != null && index < palette.length ? palette[index] : 0xff000000;
+                }
+                case GRAY_ALPHA -> {
+                    int v = to8Bit(sample(row, x * 2));
+                    pixel = to8Bit(sample(row, x * 2 + 1)) << 24 | v << 16 | v << 8 | v;
+                }
+                case RGB -> {
+                    int r = sample(row, x * 3);
+                    int g = sample(row, x * 3 + 1);
+                    int b = sample(row, x * 3 + 2);
+                    boolean transparent = transparentRgb != null
+                            && r == transparentRgb[0] && g == transparentRgb[1] && b == transparentRgb[2];
+                    pixel = (transparent ? 0 : 0xff000000) | to8Bit(r) << 16 | to8Bit(g) << 8 | to8Bit(b);
+                }
+                default -> pixel = to8Bit(sample(row, x * 4 + 3)) << 24 | to8Bit(sample(row, x * 4)) << 16
+                        | to8Bit(sample(row, x * 4 + 1)) << 8 | to8Bit(sample(row, x * 4 + 2));
+            }
+            argb[offset + x] = pixel;
+        }
+    }
+
+    // 一行中第 index 个采样的原始值
+    private int sample(byte[] row, int index) {
+        return switch (bitDepth) {
+            case 8 -> row[index] & 0xff;
+            case 16 -> (row[index * 2] & 0xff) << 8 | (row[index * 2 + 1] & 0xff);
+            default -> {
+                int bit = index * bitDepth;
+                int shift = 8 - bitDepth - (bit & 7);
+                yield (row[bit >> 3] >> shift) & ((1 << bitDepth) - 1);
+            }
+        };
+    }
+
+    private int to8Bit(int raw) {
+        return switch (bitDepth) {
+            case 8 -> raw;
+            case 16 -> raw >> 8;
+            default -> raw * 255 / ((1 << bitDepth) - 1);
+        };
+    }
+
+    private String readType() throws IOException {
+        byte[] type = new byte[4];
+        in.readFully(type);
+        return new String(type, StandardCharsets.US_ASCII);
+    }
+
+    private void skipFully(int length) throws IOException {
+        in.skipNBytes(length);
+    }
+
+    private static void readFully(InputStream source, byte[] buffer) throws IOException {
+        int read = source.readNBytes(buffer, 0, buffer.length);
+        if (read != buffer.length) {
+            throw new EOFException("PNG 图像数据不完整");
+        }
+    }
+
+    // 连续的 IDAT 块拼接成一个压缩流
+    private final class IdatInputStream extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (idatRemaining == 0) {
+                if (imageDataEnded || !nextIdat()) {
+                    imageDataEnded = true;
+                    return -1;
+                }
+            }
+            int n = in.read(b, off, Math.min(len, idatRemaining));
+            if (n < 0) {
+                throw new EOFException("PNG 图像数据不完整");
+            }
+            idatRemaining -= n;
+            return n;
+        }
+
+        // 跳过当前块的 CRC，下一个块仍是 IDAT 时继续
+        private boolean nextIdat() throws IOException {
+            in.readInt();
+            int length = in.readInt();
+            if (!"IDAT".equals(readType())) {
+                return false;
+            }
+            idatRemaining = length;
+            return true;
+        }
+    }
+}
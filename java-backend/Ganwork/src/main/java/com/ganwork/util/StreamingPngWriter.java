@@ -0,0 +1,141 @@
+package com.ganwork.util;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+
+// 逐行写出 8 位 RGB 或 RGBA PNG，整幅图像不需要驻留内存（ImageIO 的写出器需要完整的 RenderedImage）
+public class StreamingPngWriter implements Closeable {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    // 每个 IDAT 块的最大字节数
+    private static final int IDAT_CHUNK_SIZE = 64 * 1024;
+
+    private final DataOutputStream out;
+    private final int width;
+    private final int height;
+    private final int channels;
+    private final DeflaterOutputStream compressed;
+    private final byte[] row;
+    private int rowsWritten;
+
+    public StreamingPngWriter(OutputStream target, int width, int height) throws IOException {
+        this(target, width, height, false);
+    }
+
+    // alpha 为 true 时写出 RGBA，保留像素的透明度
+    public StreamingPngWriter(OutputStream target, int width, int height, boolean alpha) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(target));
+        this.width = width;
+        this.height = height;
+        this.channels = alpha ? 4 : 3;
+        this.row = new byte[1 + width * channels];
+
+        out.write(SIGNATURE);
+        ByteBuffer header = ByteBuffer.allocate(13)
+                .putInt(width)
+                .putInt(height)
+                .put((byte) 8)  // 位深
+                .put((byte) (alpha ? 6 : 2))  // 颜色类型：RGBA 或 RGB
+                .put((byte) 0)  // 压缩方式
+                .put((byte) 0)  // 过滤方式
+                .put((byte) 0); // 不隔行
+        writeChunk("IHDR", header.array(), 13);
+        this.compressed = new DeflaterOutputStream(new IdatOutputStream());
+    }
+
+    // 写出一行像素（ARGB，RGB 图像忽略透明度），按 Sub 过滤方式编码
+    public void writeRow(int[] argb, int offset) throws IOException {
+        if (rowsWritten >= height) {
+            throw new IOException("PNG 行数超过图像高度: " + height);
+        }
+        row[0] = 1;
+        int previous = 0;
+        for (int i = 0; i < width; i++) {
+            int pixel = argb[offset + i];
+            int j = 1 + i * channels;
+            row[j] = (byte) ((pixel >> 16) - (previous >> 16));
+            row[j + 1] = (byte) ((pixel >> 8) - (previous >> 8));
+            row[j + 2] = (byte) (pixel - previous);
+            if (channels == 4) {
+                row[j + 3] = (byte) ((pixel >>> 24) - (previous >>> 24));
+            }
+            previous = pixel;
+        }
+        compressed.write(row);
+        rowsWritten++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            // 写完剩余压缩数据与最后一个 IDAT 块
+            compressed.close();
+            writeChunk("IEND", new byte[0], 0);
+        } finally {
+            out.close();
+        }
+        if (rowsWritten != height) {
+            throw new IOException("PNG 行数不完整: " + rowsWritten + "/" + height);
+        }
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    // 压缩后的数据按固定大小切成 IDAT 块
+    private final class IdatOutputStream extends OutputStream {
+
+        private final byte[] buffer = new byte[IDAT_CHUNK_SIZE];
+        private int size;
+
+        @Override
+        public void write(int b) throws IOException {
+            buffer[size++] = (byte) b;
+            if (size == buffer.length) {
+                flushChunk();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, buffer.length - size);
+                System.arraycopy(b, off, buffer, size, n);
+                size += n;
+                off += n;
+                len -= n;
+                if (size == buffer.length) {
+                    flushChunk();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flushChunk();
+        }
+
+        private void flushChunk() throws IOException {
+            if (size > 0) {
+                writeChunk("IDAT", buffer, size);
+                size = 0;
+            }
+        }
+    }
+}
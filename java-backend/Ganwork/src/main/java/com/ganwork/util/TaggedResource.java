@@ -0,0 +1,10 @@
+package com.ganwork.util;
+
+import org.springframework.core.io.Resource;
+
+// 自带内容标识的资源（如对象存储中的文件），用作强 ETag，无需读取内容计算
+public interface TaggedResource extends Resource {
+
+    // 内容的 SHA-256，或对象存储给出的 ETag；未知时返回 null
+    String getContentTag();
+}
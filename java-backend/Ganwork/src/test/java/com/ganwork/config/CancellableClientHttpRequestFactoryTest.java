@@ -0,0 +1,136 @@
+package com.ganwork.config;
+
+import com.ganwork.service.CancellationToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CancellableClientHttpRequestFactoryTest {
+
+    private final CountDownLatch slowRelease = new CountDownLatch(1);
+    private final CancellationToken token = new CancellationToken("task-1");
+
+    private HttpServer server;
+    private CloseableHttpClient httpClient;
+    private RestTemplate restTemplate;
+    private String baseUrl;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/ok", exchange -> respond(exchange, 200, "ok"));
+        server.createContext("/error", exchange -> respond(exchange, 500, "boom"));
+        server.createContext("/slow", exchange -> {
+            try {
+                slowRelease.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, "late");
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        httpClient = HttpClients.createDefault();
+        restTemplate = new RestTemplate(new CancellableClientHttpRequestFactory(httpClient));
+        token.bind();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        token.unbind();
+        slowRelease.countDown();
+        httpClient.close();
+        server.stop(0);
+    }
+
+    // 交换结束后取消登记：一个任务发出的大量分块请求不会一直被取消标记持有
+    @Test
+    void finishedExchangesAreUntracked() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(restTemplate.getForObject(baseUrl + "/ok", String.class)).isEqualTo("ok");
+            assertThat(restTemplate.postForObject(baseUrl + "/ok", "body", String.class)).isEqualTo("ok");
+        }
+
+        assertThat(token.inFlightCount()).isZero();
+    }
+
+    @Test
+    void failedExchangesAreUntracked() throws IOException {
+        assertThatThrownBy(() -> restTemplate.getForObject(baseUrl + "/error", String.class))
+                .isInstanceOf(HttpServerErrorException.class);
+
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        assertThatThrownBy(() -> restTemplate.getForObject("http://127.0.0.1:" + closedPort + "/", String.class))
+                .isInstanceOf(ResourceAccessException.class);
+
+        assertThat(token.inFlightCount()).isZero();
+    }
+
+    // 进行中的请求仍被登记，取消任务时直接中止
+    @Test
+    void cancelAbortsInFlightExchange() throws Exception {
+        token.unbind();
+        CompletableFuture<String> call = CompletableFuture.supplyAsync(() -> {
+            token.bind();
+            try {
+                return restTemplate.getForObject(baseUrl + "/slow", String.class);
+            } finally {
+                token.unbind();
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (token.inFlightCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(token.inFlightCount()).isEqualTo(1);
+
+        token.cancel();
+
+        assertThatThrownBy(() -> call.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+        assertThat(token.inFlightCount()).isZero();
+    }
+
+    @Test
+    void requestsOutsideTaskAreNotTracked() {
+        token.unbind();
+
+        assertThat(restTemplate.getForObject(baseUrl + "/ok", String.class)).isEqualTo("ok");
+        assertThat(token.inFlightCount()).isZero();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.ganwork.config;
+
+import com.ganwork.util.FileStorageUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// /processed/** 静态资源：分片目录中的结果按文件名提供，带内容 ETag、长期缓存、条件请求与 Range
+@SpringBootTest
+@AutoConfigureMockMvc
+class ProcessedResourceCachingTest {
+
+    private static final byte[] CONTENT = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    static Path root;
+
+    @DynamicPropertySource
+    static void storage(DynamicPropertyRegistry registry) {
+        registry.add("app.upload-dir", () -> root.resolve("uploads").toString());
+        registry.add("app.python.processed-dir", () -> root.resolve("processed").toString());
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private FileStorageUtil fileStorageUtil;
+
+    private String filename;
+    private String etag;
+
+    @BeforeEach
+    void setUp() {
+        Path stored = Path.of(fileStorageUtil.storeProcessedFile("result.png", CONTENT));
+        filename = stored.getFileName().toString();
+        etag = "\"" + fileStorageUtil.digest(stored) + "\"";
+    }
+
+    @Test
+    void shardedResultIsServedWithEtagAndImmutableCaching() throws Exception {
+        mockMvc.perform(get("/processed/" + filename))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, public, immutable"))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(content().bytes(CONTENT));
+    }
+
+    @Test
+    void conditionalRequestsReturnNotModified() throws Exception {
+        mockMvc.perform(get("/processed/" + filename).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        String lastModified = mockMvc.perform(get("/processed/" + filename)).andReturn()
+                .getResponse().getHeader(HttpHeaders.LAST_MODIFIED);
+        mockMvc.perform(get("/processed/" + filename).header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(get("/processed/" + filename).header(HttpHeaders.IF_NONE_MATCH, "\"stale\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void rangeRequestReturnsPartialContent() throws Exception {
+        mockMvc.perform(get("/processed/" + filename).header(HttpHeaders.RANGE, "bytes=0-3"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 0-3/16"))
+                .andExpect(content().bytes("0123".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void missingResultReturnsNotFound() throws Exception {
+        mockMvc.perform(get("/processed/missing.png")).andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,51 @@
+package com.ganwork.controller;
+
+import com.ganwork.config.SchedulerProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClientIdentityResolverTest {
+
+    private ClientIdentityResolver resolver;
+    private MockHttpServletRequest request;
+
+    @BeforeEach
+    void setUp() {
+        SchedulerProperties properties = new SchedulerProperties();
+        SchedulerProperties.Client partner = new SchedulerProperties.Client();
+        partner.setApiKey("secret-a");
+        partner.setWeight(3);
+        properties.getClients().put("partner-a", partner);
+        resolver = new ClientIdentityResolver(properties);
+
+        request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.7");
+    }
+
+    @Test
+    void registeredApiKeyResolvesToClient() {
+        request.addHeader("X-Api-Key", "secret-a");
+
+        assertThat(resolver.resolve(request)).isEqualTo("partner-a");
+    }
+
+    // 请求自行声明的名称或错误的密钥不能借用登记客户端的身份与权重
+    @Test
+    void unknownKeyOrClaimedNameFallsBackToAddress() {
+        request.addHeader("X-Api-Key", "guess");
+        request.addHeader("X-Client-Id", "partner-a");
+
+        assertThat(resolver.resolve(request)).isEqualTo("addr:10.0.0.7");
+    }
+
+    @Test
+    void authenticatedPrincipalTakesPrecedence() {
+        request.setUserPrincipal(() -> "partner-b");
+        request.addHeader("X-Api-Key", "secret-a");
+
+        assertThat(resolver.resolve(request)).isEqualTo("partner-b");
+    }
+}
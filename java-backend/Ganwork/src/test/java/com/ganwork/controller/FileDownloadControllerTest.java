@@ -0,0 +1,99 @@
+package com.ganwork.controller;
+
+import com.ganwork.config.StorageProperties;
+import com.ganwork.util.FileStorageUtil;
+import com.ganwork.util.LocalStorageBackend;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class FileDownloadControllerTest {
+
+    private static final byte[] CONTENT = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path root;
+
+    private FileStorageUtil fileStorageUtil;
+    private MockMvc mockMvc;
+    private String filename;
+
+    @BeforeEach
+    void setUp() {
+        fileStorageUtil = new FileStorageUtil(root.resolve("uploads").toString(), root.resolve("processed").toString(),
+                new StorageProperties(), new LocalStorageBackend());
+        mockMvc = MockMvcBuilders.standaloneSetup(new FileDownloadController(fileStorageUtil)).build();
+        Path stored = Path.of(fileStorageUtil.storeProcessedFile("result.png", CONTENT));
+        filename = stored.getFileName().toString();
+    }
+
+    // ETag 为内容 SHA-256，结果不会被覆盖，允许长期缓存
+    @Test
+    void downloadCarriesContentEtagAndImmutableCaching() throws Exception {
+        String sha256 = fileStorageUtil.digest(fileStorageUtil.resolveProcessed(filename));
+
+        mockMvc.perform(get("/download/" + filename))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + sha256 + "\""))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, public, immutable"))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"" + filename + "\""))
+                .andExpect(content().bytes(CONTENT));
+    }
+
+    @Test
+    void matchingIfNoneMatchReturnsNotModified() throws Exception {
+        MvcResult first = mockMvc.perform(get("/download/" + filename)).andReturn();
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+
+        MvcResult revalidated = mockMvc.perform(get("/download/" + filename)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andReturn();
+        assertThat(revalidated.getResponse().getContentAsByteArray()).isEmpty();
+
+        mockMvc.perform(get("/download/" + filename).header(HttpHeaders.IF_NONE_MATCH, "\"other\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void ifModifiedSinceLastModifiedReturnsNotModified() throws Exception {
+        String lastModified = mockMvc.perform(get("/download/" + filename)).andReturn()
+                .getResponse().getHeader(HttpHeaders.LAST_MODIFIED);
+
+        mockMvc.perform(get("/download/" + filename).header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+                .andExpect(status().isNotModified());
+    }
+
+    // 断点续传：Range 请求只返回请求的字节
+    @Test
+    void rangeRequestReturnsPartialContent() throws Exception {
+        mockMvc.perform(get("/download/" + filename).header(HttpHeaders.RANGE, "bytes=4-9"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 4-9/16"))
+                .andExpect(content().bytes("456789".getBytes(StandardCharsets.US_ASCII)));
+
+        mockMvc.perform(get("/download/" + filename).header(HttpHeaders.RANGE, "bytes=10-"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().bytes("abcdef".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void missingFileReturnsNotFound() throws Exception {
+        mockMvc.perform(get("/download/missing.png")).andExpect(status().isNotFound());
+    }
+}
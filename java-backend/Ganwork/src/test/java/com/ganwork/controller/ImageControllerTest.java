@@ -0,0 +1,99 @@
+package com.ganwork.controller;
+
+import com.ganwork.config.SchedulerProperties;
+import com.ganwork.exception.TooManyTasksException;
+import com.ganwork.service.GlobalExceptionHandler;
+import com.ganwork.service.ImageProcessingService;
+import com.ganwork.util.ImageProcessingResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ImageControllerTest {
+
+    private final MockMultipartFile file = new MockMultipartFile("file", "a.png", "image/png", new byte[]{1, 2, 3});
+
+    private ImageProcessingService imageProcessingService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        imageProcessingService = mock(ImageProcessingService.class);
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(new ImageController(imageProcessingService,
+                        new ClientIdentityResolver(new SchedulerProperties())))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    // 同步接口在任务状态表已满时同样返回 429 与 Retry-After，而不是 400
+    @Test
+    void syncProcessReturnsTooManyRequestsWhenRegistryIsFull() throws Exception {
+        when(imageProcessingService.processImage(any(), anyString(), any(), anyInt(), anyString()))
+                .thenThrow(new TooManyTasksException("未结束的任务数已达上限，请稍后重试", 7));
+
+        mockMvc.perform(multipart("/api/images/process").file(file).param("mode", "denoise"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "7"))
+                .andExpect(jsonPath("$.success").value(false));
+    }
+
+    @Test
+    void asyncSubmitReturnsAcceptedWithStatusUrl() throws Exception {
+        when(imageProcessingService.submitImage(any(), anyString(), any(), anyInt(), anyString()))
+                .thenReturn("task-1");
+
+        mockMvc.perform(multipart("/api/images/process/async").file(file).param("mode", "denoise"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.taskId").value("task-1"))
+                .andExpect(jsonPath("$.statusUrl").value("/api/process/status/task-1"));
+    }
+
+    // 任务队列已满时异步提交返回 429，Retry-After 提示客户端稍后重试
+    @Test
+    void asyncSubmitReturnsTooManyRequestsWhenQueueIsFull() throws Exception {
+        when(imageProcessingService.submitImage(any(), anyString(), any(), anyInt(), anyString()))
+                .thenThrow(new TooManyTasksException("任务队列已满，请稍后重试", 5));
+
+        mockMvc.perform(multipart("/api/images/process/async").file(file).param("mode", "denoise"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "5"))
+                .andExpect(jsonPath("$.success").value(false));
+    }
+
+    // 批处理响应按上传顺序列出每个文件的结果，部分失败时整体仍返回 200
+    @Test
+    void batchResponseListsEveryFileInOrder() throws Exception {
+        when(imageProcessingService.processImages(any(), anyString(), any(), anyInt(), anyString()))
+                .thenReturn(List.of(
+                        ImageProcessingResponse.ProcessedImageResult.success("a.png", "/processed/a.png"),
+                        ImageProcessingResponse.ProcessedImageResult.failure("b.png", "推理失败")));
+
+        mockMvc.perform(multipart("/api/images/process/batch")
+                        .file(new MockMultipartFile("files", "a.png", "image/png", new byte[]{1}))
+                        .file(new MockMultipartFile("files", "b.png", "image/png", new byte[]{2}))
+                        .param("mode", "denoise"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.message").value("处理完成: 1/2 成功"))
+                .andExpect(jsonPath("$.results[0].originalFilename").value("a.png"))
+                .andExpect(jsonPath("$.results[0].processedUrl").value("/processed/a.png"))
+                .andExpect(jsonPath("$.results[1].originalFilename").value("b.png"))
+                .andExpect(jsonPath("$.results[1].success").value(false));
+    }
+}
@@ -0,0 +1,113 @@
+package com.ganwork.service;
+
+import com.ganwork.config.ResilienceProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MS = 1_000_000;
+
+    private ResilienceProperties properties;
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ResilienceProperties();
+        properties.setLimitInitial(4);
+        properties.setLimitMin(1);
+        properties.setLimitMax(6);
+        properties.setLimitBackoffRatio(0.5);
+        properties.setLimitLatencyTolerance(2.0);
+        limiter = new AdaptiveConcurrencyLimiter(properties);
+    }
+
+    @Test
+    void rejectsAtLimit() {
+        for (int i = 0; i < 4; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+        }
+        assertThat(limiter.tryAcquire()).isFalse();
+        assertThat(limiter.isSaturated()).isTrue();
+
+        limiter.onIgnore();
+        assertThat(limiter.isSaturated()).isFalse();
+        assertThat(limiter.tryAcquire()).isTrue();
+    }
+
+    // 上限用满时每个正常的成功调用加 1/limit，约 limit 次成功后上限加 1，且不超过上界
+    @Test
+    void additiveIncreaseWhileBusy() {
+        for (int round = 0; round < 40; round++) {
+            fill();
+            drain("/denoise", 10 * MS);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(6);
+    }
+
+    // 空闲时（进行中的调用不到上限一半）上限不增长
+    @Test
+    void noIncreaseWhileIdle() {
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire();
+            limiter.onSuccess("/denoise", 10 * MS);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    void multiplicativeDecreaseOnFailureDownToMinimum() {
+        limiter.tryAcquire();
+        limiter.onFailure();
+        assertThat(limiter.getLimit()).isEqualTo(2);
+
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire();
+            limiter.onFailure();
+        }
+        assertThat(limiter.getLimit()).isEqualTo(1);
+    }
+
+    @Test
+    void latencyAboveBaselineShrinksLimit() {
+        limiter.tryAcquire();
+        limiter.onSuccess("/denoise", 10 * MS);
+        limiter.tryAcquire();
+        limiter.onSuccess("/denoise", 50 * MS);
+
+        assertThat(limiter.getLimit()).isEqualTo(2);
+    }
+
+    // 慢模型的正常耗时不与同一后端上快模型的基线比较
+    @Test
+    void baselineIsTrackedPerRoute() {
+        for (int i = 0; i < 20; i++) {
+            limiter.tryAcquire();
+            limiter.onSuccess("/denoise", 10 * MS);
+        }
+        for (int i = 0; i < 20; i++) {
+            limiter.tryAcquire();
+            limiter.onSuccess("/super_res_4x", 400 * MS);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(4);
+
+        limiter.tryAcquire();
+        limiter.onSuccess("/denoise", 50 * MS);
+        assertThat(limiter.getLimit()).isEqualTo(2);
+    }
+
+    private void fill() {
+        while (limiter.tryAcquire()) {
+            // 占满当前上限
+        }
+    }
+
+    private void drain(String route, long latencyNanos) {
+        int inFlight = limiter.getLimit();
+        for (int i = 0; i < inFlight; i++) {
+            limiter.onSuccess(route, latencyNanos);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.ganwork.service;
+
+import com.ganwork.config.ResilienceProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private static final long OPEN_MILLIS = 30_000;
+
+    private CircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        ResilienceProperties properties = new ResilienceProperties();
+        properties.setBreakerWindowSize(4);
+        properties.setBreakerMinimumCalls(4);
+        properties.setBreakerFailureRatePercent(50);
+        properties.setBreakerOpenSeconds(30);
+        properties.setBreakerHalfOpenCalls(2);
+        breaker = new CircuitBreaker(properties);
+    }
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() {
+        complete(0, false);
+        complete(0, false);
+        complete(0, true);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        complete(0, true);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.isOpen(1)).isTrue();
+        assertThat(breaker.tryAcquire(OPEN_MILLIS - 1)).isNull();
+    }
+
+    // 断开期满后只放行有限的探测请求，探测全部成功后闭合
+    @Test
+    void halfOpenProbesCloseOnSuccess() {
+        open();
+        CircuitBreaker.Permit first = breaker.tryAcquire(OPEN_MILLIS);
+        CircuitBreaker.Permit second = breaker.tryAcquire(OPEN_MILLIS);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire(OPEN_MILLIS)).isNull();
+
+        breaker.onSuccess(first, OPEN_MILLIS);
+        breaker.onSuccess(second, OPEN_MILLIS);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void halfOpenProbeFailureReopens() {
+        open();
+        CircuitBreaker.Permit probe = breaker.tryAcquire(OPEN_MILLIS);
+
+        breaker.onFailure(probe, OPEN_MILLIS);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire(OPEN_MILLIS + 1)).isNull();
+    }
+
+    @Test
+    void ignoredProbeReturnsItsSlot() {
+        open();
+        CircuitBreaker.Permit first = breaker.tryAcquire(OPEN_MILLIS);
+        breaker.tryAcquire(OPEN_MILLIS);
+
+        breaker.onIgnore(first);
+        assertThat(breaker.tryAcquire(OPEN_MILLIS)).isNotNull();
+        assertThat(breaker.tryAcquire(OPEN_MILLIS)).isNull();
+    }
+
+    // 闭合时发出、半开后才结束的调用既不占用也不归还探测名额，结果也不算作探测成功
+    @Test
+    void callsFromEarlierStateDoNotAffectHalfOpenProbes() {
+        CircuitBreaker.Permit slow = breaker.tryAcquire(0);
+        CircuitBreaker.Permit ignoredLater = breaker.tryAcquire(0);
+        open();
+        CircuitBreaker.Permit probe = breaker.tryAcquire(OPEN_MILLIS);
+        breaker.tryAcquire(OPEN_MILLIS);
+
+        breaker.onIgnore(ignoredLater);
+        assertThat(breaker.tryAcquire(OPEN_MILLIS)).isNull();
+
+        breaker.onSuccess(slow, OPEN_MILLIS);
+        breaker.onSuccess(probe, OPEN_MILLIS);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    }
+
+    @Test
+    void resultsFromBeforeOpeningAreNotCounted() {
+        CircuitBreaker.Permit late = breaker.tryAcquire(0);
+        open();
+
+        breaker.onFailure(late, 1);
+        assertThat(breaker.tryAcquire(OPEN_MILLIS)).isNotNull();
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            complete(0, true);
+        }
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private void complete(long now, boolean failed) {
+        CircuitBreaker.Permit permit = breaker.tryAcquire(now);
+        assertThat(permit).isNotNull();
+        if (failed) {
+            breaker.onFailure(permit, now);
+        } else {
+            breaker.onSuccess(permit, now);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.ganwork.service;
+
+import com.ganwork.config.ModelConfig;
+import com.ganwork.config.PreflightProperties;
+import com.ganwork.config.StorageProperties;
+import com.ganwork.config.TilingProperties;
+import com.ganwork.exception.ImageTooLargeException;
+import com.ganwork.exception.ModelType;
+import com.ganwork.util.FileStorageUtil;
+import com.ganwork.util.LocalStorageBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class ImagePreflightTest {
+
+    private static final List<ModelType.InternalModel> SUPER_RES = List.of(ModelType.InternalModel.SUPER_RES_4X);
+    private static final List<ModelType.InternalModel> COLOR = List.of(ModelType.InternalModel.COLOR_ENHANCE);
+
+    @TempDir
+    Path root;
+
+    private PreflightProperties preflightProperties;
+    private TilingProperties tilingProperties;
+    private FileStorageUtil fileStorageUtil;
+    private ImagePreflight preflight;
+
+    @BeforeEach
+    void setUp() {
+        preflightProperties = new PreflightProperties();
+        preflightProperties.setDefaultMaxInputPixels(1000);
+        // 与默认配置相同：超分模型的像素上限等于分块阈值
+        ModelConfig.ModelProperties superRes = new ModelConfig.ModelProperties();
+        superRes.setMaxInputPixels(1000);
+        ModelConfig modelConfig = new ModelConfig();
+        modelConfig.getModelMap().put(ModelType.SUPER_RES_4X, superRes);
+        tilingProperties = new TilingProperties();
+        tilingProperties.setThresholdPixels(1000);
+        tilingProperties.setMaxInputPixels(4000);
+
+        fileStorageUtil = new FileStorageUtil(root.resolve("uploads").toString(),
+                root.resolve("processed").toString(), new StorageProperties(), new LocalStorageBackend());
+        TiledImageProcessor tiledImageProcessor = new TiledImageProcessor(tilingProperties, fileStorageUtil,
+                mock(ProcessingMonitor.class), new ThreadPoolTaskExecutor());
+        preflight = new ImagePreflight(preflightProperties, modelConfig,
+                new ProcessingMetrics(new SimpleMeterRegistry()), tiledImageProcessor, fileStorageUtil);
+    }
+
+    // 超过模型上限但会分块处理的输入不缩小，推理服务只收到分块
+    @Test
+    void tiledInputIsNotDownscaledToModelLimit() throws IOException {
+        Path input = write(solid(60, 40, 0xff336699), "png");
+
+        assertThat(preflight.prepare(input.toString(), SUPER_RES)).isEqualTo(input.toString());
+    }
+
+    @Test
+    void tiledInputAboveTilingLimitIsDownscaledToIt() throws IOException {
+        Path input = write(solid(100, 80, 0xff336699), "png");
+
+        BufferedImage output = read(preflight.prepare(input.toString(), SUPER_RES));
+        assertThat((long) output.getWidth() * output.getHeight()).isLessThanOrEqualTo(4000).isGreaterThan(1000);
+    }
+
+    @Test
+    void untiledInputIsDownscaledToModelLimit() throws IOException {
+        tilingProperties.setEnabled(false);
+        Path input = write(solid(60, 40, 0xff336699), "png");
+
+        BufferedImage output = read(preflight.prepare(input.toString(), SUPER_RES));
+        assertThat(output.getWidth()).isEqualTo(38);
+        assertThat(output.getHeight()).isEqualTo(25);
+    }
+
+    @Test
+    void rejectActionThrowsForOversizeInput() throws IOException {
+        preflightProperties.setOversizeAction(PreflightProperties.OversizeAction.REJECT);
+        Path input = write(solid(60, 40, 0xff336699), "png");
+
+        assertThatThrownBy(() -> preflight.prepare(input.toString(), COLOR))
+                .isInstanceOf(ImageTooLargeException.class);
+        assertThat(input).exists();
+    }
+
+    // PNG 逐行按面积平均缩小：颜色按透明度加权，透明通道保留
+    @Test
+    void pngIsDownscaledRowByRowKeepingAlpha() throws IOException {
+        preflightProperties.setDefaultMaxInputPixels(64 * 48 / 4);
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 48; y++) {
+            for (int x = 0; x < 64; x++) {
+                // 隔列交替：不透明红色与全透明绿色
+                image.setRGB(x, y, x % 2 == 0 ? 0xffff0000 : 0x0000ff00);
+            }
+        }
+        Path input = write(image, "png");
+
+        BufferedImage output = read(preflight.prepare(input.toString(), COLOR));
+
+        assertThat(output.getWidth()).isEqualTo(32);
+        assertThat(output.getHeight()).isEqualTo(24);
+        assertThat(output.getColorModel().hasAlpha()).isTrue();
+        assertThat(output.getRGB(5, 5)).isEqualTo(0x80ff0000);
+    }
+
+    @Test
+    void nonPngIsDecodedSubsampledAndReplacedByPng() throws IOException {
+        Path input = write(solid(64, 48, 0xff336699), "bmp");
+
+        String prepared = preflight.prepare(input.toString(), COLOR);
+
+        assertThat(prepared).endsWith(".png");
+        assertThat(input).doesNotExist();
+        BufferedImage output = read(prepared);
+        assertThat((long) output.getWidth() * output.getHeight()).isLessThanOrEqualTo(1000);
+        assertThat(output.getRGB(3, 3)).isEqualTo(0xff336699);
+    }
+
+    // 替换后的输入加入上传目录索引，删除的原文件移出索引
+    @Test
+    void rewrittenUploadReplacesOriginalInIndex() throws IOException {
+        Path input = root.resolve("uploads").resolve("upload.bmp");
+        ImageIO.write(solid(64, 48, 0xff336699), "bmp", input.toFile());
+        fileStorageUtil.getUploadIndex().add(input);
+
+        Path prepared = Path.of(preflight.prepare(input.toString(), COLOR));
+
+        assertThat(fileStorageUtil.getUploadIndex().size()).isEqualTo(1);
+        assertThat(fileStorageUtil.getUploadIndex().totalBytes()).isEqualTo(Files.size(prepared));
+    }
+
+    // 只需转换格式时按原尺寸逐行写出 8 位 RGB
+    @Test
+    void normalizeConvertsGrayPngWithoutResizing() throws IOException {
+        preflightProperties.setNormalize(true);
+        BufferedImage gray = new BufferedImage(20, 10, BufferedImage.TYPE_BYTE_GRAY);
+        gray.getRaster().setSample(4, 2, 0, 200);
+        Path input = write(gray, "png");
+
+        BufferedImage output = read(preflight.prepare(input.toString(), COLOR));
+
+        assertThat(output.getWidth()).isEqualTo(20);
+        assertThat(output.getHeight()).isEqualTo(10);
+        assertThat(output.getColorModel().getNumColorComponents()).isEqualTo(3);
+        assertThat(output.getRGB(4, 2)).isEqualTo(0xffc8c8c8);
+        assertThat(output.getRGB(0, 0)).isEqualTo(0xff000000);
+    }
+
+    private Path write(BufferedImage image, String format) throws IOException {
+        Path file = root.resolve("input." + format);
+        ImageIO.write(image, format, file.toFile());
+        return file;
+    }
+
+    private static BufferedImage read(String path) throws IOException {
+        assertThat(Files.exists(Path.of(path))).isTrue();
+        return ImageIO.read(Path.of(path).toFile());
+    }
+
+    private static BufferedImage solid(int width, int height, int argb) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, argb);
+            }
+        }
+        return image;
+    }
+}
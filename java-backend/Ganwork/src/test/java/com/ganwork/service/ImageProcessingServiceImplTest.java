@@ -0,0 +1,390 @@
+package com.ganwork.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ganwork.config.ModelConfig;
+import com.ganwork.config.PreviewProperties;
+import com.ganwork.config.ResultCacheProperties;
+import com.ganwork.config.SchedulerProperties;
+import com.ganwork.config.StorageProperties;
+import com.ganwork.config.TaskExecutorProperties;
+import com.ganwork.config.TaskRegistryProperties;
+import com.ganwork.exception.ModelType;
+import com.ganwork.exception.TooManyTasksException;
+import com.ganwork.util.FileStorageUtil;
+import com.ganwork.util.ImageProcessingResponse;
+import com.ganwork.util.LocalStorageBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ImageProcessingServiceImplTest {
+
+    private static final byte[] IMAGE = {1, 2, 3, 4};
+
+    private static final List<ModelType.InternalModel> TWO_STEPS =
+            List.of(ModelType.InternalModel.DENOISE, ModelType.InternalModel.SUPER_RES_2X);
+    private static final InferenceScheduler.Submitter SUBMITTER =
+            new InferenceScheduler.Submitter("client", InferenceScheduler.Priority.INTERACTIVE);
+
+    @TempDir
+    Path root;
+
+    private FileStorageUtil fileStorageUtil;
+    private ProcessingMonitor processingMonitor;
+    private ApiProcessingService apiProcessingService;
+    private ThreadPoolTaskExecutor imageTaskExecutor;
+    private ThreadPoolTaskExecutor batchTaskExecutor;
+    private ThreadPoolTaskExecutor previewTaskExecutor;
+    private ImagePreflight imagePreflight;
+    private ProcessingMetrics metrics;
+    private JobJournal jobJournal;
+    private ImageProcessingServiceImpl service;
+
+    // 推理调用在放行前一直阻塞，模拟耗时的推理
+    private final CountDownLatch inferenceGate = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        fileStorageUtil = new FileStorageUtil(root.resolve("uploads").toString(), root.resolve("processed").toString(),
+                new StorageProperties(), new LocalStorageBackend());
+        processingMonitor = new ProcessingMonitor(new TaskRegistryProperties(), new ObjectMapper());
+        ProcessingMetrics metrics = new ProcessingMetrics(new SimpleMeterRegistry());
+
+        apiProcessingService = mock(ApiProcessingService.class);
+        when(apiProcessingService.process(anyString(), anyBoolean(), any(), anyString(), anyInt(), anyBoolean()))
+                .thenAnswer(invocation -> {
+                    inferenceGate.await(10, TimeUnit.SECONDS);
+                    // 取消时进行中的请求被中止
+                    CancellationToken.current().throwIfCancelled();
+                    return fileStorageUtil.storeProcessedFile("result.png", new byte[]{9, 9});
+                });
+        ImagePreflight imagePreflight = mock(ImagePreflight.class);
+        when(imagePreflight.prepare(anyString(), any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        this.imagePreflight = imagePreflight;
+        this.metrics = metrics;
+        jobJournal = mock(JobJournal.class);
+
+        imageTaskExecutor = executor();
+        batchTaskExecutor = executor();
+        service = newService(mock(PreviewGenerator.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        inferenceGate.countDown();
+        imageTaskExecutor.shutdown();
+        batchTaskExecutor.shutdown();
+        if (previewTaskExecutor != null) {
+            previewTaskExecutor.shutdown();
+        }
+    }
+
+    // 相同图片与参数的并发请求只调用一次推理服务，结果共享
+    @Test
+    void identicalRequestsShareOneInference() {
+        String leader = service.submitImage(upload(), "denoise", "photo", 1, "client");
+        verify(apiProcessingService, timeout(2000)).process(anyString(), anyBoolean(), any(), anyString(), anyInt(),
+                anyBoolean());
+        String follower = service.submitImage(upload(), "denoise", "photo", 1, "client");
+        awaitStatus(follower, "STARTED");
+
+        inferenceGate.countDown();
+        awaitStatus(leader, "COMPLETED");
+        awaitStatus(follower, "COMPLETED");
+
+        assertThat(resultUrl(follower)).isEqualTo(resultUrl(leader));
+        verify(apiProcessingService, times(1)).process(anyString(), anyBoolean(), any(), anyString(), anyInt(),
+                anyBoolean());
+    }
+
+    // 被合并的请求可以单独取消，不必等待发起方完成
+    @Test
+    void coalescedFollowerCanBeCancelledWhileLeaderRuns() {
+        String leader = service.submitImage(upload(), "denoise", "photo", 1, "client");
+        verify(apiProcessingService, timeout(2000)).process(anyString(), anyBoolean(), any(), anyString(), anyInt(),
+                anyBoolean());
+        String follower = service.submitImage(upload(), "denoise", "photo", 1, "client");
+        awaitStatus(follower, "STARTED");
+
+        processingMonitor.stopProcess(follower);
+        awaitStatus(follower, "CANCELLED");
+        assertThat(processingMonitor.getProcessStatusObject(leader).isTerminal()).isFalse();
+
+        inferenceGate.countDown();
+        awaitStatus(leader, "COMPLETED");
+    }
+
+    // 发起方被取消后，等待中的相同请求重新发起推理
+    @Test
+    void followerRetriesWhenLeaderIsCancelled() {
+        String leader = service.submitImage(upload(), "denoise", "photo", 1, "client");
+        verify(apiProcessingService, timeout(2000)).process(anyString(), anyBoolean(), any(), anyString(), anyInt(),
+                anyBoolean());
+        String follower = service.submitImage(upload(), "denoise", "photo", 1, "client");
+        awaitStatus(follower, "STARTED");
+
+        processingMonitor.stopProcess(leader);
+        inferenceGate.countDown();
+        awaitStatus(follower, "COMPLETED");
+        assertThat(status(leader)).isEqualTo("CANCELLED");
+    }
+
+    // 取消的任务删除上传文件时同步移出存储索引，容量统计不会残留
+    @Test
+    void cancelledTaskRemovesUploadFromIndex() {
+        String taskId = service.submitImage(upload(), "denoise", "photo", 1, "client");
+        verify(apiProcessingService, timeout(2000)).process(anyString(), anyBoolean(), any(), anyString(), anyInt(),
+                anyBoolean());
+        assertThat(fileStorageUtil.getUploadIndex().totalBytes()).isEqualTo(IMAGE.length);
+
+        processingMonitor.stopProcess(taskId);
+        inferenceGate.countDown();
+        awaitStatus(taskId, "CANCELLED");
+
+        awaitCondition(() -> fileStorageUtil.getUploadIndex().size() == 0, Duration.ofSeconds(5));
+        assertThat(fileStorageUtil.getUploadIndex().totalBytes()).isZero();
+    }
+
+    // 异步提交在线程池与队列都已占满时拒绝（429 + Retry-After），已落盘的上传文件被清理
+    @Test
+    void asyncSubmitIsRejectedWhenExecutorIsFull() {
+        imageTaskExecutor.shutdown();
+        imageTaskExecutor = new ThreadPoolTaskExecutor();
+        imageTaskExecutor.setCorePoolSize(1);
+        imageTaskExecutor.setMaxPoolSize(1);
+        imageTaskExecutor.setQueueCapacity(0);
+        imageTaskExecutor.initialize();
+        service = newService(mock(PreviewGenerator.class));
+        String running = service.submitImage(upload(), "denoise", "photo", 1, "client");
+        verify(apiProcessingService, timeout(2000)).process(anyString(), anyBoolean(), any(), anyString(), anyInt(),
+                anyBoolean());
+
+        MockMultipartFile other = new MockMultipartFile("file", "other.png", "image/png", new byte[]{7, 7});
+        assertThatThrownBy(() -> service.submitImage(other, "denoise", "photo", 1, "client"))
+                .isInstanceOfSatisfying(TooManyTasksException.class, e -> assertThat(e.getRetryAfterSeconds())
+                        .isEqualTo(new TaskExecutorProperties().getRetryAfterSeconds()));
+
+        // 只剩正在执行的任务的上传文件
+        assertThat(fileStorageUtil.getUploadIndex().size()).isEqualTo(1);
+        verify(jobJournal).finished(anyString(), eq("FAILED"));
+        inferenceGate.countDown();
+        awaitStatus(running, "COMPLETED");
+    }
+
+    // 批处理并发执行，结果按上传顺序返回；单个文件校验失败或推理失败只影响该文件
+    @Test
+    void batchKeepsInputOrderAndIsolatesFailures() {
+        doAnswer(invocation -> {
+            String input = invocation.getArgument(0);
+            if (input.endsWith("slow.png")) {
+                // 最先提交、最后完成
+                Thread.sleep(300);
+            } else if (input.endsWith("broken.png")) {
+                throw new IllegalStateException("推理失败");
+            }
+            return fileStorageUtil.storeProcessedFile("result.png", new byte[]{9});
+        }).when(apiProcessingService).process(anyString(), anyBoolean(), any(), anyString(), anyInt(), anyBoolean());
+
+        MockMultipartFile[] files = {
+                new MockMultipartFile("files", "slow.png", "image/png", new byte[]{1}),
+                new MockMultipartFile("files", "note.txt", "text/plain", new byte[]{2}),
+                new MockMultipartFile("files", "broken.png", "image/png", new byte[]{3}),
+                new MockMultipartFile("files", "fast.png", "image/png", new byte[]{4})
+        };
+
+        List<ImageProcessingResponse.ProcessedImageResult> results =
+                service.processImages(files, "denoise", "photo", 1, "client");
+
+        assertThat(results).extracting(ImageProcessingResponse.ProcessedImageResult::getOriginalFilename)
+                .containsExactly("slow.png", "note.txt", "broken.png", "fast.png");
+        assertThat(results).extracting(ImageProcessingResponse.ProcessedImageResult::isSuccess)
+                .containsExactly(true, false, false, true);
+        assertThat(results.get(1).getMessage()).contains("Invalid file type");
+        assertThat(results.get(2).getMessage()).contains("推理失败");
+        assertThat(results.get(0).getProcessedUrl()).startsWith("/processed/")
+                .isNotEqualTo(results.get(3).getProcessedUrl());
+    }
+
+    // 预览在后台生成，同步接口返回前等待其完成，新结果（未命中缓存）同样带有预览地址
+    @Test
+    void freshSyncResultCarriesPreviewUrl() throws Exception {
+        byte[] png = png(1200, 800);
+        doAnswer(invocation -> fileStorageUtil.storeProcessedFile("result.png", png))
+                .when(apiProcessingService).process(anyString(), anyBoolean(), any(), anyString(), anyInt(),
+                        anyBoolean());
+        previewTaskExecutor = new ThreadPoolTaskExecutor();
+        // 预览任务延后执行，结果返回时预览一定尚未生成
+        previewTaskExecutor.setTaskDecorator(task -> () -> {
+            sleepQuietly(300);
+            task.run();
+        });
+        previewTaskExecutor.initialize();
+        service = newService(new PreviewGenerator(new PreviewProperties(), fileStorageUtil, metrics,
+                previewTaskExecutor));
+
+        String resultUrl = service.processImage(upload(), "denoise", "photo", 1, "client");
+        Map<String, String> previews = service.previewUrls(resultUrl);
+
+        assertThat(previews).containsKey("previewUrl");
+        String preview = previews.get("previewUrl");
+        assertThat(fileStorageUtil.findProcessed(preview.substring(preview.lastIndexOf('/') + 1))).isNotNull();
+
+        List<ImageProcessingResponse.ProcessedImageResult> batch = service.processImages(
+                new MockMultipartFile[]{new MockMultipartFile("files", "other.png", "image/png", new byte[]{5, 6})},
+                "denoise", "photo", 1, "client");
+        assertThat(batch.get(0).getPreviewUrl()).isNotNull();
+    }
+
+    // 多步流水线：中间步骤结果留在推理服务端，下一步以远程引用作为输入，并记录检查点
+    @Test
+    void twoStepPipelineChainsRemoteResult() {
+        inferenceGate.countDown();
+        String intermediate = "http://inference:8000/results/step1.png";
+        when(apiProcessingService.processRemote(anyString(), anyBoolean(), any(), anyString(), anyInt()))
+                .thenReturn(intermediate);
+        String input = fileStorageUtil.getPath(fileStorageUtil.store(upload())).toString();
+
+        String resultUrl = service.runPipeline(input, TWO_STEPS, "photo", 1, "task-2", SUBMITTER,
+                new CancellationToken("task-2"), null);
+
+        assertThat(resultUrl).startsWith("/processed/");
+        verify(apiProcessingService).processRemote(input, false, ModelType.InternalModel.DENOISE, "photo", 1);
+        verify(apiProcessingService).process(intermediate, true, ModelType.InternalModel.SUPER_RES_2X, "photo", 1,
+                true);
+        verify(jobJournal).stepCompleted("task-2", 1, intermediate);
+    }
+
+    // 从检查点恢复：第 1 步已完成，直接以其远程结果执行第 2 步，不重复第 1 步
+    @Test
+    void resumeFromCheckpointSkipsCompletedStep() {
+        inferenceGate.countDown();
+        String intermediate = "http://inference:8000/results/step1.png";
+        String input = fileStorageUtil.getPath(fileStorageUtil.store(upload())).toString();
+
+        String resultUrl = service.runPipeline(input, TWO_STEPS, "photo", 1, "task-r", SUBMITTER,
+                new CancellationToken("task-r"), checkpoint("task-r", input, intermediate));
+
+        assertThat(resultUrl).startsWith("/processed/");
+        verify(apiProcessingService, never()).processRemote(anyString(), anyBoolean(), any(), anyString(), anyInt());
+        verify(apiProcessingService).process(intermediate, true, ModelType.InternalModel.SUPER_RES_2X, "photo", 1,
+                true);
+    }
+
+    // 中间结果已随推理服务重启丢失时，从第 1 步重新执行
+    @Test
+    void lostCheckpointResultRestartsFromFirstStep() {
+        inferenceGate.countDown();
+        String lost = "http://inference:8000/results/lost.png";
+        String fresh = "http://inference:8000/results/fresh.png";
+        String input = fileStorageUtil.getPath(fileStorageUtil.store(upload())).toString();
+        when(apiProcessingService.process(eq(lost), eq(true), any(), anyString(), anyInt(), anyBoolean()))
+                .thenThrow(new IllegalStateException("404 result not found"));
+        when(apiProcessingService.processRemote(anyString(), anyBoolean(), any(), anyString(), anyInt()))
+                .thenReturn(fresh);
+
+        String resultUrl = service.runPipeline(input, TWO_STEPS, "photo", 1, "task-l", SUBMITTER,
+                new CancellationToken("task-l"), checkpoint("task-l", input, lost));
+
+        assertThat(resultUrl).startsWith("/processed/");
+        verify(apiProcessingService).processRemote(input, false, ModelType.InternalModel.DENOISE, "photo", 1);
+        verify(apiProcessingService).process(fresh, true, ModelType.InternalModel.SUPER_RES_2X, "photo", 1, true);
+    }
+
+    private static JobJournal.JobRecord checkpoint(String taskId, String input, String stepResult) {
+        return new JobJournal.JobRecord("CHECKPOINT", taskId, "DENOISE", "photo", 1, "client", input, 1,
+                stepResult, null, System.currentTimeMillis());
+    }
+
+    private ImageProcessingServiceImpl newService(PreviewGenerator previewGenerator) {
+        return new ImageProcessingServiceImpl(fileStorageUtil, apiProcessingService, processingMonitor,
+                imageTaskExecutor, batchTaskExecutor, new TaskExecutorProperties(),
+                new ResultCache(new ResultCacheProperties(), fileStorageUtil), metrics,
+                new InferenceScheduler(new ModelConfig(), new SchedulerProperties(), metrics),
+                mock(TiledImageProcessor.class), imagePreflight, jobJournal, previewGenerator);
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private MockMultipartFile upload() {
+        return new MockMultipartFile("file", "photo.png", "image/png", IMAGE);
+    }
+
+    private String status(String taskId) {
+        return processingMonitor.getProcessStatusObject(taskId).currentStatus();
+    }
+
+    private String resultUrl(String taskId) {
+        return processingMonitor.getProcessStatusObject(taskId).resultUrl();
+    }
+
+    private void awaitStatus(String taskId, String expected) {
+        awaitCondition(() -> expected.equals(status(taskId)), Duration.ofSeconds(5));
+    }
+
+    static void awaitCondition(Supplier<Boolean> condition, Duration limit) {
+        long deadline = System.nanoTime() + limit.toNanos();
+        while (!condition.get()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("等待条件超时");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    private static ThreadPoolTaskExecutor executor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(4);
+        executor.initialize();
+        return executor;
+    }
+}
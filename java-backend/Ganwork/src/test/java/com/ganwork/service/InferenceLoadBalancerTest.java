@@ -0,0 +1,68 @@
+package com.ganwork.service;
+
+import com.ganwork.config.LoadBalancerProperties;
+import com.ganwork.config.ModelConfig;
+import com.ganwork.config.ResilienceProperties;
+import com.ganwork.exception.ModelType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InferenceLoadBalancerTest {
+
+    private static final ModelType.InternalModel MODEL = ModelType.InternalModel.DENOISE;
+
+    private ResilienceProperties resilienceProperties;
+    private InferenceLoadBalancer loadBalancer;
+
+    @BeforeEach
+    void setUp() {
+        resilienceProperties = new ResilienceProperties();
+        resilienceProperties.setLimitInitial(1);
+        resilienceProperties.setBreakerMinimumCalls(1);
+        resilienceProperties.setBreakerWindowSize(1);
+        loadBalancer = new InferenceLoadBalancer(new ModelConfig(), new LoadBalancerProperties(), resilienceProperties,
+                new ProcessingMetrics(new SimpleMeterRegistry()));
+    }
+
+    // 并发已满的副本可以等待，熔断的副本不能
+    @Test
+    void distinguishesSaturationFromOpenCircuit() {
+        InferenceLoadBalancer.Replica replica = loadBalancer.choose(MODEL, Set.of());
+        InferenceLoadBalancer.Lease lease = loadBalancer.tryAcquire(replica, replica.endpoint());
+        assertThat(lease).isNotNull();
+        assertThat(loadBalancer.tryAcquire(replica, replica.endpoint())).isNull();
+        assertThat(loadBalancer.isSaturated(replica)).isTrue();
+
+        loadBalancer.release(lease, InferenceLoadBalancer.Outcome.FAILURE, 0);
+        assertThat(loadBalancer.tryAcquire(replica, replica.endpoint())).isNull();
+        assertThat(loadBalancer.isSaturated(replica)).isFalse();
+    }
+
+    @Test
+    void awaitCapacityWakesWhenCallEnds() throws Exception {
+        InferenceLoadBalancer.Replica replica = loadBalancer.choose(MODEL, Set.of());
+        InferenceLoadBalancer.Lease lease = loadBalancer.tryAcquire(replica, replica.endpoint());
+
+        CompletableFuture<Long> waited = CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                loadBalancer.awaitCapacity(10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return System.nanoTime() - start;
+        });
+        Thread.sleep(100);
+        loadBalancer.release(lease, InferenceLoadBalancer.Outcome.SUCCESS, 1_000_000);
+
+        assertThat(waited.get(5, TimeUnit.SECONDS)).isLessThan(TimeUnit.SECONDS.toNanos(5));
+        assertThat(loadBalancer.tryAcquire(replica, replica.endpoint())).isNotNull();
+    }
+}
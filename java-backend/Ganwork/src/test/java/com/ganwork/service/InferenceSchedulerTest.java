@@ -0,0 +1,198 @@
+package com.ganwork.service;
+
+import com.ganwork.config.ModelConfig;
+import com.ganwork.config.SchedulerProperties;
+import com.ganwork.exception.ModelType;
+import com.ganwork.exception.TaskCancelledException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.ganwork.service.ImageProcessingServiceImplTest.awaitCondition;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InferenceSchedulerTest {
+
+    private static final ModelType.InternalModel MODEL = ModelType.InternalModel.DENOISE;
+
+    private SimpleMeterRegistry registry;
+    private SchedulerProperties properties;
+    private InferenceScheduler scheduler;
+    private ExecutorService threads;
+
+    // 按获得许可的顺序记录调用
+    private final List<String> order = Collections.synchronizedList(new ArrayList<>());
+    private final List<Future<?>> calls = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        properties = new SchedulerProperties();
+        properties.setDefaultMaxConcurrency(1);
+        scheduler = new InferenceScheduler(new ModelConfig(), properties, new ProcessingMetrics(registry));
+        threads = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        threads.shutdownNow();
+    }
+
+    // 同一优先级内各客户端轮流获得许可，不因先到的客户端排了多个请求而饿死后到的客户端
+    @Test
+    void clientsShareFairlyWithinPriority() throws Exception {
+        CountDownLatch holder = occupyPermit();
+        enqueue("a", InferenceScheduler.Priority.INTERACTIVE, "a1");
+        enqueue("a", InferenceScheduler.Priority.INTERACTIVE, "a2");
+        enqueue("a", InferenceScheduler.Priority.INTERACTIVE, "a3");
+        enqueue("b", InferenceScheduler.Priority.INTERACTIVE, "b1");
+
+        holder.countDown();
+        awaitCalls();
+
+        assertThat(order).containsExactly("holder", "a1", "b1", "a2", "a3");
+    }
+
+    @Test
+    void weightedClientGetsProportionalShare() throws Exception {
+        SchedulerProperties.Client partner = new SchedulerProperties.Client();
+        partner.setWeight(2);
+        properties.getClients().put("partner", partner);
+
+        CountDownLatch holder = occupyPermit();
+        for (int i = 1; i <= 4; i++) {
+            enqueue("partner", InferenceScheduler.Priority.INTERACTIVE, "p" + i);
+        }
+        enqueue("addr:10.0.0.1", InferenceScheduler.Priority.INTERACTIVE, "c1");
+        enqueue("addr:10.0.0.1", InferenceScheduler.Priority.INTERACTIVE, "c2");
+
+        holder.countDown();
+        awaitCalls();
+
+        assertThat(order).containsExactly("holder", "p1", "p2", "c1", "p3", "p4", "c2");
+    }
+
+    @Test
+    void interactiveRunsBeforeBatch() throws Exception {
+        CountDownLatch holder = occupyPermit();
+        enqueue("a", InferenceScheduler.Priority.BATCH, "batch");
+        enqueue("b", InferenceScheduler.Priority.INTERACTIVE, "interactive");
+
+        holder.countDown();
+        awaitCalls();
+
+        assertThat(order).containsExactly("holder", "interactive", "batch");
+    }
+
+    // 虚拟时间推进后清除不再影响排队的完成时间，队列清空后不留记录
+    @Test
+    void finishTagsArePrunedAsVirtualTimeAdvances() throws Exception {
+        CountDownLatch holder = occupyPermit();
+        CountDownLatch gate = new CountDownLatch(1);
+        enqueue("x", InferenceScheduler.Priority.INTERACTIVE, "x1", gate);
+        enqueue("y", InferenceScheduler.Priority.INTERACTIVE, "y1", gate);
+        enqueue("y", InferenceScheduler.Priority.INTERACTIVE, "y2", gate);
+        assertThat(scheduler.trackedClients(MODEL)).isEqualTo(2);
+
+        // x1 获得许可：x 的完成时间等于虚拟时间，被清除；y 仍有等待中的请求
+        holder.countDown();
+        awaitCondition(() -> order.contains("x1"), Duration.ofSeconds(5));
+        assertThat(scheduler.trackedClients(MODEL)).isEqualTo(1);
+
+        gate.countDown();
+        awaitCalls();
+        assertThat(scheduler.trackedClients(MODEL)).isZero();
+    }
+
+    @Test
+    void cancelledWaiterLeavesQueue() throws Exception {
+        CountDownLatch holder = occupyPermit();
+        CancellationToken token = new CancellationToken("task");
+        Future<?> cancelled = enqueue("a", InferenceScheduler.Priority.INTERACTIVE, "cancelled",
+                new CountDownLatch(0), token);
+        calls.remove(cancelled);
+        enqueue("b", InferenceScheduler.Priority.INTERACTIVE, "b1");
+
+        token.cancel();
+        assertThatThrownBy(() -> cancelled.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(TaskCancelledException.class);
+        assertThat(waiting()).isEqualTo(1);
+
+        holder.countDown();
+        awaitCalls();
+        assertThat(order).containsExactly("holder", "b1");
+    }
+
+    // 占用唯一的许可，直到返回的 latch 放行
+    private CountDownLatch occupyPermit() {
+        CountDownLatch holder = new CountDownLatch(1);
+        calls.add(threads.submit(() -> scheduler.run(MODEL,
+                new InferenceScheduler.Submitter("holder", InferenceScheduler.Priority.INTERACTIVE),
+                new CancellationToken("holder"), () -> {
+                    order.add("holder");
+                    await(holder);
+                    return null;
+                })));
+        awaitCondition(() -> order.contains("holder"), Duration.ofSeconds(5));
+        return holder;
+    }
+
+    private void enqueue(String client, InferenceScheduler.Priority priority, String name) {
+        enqueue(client, priority, name, new CountDownLatch(0));
+    }
+
+    private void enqueue(String client, InferenceScheduler.Priority priority, String name, CountDownLatch gate) {
+        enqueue(client, priority, name, gate, new CancellationToken(name));
+    }
+
+    // 提交一个调用并等到它进入队列，保证入队顺序确定
+    private Future<?> enqueue(String client, InferenceScheduler.Priority priority, String name,
+                              CountDownLatch gate, CancellationToken token) {
+        double before = waiting();
+        Future<?> call = threads.submit(() -> scheduler.run(MODEL, new InferenceScheduler.Submitter(client, priority),
+                token, () -> {
+                    order.add(name);
+                    await(gate);
+                    return null;
+                }));
+        calls.add(call);
+        awaitCondition(() -> waiting() > before, Duration.ofSeconds(5));
+        return call;
+    }
+
+    private double waiting() {
+        return registry.get("ganwork.scheduler.waiting").tag("model", MODEL.getModelId()).gauge().value();
+    }
+
+    private void awaitCalls() throws ExecutionException, InterruptedException {
+        for (Future<?> call : calls) {
+            try {
+                call.get(5, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                throw new AssertionError("调用未完成", e);
+            }
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
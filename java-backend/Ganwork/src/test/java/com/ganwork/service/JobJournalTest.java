@@ -0,0 +1,153 @@
+package com.ganwork.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ganwork.config.JobJournalProperties;
+import com.ganwork.config.StorageProperties;
+import com.ganwork.util.FileStorageUtil;
+import com.ganwork.util.LocalStorageBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JobJournalTest {
+
+    @TempDir
+    Path root;
+
+    private JobJournalProperties properties;
+    private JobJournal journal;
+
+    @BeforeEach
+    void setUp() {
+        properties = new JobJournalProperties();
+        properties.setDir(root.resolve("journal").toString());
+        properties.setFsync(false);
+        journal = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        journal.closeChannel();
+    }
+
+    // 重放按任务取最后一条快照，已结束的任务不再恢复，结果按提交顺序排列
+    @Test
+    void recoverReturnsLatestSnapshotOfUnfinishedTasks() {
+        journal.submitted("a", "single", "PHOTO", 2, "client-a", "/in/a.jpg");
+        journal.submitted("b", "single", "PHOTO", 4, "client-b", "/in/b.jpg");
+        journal.submitted("c", "single", "PHOTO", 1, "client-c", "/in/c.jpg");
+        journal.inputPrepared("a", "/in/a.png");
+        journal.stepCompleted("a", 1, "remote-1");
+        journal.finished("b", "COMPLETED");
+
+        List<JobJournal.JobRecord> recovered = restart().recover();
+
+        assertThat(recovered).extracting(JobJournal.JobRecord::taskId).containsExactly("a", "c");
+        JobJournal.JobRecord a = recovered.get(0);
+        assertThat(a.inputPath()).isEqualTo("/in/a.png");
+        assertThat(a.completedSteps()).isEqualTo(1);
+        assertThat(a.stepResult()).isEqualTo("remote-1");
+        assertThat(a.scale()).isEqualTo(2);
+        assertThat(a.clientKey()).isEqualTo("client-a");
+    }
+
+    // 进程中断时写了一半的最后一行被跳过，之前的记录照常恢复
+    @Test
+    void recoverSkipsTruncatedLastLine() throws IOException {
+        journal.submitted("a", "single", "PHOTO", 2, "client-a", "/in/a.jpg");
+        journal.closeChannel();
+        Files.writeString(journalFile(), "{\"event\":\"CHECKPOINT\",\"taskId\":\"a\",\"comp",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        List<JobJournal.JobRecord> recovered = restart().recover();
+
+        assertThat(recovered).singleElement().satisfies(record -> {
+            assertThat(record.taskId()).isEqualTo("a");
+            assertThat(record.completedSteps()).isZero();
+        });
+    }
+
+    // 启动重放后日志重写为每个未结束任务一行
+    @Test
+    void recoverCompactsJournalToPendingSnapshots() throws IOException {
+        journal.submitted("a", "single", "PHOTO", 2, "client-a", "/in/a.jpg");
+        journal.stepCompleted("a", 1, "remote-1");
+        journal.stepCompleted("a", 2, "remote-2");
+        journal.submitted("b", "single", "PHOTO", 2, "client-b", "/in/b.jpg");
+        journal.finished("b", "FAILED");
+        assertThat(lines()).hasSize(5);
+
+        JobJournal restarted = restart();
+        restarted.recover();
+
+        assertThat(lines()).singleElement().asString().contains("\"completedSteps\":2");
+        // 重写后继续追加
+        restarted.finished("a", "COMPLETED");
+        assertThat(lines()).hasSize(2);
+        assertThat(restart().recover()).isEmpty();
+    }
+
+    @Test
+    void finishedRecordsTriggerCompactionAtThreshold() throws IOException {
+        properties.setCompactThreshold(2);
+        journal.submitted("a", "single", "PHOTO", 2, "client-a", "/in/a.jpg");
+        journal.submitted("b", "single", "PHOTO", 2, "client-b", "/in/b.jpg");
+        journal.submitted("c", "single", "PHOTO", 2, "client-c", "/in/c.jpg");
+        journal.finished("a", "COMPLETED");
+        assertThat(lines()).hasSize(4);
+
+        journal.finished("b", "CANCELLED");
+
+        assertThat(lines()).singleElement().asString().contains("\"taskId\":\"c\"");
+        assertThat(restart().recover()).extracting(JobJournal.JobRecord::taskId).containsExactly("c");
+    }
+
+    // 同步请求与批处理不记录日志，它们的更新与结束被忽略
+    @Test
+    void updatesForUnknownTasksAreIgnored() throws IOException {
+        journal.stepCompleted("sync", 1, "remote-1");
+        journal.finished("sync", "COMPLETED");
+
+        assertThat(Files.exists(journalFile())).isFalse();
+        assertThat(restart().recover()).isEmpty();
+    }
+
+    @Test
+    void disabledJournalWritesNothing() {
+        properties.setEnabled(false);
+        journal.submitted("a", "single", "PHOTO", 2, "client-a", "/in/a.jpg");
+
+        assertThat(Files.exists(journalFile())).isFalse();
+        assertThat(open().recover()).isEmpty();
+    }
+
+    private JobJournal restart() {
+        journal.closeChannel();
+        journal = open();
+        return journal;
+    }
+
+    private JobJournal open() {
+        FileStorageUtil fileStorageUtil = new FileStorageUtil(root.resolve("uploads").toString(),
+                root.resolve("processed").toString(), new StorageProperties(), new LocalStorageBackend());
+        return new JobJournal(properties, fileStorageUtil, new ObjectMapper());
+    }
+
+    private Path journalFile() {
+        return root.resolve("journal").resolve("jobs.log");
+    }
+
+    private List<String> lines() throws IOException {
+        return Files.readAllLines(journalFile(), StandardCharsets.UTF_8);
+    }
+}
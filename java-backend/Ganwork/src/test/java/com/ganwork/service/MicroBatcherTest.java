@@ -0,0 +1,168 @@
+package com.ganwork.service;
+
+import com.ganwork.exception.ApiCallException;
+import com.ganwork.exception.TaskCancelledException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MicroBatcherTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<List<Integer>> calls = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    // 凑满批次时立即合并为一次调用，不等到 maxWait，结果按提交顺序分发
+    @Test
+    void fullBatchFlushesImmediatelyAndDispatchesByIndex() throws Exception {
+        MicroBatcher<String, Integer, Integer> batcher = new MicroBatcher<>(3, Duration.ofSeconds(30), this::square);
+
+        long start = System.nanoTime();
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            int item = i;
+            results.add(executor.submit(() -> batcher.submit("m", item)));
+        }
+        for (int i = 0; i < 3; i++) {
+            assertThat(results.get(i).get(5, TimeUnit.SECONDS)).isEqualTo((i + 1) * (i + 1));
+        }
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        assertThat(calls).hasSize(1);
+        assertThat(calls.get(0)).containsExactlyInAnyOrder(1, 2, 3);
+    }
+
+    // 批次未满时由第一个请求（leader）等待 maxWait 后发出调用
+    @Test
+    void leaderFlushesPartialBatchAfterMaxWait() {
+        MicroBatcher<String, Integer, Integer> batcher = new MicroBatcher<>(8, Duration.ofMillis(100), this::square);
+
+        long start = System.nanoTime();
+        assertThat(batcher.submit("m", 7)).isEqualTo(49);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(100));
+        assertThat(calls).containsExactly(List.of(7));
+    }
+
+    // 不同键各自成批；已满的批次关闭后，后续请求开启新批次
+    @Test
+    void keysAndFullBatchesAreSeparate() throws Exception {
+        MicroBatcher<String, Integer, Integer> batcher = new MicroBatcher<>(2, Duration.ofMillis(200), this::square);
+
+        List<Future<Integer>> results = new ArrayList<>();
+        for (String key : List.of("a", "a", "a", "b")) {
+            results.add(executor.submit(() -> batcher.submit(key, 3)));
+        }
+        for (Future<Integer> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(9);
+        }
+
+        assertThat(calls).extracting(List::size).containsExactlyInAnyOrder(2, 1, 1);
+    }
+
+    @Test
+    void batchFailureReachesEveryMember() throws Exception {
+        MicroBatcher<String, Integer, Integer> batcher = new MicroBatcher<>(2, Duration.ofSeconds(30), (key, items) -> {
+            throw new ApiCallException("推理服务不可用");
+        });
+
+        Future<Integer> first = executor.submit(() -> batcher.submit("m", 1));
+        Future<Integer> second = executor.submit(() -> batcher.submit("m", 2));
+
+        for (Future<Integer> result : List.of(first, second)) {
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(ApiCallException.class)
+                    .hasMessageContaining("推理服务不可用");
+        }
+    }
+
+    @Test
+    void mismatchedResultCountFailsTheBatch() {
+        MicroBatcher<String, Integer, Integer> batcher = new MicroBatcher<>(4, Duration.ofMillis(10),
+                (key, items) -> List.of());
+
+        assertThatThrownBy(() -> batcher.submit("m", 1))
+                .isInstanceOf(ApiCallException.class)
+                .hasMessageContaining("0 != 1");
+    }
+
+    // 批量调用由多个任务共享：执行时不绑定 leader 的取消标记，结束后恢复绑定
+    @Test
+    void batchCallRunsWithoutLeaderCancellationToken() {
+        AtomicReference<CancellationToken> seen = new AtomicReference<>();
+        MicroBatcher<String, Integer, Integer> batcher = new MicroBatcher<>(1, Duration.ofMillis(10), (key, items) -> {
+            seen.set(CancellationToken.current());
+            return items;
+        });
+        CancellationToken token = new CancellationToken("leader");
+        token.bind();
+        try {
+            assertThat(batcher.submit("m", 5)).isEqualTo(5);
+            assertThat(seen.get()).isNull();
+            assertThat(CancellationToken.current()).isSameAs(token);
+        } finally {
+            token.unbind();
+        }
+    }
+
+    // 等待结果的请求被取消时立即返回，批次中其他请求仍拿到结果
+    @Test
+    void cancelledMemberStopsWaitingWhileOthersComplete() throws Exception {
+        CountDownLatch callStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MicroBatcher<String, Integer, Integer> batcher = new MicroBatcher<>(2, Duration.ofSeconds(30), (key, items) -> {
+            callStarted.countDown();
+            await(release);
+            return items;
+        });
+        CancellationToken token = new CancellationToken("follower");
+
+        Future<Integer> leader = executor.submit(() -> batcher.submit("m", 1));
+        Future<Integer> follower = executor.submit(() -> {
+            token.bind();
+            try {
+                return batcher.submit("m", 2);
+            } finally {
+                token.unbind();
+            }
+        });
+        assertThat(callStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        token.cancel();
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(TaskCancelledException.class);
+        assertThat(leader.isDone()).isFalse();
+
+        release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+    }
+
+    private List<Integer> square(String key, List<Integer> items) {
+        calls.add(items);
+        return items.stream().map(i -> i * i).toList();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.ganwork.service;
+
+import com.ganwork.config.PreviewProperties;
+import com.ganwork.config.StorageProperties;
+import com.ganwork.util.FileStorageUtil;
+import com.ganwork.util.LocalStorageBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class PreviewGeneratorTest {
+
+    @TempDir
+    Path root;
+
+    private final PreviewProperties properties = new PreviewProperties();
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    // 占住唯一的预览线程，放行前排队的生成任务不会执行
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private FileStorageUtil fileStorageUtil;
+    private PreviewGenerator previewGenerator;
+
+    @BeforeEach
+    void setUp() {
+        fileStorageUtil = spy(new FileStorageUtil(root.resolve("uploads").toString(),
+                root.resolve("processed").toString(), new StorageProperties(), new LocalStorageBackend()));
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.initialize();
+        previewGenerator = new PreviewGenerator(properties, fileStorageUtil,
+                new ProcessingMetrics(new SimpleMeterRegistry()), executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void largeResultGetsDownscaledJpegPreview() throws Exception {
+        String resultUrl = storeResult("a.png", image(1200, 800, BufferedImage.TYPE_INT_RGB));
+
+        previewGenerator.generate(resultUrl);
+
+        BufferedImage preview = ImageIO.read(fileStorageUtil.resolveProcessed(previewName(resultUrl)).toFile());
+        assertThat(preview.getWidth()).isEqualTo(512);
+        assertThat(preview.getHeight()).isEqualTo(341);
+        assertThat(previewGenerator.renditionUrls(resultUrl))
+                .containsOnlyKeys("previewUrl")
+                .containsEntry("previewUrl", "/processed/" + previewName(resultUrl));
+    }
+
+    @Test
+    void mediumRenditionIsGeneratedWhenConfigured() throws Exception {
+        properties.setMediumMaxEdge(1024);
+        String resultUrl = storeResult("b.png", image(1600, 1200, BufferedImage.TYPE_INT_RGB));
+
+        previewGenerator.generate(resultUrl);
+
+        BufferedImage medium = ImageIO.read(fileStorageUtil.resolveProcessed(previewName(resultUrl).replace("_preview.jpg", "_medium.jpg")).toFile());
+        assertThat(Math.max(medium.getWidth(), medium.getHeight())).isEqualTo(1024);
+        assertThat(previewGenerator.renditionUrls(resultUrl)).containsOnlyKeys("previewUrl", "mediumUrl");
+    }
+
+    // 结果本身不超过预览尺寸时前端直接使用原图
+    @Test
+    void smallResultGetsNoPreview() throws Exception {
+        String resultUrl = storeResult("c.png", image(400, 300, BufferedImage.TYPE_INT_RGB));
+
+        previewGenerator.generate(resultUrl);
+
+        assertThat(Files.exists(fileStorageUtil.resolveProcessed(previewName(resultUrl)))).isFalse();
+        assertThat(previewGenerator.renditionUrls(resultUrl)).isEmpty();
+    }
+
+    // JPEG 没有透明通道，透明区域按白色合成
+    @Test
+    void transparentResultIsFlattenedOntoWhite() throws Exception {
+        String resultUrl = storeResult("d.png", new BufferedImage(1024, 1024, BufferedImage.TYPE_INT_ARGB));
+
+        previewGenerator.generate(resultUrl);
+
+        BufferedImage preview = ImageIO.read(fileStorageUtil.resolveProcessed(previewName(resultUrl)).toFile());
+        int rgb = preview.getRGB(256, 256) & 0xffffff;
+        assertThat(rgb >> 16 & 0xff).isGreaterThan(250);
+        assertThat(rgb & 0xff).isGreaterThan(250);
+    }
+
+    // 预览在后台线程生成，调用方立即返回；同一结果只生成一次，whenReady 等到生成结束
+    @Test
+    void generateAsyncRunsInBackgroundAndDeduplicates() throws Exception {
+        String resultUrl = storeResult("e.png", image(1200, 800, BufferedImage.TYPE_INT_RGB));
+        occupyExecutor();
+
+        CompletableFuture<Void> first = previewGenerator.generateAsync(resultUrl);
+        CompletableFuture<Void> second = previewGenerator.generateAsync(resultUrl);
+
+        assertThat(second).isSameAs(first);
+        assertThat(previewGenerator.whenReady(resultUrl)).isSameAs(first);
+        assertThat(first).isNotDone();
+        assertThat(previewGenerator.renditionUrls(resultUrl)).isEmpty();
+
+        release.countDown();
+        first.get(10, TimeUnit.SECONDS);
+
+        assertThat(previewGenerator.renditionUrls(resultUrl)).containsKey("previewUrl");
+        assertThat(previewGenerator.whenReady(resultUrl)).isDone();
+    }
+
+    // 线程与队列都已占满时跳过预览，返回的 future 立即完成，不阻塞结果返回
+    @Test
+    void generateAsyncSkipsPreviewWhenExecutorIsFull() throws Exception {
+        String queuedUrl = storeResult("f.png", image(1200, 800, BufferedImage.TYPE_INT_RGB));
+        String skippedUrl = storeResult("g.png", image(1200, 800, BufferedImage.TYPE_INT_RGB));
+        occupyExecutor();
+        CompletableFuture<Void> queued = previewGenerator.generateAsync(queuedUrl);
+
+        CompletableFuture<Void> skipped = previewGenerator.generateAsync(skippedUrl);
+
+        assertThat(skipped).isDone();
+        assertThat(previewGenerator.whenReady(skippedUrl)).isDone();
+        release.countDown();
+        queued.get(10, TimeUnit.SECONDS);
+        assertThat(previewGenerator.renditionUrls(queuedUrl)).containsKey("previewUrl");
+        assertThat(previewGenerator.renditionUrls(skippedUrl)).isEmpty();
+    }
+
+    // 本节点生成过的结果直接返回记录的地址，轮询不再查询存储（S3 时每个预览一次 HEAD）
+    @Test
+    void generatedRenditionsAreServedFromMemory() throws Exception {
+        String large = storeResult("m.png", image(1200, 800, BufferedImage.TYPE_INT_RGB));
+        String small = storeResult("n.png", image(300, 200, BufferedImage.TYPE_INT_RGB));
+        previewGenerator.generate(large);
+        previewGenerator.generate(small);
+        clearInvocations(fileStorageUtil);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(previewGenerator.renditionUrls(large)).containsOnlyKeys("previewUrl");
+            assertThat(previewGenerator.renditionUrls(small)).isEmpty();
+        }
+
+        verify(fileStorageUtil, never()).findProcessed(anyString());
+    }
+
+    // 正在生成时预览文件尚不存在，不查询存储
+    @Test
+    void pendingRenditionsAreNotLookedUp() throws Exception {
+        String resultUrl = storeResult("p.png", image(1200, 800, BufferedImage.TYPE_INT_RGB));
+        occupyExecutor();
+        previewGenerator.generateAsync(resultUrl);
+
+        assertThat(previewGenerator.renditionUrls(resultUrl)).isEmpty();
+        verify(fileStorageUtil, never()).findProcessed(anyString());
+    }
+
+    // 其他节点或重启前生成的预览：未命中时查询存储，全部找到后记录，之后不再查询
+    @Test
+    void unknownResultFallsBackToStorageOnce() throws Exception {
+        String resultUrl = storeResult("q.png", image(1200, 800, BufferedImage.TYPE_INT_RGB));
+        new PreviewGenerator(properties, fileStorageUtil, new ProcessingMetrics(new SimpleMeterRegistry()), executor)
+                .generate(resultUrl);
+        clearInvocations(fileStorageUtil);
+
+        assertThat(previewGenerator.renditionUrls(resultUrl)).containsOnlyKeys("previewUrl");
+        assertThat(previewGenerator.renditionUrls(resultUrl)).containsOnlyKeys("previewUrl");
+
+        verify(fileStorageUtil, times(1)).findProcessed(anyString());
+    }
+
+    @Test
+    void disabledPreviewsAreNotGenerated() throws Exception {
+        properties.setEnabled(false);
+        String resultUrl = storeResult("h.png", image(1200, 800, BufferedImage.TYPE_INT_RGB));
+
+        assertThat(previewGenerator.generateAsync(resultUrl)).isDone();
+        previewGenerator.generate(resultUrl);
+
+        assertThat(Files.exists(fileStorageUtil.resolveProcessed(previewName(resultUrl)))).isFalse();
+        assertThat(previewGenerator.renditionUrls(resultUrl)).isEmpty();
+    }
+
+    private void occupyExecutor() {
+        executor.execute(() -> awaitQuietly(release));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // 保存的文件名带唯一前缀，返回与处理结果相同形式的地址
+    private String storeResult(String name, BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        Path stored = Path.of(fileStorageUtil.storeProcessedFile(name, out.toByteArray()));
+        return "/processed/" + stored.getFileName();
+    }
+
+    private static String previewName(String resultUrl) {
+        String filename = resultUrl.substring(resultUrl.lastIndexOf('/') + 1);
+        return filename.substring(0, filename.lastIndexOf('.')) + "_preview.jpg";
+    }
+
+    private static BufferedImage image(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, 0xff000000 | (x * 255 / width) << 16 | (y * 255 / height) << 8 | 0x40);
+            }
+        }
+        return image;
+    }
+}
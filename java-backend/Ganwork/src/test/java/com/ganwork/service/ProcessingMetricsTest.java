@@ -0,0 +1,131 @@
+package com.ganwork.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProcessingMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private ProcessingMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new ProcessingMetrics(registry);
+    }
+
+    // 任务耗时按模式与结果分类，执行期间计入活跃任务数
+    @Test
+    void taskTimerIsTaggedByModeAndOutcome() {
+        Timer.Sample ok = metrics.startTask();
+        Timer.Sample failed = metrics.startTask();
+        assertThat(gauge("ganwork.task.active")).isEqualTo(2);
+
+        metrics.stopTask(ok, "denoise", true);
+        metrics.stopTask(failed, "denoise", false);
+
+        assertThat(gauge("ganwork.task.active")).isZero();
+        assertThat(registry.get("ganwork.task").tags("mode", "denoise", "outcome", "success").timer().count())
+                .isEqualTo(1);
+        assertThat(registry.get("ganwork.task").tags("mode", "denoise", "outcome", "error").timer().count())
+                .isEqualTo(1);
+    }
+
+    // 推理调用按模型记录耗时与上传字节数，没有请求体时不记录字节数
+    @Test
+    void inferenceCallsRecordLatencyAndBytesPerModel() {
+        Timer.Sample first = metrics.startInference("super_res_4x", 2048);
+        Timer.Sample second = metrics.startInference("super_res_4x", 0);
+        assertThat(gauge("ganwork.inference.active")).isEqualTo(2);
+
+        metrics.stopInference(first, "super_res_4x", true);
+        metrics.stopInference(second, "super_res_4x", false);
+
+        assertThat(gauge("ganwork.inference.active")).isZero();
+        DistributionSummary sent = registry.get("ganwork.inference.bytes.sent").tag("model", "super_res_4x")
+                .summary();
+        assertThat(sent.count()).isEqualTo(1);
+        assertThat(sent.totalAmount()).isEqualTo(2048);
+        assertThat(registry.get("ganwork.inference").tags("model", "super_res_4x", "outcome", "error").timer()
+                .count()).isEqualTo(1);
+    }
+
+    // 只有成功的上传与下载计入字节数
+    @Test
+    void byteSummariesOnlyCountSuccessfulTransfers() {
+        metrics.recordStore(metrics.start(), 100, true);
+        metrics.recordStore(metrics.start(), 999, false);
+        metrics.recordDownload(metrics.start(), "denoise", 300, true);
+        metrics.recordDownload(metrics.start(), "denoise", 999, false);
+
+        assertThat(registry.get("ganwork.upload.bytes").summary().totalAmount()).isEqualTo(100);
+        assertThat(registry.get("ganwork.upload.store").timers()).hasSize(2);
+        assertThat(registry.get("ganwork.result.bytes").tag("model", "denoise").summary().totalAmount())
+                .isEqualTo(300);
+        assertThat(registry.get("ganwork.result.download").tag("outcome", "error").timer().count()).isEqualTo(1);
+    }
+
+    // 队列、存储与合并请求的仪表读取实时值
+    @Test
+    void gaugesFollowTheirSources() {
+        AtomicInteger waiting = new AtomicInteger(3);
+        AtomicInteger files = new AtomicInteger(5);
+        Map<String, Object> inFlight = new ConcurrentHashMap<>();
+        metrics.monitorSchedulerQueue("denoise", waiting::get);
+        metrics.monitorStorage("processed", files::get, () -> 4096L);
+        metrics.monitorInFlightRequests(inFlight);
+
+        waiting.set(7);
+        files.set(6);
+        inFlight.put("key", new Object());
+
+        assertThat(registry.get("ganwork.scheduler.waiting").tag("model", "denoise").gauge().value()).isEqualTo(7);
+        assertThat(registry.get("ganwork.storage.files").tag("area", "processed").gauge().value()).isEqualTo(6);
+        assertThat(registry.get("ganwork.storage.bytes").tag("area", "processed").gauge().value()).isEqualTo(4096);
+        assertThat(registry.get("ganwork.task.coalescing").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void countersAreTaggedByOutcomeAndReason() {
+        metrics.recordPreflight("downscaled");
+        metrics.recordPreflight("downscaled");
+        metrics.recordStorageEviction("uploads", "ttl");
+        metrics.recordBatch("denoise", 4);
+
+        assertThat(registry.get("ganwork.preflight").tag("outcome", "downscaled").counter().count()).isEqualTo(2);
+        assertThat(registry.get("ganwork.storage.evictions").tags("area", "uploads", "reason", "ttl").counter()
+                .count()).isEqualTo(1);
+        assertThat(registry.get("ganwork.inference.batch.size").summary().totalAmount()).isEqualTo(4);
+    }
+
+    // Prometheus 输出包含按模型的直方图桶，可以在服务端聚合分位数
+    @Test
+    void prometheusScrapeExposesLatencyHistograms() {
+        PrometheusMeterRegistry prometheus = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        ProcessingMetrics exported = new ProcessingMetrics(prometheus);
+
+        exported.stopInference(exported.startInference("denoise", 10), "denoise", true);
+        exported.recordSchedulerWait("denoise", "INTERACTIVE", 1_000_000);
+
+        String scrape = prometheus.scrape();
+        assertThat(scrape).contains("ganwork_inference_seconds_bucket{")
+                .contains("model=\"denoise\"")
+                .contains("ganwork_scheduler_wait_seconds_bucket{")
+                .contains("ganwork_inference_active ");
+    }
+
+    private double gauge(String name) {
+        return registry.get(name).gauge().value();
+    }
+}
@@ -0,0 +1,112 @@
+package com.ganwork.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ganwork.config.TaskRegistryProperties;
+import com.ganwork.exception.TooManyTasksException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProcessingMonitorTest {
+
+    private TaskRegistryProperties properties;
+    private ProcessingMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        properties = new TaskRegistryProperties();
+        monitor = new ProcessingMonitor(properties, new ObjectMapper());
+    }
+
+    // 达到上限时只淘汰已结束的任务，排队中的任务仍可查询与取消
+    @Test
+    void overflowEvictsOnlyFinishedTasks() {
+        properties.setMaxEntries(3);
+        monitor.queueProcess("a", "去噪");
+        monitor.queueProcess("b", "去噪");
+        monitor.queueProcess("c", "去噪");
+        monitor.startProcess("a", "去噪");
+        monitor.completeProcess("a", "/processed/a.png");
+
+        monitor.queueProcess("d", "去噪");
+
+        assertThat(monitor.getProcessStatusObject("a")).isNull();
+        assertThat(monitor.size()).isEqualTo(3);
+        monitor.stopProcess("b");
+        assertThat(monitor.getProcessStatusObject("b").currentStatus()).isEqualTo("CANCELLED");
+        assertThat(monitor.cancellationToken("b").isCancelled()).isTrue();
+    }
+
+    @Test
+    void rejectsNewTasksWhenAllEntriesAreUnfinished() {
+        properties.setMaxEntries(2);
+        monitor.queueProcess("a", "去噪");
+        monitor.startProcess("b", "去噪");
+
+        assertThatThrownBy(() -> monitor.queueProcess("c", "去噪")).isInstanceOf(TooManyTasksException.class);
+        assertThatThrownBy(() -> monitor.startProcess("d", "去噪")).isInstanceOf(TooManyTasksException.class);
+        assertThat(monitor.getProcessStatusObject("c")).isNull();
+        // 已登记任务的状态更新不受上限影响
+        monitor.startProcess("a", "去噪");
+        assertThat(monitor.getProcessStatusObject("a").currentStatus()).isEqualTo("STARTED");
+    }
+
+    @Test
+    void expiredFinishedTasksAreSweptOnRegistration() {
+        properties.setTtlMinutes(-1);
+        properties.setSweepIntervalSeconds(0);
+        monitor.queueProcess("a", "去噪");
+        monitor.failProcess("a", "失败");
+        monitor.queueProcess("b", "去噪");
+
+        assertThat(monitor.getProcessStatusObject("a")).isNull();
+        assertThat(monitor.getProcessStatusObject("b")).isNotNull();
+    }
+
+    // 排队中被取消的任务，执行线程随后取到的仍是同一个已取消的标记
+    @Test
+    void cancelledQueuedTaskKeepsTokenUntilWorkerReleasesIt() {
+        monitor.queueProcess("a", "去噪");
+        monitor.stopProcess("a");
+
+        assertThat(monitor.getProcessStatusObject("a").currentStatus()).isEqualTo("CANCELLED");
+        assertThat(monitor.isCancelled("a")).isTrue();
+        assertThat(monitor.cancellationToken("a").isCancelled()).isTrue();
+
+        monitor.releaseTask("a");
+        assertThat(monitor.cancellationToken("a").isCancelled()).isFalse();
+    }
+
+    // 已结束的任务不会被迟到的开始或进度更新覆盖
+    @Test
+    void finishedStatusIsFinal() {
+        List<String> events = new ArrayList<>();
+        monitor.addListener(status -> events.add(status.currentStatus()));
+        monitor.queueProcess("a", "去噪");
+        monitor.stopProcess("a");
+        monitor.startProcess("a", "去噪");
+        monitor.updateProgress("a", 1, 2, "正在处理");
+        monitor.completeProcess("a", "/processed/a.png");
+
+        assertThat(monitor.getProcessStatusObject("a").currentStatus()).isEqualTo("CANCELLED");
+        assertThat(events).containsExactly("QUEUED", "CANCELLED");
+    }
+
+    // 运行中的任务只标记取消，由执行线程在下一个检查点结束任务
+    @Test
+    void stoppingRunningTaskCancelsTokenWithoutChangingStatus() {
+        monitor.queueProcess("a", "去噪");
+        monitor.startProcess("a", "去噪");
+        CancellationToken token = monitor.cancellationToken("a");
+
+        monitor.stopProcess("a");
+
+        assertThat(token.isCancelled()).isTrue();
+        assertThat(monitor.getProcessStatusObject("a").currentStatus()).isEqualTo("STARTED");
+    }
+}
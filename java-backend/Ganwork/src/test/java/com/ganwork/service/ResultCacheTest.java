@@ -0,0 +1,105 @@
+package com.ganwork.service;
+
+import com.ganwork.config.ResultCacheProperties;
+import com.ganwork.config.StorageProperties;
+import com.ganwork.util.FileStorageUtil;
+import com.ganwork.util.LocalStorageBackend;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResultCacheTest {
+
+    @TempDir
+    Path root;
+
+    private ResultCacheProperties properties;
+    private FileStorageUtil fileStorageUtil;
+    private ResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ResultCacheProperties();
+        fileStorageUtil = new FileStorageUtil(root.resolve("uploads").toString(), root.resolve("processed").toString(),
+                new StorageProperties(), new LocalStorageBackend());
+        cache = new ResultCache(properties, fileStorageUtil);
+    }
+
+    @Test
+    void hitReturnsStoredUrl() {
+        String url = storeResult("a.png", 10);
+        cache.put("k", url);
+
+        assertThat(cache.get("k")).isEqualTo(url);
+        assertThat(cache.get("missing")).isNull();
+        assertThat(cache.getStats()).containsEntry("hits", 1L).containsEntry("misses", 1L);
+    }
+
+    // 按条目数淘汰最久未使用的条目，只移除映射，结果文件仍可下载
+    @Test
+    void lruEvictionKeepsResultFile() {
+        properties.setMaxEntries(2);
+        String first = storeResult("a.png", 10);
+        String second = storeResult("b.png", 10);
+        String third = storeResult("c.png", 10);
+        cache.put("a", first);
+        cache.put("b", second);
+        cache.get("a");
+        cache.put("c", third);
+
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("a")).isEqualTo(first);
+        assertThat(cache.get("c")).isEqualTo(third);
+        assertThat(Files.exists(resolve(second))).isTrue();
+        assertThat(fileStorageUtil.getProcessedIndex().size()).isEqualTo(3);
+    }
+
+    @Test
+    void sizeLimitEvictionKeepsResultFile() {
+        properties.setMaxSizeMb(1);
+        String large = storeResult("large.png", 700 * 1024);
+        String other = storeResult("other.png", 700 * 1024);
+        cache.put("large", large);
+        cache.put("other", other);
+
+        assertThat(cache.get("large")).isNull();
+        assertThat(cache.get("other")).isEqualTo(other);
+        assertThat(Files.exists(resolve(large))).isTrue();
+        assertThat(cache.getStats()).containsEntry("totalBytes", 700L * 1024);
+    }
+
+    @Test
+    void expiredEntryMissesWithoutDeletingFile() {
+        properties.setTtlMinutes(-1);
+        String url = storeResult("a.png", 10);
+        cache.put("k", url);
+
+        assertThat(cache.get("k")).isNull();
+        assertThat(Files.exists(resolve(url))).isTrue();
+    }
+
+    // 结果文件已被清理时视为未命中
+    @Test
+    void reapedFileMisses() {
+        String url = storeResult("a.png", 10);
+        cache.put("k", url);
+        fileStorageUtil.delete(resolve(url));
+
+        assertThat(cache.get("k")).isNull();
+        assertThat(cache.getStats()).containsEntry("entries", 0);
+    }
+
+    private String storeResult(String name, int size) {
+        Path path = Path.of(fileStorageUtil.storeProcessedFile(name, new byte[size]));
+        return "/processed/" + path.getFileName();
+    }
+
+    private Path resolve(String url) {
+        return fileStorageUtil.resolveProcessed(url.substring(url.lastIndexOf('/') + 1));
+    }
+}
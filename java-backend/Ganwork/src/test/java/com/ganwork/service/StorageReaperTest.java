@@ -0,0 +1,106 @@
+package com.ganwork.service;
+
+import com.ganwork.config.StorageProperties;
+import com.ganwork.util.FileStorageUtil;
+import com.ganwork.util.LocalStorageBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StorageReaperTest {
+
+    private static final long HOUR = 3_600_000L;
+    private static final int MB = 1024 * 1024;
+
+    @TempDir
+    Path root;
+
+    private StorageProperties properties;
+    private FileStorageUtil fileStorageUtil;
+    private SimpleMeterRegistry registry;
+    private StorageReaper reaper;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StorageProperties();
+        properties.setUploadTtlHours(0);
+        properties.setProcessedTtlHours(0);
+        properties.setUploadQuotaMb(0);
+        properties.setProcessedQuotaMb(0);
+        fileStorageUtil = new FileStorageUtil(root.resolve("uploads").toString(), root.resolve("processed").toString(),
+                properties, new LocalStorageBackend());
+        registry = new SimpleMeterRegistry();
+        reaper = new StorageReaper(properties, fileStorageUtil, new ProcessingMetrics(registry));
+    }
+
+    @Test
+    void expiredFilesAreDeletedAndLeaveTheIndex() throws IOException {
+        properties.setUploadTtlHours(24);
+        Path expired = upload("old.png", 100, 25 * HOUR);
+        Path kept = upload("new.png", 50, HOUR);
+        fileStorageUtil.rebuildIndexes(HOUR);
+
+        reaper.sweep();
+
+        assertThat(expired).doesNotExist();
+        assertThat(kept).exists();
+        assertThat(fileStorageUtil.getUploadIndex().size()).isEqualTo(1);
+        assertThat(fileStorageUtil.getUploadIndex().totalBytes()).isEqualTo(50);
+    }
+
+    // 超过容量上限时从最旧的文件开始删除，直到低于上限的 eviction-target-percent
+    @Test
+    void quotaEvictsOldestFilesDownToTarget() throws IOException {
+        properties.setProcessedQuotaMb(1);
+        properties.setEvictionTargetPercent(50);
+        Path oldest = processed("a.png", MB / 4 + 1, 4 * HOUR);
+        Path older = processed("b.png", MB / 4, 3 * HOUR);
+        Path newer = processed("c.png", MB / 4, 2 * HOUR);
+        Path newest = processed("d.png", MB / 4, HOUR);
+        fileStorageUtil.rebuildIndexes(HOUR);
+
+        reaper.sweep();
+
+        assertThat(oldest).doesNotExist();
+        assertThat(older).doesNotExist();
+        assertThat(newer).exists();
+        assertThat(newest).exists();
+        assertThat(fileStorageUtil.getProcessedIndex().totalBytes()).isEqualTo(MB / 2);
+        assertThat(registry.get("ganwork.storage.evictions").tag("reason", "quota").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void withinQuotaNothingIsEvicted() throws IOException {
+        properties.setProcessedQuotaMb(1);
+        Path file = processed("a.png", MB / 2, HOUR);
+        fileStorageUtil.rebuildIndexes(HOUR);
+
+        reaper.sweep();
+
+        assertThat(file).exists();
+        assertThat(fileStorageUtil.getProcessedIndex().totalBytes()).isEqualTo(MB / 2);
+    }
+
+    private Path upload(String name, int size, long ageMillis) throws IOException {
+        return write(fileStorageUtil.getPath(name), size, ageMillis);
+    }
+
+    private Path processed(String name, int size, long ageMillis) throws IOException {
+        return write(fileStorageUtil.getProcessedPath(name), size, ageMillis);
+    }
+
+    private static Path write(Path file, int size, long ageMillis) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[size]);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - ageMillis));
+        return file;
+    }
+}
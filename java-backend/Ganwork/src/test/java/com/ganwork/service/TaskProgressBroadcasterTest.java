@@ -0,0 +1,140 @@
+package com.ganwork.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ganwork.config.TaskRegistryProperties;
+import com.ganwork.controller.ProcessController;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+// 进度推送：经 /api/process/stream/{taskId} 订阅，每次状态变化一个 progress 事件，结束事件之后关闭连接
+class TaskProgressBroadcasterTest {
+
+    private ProcessingMonitor processingMonitor;
+    private PreviewGenerator previewGenerator;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        processingMonitor = new ProcessingMonitor(new TaskRegistryProperties(), new ObjectMapper());
+        previewGenerator = mock(PreviewGenerator.class);
+        when(previewGenerator.whenReady(any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(previewGenerator.renditionUrls(any())).thenReturn(Map.of());
+        TaskProgressBroadcaster broadcaster =
+                new TaskProgressBroadcaster(processingMonitor, new TaskRegistryProperties(), previewGenerator);
+        mockMvc = MockMvcBuilders.standaloneSetup(
+                new ProcessController(processingMonitor, mock(ResultCache.class), broadcaster, previewGenerator))
+                .build();
+    }
+
+    // 进行中的状态逐个推送，连接保持；结束状态推送后才关闭
+    @Test
+    void finalEventIsSentOnlyAfterTerminalStatus() throws Exception {
+        processingMonitor.queueProcess("task-1", "图像去噪");
+        MvcResult stream = subscribe("task-1");
+
+        processingMonitor.startProcess("task-1", "图像去噪");
+        processingMonitor.updateProgress("task-1", 0, 1, "正在处理: 图像去噪");
+
+        assertThat(statuses(stream)).containsExactly("QUEUED", "STARTED", "正在处理: 图像去噪");
+        assertThat(isOpen(stream)).isTrue();
+
+        processingMonitor.completeProcess("task-1", "/processed/r.png");
+
+        assertThat(statuses(stream)).last().isEqualTo("COMPLETED");
+        assertThat(events(stream)).last().asString().contains("\"resultUrl\":\"/processed/r.png\"");
+        assertThat(isOpen(stream)).isFalse();
+
+        // 结束后的迟到更新不再推送
+        processingMonitor.updateProgress("task-1", 1, 1, "late");
+        assertThat(statuses(stream)).hasSize(4);
+    }
+
+    // 结束事件等预览生成结束后发送，并附带预览地址
+    @Test
+    void completedEventWaitsForPendingPreview() throws Exception {
+        CompletableFuture<Void> preview = new CompletableFuture<>();
+        when(previewGenerator.whenReady("/processed/r.png")).thenReturn(preview);
+        processingMonitor.queueProcess("task-2", "图像去噪");
+        MvcResult stream = subscribe("task-2");
+        processingMonitor.startProcess("task-2", "图像去噪");
+
+        processingMonitor.completeProcess("task-2", "/processed/r.png");
+
+        assertThat(statuses(stream)).doesNotContain("COMPLETED");
+        assertThat(isOpen(stream)).isTrue();
+
+        when(previewGenerator.renditionUrls("/processed/r.png"))
+                .thenReturn(Map.of("previewUrl", "/processed/r_preview.jpg"));
+        preview.complete(null);
+
+        assertThat(statuses(stream)).last().isEqualTo("COMPLETED");
+        assertThat(events(stream)).last().asString().contains("\"previewUrl\":\"/processed/r_preview.jpg\"");
+        assertThat(isOpen(stream)).isFalse();
+    }
+
+    // 订阅已结束的任务：推送一次最终状态后关闭
+    @Test
+    void subscribingToFinishedTaskSendsFinalStateAndCloses() throws Exception {
+        processingMonitor.queueProcess("task-3", "图像去噪");
+        processingMonitor.failProcess("task-3", "推理失败");
+
+        MvcResult stream = subscribe("task-3");
+
+        assertThat(statuses(stream)).containsExactly("FAILED");
+        assertThat(isOpen(stream)).isFalse();
+    }
+
+    @Test
+    void unknownTaskReportsNotFound() throws Exception {
+        MvcResult stream = subscribe("missing");
+
+        assertThat(statuses(stream)).containsExactly("NOT_FOUND");
+        assertThat(isOpen(stream)).isFalse();
+    }
+
+    private MvcResult subscribe(String taskId) throws Exception {
+        return mockMvc.perform(get("/api/process/stream/" + taskId)).andExpect(request().asyncStarted()).andReturn();
+    }
+
+    private static List<String> events(MvcResult stream) throws Exception {
+        return Arrays.stream(stream.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n\n"))
+                .filter(event -> event.startsWith("event:progress"))
+                .toList();
+    }
+
+    private static List<String> statuses(MvcResult stream) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        return events(stream).stream()
+                .map(event -> event.substring(event.indexOf("data:") + 5))
+                .map(data -> {
+                    try {
+                        return (String) mapper.readValue(data, Map.class).get("status");
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .toList();
+    }
+
+    // emitter.complete() 结束异步请求
+    private static boolean isOpen(MvcResult stream) {
+        return !WebAsyncUtils.getAsyncManager(stream.getRequest()).hasConcurrentResult();
+    }
+}
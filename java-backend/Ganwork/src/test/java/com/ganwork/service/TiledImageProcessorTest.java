@@ -0,0 +1,212 @@
+package com.ganwork.service;
+
+import com.ganwork.config.StorageProperties;
+import com.ganwork.config.TilingProperties;
+import com.ganwork.exception.TaskCancelledException;
+import com.ganwork.util.FileStorageUtil;
+import com.ganwork.util.LocalStorageBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class TiledImageProcessorTest {
+
+    private static final int TILE_SIZE = 32;
+    private static final int OVERLAP = 4;
+
+    @TempDir
+    Path root;
+
+    private FileStorageUtil fileStorageUtil;
+    private ThreadPoolTaskExecutor tileTaskExecutor;
+    private TiledImageProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        TilingProperties properties = new TilingProperties();
+        properties.setTileSize(TILE_SIZE);
+        properties.setOverlap(OVERLAP);
+        fileStorageUtil = new FileStorageUtil(root.resolve("uploads").toString(),
+                root.resolve("processed").toString(), new StorageProperties(), new LocalStorageBackend());
+        tileTaskExecutor = new ThreadPoolTaskExecutor();
+        tileTaskExecutor.setCorePoolSize(3);
+        tileTaskExecutor.initialize();
+        processor = new TiledImageProcessor(properties, fileStorageUtil, mock(ProcessingMonitor.class),
+                tileTaskExecutor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tileTaskExecutor.shutdown();
+    }
+
+    // 原样返回分块时，多行多列拼接结果与输入逐像素一致（含透明通道）
+    @Test
+    void identityTilesReproduceRgbaPngInput() throws IOException {
+        BufferedImage input = noise(100, 90, BufferedImage.TYPE_INT_ARGB);
+
+        BufferedImage output = run(write(input, "png"), 1, tile -> tile);
+
+        assertThat(output.getColorModel().hasAlpha()).isTrue();
+        assertThat(pixels(output)).containsExactly(pixels(input));
+    }
+
+    // 非 PNG 输入整幅解码一次后同样按行带拼接
+    @Test
+    void identityTilesReproduceNonPngInput() throws IOException {
+        BufferedImage input = noise(70, 75, BufferedImage.TYPE_INT_RGB);
+
+        BufferedImage output = run(write(input, "bmp"), 1, tile -> tile);
+
+        assertThat(output.getColorModel().hasAlpha()).isFalse();
+        assertThat(pixels(output)).containsExactly(pixels(input));
+    }
+
+    @Test
+    void upscaledTilesLineUpWithNearestNeighbourOutput() throws IOException {
+        BufferedImage input = noise(50, 40, BufferedImage.TYPE_INT_RGB);
+
+        BufferedImage output = run(write(input, "png"), 2, TiledImageProcessorTest::upscale2x);
+
+        assertThat(output.getWidth()).isEqualTo(100);
+        assertThat(output.getHeight()).isEqualTo(80);
+        assertThat(pixels(output)).containsExactly(pixels(upscale2x(input)));
+    }
+
+    // 两个分块结果各为纯色时，接缝处 2 * overlap 宽的过渡区从左侧颜色线性变为右侧颜色
+    @Test
+    void seamBlendsLinearlyAcrossOverlap() throws IOException {
+        BufferedImage input = new BufferedImage(2 * TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+        for (int x = TILE_SIZE; x < 2 * TILE_SIZE; x++) {
+            for (int y = 0; y < TILE_SIZE; y++) {
+                input.setRGB(x, y, 0xffffff);
+            }
+        }
+        // 每个分块输出为其中心像素的颜色：左块黑、右块白
+        BufferedImage output = run(write(input, "png"), 1, tile -> {
+            int center = tile.getRGB(tile.getWidth() / 2, tile.getHeight() / 2);
+            BufferedImage solid = new BufferedImage(tile.getWidth(), tile.getHeight(), BufferedImage.TYPE_INT_RGB);
+            for (int y = 0; y < tile.getHeight(); y++) {
+                for (int x = 0; x < tile.getWidth(); x++) {
+                    solid.setRGB(x, y, center);
+                }
+            }
+            return solid;
+        });
+
+        int seamStart = TILE_SIZE - OVERLAP;
+        int seamEnd = TILE_SIZE + OVERLAP;
+        int previous = -1;
+        for (int x = 0; x < 2 * TILE_SIZE; x++) {
+            int gray = output.getRGB(x, TILE_SIZE / 2) & 0xff;
+            if (x < seamStart) {
+                assertThat(gray).isZero();
+            } else if (x >= seamEnd) {
+                assertThat(gray).isEqualTo(0xff);
+            } else {
+                int expected = (int) Math.round(0xff * (x - seamStart + 0.5) / (2.0 * OVERLAP));
+                assertThat(gray).isEqualTo(expected).isGreaterThan(previous);
+            }
+            previous = gray;
+        }
+    }
+
+    // 拼接完成后处理结果目录的索引只剩最终结果，分块的中间结果都已移出
+    @Test
+    void indexHoldsOnlyStitchedResultAfterTiledRun() throws IOException {
+        run(write(noise(100, 90, BufferedImage.TYPE_INT_RGB), "png"), 1, tile -> tile);
+
+        Path output = fileStorageUtil.resolveProcessed("tiled_task-1.png");
+        assertThat(fileStorageUtil.getProcessedIndex().size()).isEqualTo(1);
+        assertThat(fileStorageUtil.getProcessedIndex().totalBytes()).isEqualTo(Files.size(output));
+    }
+
+    // 取消时已完成与之后完成的分块结果都被删除并移出索引
+    @Test
+    void indexIsEmptyAfterCancelledRun() throws IOException {
+        Path input = write(noise(100, 90, BufferedImage.TYPE_INT_RGB), "png");
+        CancellationToken cancellation = new CancellationToken("task-1");
+        AtomicInteger tiles = new AtomicInteger();
+
+        assertThatThrownBy(() -> processor.process(input.toString(), 1, "task-1", cancellation, tile -> {
+            Path result = storeResult(tile, t -> t);
+            if (tiles.incrementAndGet() == 2) {
+                cancellation.cancel();
+            }
+            return result;
+        })).isInstanceOf(TaskCancelledException.class);
+
+        ImageProcessingServiceImplTest.awaitCondition(() -> fileStorageUtil.getProcessedIndex().size() == 0,
+                Duration.ofSeconds(5));
+        assertThat(fileStorageUtil.getProcessedIndex().totalBytes()).isZero();
+        assertThat(fileStorageUtil.resolveProcessed("tiled_task-1.png")).doesNotExist();
+    }
+
+    private BufferedImage run(Path input, int scale, Function<BufferedImage, BufferedImage> model) throws IOException {
+        String url = processor.process(input.toString(), scale, "task-1", new CancellationToken("task-1"),
+                tile -> storeResult(tile, model));
+        assertThat(url).isEqualTo("/processed/tiled_task-1.png");
+        return ImageIO.read(fileStorageUtil.resolveProcessed("tiled_task-1.png").toFile());
+    }
+
+    // 与推理流程一致，分块结果经 FileStorageUtil 写入处理结果目录并加入索引
+    private Path storeResult(Path tile, Function<BufferedImage, BufferedImage> model) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(model.apply(ImageIO.read(tile.toFile())), "png", out);
+            return Path.of(fileStorageUtil.storeProcessedFile("result.png", out.toByteArray()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path write(BufferedImage image, String format) throws IOException {
+        Path file = root.resolve("input." + format);
+        ImageIO.write(image, format, file.toFile());
+        return file;
+    }
+
+    private static BufferedImage upscale2x(BufferedImage image) {
+        BufferedImage scaled = new BufferedImage(image.getWidth() * 2, image.getHeight() * 2, image.getType());
+        for (int y = 0; y < scaled.getHeight(); y++) {
+            for (int x = 0; x < scaled.getWidth(); x++) {
+                scaled.setRGB(x, y, image.getRGB(x / 2, y / 2));
+            }
+        }
+        return scaled;
+    }
+
+    private static BufferedImage noise(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Random random = new Random(width * 31L + height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int pixel = random.nextInt();
+                image.setRGB(x, y, type == BufferedImage.TYPE_INT_ARGB ? pixel : pixel | 0xff000000);
+            }
+        }
+        return image;
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}
@@ -0,0 +1,69 @@
+package com.ganwork.util;
+
+import com.ganwork.config.StorageProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ContentEtagTest {
+
+    @TempDir
+    Path root;
+
+    private FileStorageUtil fileStorageUtil;
+
+    @BeforeEach
+    void setUp() {
+        fileStorageUtil = new FileStorageUtil(root.resolve("uploads").toString(), root.resolve("processed").toString(),
+                new StorageProperties(), new LocalStorageBackend());
+    }
+
+    @Test
+    void etagIsSha256OfContent() throws Exception {
+        byte[] content = "result".getBytes(StandardCharsets.UTF_8);
+        Path stored = Path.of(fileStorageUtil.storeProcessedFile("a.png", content));
+
+        String expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        assertThat(fileStorageUtil.digest(stored)).isEqualTo(expected);
+        assertThat(fileStorageUtil.etag(new FileSystemResource(stored))).isEqualTo(expected);
+    }
+
+    // 摘要按大小与修改时间缓存：文件被改写后重新计算
+    @Test
+    void etagChangesWhenFileIsRewritten() throws Exception {
+        Path stored = Path.of(fileStorageUtil.storeProcessedFile("b.png", "first".getBytes(StandardCharsets.UTF_8)));
+        String before = fileStorageUtil.etag(new FileSystemResource(stored));
+
+        Files.write(stored, "second".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(stored, FileTime.fromMillis(Files.getLastModifiedTime(stored).toMillis() + 2000));
+
+        assertThat(fileStorageUtil.etag(new FileSystemResource(stored))).isNotEqualTo(before);
+    }
+
+    // 对象存储的资源直接使用其内容标签，不读取内容
+    @Test
+    void taggedResourceUsesItsContentTag() {
+        TaggedResource tagged = mock(TaggedResource.class);
+        when(tagged.getContentTag()).thenReturn("abc123");
+
+        assertThat(fileStorageUtil.etag(tagged)).isEqualTo("abc123");
+    }
+
+    @Test
+    void resourceWithoutFileHasNoEtag() {
+        assertThat(fileStorageUtil.etag(new ByteArrayResource(new byte[]{1, 2, 3}))).isNull();
+    }
+}
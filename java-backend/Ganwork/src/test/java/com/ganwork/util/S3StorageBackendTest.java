@@ -0,0 +1,338 @@
+package com.ganwork.util;
+
+import com.ganwork.config.S3StorageProperties;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// 用 JDK HttpServer 模拟 S3：校验每个请求的 SigV4 签名，按路径风格保存对象，支持分段上传、HEAD 与 Range 读取
+class S3StorageBackendTest {
+
+    private static final String ACCESS_KEY = "test-access";
+    private static final String SECRET_KEY = "test-secret";
+    private static final int MB = 1024 * 1024;
+    private static final DateTimeFormatter AMZ_DATE =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+    private static final Pattern PART = Pattern.compile("<PartNumber>(\\d+)</PartNumber><ETag>([^<]+)</ETag>");
+
+    @TempDir
+    Path root;
+
+    private HttpServer server;
+    private S3StorageBackend backend;
+
+    private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+    private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> pendingMetadata = new ConcurrentHashMap<>();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+    private volatile boolean ignoreRange;
+    private volatile int failPart;
+
+    private record StoredObject(byte[] content, Map<String, String> metadata) {
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+
+        S3StorageProperties properties = new S3StorageProperties();
+        properties.setEndpoint("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        properties.setBucket("bucket");
+        properties.setKeyPrefix("env/");
+        properties.setAccessKey(ACCESS_KEY);
+        properties.setSecretKey(SECRET_KEY);
+        properties.setPartSizeMb(5);
+        properties.setMultipartThresholdMb(5);
+        backend = new S3StorageBackend(properties);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        backend.close();
+        server.stop(0);
+    }
+
+    @Test
+    void smallFileIsPutInOneRequestWithDigestMetadata() throws IOException {
+        Path file = write("small.png", 1000);
+
+        backend.publish("processed/a b.png", file, "abc123");
+
+        assertThat(requests).containsExactly("PUT /bucket/env/processed/a%20b.png");
+        StoredObject stored = objects.get("/bucket/env/processed/a%20b.png");
+        assertThat(stored.content()).isEqualTo(Files.readAllBytes(file));
+        assertThat(stored.metadata()).containsEntry("x-amz-meta-sha256", "abc123");
+    }
+
+    // 超过阈值的文件分段上传：初始化、逐段上传、按段号完成
+    @Test
+    void largeFileIsUploadedInParts() throws IOException {
+        Path file = write("large.png", 11 * MB);
+
+        backend.publish("uploads/large.png", file, "digest");
+
+        assertThat(requests).containsExactly(
+                "POST /bucket/env/uploads/large.png?uploads",
+                "PUT /bucket/env/uploads/large.png?partNumber=1&uploadId=upload%2F1",
+                "PUT /bucket/env/uploads/large.png?partNumber=2&uploadId=upload%2F1",
+                "PUT /bucket/env/uploads/large.png?partNumber=3&uploadId=upload%2F1",
+                "POST /bucket/env/uploads/large.png?uploadId=upload%2F1");
+        StoredObject stored = objects.get("/bucket/env/uploads/large.png");
+        assertThat(stored.content()).isEqualTo(Files.readAllBytes(file));
+        assertThat(stored.metadata()).containsEntry("x-amz-meta-sha256", "digest");
+    }
+
+    @Test
+    void failedPartAbortsTheUpload() throws IOException {
+        failPart = 2;
+        Path file = write("large.png", 11 * MB);
+
+        assertThatThrownBy(() -> backend.publish("uploads/large.png", file, null)).isInstanceOf(IOException.class);
+
+        assertThat(requests).last().isEqualTo("DELETE /bucket/env/uploads/large.png?uploadId=upload%2F1");
+        assertThat(uploads).isEmpty();
+        assertThat(objects).isEmpty();
+    }
+
+    // HEAD 给出长度、修改时间与摘要标签；不存在的对象返回 null
+    @Test
+    void openReadsMetadataWithHead() throws IOException {
+        backend.publish("processed/a.png", write("a.png", 300), "abc123");
+        requests.clear();
+
+        Resource resource = backend.open("processed/a.png");
+
+        assertThat(requests).containsExactly("HEAD /bucket/env/processed/a.png");
+        assertThat(resource.contentLength()).isEqualTo(300);
+        assertThat(resource.lastModified()).isEqualTo(Instant.parse("2024-01-02T03:04:05Z").toEpochMilli());
+        assertThat(((TaggedResource) resource).getContentTag()).isEqualTo("abc123");
+        assertThat(backend.open("processed/missing.png")).isNull();
+    }
+
+    // 跳过开头再读取时只请求剩余字节
+    @Test
+    void skippedPrefixIsNotDownloaded() throws IOException {
+        Path file = write("a.png", 4096);
+        backend.publish("processed/a.png", file, null);
+        byte[] content = Files.readAllBytes(file);
+
+        try (InputStream in = backend.open("processed/a.png").getInputStream()) {
+            assertThat(in.skip(1000)).isEqualTo(1000);
+            assertThat(in.readAllBytes()).isEqualTo(Arrays.copyOfRange(content, 1000, content.length));
+        }
+        assertThat(ranges).containsExactly("bytes=1000-");
+
+        try (InputStream in = backend.open("processed/a.png").getInputStream()) {
+            assertThat(in.readAllBytes()).isEqualTo(content);
+        }
+        assertThat(ranges).containsExactly("bytes=1000-", "");
+    }
+
+    // 服务端忽略 Range 返回完整内容时，丢弃偏移之前的部分
+    @Test
+    void fullResponseToRangeRequestIsTrimmed() throws IOException {
+        ignoreRange = true;
+        Path file = write("a.png", 4096);
+        backend.publish("processed/a.png", file, null);
+        byte[] content = Files.readAllBytes(file);
+
+        try (InputStream in = backend.open("processed/a.png").getInputStream()) {
+            in.skipNBytes(4000);
+            assertThat(in.readAllBytes()).isEqualTo(Arrays.copyOfRange(content, 4000, content.length));
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getRawPath();
+            String query = exchange.getRequestURI().getRawQuery();
+            requests.add(method + " " + path + (query != null ? "?" + query : ""));
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            if (!signatureMatches(exchange, body)) {
+                respond(exchange, 403, "<Error><Code>SignatureDoesNotMatch</Code></Error>");
+                return;
+            }
+            Map<String, String> params = params(query);
+
+            switch (method) {
+                case "PUT" -> {
+                    if (params.containsKey("partNumber")) {
+                        int partNumber = Integer.parseInt(params.get("partNumber"));
+                        if (partNumber == failPart) {
+                            respond(exchange, 500, "<Error><Code>InternalError</Code></Error>");
+                            return;
+                        }
+                        uploads.get(params.get("uploadId")).put(partNumber, body);
+                        exchange.getResponseHeaders().set("ETag", "\"etag-" + partNumber + "\"");
+                    } else {
+                        objects.put(path, new StoredObject(body, metadata(exchange)));
+                    }
+                    respond(exchange, 200, "");
+                }
+                case "POST" -> {
+                    if (params.containsKey("uploads")) {
+                        uploads.put("upload/1", new TreeMap<>());
+                        pendingMetadata.put("upload/1", metadata(exchange));
+                        respond(exchange, 200, "<InitiateMultipartUploadResult><UploadId>upload/1</UploadId>"
+                                + "</InitiateMultipartUploadResult>");
+                        return;
+                    }
+                    Map<Integer, byte[]> parts = uploads.remove(params.get("uploadId"));
+                    ByteArrayOutputStream content = new ByteArrayOutputStream();
+                    Matcher matcher = PART.matcher(new String(body, StandardCharsets.UTF_8));
+                    int expected = 1;
+                    while (matcher.find()) {
+                        assertThat(Integer.parseInt(matcher.group(1))).isEqualTo(expected);
+                        assertThat(matcher.group(2)).isEqualTo("\"etag-" + expected + "\"");
+                        content.write(parts.get(expected++));
+                    }
+                    objects.put(path, new StoredObject(content.toByteArray(),
+                            pendingMetadata.remove(params.get("uploadId"))));
+                    respond(exchange, 200, "<CompleteMultipartUploadResult/>");
+                }
+                case "DELETE" -> {
+                    uploads.remove(params.get("uploadId"));
+                    respond(exchange, 204, null);
+                }
+                case "HEAD" -> {
+                    StoredObject object = objects.get(path);
+                    if (object == null) {
+                        exchange.sendResponseHeaders(404, -1);
+                        return;
+                    }
+                    exchange.getResponseHeaders().set("Content-Length", String.valueOf(object.content().length));
+                    exchange.getResponseHeaders().set("Last-Modified", "Tue, 2 Jan 2024 03:04:05 GMT");
+                    exchange.getResponseHeaders().set("ETag", "\"storage-etag\"");
+                    object.metadata().forEach(exchange.getResponseHeaders()::set);
+                    exchange.sendResponseHeaders(200, -1);
+                }
+                default -> {
+                    byte[] content = objects.get(path).content();
+                    String range = exchange.getRequestHeaders().getFirst("Range");
+                    ranges.add(range != null ? range : "");
+                    if (range != null && !ignoreRange) {
+                        int start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+                        exchange.getResponseHeaders().set("Content-Range",
+                                "bytes " + start + "-" + (content.length - 1) + "/" + content.length);
+                        send(exchange, 206, Arrays.copyOfRange(content, start, content.length));
+                    } else {
+                        send(exchange, 200, content);
+                    }
+                }
+            }
+        }
+    }
+
+    // 按请求实际携带的签名头重新计算签名，与 Authorization 比较
+    private static boolean signatureMatches(HttpExchange exchange, byte[] body) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        String payloadHash = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        String amzDate = exchange.getRequestHeaders().getFirst("x-amz-date");
+        if (authorization == null || payloadHash == null || amzDate == null) {
+            return false;
+        }
+        if (!payloadHash.equals(S3RequestSigner.UNSIGNED_PAYLOAD)
+                && !payloadHash.equals(S3RequestSigner.sha256Hex(body))) {
+            return false;
+        }
+        String signedHeaders = authorization.substring(authorization.indexOf("SignedHeaders=") + 14,
+                authorization.indexOf(", Signature="));
+        Map<String, String> extra = new HashMap<>();
+        for (String name : signedHeaders.split(";")) {
+            if (!List.of("host", "x-amz-content-sha256", "x-amz-date").contains(name)) {
+                extra.put(name, exchange.getRequestHeaders().getFirst(name));
+            }
+        }
+        URI uri = URI.create("http://" + exchange.getRequestHeaders().getFirst("Host")
+                + exchange.getRequestURI().getRawPath()
+                + (exchange.getRequestURI().getRawQuery() != null ? "?" + exchange.getRequestURI().getRawQuery() : ""));
+        Map<String, String> expected = new S3RequestSigner(ACCESS_KEY, SECRET_KEY, "us-east-1")
+                .sign(exchange.getRequestMethod(), uri, payloadHash, extra, Instant.from(AMZ_DATE.parse(amzDate)));
+        return authorization.equals(expected.get("Authorization"));
+    }
+
+    private static Map<String, String> metadata(HttpExchange exchange) {
+        Map<String, String> metadata = new HashMap<>();
+        exchange.getRequestHeaders().forEach((name, values) -> {
+            if (name.toLowerCase().startsWith("x-amz-meta-")) {
+                metadata.put(name.toLowerCase(), values.get(0));
+            }
+        });
+        return metadata;
+    }
+
+    private static Map<String, String> params(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                int eq = param.indexOf('=');
+                params.put(eq < 0 ? param : param.substring(0, eq),
+                        eq < 0 ? "" : URLDecoder.decode(param.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(code, -1);
+            return;
+        }
+        send(exchange, code, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int code, byte[] body) throws IOException {
+        if (body.length == 0) {
+            exchange.sendResponseHeaders(code, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private Path write(String name, int size) throws IOException {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        Path file = root.resolve(name);
+        Files.write(file, content);
+        return file;
+    }
+}
@@ -0,0 +1,94 @@
+package com.ganwork.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StorageIndexTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    @TempDir
+    Path root;
+
+    private StorageIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new StorageIndex(root);
+    }
+
+    // 增量添加与删除时同步维护总字节数；同一文件重新添加时按新大小计算
+    @Test
+    void addAndRemoveTrackTotalBytes() throws IOException {
+        Path a = write("a.png", 100, 0);
+        Path b = write("b.png", 50, 0);
+        index.add(a);
+        index.add(b);
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.totalBytes()).isEqualTo(150);
+
+        Files.write(a, new byte[30]);
+        index.add(a);
+        assertThat(index.totalBytes()).isEqualTo(80);
+
+        index.remove(b);
+        index.remove(b);
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.totalBytes()).isEqualTo(30);
+    }
+
+    @Test
+    void containsOnlyFilesUnderRoot() {
+        assertThat(index.contains(root.resolve("ab").resolve("x.png"))).isTrue();
+        assertThat(index.contains(root.resolveSibling("other").resolve("x.png"))).isFalse();
+    }
+
+    // 全量扫描：跳过 . 开头的目录，删除过期的临时文件，保留仍在写入的临时文件但不计入索引
+    @Test
+    void rebuildSkipsDotDirectoriesAndRemovesStaleTempFiles() throws IOException {
+        write("ab/cd/a.png", 10, 0);
+        write(".journal/jobs.log", 1000, 0);
+        Path stale = write("ab/b.png.part", 20, 2 * HOUR);
+        Path fresh = write("ab/c.png.part", 30, 0);
+
+        index.rebuild(".part", HOUR);
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.totalBytes()).isEqualTo(10);
+        assertThat(stale).doesNotExist();
+        assertThat(fresh).exists();
+    }
+
+    @Test
+    void listsFilesByModificationTime() throws IOException {
+        Path newest = write("newest.png", 1, 0);
+        Path oldest = write("oldest.png", 1, 3 * HOUR);
+        Path middle = write("middle.png", 1, 2 * HOUR);
+        index.rebuild(".part", HOUR);
+
+        assertThat(index.oldestFirst()).containsExactly(key(oldest), key(middle), key(newest));
+        assertThat(index.modifiedBefore(System.currentTimeMillis() - HOUR))
+                .containsExactlyInAnyOrder(key(oldest), key(middle));
+    }
+
+    // 写入 size 字节，修改时间设为 ageMillis 之前
+    private Path write(String name, int size, long ageMillis) throws IOException {
+        Path file = root.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[size]);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - ageMillis));
+        return file;
+    }
+
+    private static Path key(Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+}
@@ -0,0 +1,107 @@
+package com.ganwork.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StreamingPngReaderTest {
+
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 23;
+
+    @Test
+    void readsRgbRowsLikeImageIo() throws IOException {
+        BufferedImage image = noise(BufferedImage.TYPE_INT_RGB);
+
+        StreamingPngReader reader = new StreamingPngReader(new ByteArrayInputStream(png(image)));
+        assertThat(reader.hasAlpha()).isFalse();
+        assertThat(readAll(reader)).containsExactly(image.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH));
+    }
+
+    @Test
+    void readsRgbaRowsWithAlpha() throws IOException {
+        BufferedImage image = noise(BufferedImage.TYPE_INT_ARGB);
+
+        StreamingPngReader reader = new StreamingPngReader(new ByteArrayInputStream(png(image)));
+        assertThat(reader.hasAlpha()).isTrue();
+        assertThat(readAll(reader)).containsExactly(image.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH));
+    }
+
+    @Test
+    void readsPaletteRows() throws IOException {
+        BufferedImage image = noise(BufferedImage.TYPE_BYTE_INDEXED);
+
+        StreamingPngReader reader = new StreamingPngReader(new ByteArrayInputStream(png(image)));
+        assertThat(readAll(reader)).containsExactly(image.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH));
+    }
+
+    // 灰度按原始采样值比较（ImageIO 的 getRGB 会做灰度色彩空间转换）
+    @Test
+    void readsEightAndSixteenBitGrayRows() throws IOException {
+        for (int type : new int[]{BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_USHORT_GRAY}) {
+            BufferedImage image = noise(type);
+            int shift = type == BufferedImage.TYPE_USHORT_GRAY ? 8 : 0;
+
+            int[] rows = readAll(new StreamingPngReader(new ByteArrayInputStream(png(image))));
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    int v = image.getRaster().getSample(x, y, 0) >> shift;
+                    assertThat(rows[y * WIDTH + x]).isEqualTo(0xff000000 | v << 16 | v << 8 | v);
+                }
+            }
+        }
+    }
+
+    @Test
+    void rejectsReadingPastLastRow() throws IOException {
+        StreamingPngReader reader = new StreamingPngReader(
+                new ByteArrayInputStream(png(noise(BufferedImage.TYPE_INT_RGB))));
+        readAll(reader);
+
+        assertThatThrownBy(() -> reader.readRow(new int[WIDTH], 0)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void rejectsNonPngInput() {
+        assertThatThrownBy(() -> new StreamingPngReader(new ByteArrayInputStream(new byte[16])))
+                .isInstanceOf(IOException.class);
+    }
+
+    private static int[] readAll(StreamingPngReader reader) throws IOException {
+        assertThat(reader.getWidth()).isEqualTo(WIDTH);
+        assertThat(reader.getHeight()).isEqualTo(HEIGHT);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            reader.readRow(pixels, y * WIDTH);
+        }
+        return pixels;
+    }
+
+    // 随机像素使编码器用到各种过滤方式
+    static BufferedImage noise(int type) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, type);
+        Random random = new Random(type);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int smooth = (x * 7 + y * 3) & 0xff;
+                int pixel = random.nextInt(4) == 0 ? random.nextInt() : smooth << 16 | smooth << 8 | smooth;
+                image.setRGB(x, y, type == BufferedImage.TYPE_INT_ARGB ? pixel : pixel | 0xff000000);
+            }
+        }
+        return image;
+    }
+
+    static byte[] png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
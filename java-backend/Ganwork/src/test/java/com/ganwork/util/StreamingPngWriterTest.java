@@ -0,0 +1,58 @@
+package com.ganwork.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StreamingPngWriterTest {
+
+    @Test
+    void writesRgbReadableByImageIo() throws IOException {
+        BufferedImage source = StreamingPngReaderTest.noise(BufferedImage.TYPE_INT_RGB);
+
+        BufferedImage written = ImageIO.read(new ByteArrayInputStream(write(source, false)));
+        assertThat(written.getColorModel().hasAlpha()).isFalse();
+        assertThat(pixels(written)).containsExactly(pixels(source));
+    }
+
+    @Test
+    void writesRgbaKeepingAlpha() throws IOException {
+        BufferedImage source = StreamingPngReaderTest.noise(BufferedImage.TYPE_INT_ARGB);
+
+        BufferedImage written = ImageIO.read(new ByteArrayInputStream(write(source, true)));
+        assertThat(written.getColorModel().hasAlpha()).isTrue();
+        assertThat(pixels(written)).containsExactly(pixels(source));
+    }
+
+    @Test
+    void rejectsMissingRows() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThatThrownBy(() -> {
+            try (StreamingPngWriter writer = new StreamingPngWriter(out, 2, 2)) {
+                writer.writeRow(new int[2], 0);
+            }
+        }).isInstanceOf(IOException.class);
+    }
+
+    private static byte[] write(BufferedImage image, boolean alpha) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int[] pixels = pixels(image);
+        try (StreamingPngWriter writer = new StreamingPngWriter(out, image.getWidth(), image.getHeight(), alpha)) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                writer.writeRow(pixels, y * image.getWidth());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}
@@ -0,0 +1,149 @@
+package com.ganwork.util;
+
+import com.ganwork.config.StorageProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// 流式保存下载结果：边写边算 SHA-256，超过大小上限时中止并删除写了一半的 .part 文件
+class StreamingStoreTest {
+
+    private static final long LIMIT = 64 * 1024;
+
+    @TempDir
+    Path root;
+
+    private FileStorageUtil fileStorageUtil;
+
+    @BeforeEach
+    void setUp() {
+        fileStorageUtil = new FileStorageUtil(root.resolve("uploads").toString(), root.resolve("processed").toString(),
+                new StorageProperties(), new LocalStorageBackend());
+    }
+
+    @Test
+    void streamedDigestMatchesContent() throws Exception {
+        byte[] content = random((int) LIMIT - 100);
+
+        FileStorageUtil.StoredFile stored = fileStorageUtil.storeProcessedFile("a.png",
+                new ByteArrayInputStream(content), -1, LIMIT);
+
+        String expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        assertThat(stored.sha256()).isEqualTo(expected);
+        assertThat(stored.size()).isEqualTo(content.length);
+        assertThat(Files.readAllBytes(Path.of(stored.path()))).isEqualTo(content);
+        // 写入时算出的摘要直接用于 ETag
+        assertThat(fileStorageUtil.digest(Path.of(stored.path()))).isEqualTo(expected);
+        assertThat(processedFiles()).containsExactly(Path.of(stored.path()));
+    }
+
+    @Test
+    void bodyExactlyAtLimitIsAccepted() {
+        FileStorageUtil.StoredFile stored = fileStorageUtil.storeProcessedFile("b.png",
+                new ByteArrayInputStream(random((int) LIMIT)), -1, LIMIT);
+
+        assertThat(stored.size()).isEqualTo(LIMIT);
+    }
+
+    // 未声明长度的响应体超限：最多多读 1 字节即中止，不留下 .part
+    @Test
+    void bodyOverLimitIsRejectedWithoutLeftovers() throws Exception {
+        CountingInputStream body = new CountingInputStream(new ByteArrayInputStream(random((int) LIMIT * 4)));
+
+        assertThatThrownBy(() -> fileStorageUtil.storeProcessedFile("c.png", body, -1, LIMIT))
+                .hasMessageContaining("文件超过大小上限");
+
+        assertThat(body.count).isEqualTo(LIMIT + 1);
+        assertThat(processedFiles()).isEmpty();
+    }
+
+    // 声明的长度已超限时不读取响应体
+    @Test
+    void declaredLengthOverLimitIsRejectedBeforeReading() throws Exception {
+        CountingInputStream body = new CountingInputStream(new ByteArrayInputStream(random(16)));
+
+        assertThatThrownBy(() -> fileStorageUtil.storeProcessedFile("d.png", body, LIMIT + 1, LIMIT))
+                .hasMessageContaining("文件超过大小上限");
+
+        assertThat(body.count).isZero();
+        assertThat(processedFiles()).isEmpty();
+    }
+
+    @Test
+    void failedTransferLeavesNoPartFile() throws Exception {
+        InputStream broken = new FilterInputStream(new ByteArrayInputStream(random(1024))) {
+            private int reads;
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (reads++ > 0) {
+                    throw new IOException("connection reset");
+                }
+                return super.read(b, off, Math.min(len, 100));
+            }
+        };
+
+        assertThatThrownBy(() -> fileStorageUtil.storeProcessedFile("e.png", broken, -1, LIMIT))
+                .hasMessageContaining("connection reset");
+
+        assertThat(processedFiles()).isEmpty();
+    }
+
+    private List<Path> processedFiles() throws IOException {
+        Path processed = root.resolve("processed");
+        if (!Files.exists(processed)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.walk(processed)) {
+            return files.filter(Files::isRegularFile).toList();
+        }
+    }
+
+    private static byte[] random(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
@@ -5,9 +5,11 @@ from starlette.responses import FileResponse
 
 from model_config import MODEL_CONFIGS
 from utils.model_loader import ModelLoader
-from utils.image_processing import preprocess_image, save_processed_image, process_image_with_model
+from utils.image_processing import preprocess_image, save_processed_image, process_image_with_model, \
+    process_images_with_model
 import os
 import time
+from typing import List
 from dotenv import load_dotenv
 import uvicorn
 from pathlib import Path
@@ -110,8 +112,9 @@ def health_check():
 # 通用模型处理函数
 @app.post("/process")
 async def process_image(
-        file: UploadFile = File(...),
-        model_name: str = Form("color_enhance")
+        file: UploadFile = File(None),
+        model_name: str = Form("color_enhance"),
+        source: str = Form(None)
 ):
     try:
         # 确保上传目录存在
@@ -122,14 +125,26 @@ async def process_image(
         processed_dir = Path(DOWNLOAD_DIR)
         processed_dir.mkdir(exist_ok=True)
 
-        # 读取上传的文件
-        contents = await file.read()
-
-        # 保存上传的文件
-        upload_filename = f"upload_{int(time.time())}_{file.filename}"
-        upload_path = upload_dir / upload_filename
-        with open(upload_path, "wb") as f:
-            f.write(contents)
+        if source:
+            # 流水线中间结果：直接读取上一步留在处理目录中的文件，无需客户端重新上传
+            source_filename = Path(source).name
+            source_path = processed_dir / source_filename
+            if not source_path.exists():
+                return {"status": "error", "error": f"中间结果不存在: {source}"}
+            contents = source_path.read_bytes()
+            input_filename = source_filename
+        elif file is not None:
+            # 读取上传的文件
+            contents = await file.read()
+            input_filename = file.filename
+
+            # 保存上传的文件
+            upload_filename = f"upload_{int(time.time())}_{file.filename}"
+            upload_path = upload_dir / upload_filename
+            with open(upload_path, "wb") as f:
+                f.write(contents)
+        else:
+            return {"status": "error", "error": "缺少 file 或 source 参数"}
 
         # 检查模型是否存在
         if model_name not in MODEL_CONFIGS:
@@ -147,7 +162,7 @@ async def process_image(
         output, original_size, padding = process_image_with_model(config, contents)
 
         # 生成输出文件名
-        output_filename = f"processed_{file.filename}"
+        output_filename = f"processed_{input_filename}"
         output_path = processed_dir / output_filename
 
         # 保存处理后的图像
@@ -170,6 +185,52 @@ async def process_image(
         return {"status": "error", "error": str(e)}
 
 
+# 批量处理：同一模型的多张小图一次请求处理，结果按上传顺序返回，单张失败不影响其他图像
+@app.post("/process/batch")
+async def process_batch(
+        files: List[UploadFile] = File(...),
+        model_name: str = Form(...)
+):
+    try:
+        if model_name not in MODEL_CONFIGS:
+            return {"status": "error", "error": f"未知模型: {model_name}"}
+        config = MODEL_CONFIGS[model_name]
+
+        processed_dir = Path(DOWNLOAD_DIR)
+        processed_dir.mkdir(exist_ok=True)
+
+        contents = [await file.read() for file in files]
+        outcomes = process_images_with_model(config, contents)
+
+        results = []
+        for file, image_bytes, outcome in zip(files, contents, outcomes):
+            if isinstance(outcome, Exception):
+                results.append({"status": "error", "error": str(outcome)})
+                continue
+            output, original_size, padding = outcome
+            try:
+                output_path = processed_dir / f"processed_{file.filename}"
+                clean_filename = save_processed_image(
+                    output, str(output_path), original_size, padding, config, image_bytes
+                )
+                results.append({
+                    "status": "success",
+                    "model": model_name,
+                    "processed_path": str(processed_dir / clean_filename),
+                    "result_url": f"/processed/{clean_filename}"
+                })
+            except Exception as e:
+                results.append({"status": "error", "error": str(e)})
+
+        return {"status": "success", "model": model_name, "results": results}
+
+    except Exception as e:
+        print(f"Error processing batch: {e}")
+        import traceback
+        traceback.print_exc()
+        return {"status": "error", "error": str(e)}
+
+
 @app.get("/processed/{filename}")
 async def download_file(filename: str):
     file_path = Path(DOWNLOAD_DIR) / filename
@@ -207,27 +268,27 @@ app.mount("/processed", StaticFiles(directory=DOWNLOAD_DIR), name="processed")
 # 保留原有的特定端点
 @app.post("/api/denoise")
 async def denoise_model(file: UploadFile = File(...)):
-    return await process_image(file, "denoise")
+    return await process_image(file, "denoise", None)
 
 
 @app.post("/api/color_enhance")
 async def color_enhancement_model(file: UploadFile = File(...)):
-    return await process_image(file, "color_enhance")
+    return await process_image(file, "color_enhance", None)
 
 
 @app.post("/api/super_res_2x")
 async def super_res_2x_model(file: UploadFile = File(...)):
-    return await process_image(file, "super_res_2x")
+    return await process_image(file, "super_res_2x", None)
 
 
 @app.post("/api/super_res_4x")
 async def super_res_4x_model(file: UploadFile = File(...)):
-    return await process_image(file, "super_res_4x")
+    return await process_image(file, "super_res_4x", None)
 
 
 @app.post("/api/super_res_manga_4x")
 async def manga_sharpen_model(file: UploadFile = File(...)):
-    return await process_image(file, "super_res_manga_4x")
+    return await process_image(file, "super_res_manga_4x", None)
 
 
 if __name__ == "__main__":
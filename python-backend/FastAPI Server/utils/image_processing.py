@@ -11,7 +11,7 @@ import io
 
 import os
 import re
-from typing import Tuple, Dict, Any
+from typing import Tuple, Dict, Any, List
 from schemas import ModelConfig
 
 
@@ -327,6 +327,50 @@ def process_image_with_model(config: ModelConfig, image_bytes: bytes) -> Tuple[
     return output, original_size, padding
 
 
+def process_images_with_model(config: ModelConfig, images: List[bytes]) -> List[Any]:
+    """
+    批量处理多张图像：模型只有一个输入且批次维度不固定时，预处理后形状相同的图像合并为一次推理
+
+    参数:
+        config: 模型配置
+        images: 图像字节数据列表
+
+    返回:
+        list: 与输入顺序一致，每项为 (处理后的图像数组, 原始尺寸, 填充信息)，或处理该图像时抛出的异常
+    """
+    from utils.model_loader import model_loader
+
+    session = model_loader.get_model(config.model_file)
+    inputs = session.get_inputs()
+    batchable = len(inputs) == 1 and not isinstance(inputs[0].shape[0], int)
+
+    results: List[Any] = [None] * len(images)
+    groups: Dict[Tuple[int, ...], list] = {}
+    for index, image_bytes in enumerate(images):
+        try:
+            if not batchable:
+                results[index] = process_image_with_model(config, image_bytes)
+                continue
+            input_data, original_size, padding = preprocess_image(image_bytes, config)
+            groups.setdefault(tuple(input_data.shape), []).append((index, input_data, original_size, padding))
+        except Exception as e:
+            results[index] = e
+
+    input_name = inputs[0].name if inputs else None
+    for items in groups.values():
+        try:
+            batch = np.concatenate([item[1] for item in items], axis=0)
+            output = session.run(None, {input_name: batch})[0]
+            for offset, (index, _, original_size, padding) in enumerate(items):
+                # 保留批次维度，与单张处理的输出形状一致
+                results[index] = (output[offset:offset + 1], original_size, padding)
+        except Exception as e:
+            for item in items:
+                results[item[0]] = e
+
+    return results
+
+
 def apply_model_specific_postprocess(image: np.ndarray, config: ModelConfig) -> np.ndarray:
     """应用模型特定的后处理"""
     # 颜色空间转换